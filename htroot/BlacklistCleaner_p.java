@@ -337,6 +337,7 @@ public class BlacklistCleaner_p {
     private static int removeEntries(final String blacklistToUse,
                     final BlacklistType[] supportedBlacklistTypes,
                     final String[] entries) {
+        final Collection<BlacklistHostAndPath> items = new ArrayList<>(entries.length);
         for (final String entry : entries) {
             String s = entry;
 
@@ -347,25 +348,28 @@ public class BlacklistCleaner_p {
                                 Matcher.quoteReplacement("\\"));
             }
 
-            // remove the entry from the running blacklist engine
-            for (final BlacklistType supportedBlacklistType : supportedBlacklistTypes) {
-                if (ListManager.listSetContains(supportedBlacklistType
-                                + ".BlackLists", blacklistToUse)) {
-                    final String host = (s.indexOf('/', 0) == -1) ? s : s
-                                    .substring(0, s.indexOf('/', 0));
-                    final String path = (s.indexOf('/', 0) == -1) ? ".*" : s
-                                    .substring(s.indexOf('/', 0) + 1);
-                    try {
-                        Switchboard.urlBlacklist.remove(supportedBlacklistType,
-                                        blacklistToUse, host, path);
-                    } catch (final RuntimeException e) {
-                        ConcurrentLog.severe(APP_NAME, e.getMessage() + ": "
-                                        + host + "/" + path);
-                    }
+            final String host = (s.indexOf('/', 0) == -1) ? s : s
+                            .substring(0, s.indexOf('/', 0));
+            final String path = (s.indexOf('/', 0) == -1) ? ".*" : s
+                            .substring(s.indexOf('/', 0) + 1);
+            items.add(new BlacklistHostAndPath(host, path));
+        }
+
+        // remove the entries from the running blacklist engine, all at once to
+        // compile the blacklist and write the file only once per type
+        for (final BlacklistType supportedBlacklistType : supportedBlacklistTypes) {
+            if (ListManager.listSetContains(supportedBlacklistType
+                            + ".BlackLists", blacklistToUse)) {
+                try {
+                    Switchboard.urlBlacklist.remove(supportedBlacklistType,
+                                    blacklistToUse, items);
+                } catch (final RuntimeException e) {
+                    ConcurrentLog.severe(APP_NAME, e.getMessage() + ": "
+                                    + blacklistToUse);
                 }
             }
-            SearchEventCache.cleanupEvents(true);
         }
+        SearchEventCache.cleanupEvents(true);
         return entries.length;
     }
 
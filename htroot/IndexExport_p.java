@@ -32,6 +32,7 @@ import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.data.WorkTables;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
+import net.yacy.search.index.CursorDump;
 import net.yacy.search.index.Fulltext;
 import net.yacy.search.index.Segment;
 import net.yacy.server.serverObjects;
@@ -95,10 +96,30 @@ public class IndexExport_p {
             }
         }
 
+        // show the state of the cursor dump
+        prop.put("cursordumpdir", sb.getDataPath() + "/DATA/EXPORT/cursordump");
+        prop.put("cursorpartitions", Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        if (cursorDumpState(prop, segment.fulltext().cursorExport(), segment.fulltext().cursorImport())) prop.put("reload", 1);
+
         if (post == null || env == null) {
             return prop; // nothing to do
         }
 
+        if (post.containsKey("cursorexport") || post.containsKey("cursorimport")) {
+            final String dir = post.get("cursordumpdir", "");
+            if (dir.length() > 0) {
+                final int partitions = post.getInt("cursorpartitions", 1);
+                if (post.containsKey("cursorexport")) {
+                    segment.fulltext().cursorExport(new File(dir), post.get("cursorquery", "*:*"), partitions, post.getInt("cursorchunksize", 1000));
+                } else {
+                    segment.fulltext().cursorImport(new File(dir), partitions);
+                }
+                prop.put("cursordumpdir", dir);
+                cursorDumpState(prop, segment.fulltext().cursorExport(), segment.fulltext().cursorImport());
+                prop.put("reload", 1);
+            }
+        }
+
         if (post.containsKey("lurlexport")) {
             // parse format
             Fulltext.ExportFormat format = Fulltext.ExportFormat.text;
@@ -175,4 +196,26 @@ public class IndexExport_p {
         return prop;
     }
 
+    /**
+     * set the properties of the cursor dump messages
+     * @return true if an export or import is running
+     */
+    private static boolean cursorDumpState(final serverObjects prop, final CursorDump.Export export, final CursorDump.Import imp) {
+        prop.put("cursorexport", 0);
+        prop.put("cursorimport", 0);
+        if (export != null) {
+            prop.put("cursorexport", export.isAlive() ? 1 : export.failed() == null ? 2 : 3);
+            prop.put("cursorexport_dir", export.dir().getAbsolutePath());
+            prop.putNum("cursorexport_count", export.count());
+            prop.put("cursorexport_failmsg", export.failed() == null ? "" : export.failed());
+        }
+        if (imp != null) {
+            prop.put("cursorimport", imp.isAlive() ? 1 : imp.failed() == null ? 2 : 3);
+            prop.put("cursorimport_dir", imp.dir().getAbsolutePath());
+            prop.putNum("cursorimport_count", imp.count());
+            prop.put("cursorimport_failmsg", imp.failed() == null ? "" : imp.failed());
+        }
+        return (export != null && export.isAlive()) || (imp != null && imp.isAlive());
+    }
+
 }
\ No newline at end of file
@@ -60,7 +60,8 @@ public class IndexFederated_p {
             if (!previous_core_rwi && post_core_rwi) try {
                 final int wordCacheMaxCount = (int) sb.getConfigLong(SwitchboardConstants.WORDCACHE_MAX_COUNT, 20000);
                 final long fileSizeMax = (OS.isWindows) ? sb.getConfigLong("filesize.max.win", Integer.MAX_VALUE) : sb.getConfigLong( "filesize.max.other", Integer.MAX_VALUE);
-                sb.index.connectRWI(wordCacheMaxCount, fileSizeMax);
+                sb.index.connectRWI(wordCacheMaxCount, fileSizeMax,
+                        sb.getConfigBool(SwitchboardConstants.INDEX_RWI_MAPPED_READ, SwitchboardConstants.INDEX_RWI_MAPPED_READ_DEFAULT));
             } catch (final IOException e) { ConcurrentLog.logException(e); } // switch on
         }
 
@@ -24,6 +24,7 @@ import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.protocol.ClientIdentification;
 
 import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.crawler.data.CacheWarcExporter;
 import net.yacy.document.importer.WarcImporter;
 import net.yacy.search.Switchboard;
 import net.yacy.server.serverObjects;
@@ -97,6 +98,41 @@ public class IndexImportWarc_p {
                 }
             }
         }
+
+        if (CacheWarcExporter.job != null && CacheWarcExporter.job.isAlive()) {
+            // the cache is exported, show the progress
+            prop.put("export", 1);
+            prop.put("export_exportfile", CacheWarcExporter.job.target());
+            prop.put("export_count", CacheWarcExporter.job.count());
+            prop.put("export_runningHours", (CacheWarcExporter.job.runningTime() / 60) / 60);
+            prop.put("export_runningMinutes", (CacheWarcExporter.job.runningTime() / 60) % 60);
+            if (post != null && post.containsKey("abortexport")) {
+                CacheWarcExporter.job.quit();
+            }
+        } else {
+            prop.put("export", 0);
+            // the export is written to DATA/EXPORT like the index export; only the file name is taken from the request
+            final File exportDir = new File(sb.getDataPath(), "DATA/EXPORT");
+            prop.put("export_exportpath", exportDir.getAbsolutePath());
+            prop.put("export_error", 0);
+            if (post != null && post.containsKey("exportfile")) {
+                final String exportname = new File(post.get("exportfile", "")).getName();
+                final File exportfile = new File(exportDir, exportname);
+                if (exportname.length() > 0 && exportfile.exists()) {
+                    prop.put("export_error", 1);
+                    prop.put("export_error_exportfile", exportfile.getAbsolutePath());
+                } else if (exportname.length() > 0) {
+                    final CacheWarcExporter exporter = new CacheWarcExporter(exportfile);
+                    CacheWarcExporter.job = exporter;
+                    exporter.start();
+                    prop.put("export", 1);
+                    prop.put("export_exportfile", exporter.target());
+                    prop.put("export_count", 0);
+                    prop.put("export_runningHours", 0);
+                    prop.put("export_runningMinutes", 0);
+                }
+            }
+        }
         return prop;
     }
 }
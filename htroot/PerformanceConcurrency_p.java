@@ -23,14 +23,17 @@ import java.util.Iterator;
 
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.kelondro.workflow.WorkflowProcessor;
+import net.yacy.search.Switchboard;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
 
 public class PerformanceConcurrency_p {
 
-    public static serverObjects respond(@SuppressWarnings("unused") final RequestHeader header, @SuppressWarnings("unused") final serverObjects post, @SuppressWarnings("unused") final serverSwitch sb) {
+    public static serverObjects respond(@SuppressWarnings("unused") final RequestHeader header, @SuppressWarnings("unused") final serverObjects post, final serverSwitch env) {
         // return variable that accumulates replacements
         final serverObjects prop = new serverObjects();
+        final Switchboard sb = (Switchboard) env;
+        prop.put("adaptive", sb.workflowController != null && sb.workflowController.isAdaptive() ? 1 : 0);
 
         // calculate totals
         long blocktime_total = 0, exectime_total = 0, passontime_total = 0;
@@ -62,6 +65,8 @@ public class PerformanceConcurrency_p {
             prop.put("table_" + c + "_queuesize", p.getQueueSize());
             prop.put("table_" + c + "_queuesizemax", p.getMaxQueueSize());
             prop.put("table_" + c + "_concurrency", p.getMaxConcurrency());
+            prop.put("table_" + c + "_concurrencymin", p.getMinConcurrencyBound());
+            prop.put("table_" + c + "_concurrencymax", p.getMaxConcurrencyBound());
             prop.put("table_" + c + "_executors", p.getExecutors());
             prop.putHTML("table_" + c + "_childs", p.getChilds());
 
@@ -75,6 +80,9 @@ public class PerformanceConcurrency_p {
             prop.putNum("table_" + c + "_blockwritetime", passontime / cycles);
             prop.putNum("table_" + c + "_blockwritepercent", 100 * passontime / passontime_total);
             prop.putNum("table_" + c + "_totalcycles", p.getExecCount());
+            prop.putNum("table_" + c + "_throughput", p.getThroughput());
+            prop.putNum("table_" + c + "_utilization", p.getUtilization());
+            prop.putNum("table_" + c + "_backpressure", p.getBackPressure());
 
             // set a color for the line to show problems
             boolean problem = false;
@@ -84,6 +92,7 @@ public class PerformanceConcurrency_p {
             if (100 * blocktime / blocktime_total > 80) warning = true;
             if (100 * exectime / exectime_total > 80) warning = true;
             if (100 * passontime / passontime_total > 80) warning = true;
+            if (p.getBackPressure() > 50) warning = true;
             prop.put("table_" + c + "_class", (!warning && !problem) ? 0 : (!problem) ? 1 : 2);
             c++;
         }
@@ -36,12 +36,16 @@ import org.apache.solr.search.SolrCache;
 import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordHashCache;
 import net.yacy.kelondro.index.RAMIndex;
 import net.yacy.kelondro.table.Table;
 import net.yacy.kelondro.table.Table.TableStatistics;
 import net.yacy.kelondro.util.Formatter;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.search.Switchboard;
+import net.yacy.search.query.FacetCache;
+import net.yacy.search.query.ResultPageCache;
 import net.yacy.search.query.SearchEventCache;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
@@ -239,6 +243,32 @@ public class PerformanceMemory_p {
         prop.putNum("searchevent.miss", SearchEventCache.cacheMiss);
         prop.putNum("searchevent.insert", SearchEventCache.cacheInsert);
         prop.putNum("searchevent.delete", SearchEventCache.cacheDelete);
+        prop.putNum("resultpage.size", ResultPageCache.size());
+        prop.putNum("resultpage.bytes", ResultPageCache.bytes() / 1024L);
+        prop.putNum("resultpage.maxbytes", ResultPageCache.maxBytes() / 1024L);
+        prop.putNum("resultpage.hit", ResultPageCache.cacheHit.get());
+        prop.putNum("resultpage.miss", ResultPageCache.cacheMiss.get());
+        prop.putNum("resultpage.insert", ResultPageCache.cacheInsert.get());
+        prop.putNum("resultpage.evict", ResultPageCache.cacheEvict.get());
+        prop.putNum("facet.size", FacetCache.size());
+        prop.putNum("facet.maxsize", FacetCache.maxSize());
+        prop.putNum("facet.hit", FacetCache.cacheHit.get());
+        prop.putNum("facet.miss", FacetCache.cacheMiss.get());
+        prop.putNum("facet.insert", FacetCache.cacheInsert.get());
+        prop.putNum("facet.evict", FacetCache.cacheEvict.get());
+        final WordHashCache wordHashCache = Word.cache();
+        final long wordHashMiss = wordHashCache.miss.sum();
+        final long wordHashDocuments = wordHashCache.documents.sum();
+        prop.putNum("wordhash.size", wordHashCache.size());
+        prop.putNum("wordhash.capacity", wordHashCache.capacity());
+        prop.putNum("wordhash.mem", wordHashCache.mem() / 1024L);
+        prop.put("wordhash.offHeap", wordHashCache.isOffHeap() ? "off-heap" : "heap");
+        prop.putNum("wordhash.hit", wordHashCache.hit.sum());
+        prop.putNum("wordhash.miss", wordHashMiss);
+        prop.putNum("wordhash.insert", wordHashCache.insert.sum());
+        prop.putNum("wordhash.evict", wordHashCache.evict.sum());
+        prop.putNum("wordhash.hashTime", wordHashMiss == 0 ? 0 : wordHashCache.hashNanos.sum() / wordHashMiss);
+        prop.putNum("wordhash.documentTime", wordHashDocuments == 0 ? 0 : wordHashCache.documentNanos.sum() / wordHashDocuments / 1000L);
         // return rewrite values for templates
         return prop;
     }
@@ -36,6 +36,7 @@ import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.http.HTTPClient;
 import net.yacy.data.TransactionManager;
 import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.rwi.IODispatcher;
 import net.yacy.kelondro.rwi.IndexCell;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.Formatter;
@@ -45,6 +46,12 @@ import net.yacy.kelondro.workflow.BusyThread;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
 import net.yacy.search.index.Segment;
+import net.yacy.search.index.SolrBatchWriter;
+import net.yacy.search.index.URLSeenFilter;
+import net.yacy.search.query.SearchTaskScope;
+import net.yacy.search.ranking.ReferenceOrder;
+import net.yacy.search.schema.CollectionSchema;
+import net.yacy.search.schema.WebgraphSchema;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
 
@@ -352,6 +359,70 @@ public class PerformanceQueues_p {
         prop.putNum("crawlPauseLocalsearchCurrent", (System.currentTimeMillis() - sb.localSearchLastAccess) / 1000);
         prop.putNum("crawlPauseRemotesearchCurrent", (System.currentTimeMillis() - sb.remoteSearchLastAccess) / 1000);
 
+        // table solr write batches
+        final SolrBatchWriter[] writers = new SolrBatchWriter[]{indexSegment.fulltext().getCollectionWriter(), indexSegment.fulltext().getWebgraphWriter()};
+        final String[] writerNames = new String[]{CollectionSchema.CORE_NAME, WebgraphSchema.CORE_NAME};
+        int b = 0;
+        for (int i = 0; i < writers.length; i++) {
+            final SolrBatchWriter writer = writers[i];
+            if (writer == null) continue;
+            prop.put("batching_batch_" + b + "_name", writerNames[i]);
+            prop.putNum("batching_batch_" + b + "_queueSize", writer.queueSize());
+            prop.putNum("batching_batch_" + b + "_capacity", writer.capacity());
+            prop.putNum("batching_batch_" + b + "_batchSize", writer.batchSize());
+            prop.putNum("batching_batch_" + b + "_maxDelay", writer.maxDelay());
+            prop.putNum("batching_batch_" + b + "_flushCount", writer.flushCount());
+            prop.putNum("batching_batch_" + b + "_documentCount", writer.documentCount());
+            prop.putNum("batching_batch_" + b + "_lastFlushTime", writer.lastFlushTime());
+            prop.putNum("batching_batch_" + b + "_lastFlushSize", writer.lastFlushSize());
+            prop.putNum("batching_batch_" + b + "_averageFlushTime", writer.averageFlushTime());
+            prop.putNum("batching_batch_" + b + "_errorCount", writer.errorCount());
+            b++;
+        }
+        prop.put("batching_batch", b);
+        prop.put("batching", b > 0 ? 1 : 0);
+
+        // table rwi merges
+        final IODispatcher merger = indexSegment.merger();
+        if (merger == null) {
+            prop.put("merging", 0);
+        } else {
+            prop.put("merging", 1);
+            prop.putNum("merging_concurrency", merger.concurrency());
+            prop.putNum("merging_fanIn", merger.fanIn());
+            prop.putNum("merging_backlog", merger.mergeBacklog());
+            prop.putNum("merging_mergeCount", merger.mergeCount());
+            prop.putNum("merging_kbPerSecond", merger.mergeBytesPerSecond() / 1024);
+            prop.putNum("merging_writeAmplification", merger.writeAmplification());
+        }
+
+        // table rwi ranking normalization
+        prop.putNum("normalizing_parallelism", ReferenceOrder.normalizerParallelism());
+        prop.putNum("normalizing_poolSize", ReferenceOrder.normalizerPoolSize());
+        prop.putNum("normalizing_threadsCreated", ReferenceOrder.normalizerThreadsCreated());
+        prop.putNum("normalizing_normalizations", ReferenceOrder.normalizations());
+        prop.putNum("normalizing_references", ReferenceOrder.normalizedReferences());
+        prop.putNum("normalizing_averageTime", ReferenceOrder.averageNormalizationTime());
+        prop.putNum("normalizing_timeouts", ReferenceOrder.normalizationTimeouts());
+
+        // table url filter of the crawler
+        final URLSeenFilter urlSeen = indexSegment.fulltext().getURLSeenFilter();
+        prop.put("urlseen_state", urlSeen.isReady() ? (urlSeen.isRebuilding() ? 2 : 1) : (urlSeen.isRebuilding() ? 3 : 0));
+        prop.putNum("urlseen_size", urlSeen.size());
+        prop.putNum("urlseen_capacity", urlSeen.capacity());
+        prop.putNum("urlseen_memKB", urlSeen.mem() / 1024);
+        prop.putNum("urlseen_tests", urlSeen.tests());
+        prop.putNum("urlseen_unseen", urlSeen.unseen());
+
+        // table search event tasks
+        prop.put("searchtasks_virtual", SearchTaskScope.isVirtual() ? 1 : 0);
+        prop.putNum("searchtasks_maxThreads", SearchTaskScope.maxThreads());
+        prop.putNum("searchtasks_poolSize", SearchTaskScope.poolSize());
+        prop.putNum("searchtasks_running", SearchTaskScope.runningTasks());
+        prop.putNum("searchtasks_forked", SearchTaskScope.forkedTasks());
+        prop.putNum("searchtasks_cancelled", SearchTaskScope.cancelledTasks());
+        prop.putNum("searchtasks_overflow", SearchTaskScope.overflowTasks());
+
         // table thread pool settings
         prop.put("pool_0_name","Crawler Pool");
         prop.put("pool_0_maxActive", sb.getConfigLong(SwitchboardConstants.CRAWLER_THREADS_ACTIVE_MAX, 0));
@@ -54,6 +54,15 @@ public class latency_p {
             prop.put("domains_" + c + "_average", host.average());
             prop.put("domains_" + c + "_robots", host.robotsDelay());
             prop.put("domains_" + c + "_flux", host.flux(agent.minimumDelta));
+            prop.put("domains_" + c + "_interval", host.interval());
+            prop.put("domains_" + c + "_connections", host.connections());
+            prop.put("domains_" + c + "_reused", host.reused());
+            final int[] histogram = host.histogram();
+            for (int b = 0; b < histogram.length; b++) {
+                prop.put("domains_" + c + "_histogram_" + b + "_min", b == 0 ? 0 : Latency.histogramBounds[b - 1]);
+                prop.put("domains_" + c + "_histogram_" + b + "_count", histogram[b]);
+            }
+            prop.put("domains_" + c + "_histogram", histogram.length);
             c++;
         }
         prop.put("domains", c);
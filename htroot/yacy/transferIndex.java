@@ -0,0 +1,264 @@
+// transferIndex.java
+// ------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+// receiver of the binary DHT transfer: RWI entries and URL metadata in one
+// request, see net.yacy.peers.IndexTransferStream for the format.
+// The legacy text format is received by transferRWI and transferURL.
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import net.yacy.cora.date.GenericFormatter;
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.feed.RSSMessage;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.protocol.HeaderFramework;
+import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.Memory;
+import net.yacy.crawler.data.ResultURLs;
+import net.yacy.crawler.data.ResultURLs.EventOrigin;
+import net.yacy.kelondro.data.meta.URIMetadataNode;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.peers.EventChannel;
+import net.yacy.peers.IndexTransferStream;
+import net.yacy.peers.Network;
+import net.yacy.peers.Protocol;
+import net.yacy.peers.Seed;
+import net.yacy.repository.Blacklist.BlacklistType;
+import net.yacy.search.Switchboard;
+import net.yacy.search.SwitchboardConstants;
+import net.yacy.server.serverObjects;
+import net.yacy.server.serverSwitch;
+
+public final class transferIndex {
+
+    public static serverObjects respond(final RequestHeader header, final serverObjects post, final serverSwitch env) {
+
+        // return variable that accumulates replacements
+        final Switchboard sb = (Switchboard) env;
+
+        // remember the peer contact for peer statistics
+        final String clientip = header.getRemoteAddr();
+        final String userAgent = header.get(HeaderFramework.USER_AGENT, "<unknown>");
+        if (clientip != null) sb.peers.peerActions.setUserAgent(clientip, userAgent);
+
+        final serverObjects prop = new serverObjects();
+        prop.put("unknownURL", "");
+        prop.put("pause", 60000);
+        prop.put("receivedRWI", 0);
+        prop.put("receivedURL", 0);
+        if ((post == null) || (env == null)) {
+            prop.put("result", "post or env is null!");
+            return prop;
+        }
+        if (!Protocol.authentifyRequest(post, env)) {
+            prop.put("result", "not authentified");
+            return prop;
+        }
+        if (post.getInt("version", 0) != IndexTransferStream.VERSION) {
+            prop.put("result", "unsupported version");
+            return prop;
+        }
+        if (!post.containsKey("frames$file")) {
+            prop.put("result", "missing frames");
+            return prop;
+        }
+        // load tests
+        if (Memory.load() > 2.0 || MemoryControl.shortStatus()) {
+            prop.put("result", "too high load"); // don't tell too much details
+            return prop;
+        }
+
+        // request values
+        final String iam      = post.get("iam", "");                      // seed hash of requester
+        final String youare   = post.get("youare", "");                   // seed hash of the target peer, needed for network stability
+        final int wordc       = post.getInt("wordc", 0);                  // number of different words
+        final boolean granted = sb.getConfigBool(SwitchboardConstants.INDEX_RECEIVE_ALLOW, false);
+        final boolean binary  = sb.getConfigBool(SwitchboardConstants.INDEX_DIST_TRANSFER_BINARY, SwitchboardConstants.INDEX_DIST_TRANSFER_BINARY_DEFAULT);
+        final boolean blockBlacklist = sb.getConfigBool(SwitchboardConstants.INDEX_RECEIVE_BLOCK_BLACKLIST, false);
+        final long cachelimit = sb.getConfigLong(SwitchboardConstants.WORDCACHE_MAX_COUNT, 100000);
+        final Seed otherPeer = sb.peers.get(iam);
+        final String otherPeerName = iam + ":" + ((otherPeer == null) ? "NULL" : (otherPeer.getName() + "/" + otherPeer.getVersion()));
+
+        // response values
+        int pause = 0;
+        String result = "ok";
+
+        final double load = Memory.load();
+        final float maxload = sb.getConfigFloat(SwitchboardConstants.INDEX_DIST_LOADPREREQ, 2.0f);
+        if (load > maxload) {
+            // too high local load. this is bad but we must reject this to protect ourself!
+            sb.getLog().info("Rejecting index from peer " + otherPeerName + ", system has too high load = " + load + ", maxload = " + maxload);
+            result = "not_granted";
+            pause = (int) (load * 20000);
+        } else if ((youare == null) || (!youare.equals(sb.peers.mySeed().hash))) {
+            sb.getLog().info("Rejecting index from peer " + otherPeerName + ". Wrong target. Wanted peer=" + youare + ", iam=" + sb.peers.mySeed().hash);
+            result = "wrong_target";
+            pause = 0;
+        } else if (otherPeer == null) {
+            sb.getLog().info("Rejecting index from peer " + otherPeerName + ". Not granted. Other Peer is unknown");
+            result = "not_granted";
+            pause = 60000;
+        } else if (!granted || !binary) {
+            sb.getLog().info("Rejecting index from peer " + otherPeerName + ". Granted is false");
+            result = "not_granted";
+            pause = 60000;
+        } else if (sb.isRobinsonMode()) {
+            sb.getLog().info("Rejecting index from peer " + otherPeerName + ". Not granted. This peer is in robinson mode");
+            result = "not_granted";
+            pause = 60000;
+        } else if (sb.index.RWIBufferCount() > cachelimit) {
+            // we are too busy to receive indexes
+            sb.getLog().info("Rejecting index from peer " + otherPeerName + ". We are too busy (buffersize=" + sb.index.RWIBufferCount() + ").");
+            result = "busy";
+            pause = 60000;
+        } else {
+            final long startProcess = System.currentTimeMillis();
+            long freshdate = 0;
+            try {freshdate = GenericFormatter.SHORT_DAY_FORMATTER.parse("20061101", 0).getTime().getTime();} catch (final ParseException e1) {}
+
+            int receivedRWI = 0, receivedURL = 0, blockedRWI = 0, blockedURL = 0, count = 0;
+            String firstHash = null, lastHash = null;
+            final Set<String> testids = new HashSet<String>();
+            final Map<String, URIMetadataNode> metadata = new LinkedHashMap<String, URIMetadataNode>();
+            IndexTransferStream.Reader reader = null;
+            try {
+                reader = new IndexTransferStream.Reader(Base64Order.standardCoder.decode(post.get("frames$file", "")));
+                byte type;
+                frames: while ((type = reader.next()) != IndexTransferStream.FRAME_END) {
+                    if (type == IndexTransferStream.FRAME_RWI) {
+                        final byte[] termHash = reader.termHash();
+                        final String wordHash = ASCII.String(termHash);
+                        if (firstHash == null) firstHash = wordHash;
+                        lastHash = wordHash;
+                        for (final WordReference iEntry: reader.references()) {
+                            if (++count > 1000) break frames; // protection against flooding, the same limit as in transferRWI
+                            final byte[] urlHash = iEntry.urlhash();
+
+                            // block blacklisted entries
+                            if ((blockBlacklist) && (Switchboard.urlBlacklist.hashInBlacklistedCache(BlacklistType.DHT, urlHash))) {
+                                if (Network.log.isFine()) Network.log.fine("transferIndex: blocked blacklisted URLHash '" + ASCII.String(urlHash) + "' from peer " + otherPeerName);
+                                blockedRWI++;
+                                continue;
+                            }
+
+                            // check if the entry is in our network domain
+                            final String urlRejectReason = sb.crawlStacker.urlInAcceptedDomainHash(urlHash);
+                            if (urlRejectReason != null) {
+                                Network.log.warn("transferIndex: blocked URL hash '" + ASCII.String(urlHash) + "' (" + urlRejectReason + ") from peer " + otherPeerName + "; peer is suspected to be a spam-peer (or something is wrong)");
+                                blockedRWI++;
+                                continue;
+                            }
+
+                            // learn entry
+                            try {
+                                sb.index.storeRWI(termHash, iEntry);
+                            } catch (final Exception e) {
+                                ConcurrentLog.logException(e);
+                            }
+                            testids.add(ASCII.String(urlHash));
+                            receivedRWI++;
+                        }
+                    } else if (type == IndexTransferStream.FRAME_URL) {
+                        final String urls = reader.metadata();
+                        final URIMetadataNode lEntry = URIMetadataNode.importEntry(urls, "dht");
+                        if (lEntry == null || lEntry.url() == null) {
+                            if (Network.log.isWarn()) Network.log.warn("transferIndex: received invalid URL from peer " + otherPeerName + "\n\tURL Property: " + urls);
+                            blockedURL++;
+                            continue;
+                        }
+                        // check whether entry is too old
+                        if (lEntry.freshdate().getTime() <= freshdate) {
+                            blockedURL++;
+                            continue;
+                        }
+                        // check if the entry is blacklisted
+                        if ((blockBlacklist) && (Switchboard.urlBlacklist.isListed(BlacklistType.DHT, lEntry.url()))) {
+                            blockedURL++;
+                            continue;
+                        }
+                        // check if the entry is in our network domain
+                        if (sb.crawlStacker.urlInAcceptedDomain(lEntry.url()) != null) {
+                            blockedURL++;
+                            continue;
+                        }
+                        metadata.put(ASCII.String(lEntry.hash()), lEntry);
+                    }
+                    // unknown frame types of later versions are skipped
+                }
+            } catch (final IOException e) {
+                sb.getLog().info("Rejecting index from peer " + otherPeerName + ": " + e.getMessage());
+                prop.put("result", "malformed frames");
+                return prop;
+            } finally {
+                if (reader != null) reader.close();
+            }
+
+            // store the metadata of the received references which we do not know yet
+            final StringBuilder unknownURLs = new StringBuilder();
+            for (final String id: testids) {
+                long lt;
+                try {
+                    lt = sb.index.getLoadTime(id);
+                } catch (final IOException e) {
+                    ConcurrentLog.logException(e);
+                    lt = -1;
+                }
+                if (lt >= 0) continue;
+                final URIMetadataNode lEntry = metadata.get(id);
+                if (lEntry == null) {
+                    unknownURLs.append(id).append(',');
+                    continue;
+                }
+                try {
+                    sb.index.fulltext().putMetadata(lEntry);
+                    ResultURLs.stack(id, lEntry.url().getHost(), iam.getBytes(), iam.getBytes(), EventOrigin.DHT_TRANSFER);
+                    receivedURL++;
+                } catch (final IOException e) {
+                    ConcurrentLog.logException(e);
+                }
+            }
+            if (unknownURLs.length() > 0) unknownURLs.setLength(unknownURLs.length() - 1);
+            sb.peers.mySeed().incRI(receivedRWI);
+            sb.peers.mySeed().incRU(receivedURL);
+
+            final String message = "Received " + receivedRWI + " RWIs, " + wordc + " Words [" + firstHash + " .. " + lastHash + "] and " + receivedURL + " URLs in binary format, processed in " + (System.currentTimeMillis() - startProcess) + " milliseconds, blocked " + blockedRWI + " RWIs and " + blockedURL + " URLs from " + otherPeerName;
+            sb.getLog().info(message);
+            EventChannel.channels(EventChannel.DHTRECEIVE).addMessage(new RSSMessage(message, "", otherPeer.hash));
+
+            prop.put("unknownURL", unknownURLs.toString());
+            prop.put("receivedRWI", receivedRWI);
+            prop.put("receivedURL", receivedURL);
+            result = "ok";
+            pause = (int) (sb.index.RWIBufferCount() * 20000 / sb.getConfigLong(SwitchboardConstants.WORDCACHE_MAX_COUNT, 100000)); // estimation of necessary pause time
+        }
+
+        prop.put("result", result);
+        prop.put("pause", pause);
+
+        // return rewrite properties
+        return prop;
+    }
+
+}
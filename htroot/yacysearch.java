@@ -86,6 +86,7 @@ import net.yacy.search.query.AccessTracker;
 import net.yacy.search.query.QueryGoal;
 import net.yacy.search.query.QueryModifier;
 import net.yacy.search.query.QueryParams;
+import net.yacy.search.query.ResultPageCache;
 import net.yacy.search.query.SearchEvent;
 import net.yacy.search.query.SearchEventCache;
 import net.yacy.search.query.SearchEventType;
@@ -769,6 +770,20 @@ public class yacysearch {
             // filter out words that appear in bluelist
             theQuery.getQueryGoal().filterOut(Switchboard.blueList);
 
+            // serve a finished api result page from the cache without a search event
+            boolean cacheResultPage = false;
+            if ((rss || json) && ResultPageCache.isEnabled() &&
+                !post.containsKey("deleteref") && !post.containsKey("recommendref") && !post.containsKey("bookmarkref") && !post.getBoolean("resortCachedResults")) {
+                final String pageKey = ResultPageCache.key(theQuery, EXT, peerContext, authenticatedUserName != null, post.get("callback"));
+                // during a local crawl, results may change quickly
+                final ResultPageCache.Page page = ResultPageCache.get(pageKey, sb.crawlQueues.noticeURL.isEmpty() ? Long.MAX_VALUE : 60000);
+                if (page != null) {
+                    header.setAttribute(ResultPageCache.ATTRIBUTE_PAGE, page);
+                    return prop;
+                }
+                cacheResultPage = true;
+            }
+
             // log
             ConcurrentLog.info(
                 "LOCAL_SEARCH",
@@ -810,6 +825,12 @@ public class yacysearch {
             	theSearch.resortCachedResults();
             }
 
+            if (cacheResultPage) {
+                // the offset may have been reset for a new event; the page is stored after rendering if the event is complete then
+                header.setAttribute(ResultPageCache.ATTRIBUTE_KEY, ResultPageCache.key(theQuery, EXT, peerContext, authenticatedUserName != null, post.get("callback")));
+                header.setAttribute(ResultPageCache.ATTRIBUTE_EVENT, theSearch);
+            }
+
             if ( startRecord == 0 && extendedSearchRights && !stealthmode ) {
                 if ( modifier.sitehost != null && sb.getConfigBool(SwitchboardConstants.HEURISTIC_SITE, false) ) {
                     sb.heuristicSite(theSearch, modifier.sitehost);
@@ -50,6 +50,7 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import org.apache.http.Header;
+import org.apache.http.HttpConnection;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHeaders;
@@ -126,6 +127,9 @@ public class HTTPClient {
 	
 	/** Default maximum time in seconds to keep alive an idle connection in the pool */
 	private static final int DEFAULT_POOLED_CONNECTION_TIME_TO_LIVE = 30;
+
+	/** Name of the context attribute with the keep-alive time in milliseconds requested with setKeepAlive */
+	private static final String KEEP_ALIVE_TIME_ATTRIBUTE = "yacy.keepAliveTime";
 	
 	private final static RequestConfig dfltReqConf = initRequestConfig();
 	
@@ -153,6 +157,8 @@ public class HTTPClient {
 	private HttpUriRequest currentRequest = null;
 	private long upbytes = 0L;
 	private String host = null;
+	private long keepAliveTime = 0;
+	private boolean connectionReused = false;
 	private final long timeout;
 	private static ExecutorService executor = Executors
 			.newCachedThreadPool(new NamePrefixThreadFactory(HTTPClient.class.getSimpleName() + ".execute"));
@@ -350,6 +356,25 @@ public class HTTPClient {
     	reqConfBuilder.setRelativeRedirectsAllowed(redirecting);
     }
 
+    /**
+     * This method sets how long the connection shall be kept alive in the pool after the request, so that
+     * it can be re-used by the next request to the same host. By default, connections are closed
+     * because most hosts are not requested again before the connection expires.
+     * A shorter timeout announced by the server is respected, the time is limited to 25 seconds.
+     *
+     * @param keepAliveTime the time in milliseconds, 0 to close the connection after the request
+     */
+    public void setKeepAlive(final long keepAliveTime) {
+    	this.keepAliveTime = keepAliveTime;
+    }
+
+    /**
+     * @return true if the last request was sent on a pooled connection which was kept alive by a previous request
+     */
+    public boolean isConnectionReused() {
+    	return this.connectionReused;
+    }
+
     /**
      * This method GETs a page from the server.
      *
@@ -922,6 +947,8 @@ public class HTTPClient {
     	context.setRequestConfig(reqConfBuilder.build());
     	if (this.host != null)
     		context.setTargetHost(new HttpHost(this.host));
+    	if (this.keepAliveTime > 0)
+    		context.setAttribute(KEEP_ALIVE_TIME_ATTRIBUTE, Long.valueOf(this.keepAliveTime));
     	
     	setHeaders(httpUriRequest);
     	// statistics
@@ -963,6 +990,7 @@ public class HTTPClient {
 	            this.httpResponse = client.execute(httpUriRequest, context);
 	        }
             this.httpResponse.setHeader(HeaderFramework.RESPONSE_TIME_MILLIS, Long.toString(System.currentTimeMillis() - time));
+            this.connectionReused = isReused(context);
         } catch (final Throwable e) {
             ConnectionInfo.removeConnection(httpUriRequest.hashCode());
             httpUriRequest.abort();
@@ -977,6 +1005,16 @@ public class HTTPClient {
         }
     }
 
+    private static boolean isReused(final HttpClientContext context) {
+        try {
+            final HttpConnection connection = context.getConnection();
+            return connection != null && connection.getMetrics().getRequestCount() > 1;
+        } catch (final RuntimeException e) {
+            // the connection was already released
+            return false;
+        }
+    }
+
     /**
      * Return entity content loaded as a byte array
      * @param entity HTTP entity
@@ -1041,7 +1079,7 @@ public class HTTPClient {
             }
     	}
     	if (this.host != null) httpUriRequest.setHeader(HTTP.TARGET_HOST, this.host);
-        httpUriRequest.setHeader(HTTP.CONN_DIRECTIVE, "close"); // don't keep alive, prevent CLOSE_WAIT state
+        if (this.keepAliveTime <= 0) httpUriRequest.setHeader(HTTP.CONN_DIRECTIVE, "close"); // don't keep alive, prevent CLOSE_WAIT state
     }
 
     private void storeConnectionInfo(final HttpUriRequest httpUriRequest) {
@@ -1095,7 +1133,10 @@ public class HTTPClient {
     /**
      * If the Keep-Alive header is not present in the response,
      * HttpClient assumes the connection can be kept alive indefinitely.
-     * Here we limit this to 5 seconds if unset and to a max of 25 seconds
+     * Here we limit this to the time requested with setKeepAlive or 5 seconds
+     * if unset and to a max of 25 seconds.
+     * A shorter timeout announced by the server is kept, otherwise the
+     * pool would offer connections which the server has already closed.
      *
      * @param defaultHttpClient
      */
@@ -1103,8 +1144,10 @@ public class HTTPClient {
 		return new DefaultConnectionKeepAliveStrategy() {
 			@Override
 			public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
-				long keepAlive = super.getKeepAliveDuration(response, context);
-				return Math.min(Math.max(keepAlive, 5000), 25000);
+				final long announced = super.getKeepAliveDuration(response, context);
+				final Object requested = context.getAttribute(KEEP_ALIVE_TIME_ATTRIBUTE);
+				final long keepAlive = requested instanceof Long ? Math.min(((Long) requested).longValue(), 25000) : (announced <= 0 ? 5000 : 25000);
+				return announced <= 0 ? keepAlive : Math.min(announced, keepAlive);
 			}
 		};
 	}
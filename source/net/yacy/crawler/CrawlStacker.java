@@ -426,7 +426,7 @@ public final class CrawlStacker implements WorkflowTask<Request>{
         }
         String urlhash = ASCII.String(url.hash());
         LoadTimeURL oldEntry = null;
-        try {
+        if (!this.indexSegment.fulltext().isUnseenURL(urlhash)) try {
             oldEntry = this.indexSegment.fulltext().getDefaultConnector().getLoadTimeURL(urlhash);
         } catch (IOException e) {
             // if an exception here occurs then there is the danger that urls which had been in the crawler are overwritten a second time
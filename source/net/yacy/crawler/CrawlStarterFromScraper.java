@@ -86,6 +86,11 @@ public class CrawlStarterFromScraper implements ContentScraperListener {
 		// Nothing to do on this event
 	}
 
+	@Override
+	public void textAdded(char[] text, int offset, int length) {
+		// Nothing to do on this event
+	}
+
 	@Override
 	public void anchorAdded(String anchorURL) {
 		List<AnchorURL> urls = new ArrayList<>();
@@ -142,6 +142,8 @@ public class FileCrawlStarterTask extends Thread {
 		CrawlStarterFromScraper anchorListener = new CrawlStarterFromScraper(this.crawlStacker, this.initiatorHash,
 				this.profile, true);
 		this.scraper.registerHtmlFilterEventListener(anchorListener);
+		/* Only the listener needs the links : do not collect text and anchors of a possibly very large file */
+		this.scraper.setStreaming(true);
 
 		final Writer writer = new TransformerWriter(null, null, this.scraper, false);
 		FileInputStream inStream = null;
@@ -269,10 +269,10 @@ public class HostQueue implements Balancer {
                 }
             } else {
                     try {
-                    return new BufferedObjectIndex(new Table(f, Request.rowdef, EcoFSBufferSize, 0, false, exceed134217727, true), objectIndexBufferSize);
+                    return new BufferedObjectIndex(new Table(f, Request.rowdef, EcoFSBufferSize, 0, false, exceed134217727, true, true), objectIndexBufferSize);
                 } catch (final SpaceExceededException e) {
                     try {
-                        return new BufferedObjectIndex(new Table(f, Request.rowdef, 0, 0, false, exceed134217727, true), objectIndexBufferSize);
+                        return new BufferedObjectIndex(new Table(f, Request.rowdef, 0, 0, false, exceed134217727, true, true), objectIndexBufferSize);
                     } catch (final SpaceExceededException e1) {
                         ConcurrentLog.logException(e1);
                     }
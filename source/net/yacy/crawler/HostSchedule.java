@@ -0,0 +1,211 @@
+/**
+ *  HostSchedule
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A delay-ordered schedule of host hashes: each host is registered with the time when
+ * it may be accessed next. The schedule is split into shards with separate locks, so
+ * that put and remove operations of different hosts do not block each other.
+ * Each shard keeps its hosts in a sorted set, therefore put, remove and take are O(log n)
+ * plus a scan over the (small and fixed) number of shard heads for take.
+ *
+ * Hosts with a due time inside the same time slice of {@link #GRANULARITY} milliseconds
+ * are ordered by their queue size, larger queues first, which is the same fuzzy strategy
+ * as used by the {@link HostBalancer}.
+ */
+public class HostSchedule {
+
+    /** time slice in milliseconds inside which due times are considered as equal */
+    public static final long GRANULARITY = 200;
+
+    private static final class Slot implements Comparable<Slot> {
+        private final String hosthash;
+        private final long due;
+        private final int size;
+
+        private Slot(final String hosthash, final long due, final int size) {
+            this.hosthash = hosthash;
+            this.due = due;
+            this.size = size;
+        }
+
+        @Override
+        public int compareTo(final Slot o) {
+            final int c = Long.compare(this.due / GRANULARITY, o.due / GRANULARITY);
+            if (c != 0) return c;
+            if (this.size != o.size) return this.size > o.size ? -1 : 1;
+            return this.hosthash.compareTo(o.hosthash);
+        }
+    }
+
+    private static final class Shard {
+        private final TreeSet<Slot> order = new TreeSet<Slot>();
+        private final Map<String, Slot> slots = new HashMap<String, Slot>();
+    }
+
+    private final Shard[] shards;
+    private final int mask;
+
+    /**
+     * @param concurrency the expected number of concurrently accessing threads; the number of shards
+     * is the next power of two of this number
+     */
+    public HostSchedule(final int concurrency) {
+        int n = 1;
+        while (n < concurrency) n <<= 1;
+        this.shards = new Shard[n];
+        for (int i = 0; i < n; i++) this.shards[i] = new Shard();
+        this.mask = n - 1;
+    }
+
+    private Shard shard(final String hosthash) {
+        int h = hosthash.hashCode();
+        h ^= (h >>> 16); // spread the bits because host hashes share the same character set
+        return this.shards[h & this.mask];
+    }
+
+    /**
+     * register or re-register a host
+     * @param hosthash the host hash
+     * @param due the time in milliseconds when the host may be accessed next
+     * @param size the size of the host queue, used to prefer large queues with the same due time
+     */
+    public void put(final String hosthash, final long due, final int size) {
+        final Shard shard = shard(hosthash);
+        final Slot slot = new Slot(hosthash, due, size);
+        synchronized (shard) {
+            final Slot old = shard.slots.put(hosthash, slot);
+            if (old != null) shard.order.remove(old);
+            shard.order.add(slot);
+        }
+    }
+
+    /**
+     * register a host only if it is not registered yet
+     * @return true if the host was added
+     */
+    public boolean putIfAbsent(final String hosthash, final long due, final int size) {
+        final Shard shard = shard(hosthash);
+        synchronized (shard) {
+            if (shard.slots.containsKey(hosthash)) return false;
+            final Slot slot = new Slot(hosthash, due, size);
+            shard.slots.put(hosthash, slot);
+            shard.order.add(slot);
+            return true;
+        }
+    }
+
+    /**
+     * remove a host from the schedule
+     * @return true if the host was registered
+     */
+    public boolean remove(final String hosthash) {
+        final Shard shard = shard(hosthash);
+        synchronized (shard) {
+            final Slot old = shard.slots.remove(hosthash);
+            if (old == null) return false;
+            shard.order.remove(old);
+            return true;
+        }
+    }
+
+    public boolean contains(final String hosthash) {
+        final Shard shard = shard(hosthash);
+        synchronized (shard) {
+            return shard.slots.containsKey(hosthash);
+        }
+    }
+
+    /**
+     * @return the due time of the host or Long.MIN_VALUE if the host is not registered
+     */
+    public long due(final String hosthash) {
+        final Shard shard = shard(hosthash);
+        synchronized (shard) {
+            final Slot slot = shard.slots.get(hosthash);
+            return slot == null ? Long.MIN_VALUE : slot.due;
+        }
+    }
+
+    /**
+     * remove and return the host with the earliest due time. The host is removed from the
+     * schedule so no other thread can take it at the same time; the caller must
+     * {@link #put(String, long, int)} it again if it shall be scheduled again.
+     * @return the host hash or null if the schedule is empty
+     */
+    public String take() {
+        while (true) {
+            Shard best = null;
+            Slot bestSlot = null;
+            for (final Shard shard: this.shards) {
+                synchronized (shard) {
+                    if (shard.order.isEmpty()) continue;
+                    final Slot first = shard.order.first();
+                    if (bestSlot == null || first.compareTo(bestSlot) < 0) {
+                        best = shard;
+                        bestSlot = first;
+                    }
+                }
+            }
+            if (best == null) return null;
+            synchronized (best) {
+                // the slot may have been taken or re-scheduled concurrently; then we search again
+                if (best.slots.get(bestSlot.hosthash) == bestSlot) {
+                    best.slots.remove(bestSlot.hosthash);
+                    best.order.remove(bestSlot);
+                    return bestSlot.hosthash;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        int c = 0;
+        for (final Shard shard: this.shards) {
+            synchronized (shard) {
+                c += shard.slots.size();
+            }
+        }
+        return c;
+    }
+
+    public boolean isEmpty() {
+        for (final Shard shard: this.shards) {
+            synchronized (shard) {
+                if (!shard.slots.isEmpty()) return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        for (final Shard shard: this.shards) {
+            synchronized (shard) {
+                shard.slots.clear();
+                shard.order.clear();
+            }
+        }
+    }
+
+}
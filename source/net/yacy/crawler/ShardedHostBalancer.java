@@ -0,0 +1,425 @@
+/**
+ *  ShardedHostBalancer
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.crawler.data.CrawlProfile;
+import net.yacy.crawler.data.Latency;
+import net.yacy.crawler.retrieval.Request;
+import net.yacy.crawler.robots.RobotsTxt;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * A balancer using the same persistent HostQueue directory layout as the {@link HostBalancer},
+ * but instead of re-computing the waiting time of all hosts on each pop, the hosts are kept in
+ * a {@link HostSchedule} ordered by the time when they may be accessed next. A pop takes the
+ * host with the earliest due time and re-schedules only this host after the request was taken,
+ * so push and pop are O(log n) in the number of hosts and do not block each other except for
+ * operations on hosts in the same lock stripe.
+ *
+ * The url hashes of all queued urls are registered in the shared {@link HostBalancer#depthCache}
+ * so this balancer can be mixed with HostBalancer instances.
+ */
+public class ShardedHostBalancer implements Balancer {
+
+    private final static ConcurrentLog log = new ConcurrentLog("ShardedHostBalancer");
+
+    private final File hostsPath;
+    private final boolean exceed134217727;
+    private final Map<String, HostQueue> queues;
+    private final HostSchedule schedule;
+    private final Object[] locks; // lock stripes for creation and removal of host queues
+    private final int onDemandLimit;
+
+    /**
+     * Create a new instance and asynchronously fills the queue by scanning the hostsPath directory.
+     * @param hostsPath path with persisted hosts queues
+     * @param onDemandLimit
+     * @param exceed134217727
+     */
+    public ShardedHostBalancer(
+            final File hostsPath,
+            final int onDemandLimit,
+            final boolean exceed134217727) {
+        this(hostsPath, onDemandLimit, exceed134217727, true);
+    }
+
+    /**
+     * Create a new instance and fills the queue by scanning the hostsPath directory.
+     * @param hostsPath
+     * @param onDemandLimit
+     * @param exceed134217727
+     * @param asyncInit when true, queue filling from file system is launched asynchronously
+     */
+    public ShardedHostBalancer(
+            final File hostsPath,
+            final int onDemandLimit,
+            final boolean exceed134217727,
+            final boolean asyncInit) {
+        this.hostsPath = hostsPath;
+        this.onDemandLimit = onDemandLimit;
+        this.exceed134217727 = exceed134217727;
+
+        if (!(hostsPath.exists())) hostsPath.mkdirs(); // make the path
+        final int concurrency = 4 * Runtime.getRuntime().availableProcessors();
+        this.queues = new ConcurrentHashMap<String, HostQueue>(16, 0.75f, concurrency);
+        this.schedule = new HostSchedule(concurrency);
+        this.locks = new Object[64];
+        for (int i = 0; i < this.locks.length; i++) this.locks[i] = new Object();
+        if (asyncInit) {
+            new Thread("ShardedHostBalancer.init") {
+                @Override
+                public void run() {
+                    runInit();
+                }
+            }.start();
+        } else {
+            runInit();
+        }
+    }
+
+    /**
+     * Fills the queue by scanning the hostsPath directory.
+     */
+    private void runInit() {
+        final String[] hostlist = this.hostsPath.list();
+        if (hostlist == null) return;
+        final long now = System.currentTimeMillis();
+        for (final String hoststr : hostlist) {
+            try {
+                final File queuePath = new File(this.hostsPath, hoststr);
+                final HostQueue queue = new HostQueue(queuePath, this.queues.size() > this.onDemandLimit, this.exceed134217727);
+                if (queue.isEmpty()) {
+                    queue.close();
+                    FileUtils.deletedelete(queuePath);
+                } else {
+                    final String hosthash = queue.getHostHash();
+                    synchronized (lock(hosthash)) {
+                        if (this.queues.containsKey(hosthash)) {
+                            queue.close(); // already opened by a concurrent push
+                        } else {
+                            this.queues.put(hosthash, queue);
+                            this.schedule.putIfAbsent(hosthash, now, queue.size());
+                        }
+                    }
+                }
+            } catch (MalformedURLException | RuntimeException e) {
+                log.warn("delete queue due to init error for " + this.hostsPath.getName() + " host=" + hoststr + " " + e.getLocalizedMessage());
+                // if exception thrown we can't init the queue, maybe due to name violation. That won't get better, delete it.
+                FileUtils.deletedelete(new File(this.hostsPath, hoststr));
+            }
+        }
+    }
+
+    private Object lock(final String hosthash) {
+        return this.locks[(hosthash.hashCode() & Integer.MAX_VALUE) % this.locks.length];
+    }
+
+    @Override
+    public synchronized void close() {
+        HostBalancer.depthCache.clear();
+        this.schedule.clear();
+        for (final HostQueue queue: this.queues.values()) queue.close();
+        this.queues.clear();
+    }
+
+    @Override
+    public synchronized void clear() {
+        HostBalancer.depthCache.clear();
+        this.schedule.clear();
+        for (final HostQueue queue: this.queues.values()) queue.clear();
+        this.queues.clear();
+    }
+
+    @Override
+    public Request get(final byte[] urlhash) throws IOException {
+        final HostQueue queue = this.queues.get(ASCII.String(urlhash, 6, 6));
+        if (queue == null) return null;
+        return queue.get(urlhash);
+    }
+
+    @Override
+    public int removeAllByProfileHandle(final String profileHandle, final long timeout) throws IOException, SpaceExceededException {
+        int c = 0;
+        for (final HostQueue queue: this.queues.values()) {
+            c += queue.removeAllByProfileHandle(profileHandle, timeout);
+        }
+        return c;
+    }
+
+    @Override
+    public int removeAllByHostHashes(final Set<String> hosthashes) {
+        int c = 0;
+        for (final String h: hosthashes) {
+            final HostQueue hq = this.queues.get(h);
+            if (hq != null) c += hq.removeAllByHostHashes(hosthashes);
+        }
+        // remove from cache
+        final Iterator<Map.Entry<byte[], Long>> i = HostBalancer.depthCache.iterator();
+        final ArrayList<String> deleteHashes = new ArrayList<String>();
+        while (i.hasNext()) {
+            final String h = ASCII.String(i.next().getKey());
+            if (hosthashes.contains(h.substring(6))) deleteHashes.add(h);
+        }
+        for (final String h: deleteHashes) HostBalancer.depthCache.remove(ASCII.getBytes(h));
+        return c;
+    }
+
+    @Override
+    public int remove(final HandleSet urlHashes) throws IOException {
+        final Map<String, HandleSet> removeLists = new TreeMap<String, HandleSet>();
+        for (final byte[] urlhash: urlHashes) {
+            HostBalancer.depthCache.remove(urlhash);
+            final String hosthash = ASCII.String(urlhash, 6, 6);
+            HandleSet removeList = removeLists.get(hosthash);
+            if (removeList == null) {
+                removeList = new RowHandleSet(Word.commonHashLength, Base64Order.enhancedCoder, 100);
+                removeLists.put(hosthash, removeList);
+            }
+            try {removeList.put(urlhash);} catch (final SpaceExceededException e) {}
+        }
+        int c = 0;
+        for (final Map.Entry<String, HandleSet> entry: removeLists.entrySet()) {
+            final HostQueue queue = this.queues.get(entry.getKey());
+            if (queue != null) c += queue.remove(entry.getValue());
+        }
+        return c;
+    }
+
+    /**
+     * @return true when the URL is queued is this or any other balancer
+     *         instance (as {@link HostBalancer#depthCache} is shared between all instances)
+     */
+    @Override
+    public boolean has(final byte[] urlhashb) {
+        if (HostBalancer.depthCache.has(urlhashb)) return true;
+        final HostQueue queue = this.queues.get(ASCII.String(urlhashb, 6, 6));
+        if (queue == null) return false;
+        return queue.has(urlhashb);
+    }
+
+    @Override
+    public int size() {
+        int c = 0;
+        for (final HostQueue queue: this.queues.values()) {
+            c += queue.size();
+        }
+        return c;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (final HostQueue queue: this.queues.values()) {
+            if (!queue.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int getOnDemandLimit() {
+        return this.onDemandLimit;
+    }
+
+    @Override
+    public boolean getExceed134217727() {
+        return this.exceed134217727;
+    }
+
+    /**
+     * push a request to one of the host queues. If the queue does not exist, it is created and scheduled
+     * for immediate access.
+     * @param entry
+     * @param profile
+     * @param robots
+     * @return null if everything is ok or a string with an error message if the push is not allowed according to the crawl profile or robots
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    @Override
+    public String push(final Request entry, final CrawlProfile profile, final RobotsTxt robots) throws IOException, SpaceExceededException {
+        if (this.has(entry.url().hash())) return "double occurrence";
+        HostBalancer.depthCache.put(entry.url().hash(), entry.depth());
+        final String hosthash = entry.url().hosthash();
+        boolean created = false;
+        final String result;
+        synchronized (lock(hosthash)) {
+            HostQueue queue = this.queues.get(hosthash);
+            if (queue == null) {
+                queue = new HostQueue(this.hostsPath, entry.url(), this.queues.size() > this.onDemandLimit, this.exceed134217727);
+                this.queues.put(hosthash, queue);
+                created = true;
+            }
+            result = queue.push(entry, profile, robots);
+            // a queue which is not scheduled is currently popped and will be re-scheduled after that
+            if (created) this.schedule.put(hosthash, System.currentTimeMillis(), queue.size());
+        }
+        if (created) {
+            // profile might be null when continue crawls after YaCy restart
+            robots.ensureExist(entry.url(), profile == null ? ClientIdentification.yacyInternetCrawlerAgent : profile.getAgent(), true); // concurrently load all robots.txt
+        }
+        return result;
+    }
+
+    /**
+     * get the next entry from the host with the earliest due time. The minimum delay is ensured by
+     * the HostQueue, which pauses if the request was demanded too early and delay is true.
+     * @param delay true if the requester demands forced delays using explicit thread sleep
+     * @param cs
+     * @param robots
+     * @return a url in a CrawlEntry object or null if the balancer is empty
+     * @throws IOException
+     */
+    @Override
+    public Request pop(final boolean delay, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException {
+        while (true) {
+            final String rhh = this.schedule.take();
+            if (rhh == null) return null;
+            final HostQueue rhq = this.queues.get(rhh);
+            if (rhq == null) continue; // removed concurrently
+            Request request = null;
+            try {
+                request = popFrom(rhq, delay, cs, robots); // this pop is only locking the host queue
+            } catch (final IOException e) {
+                throw e;
+            } catch (final Throwable e) {
+                ConcurrentLog.logException(e);
+                throw new IOException(e.getMessage());
+            } finally {
+                reschedule(rhh, rhq, robots);
+            }
+            if (request != null) return request;
+        }
+    }
+
+    /**
+     * put a host back into the schedule after a pop or remove its queue if it is empty
+     */
+    private void reschedule(final String hosthash, final HostQueue queue, final RobotsTxt robots) {
+        synchronized (lock(hosthash)) {
+            if (queue.isEmpty()) {
+                if (this.queues.get(hosthash) == queue) this.queues.remove(hosthash);
+                queue.close();
+                return;
+            }
+            final int delta = waitingRemaining(hosthash, queue, robots);
+            this.schedule.put(hosthash, System.currentTimeMillis() + Math.max(0, delta), queue.size());
+        }
+    }
+
+    /**
+     * take the next request from a host queue
+     */
+    Request popFrom(final HostQueue queue, final boolean delay, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException {
+        return queue.pop(delay, cs, robots);
+    }
+
+    /**
+     * @return the time in milliseconds until the host of the queue may be accessed again
+     */
+    int waitingRemaining(final String hosthash, final HostQueue queue, final RobotsTxt robots) {
+        return Latency.waitingRemainingGuessed(queue.getHost(), queue.getPort(), hosthash, robots, ClientIdentification.yacyInternetCrawlerAgent);
+    }
+
+    @Override
+    public Iterator<Request> iterator() throws IOException {
+        final Iterator<HostQueue> hostsIterator = this.queues.values().iterator();
+        return new Iterator<Request>() {
+            private Iterator<Request> hostIterator = null;
+            @Override
+            public boolean hasNext() {
+                while (this.hostIterator == null || !this.hostIterator.hasNext()) {
+                    if (!hostsIterator.hasNext()) return false;
+                    try {
+                        this.hostIterator = hostsIterator.next().iterator();
+                    } catch (final IOException e) {
+                        this.hostIterator = null;
+                    }
+                }
+                return true;
+            }
+            @Override
+            public Request next() {
+                if (!hasNext()) return null;
+                return this.hostIterator.next();
+            }
+            @Override
+            public void remove() {
+                this.hostIterator.remove();
+            }
+        };
+    }
+
+    /**
+     * get a list of domains that are currently maintained as domain stacks
+     * @return a map of clear text strings of host names + ports to an integer array: {the size of the domain stack, guessed delta waiting time}
+     */
+    @Override
+    public Map<String, Integer[]> getDomainStackHosts(final RobotsTxt robots) {
+        final Map<String, Integer[]> map = new TreeMap<String, Integer[]>(); // we use a tree map to get a stable ordering
+        for (final HostQueue hq: this.queues.values()) {
+            final int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), hq.getHostHash(), robots, ClientIdentification.yacyInternetCrawlerAgent);
+            map.put(hq.getHost() + ":" + hq.getPort(), new Integer[]{hq.size(), delta});
+        }
+        return map;
+    }
+
+    /**
+     * get lists of crawl request entries for a specific host
+     * @param host
+     * @param maxcount
+     * @param maxtime
+     * @return a list of crawl loader requests
+     */
+    @Override
+    public List<Request> getDomainStackReferences(final String host, final int maxcount, final long maxtime) {
+        if (host == null) {
+            return Collections.emptyList();
+        }
+        try {
+            HostQueue hq = this.queues.get(DigestURL.hosthash(host, host.startsWith("ftp.") ? 21 : 80));
+            if (hq == null) hq = this.queues.get(DigestURL.hosthash(host, 443));
+            return hq == null ? new ArrayList<Request>(0) : hq.getDomainStackReferences(host, maxcount, maxtime);
+        } catch (final MalformedURLException e) {
+            ConcurrentLog.logException(e);
+            return Collections.emptyList();
+        }
+    }
+
+}
@@ -239,6 +239,15 @@ public final class Cache {
     public static long getActualCacheDocCount() {
         return fileDBunbuffered.size();
     }
+
+    /**
+     * enumerate the url hashes of all cached response headers
+     * @param size the maximum number of hashes in the queue; the producer waits if the queue is full
+     * @return a queue of url hashes which ends with {@link MapHeap#POISON_QUEUE_ENTRY}
+     */
+    public static BlockingQueue<byte[]> keyQueue(final int size) {
+        return responseHeaderDB.keyQueue(size);
+    }
     
     /**
      * Set the new content compression level 
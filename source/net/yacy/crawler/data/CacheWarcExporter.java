@@ -0,0 +1,200 @@
+/**
+ * CacheWarcExporter.java
+ *
+ * This is a part of YaCy, a peer-to-peer based web search engine
+ *
+ * LICENSE
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.
+ * If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.yacy.crawler.data;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+
+import org.jwat.warc.WarcConstants;
+import org.jwat.warc.WarcRecord;
+import org.jwat.warc.WarcWriter;
+import org.jwat.warc.WarcWriterFactory;
+
+import net.yacy.cora.protocol.HeaderFramework;
+import net.yacy.cora.protocol.ResponseHeader;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.blob.MapHeap;
+
+/**
+ * Writes the content and the response headers of the HTCache to a Web Archive file.
+ * Each cached document is written as a WARC response record, so the archive can be
+ * imported by another peer with the {@link net.yacy.document.importer.WarcImporter}.
+ * The records are streamed one by one; only one document is held in memory.
+ * An existing file is never overwritten.
+ */
+public class CacheWarcExporter extends Thread {
+
+    static public CacheWarcExporter job; // static object to assure only one export is running
+
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+    private static final String CONTENT_TYPE_HTTP_RESPONSE = "application/http; msgtype=response";
+
+    private final File target; // the warc file; it is gzip'd if the name ends with .gz
+    private volatile int recordCnt; // number of exported documents (for statistic)
+    private long startTime; // (for statistic)
+    private volatile boolean abort = false; // flag to signal stop of export
+
+    public CacheWarcExporter(final File target) {
+        super("CacheWarcExporter - to file " + target.getName());
+        this.target = target;
+        this.recordCnt = 0;
+    }
+
+    @Override
+    public void run() {
+        job = this;
+        this.startTime = System.currentTimeMillis();
+        OutputStream out = null;
+        try {
+            final File parent = this.target.getAbsoluteFile().getParentFile();
+            if (parent != null) parent.mkdirs();
+            // fails if the file exists
+            out = new BufferedOutputStream(Files.newOutputStream(this.target.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), WRITE_BUFFER_SIZE);
+            export(out, this.target.getName().endsWith(".gz"));
+            ConcurrentLog.info("CacheWarcExporter", "exported " + this.recordCnt + " documents to " + this.target);
+        } catch (final IOException e) {
+            ConcurrentLog.warn("CacheWarcExporter", "export to " + this.target + " failed: " + e.toString());
+        } finally {
+            if (out != null) try {out.close();} catch (final IOException e) {}
+            job = null;
+        }
+    }
+
+    /**
+     * write all documents of the cache as response records
+     * @param out the target stream; it is not closed
+     * @param compressed if true, each record is written as a gzip member
+     * @throws IOException
+     */
+    public void export(final OutputStream out, final boolean compressed) throws IOException {
+        final WarcWriter writer = WarcWriterFactory.getWriter(out, compressed);
+        writeInfo(writer);
+        final BlockingQueue<byte[]> keys = Cache.keyQueue(100);
+        try {
+            byte[] hash;
+            while ((hash = keys.take()) != MapHeap.POISON_QUEUE_ENTRY) {
+                if (this.abort) continue; // empty the queue to terminate the producer
+                final ResponseHeader header = Cache.getResponseHeader(hash);
+                if (header == null) continue;
+                final byte[] content = Cache.getContent(hash);
+                if (content == null) continue;
+                if (writeResponse(writer, header, content)) this.recordCnt++;
+            }
+        } catch (final InterruptedException e) {
+        }
+        out.flush();
+    }
+
+    private static void writeInfo(final WarcWriter writer) throws IOException {
+        final byte[] info = ("software: YaCy\r\n" +
+                "format: WARC File Format 1.0\r\n" +
+                "description: content of the HTCache\r\n").getBytes(StandardCharsets.UTF_8);
+        final WarcRecord record = WarcRecord.createRecord(writer);
+        record.header.addHeader(WarcConstants.FN_WARC_TYPE, WarcConstants.RT_WARCINFO);
+        record.header.addHeader(WarcConstants.FN_WARC_DATE, new Date(), null);
+        record.header.addHeader(WarcConstants.FN_WARC_RECORD_ID, recordId());
+        record.header.addHeader(WarcConstants.FN_CONTENT_TYPE, WarcConstants.CT_APP_WARC_FIELDS);
+        record.header.addHeader(WarcConstants.FN_CONTENT_LENGTH, Long.valueOf(info.length), null);
+        writer.writeHeader(record);
+        writer.writePayload(info);
+        writer.closeRecord();
+    }
+
+    /**
+     * write one cached document as a response record. The http block contains the stored response
+     * header; the content is stored decoded, therefore the transfer and content encoding are removed
+     * and the content length is set to the stored content.
+     * @return false if the header has no url
+     */
+    private static boolean writeResponse(final WarcWriter writer, final ResponseHeader header, final byte[] content) throws IOException {
+        final String url = header.get("@@URL");
+        if (url == null) return false;
+        final StringBuilder http = new StringBuilder(512);
+        http.append("HTTP/1.1 ").append(header.getStatusCode()).append("\r\n");
+        for (final Map.Entry<String, String> entry: header.entrySet()) {
+            final String name = entry.getKey();
+            if (name.equals("@@URL") ||
+                name.equals(HeaderFramework.STATUS_CODE) ||
+                name.equalsIgnoreCase(HeaderFramework.TRANSFER_ENCODING) ||
+                name.equalsIgnoreCase(HeaderFramework.CONTENT_ENCODING) ||
+                name.equalsIgnoreCase(HeaderFramework.CONTENT_LENGTH)) continue;
+            http.append(name).append(": ").append(entry.getValue()).append("\r\n");
+        }
+        http.append(HeaderFramework.CONTENT_LENGTH).append(": ").append(content.length).append("\r\n\r\n");
+        final byte[] httpHeader = http.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        final WarcRecord record = WarcRecord.createRecord(writer);
+        record.header.addHeader(WarcConstants.FN_WARC_TYPE, WarcConstants.RT_RESPONSE);
+        record.header.addHeader(WarcConstants.FN_WARC_TARGET_URI, url);
+        record.header.addHeader(WarcConstants.FN_WARC_DATE, header.date(), null);
+        record.header.addHeader(WarcConstants.FN_WARC_RECORD_ID, recordId());
+        record.header.addHeader(WarcConstants.FN_CONTENT_TYPE, CONTENT_TYPE_HTTP_RESPONSE);
+        record.header.addHeader(WarcConstants.FN_CONTENT_LENGTH, Long.valueOf(httpHeader.length + content.length), null);
+        writer.writeHeader(record);
+        writer.writePayload(httpHeader);
+        writer.writePayload(content);
+        writer.closeRecord();
+        return true;
+    }
+
+    private static String recordId() {
+        return "<urn:uuid:" + UUID.randomUUID().toString() + ">";
+    }
+
+    /**
+     * Set the flag to stop the export
+     */
+    public void quit() {
+        this.abort = true;
+    }
+
+    /**
+     * @return the path of the warc file
+     */
+    public String target() {
+        return this.target.getAbsolutePath();
+    }
+
+    /**
+     * @return the number of exported documents
+     */
+    public int count() {
+        return this.recordCnt;
+    }
+
+    /**
+     * @return duration in seconds since the start of the export
+     */
+    public long runningTime() {
+        return (System.currentTimeMillis() - this.startTime) / 1000L;
+    }
+
+}
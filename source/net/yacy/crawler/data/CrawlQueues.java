@@ -98,7 +98,8 @@ public class CrawlQueues {
         // start crawling management
         log.config("Starting Crawling Management");
         log.config("Opening noticeURL..");
-        this.noticeURL = new NoticedURL(queuePath, sb.getConfigInt("crawler.onDemandLimit", 1000), sb.exceed134217727);
+        this.noticeURL = new NoticedURL(queuePath, sb.getConfigInt("crawler.onDemandLimit", 1000), sb.exceed134217727,
+                sb.getConfigBool(SwitchboardConstants.CRAWLER_BALANCER_SHARDED, SwitchboardConstants.CRAWLER_BALANCER_SHARDED_DEFAULT));
         log.config("Opening errorURL..");
         this.errorURL = new ErrorCache(sb);
         log.config("Opening delegatedURL..");
@@ -127,7 +128,8 @@ public class CrawlQueues {
         
         if (this.remoteCrawlProviderHashes != null) this.remoteCrawlProviderHashes.clear();
         this.noticeURL.close();
-        this.noticeURL = new NoticedURL(newQueuePath, sb.getConfigInt("crawler.onDemandLimit", 1000), this.sb.exceed134217727);
+        this.noticeURL = new NoticedURL(newQueuePath, sb.getConfigInt("crawler.onDemandLimit", 1000), this.sb.exceed134217727,
+                this.sb.getConfigBool(SwitchboardConstants.CRAWLER_BALANCER_SHARDED, SwitchboardConstants.CRAWLER_BALANCER_SHARDED_DEFAULT));
         if (this.delegatedURL != null) this.delegatedURL.clear();
     }
 
@@ -27,6 +27,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.document.id.DigestURL;
@@ -46,6 +47,15 @@ public class Latency {
     private static final int mapMaxSize = 1000;
     private static final ConcurrentHashMap<String, Host> map = new ConcurrentHashMap<String, Host>();
 
+    /** the upper bounds in milliseconds of the buckets of the load time histogram of a host; the last bucket has no bound */
+    public static final int[] histogramBounds = new int[]{100, 250, 500, 1000, 2500, 5000, 10000};
+
+    /**
+     * connections are kept alive for hosts which are accessed in shorter intervals than this time in milliseconds;
+     * this is below the maximum keep-alive time of the connection pool
+     */
+    private static final long keepAliveInterval = 15000;
+
     /**
      * update the latency entry after a host was selected for queueing into the loader
      * @param url
@@ -101,6 +111,31 @@ public class Latency {
         }
     }
 
+    /**
+     * update the connection statistics after a host was accessed
+     * @param url
+     * @param reused true if the request was sent on a connection which was kept alive by a previous request
+     */
+    public static void updateConnection(final DigestURL url, final boolean reused) {
+        final Host h = host(url);
+        if (h != null) h.updateConnection(reused);
+    }
+
+    /**
+     * compute how long the connection to a host shall be kept alive after a load. Connections are kept alive
+     * if the host was accessed in short intervals before and the robots.txt delay does not prevent an access
+     * soon, so the next access is due before the connection expires in the pool. The connection is kept
+     * until twice the expected time to the next access (at least one second), because the interval is only an average.
+     * @param url
+     * @return the keep-alive time in milliseconds, 0 if the connection shall be closed
+     */
+    public static long keepAliveTime(final DigestURL url) {
+        final Host h = host(url);
+        if (h == null) return 0;
+        final long due = Math.max(h.interval(), h.robotsDelay());
+        return h.interval() > 0 && due < keepAliveInterval ? Math.max(1000, 2 * due) : 0;
+    }
+
     private static Host host(final DigestURL url) {
         final String host = url.getHost();
         if (host == null) return null;
@@ -306,12 +341,19 @@ public class Latency {
         private AtomicInteger count;
         private final String host;
         private long robotsMinDelay;
+        private final AtomicLong interval; // the average time between two accesses, 0 if not known
+        private final AtomicIntegerArray histogram;
+        private final AtomicInteger connections, reused;
         private Host(final String host, final long time, long robotsMinDelay) {
             this.host = host;
             this.timeacc = new AtomicLong(time);
             this.count = new AtomicInteger(1);
             this.lastacc = new AtomicLong(System.currentTimeMillis());
             this.robotsMinDelay = robotsMinDelay;
+            this.interval = new AtomicLong(0);
+            this.histogram = new AtomicIntegerArray(histogramBounds.length + 1);
+            this.connections = new AtomicInteger(0);
+            this.reused = new AtomicInteger(0);
         }
         private void update(final long time) {
             if (this.count.get() > 100) {
@@ -324,9 +366,20 @@ public class Latency {
             this.lastacc.set(System.currentTimeMillis());
             this.timeacc.addAndGet(Math.min(30000, time));
             this.count.incrementAndGet();
+            int b = 0;
+            while (b < histogramBounds.length && time >= histogramBounds[b]) b++;
+            this.histogram.incrementAndGet(b);
         }
         private void update() {
-            this.lastacc.set(System.currentTimeMillis());
+            final long now = System.currentTimeMillis();
+            final long last = this.lastacc.getAndSet(now);
+            // a moving average, recent accesses have a higher weight
+            final long i = this.interval.get();
+            this.interval.set(i == 0 ? now - last : (3 * i + now - last) / 4);
+        }
+        private void updateConnection(final boolean reused) {
+            this.connections.incrementAndGet();
+            if (reused) this.reused.incrementAndGet();
         }
         public int count() {
             return this.count.get();
@@ -343,6 +396,32 @@ public class Latency {
         public long robotsDelay() {
             return this.robotsMinDelay;
         }
+        /**
+         * @return the average time in milliseconds between two accesses, 0 if not known
+         */
+        public long interval() {
+            return this.interval.get();
+        }
+        /**
+         * @return the number of loads in each bucket of the load time histogram, see histogramBounds
+         */
+        public int[] histogram() {
+            final int[] h = new int[this.histogram.length()];
+            for (int i = 0; i < h.length; i++) h[i] = this.histogram.get(i);
+            return h;
+        }
+        /**
+         * @return the number of requests to this host
+         */
+        public int connections() {
+            return this.connections.get();
+        }
+        /**
+         * @return the number of requests to this host which were sent on a kept alive connection
+         */
+        public int reused() {
+            return this.reused.get();
+        }
         /**
          * Used by crawler to calculate additional access delay time for often accessed hosts
          * (access count > 10000 returns half of the range parameter) linear incrementet from 0 up to (range div 2)
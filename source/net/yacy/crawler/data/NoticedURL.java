@@ -43,6 +43,7 @@ import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.crawler.Balancer;
 import net.yacy.crawler.CrawlSwitchboard;
 import net.yacy.crawler.HostBalancer;
+import net.yacy.crawler.ShardedHostBalancer;
 import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.robots.RobotsTxt;
 import net.yacy.kelondro.data.word.Word;
@@ -69,21 +70,33 @@ public class NoticedURL {
     
     private final File cachePath;
 
+    /** when true, the stacks are ShardedHostBalancer instances instead of HostBalancer instances */
+    private final boolean sharded;
+
     protected NoticedURL(
             final File cachePath,
             final int onDemandLimit,
             final boolean exceed134217727) {
+        this(cachePath, onDemandLimit, exceed134217727, false);
+    }
+
+    protected NoticedURL(
+            final File cachePath,
+            final int onDemandLimit,
+            final boolean exceed134217727,
+            final boolean sharded) {
         ConcurrentLog.info("NoticedURL", "START CREATING STACKS at " + cachePath.toString());
         ConcurrentLog.info("NoticedURL", "opening CrawlerCoreStacks..");
         this.cachePath = cachePath;
-        this.coreStack = new HostBalancer(new File(cachePath, "CrawlerCoreStacks"), onDemandLimit, exceed134217727);
+        this.sharded = sharded;
+        this.coreStack = newBalancer(new File(cachePath, "CrawlerCoreStacks"), onDemandLimit, exceed134217727);
         ConcurrentLog.info("NoticedURL", "opening CrawlerLimitStacks..");
-        this.limitStack = new HostBalancer(new File(cachePath, "CrawlerLimitStacks"), onDemandLimit, exceed134217727);
+        this.limitStack = newBalancer(new File(cachePath, "CrawlerLimitStacks"), onDemandLimit, exceed134217727);
 
         this.remoteStack = null; // init on demand (on first push)
         
         ConcurrentLog.info("NoticedURL", "opening CrawlerNoLoadStacks..");
-        this.noloadStack = new HostBalancer(new File(cachePath, "CrawlerNoLoadStacks"), onDemandLimit, exceed134217727);
+        this.noloadStack = newBalancer(new File(cachePath, "CrawlerNoLoadStacks"), onDemandLimit, exceed134217727);
         ConcurrentLog.info("NoticedURL", "FINISHED CREATING STACKS at " + cachePath.toString());
     }
 
@@ -93,10 +106,16 @@ public class NoticedURL {
     protected void initRemoteStack() {
         if (this.remoteStack == null && !MemoryControl.shortStatus()) {
             ConcurrentLog.info("NoticedURL", "opening CrawlerRemoteStacks..");
-            this.remoteStack = new HostBalancer(new File(this.cachePath, "CrawlerRemoteStacks"), this.coreStack.getOnDemandLimit(), this.coreStack.getExceed134217727());
+            this.remoteStack = newBalancer(new File(this.cachePath, "CrawlerRemoteStacks"), this.coreStack.getOnDemandLimit(), this.coreStack.getExceed134217727());
         }
     }
 
+    private Balancer newBalancer(final File hostsPath, final int onDemandLimit, final boolean exceed134217727) {
+        return this.sharded ?
+                new ShardedHostBalancer(hostsPath, onDemandLimit, exceed134217727) :
+                new HostBalancer(hostsPath, onDemandLimit, exceed134217727);
+    }
+
     public void clear() {
     	ConcurrentLog.info("NoticedURL", "CLEARING ALL STACKS");
     	if (this.coreStack != null) this.coreStack.clear();
@@ -66,6 +66,10 @@ public final class HTTPLoader {
      * The socket timeout that should be used
      */
     private final int socketTimeout;
+    /**
+     * Keep the connections to hosts alive which are accessed in short intervals
+     */
+    private final boolean keepAlive;
     private final Switchboard sb;
     private final ConcurrentLog log;
 
@@ -75,6 +79,7 @@ public final class HTTPLoader {
 
         // refreshing timeout value
         this.socketTimeout = (int) sb.getConfigLong("crawler.clientTimeout", 30000);
+        this.keepAlive = sb.getConfigBool(SwitchboardConstants.CRAWLER_KEEP_ALIVE, SwitchboardConstants.CRAWLER_KEEP_ALIVE_DEFAULT);
     }
 
     public Response load(final Request entry, CrawlProfile profile, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent) throws IOException {
@@ -146,9 +151,11 @@ public final class HTTPLoader {
 										// twice
 		client.setTimout(this.socketTimeout);
 		client.setHeader(requestHeader.entrySet());
+		client.setKeepAlive(this.keepAlive ? Latency.keepAliveTime(request.url()) : 0);
 
 		// send request
 		client.GET(url, false);
+		Latency.updateConnection(request.url(), client.isConnectionReused());
 		final StatusLine statusline = client.getHttpResponse().getStatusLine();
 		final int statusCode = statusline.getStatusCode();
 		final ResponseHeader responseHeader = new ResponseHeader(statusCode, client.getHttpResponse().getAllHeaders());
@@ -364,9 +371,11 @@ public final class HTTPLoader {
         client.setRedirecting(false); // we want to handle redirection ourselves, so we don't index pages twice
         client.setTimout(this.socketTimeout);
         client.setHeader(requestHeader.entrySet());
+        client.setKeepAlive(this.keepAlive ? Latency.keepAliveTime(request.url()) : 0);
 
         // send request
     	final byte[] responseBody = client.GETbytes(url, sb.getConfig(SwitchboardConstants.ADMIN_ACCOUNT_USER_NAME, "admin"), sb.getConfig(SwitchboardConstants.ADMIN_ACCOUNT_B64MD5, ""), maxFileSize, false);
+        Latency.updateConnection(request.url(), client.isConnectionReused());
         final int statusCode = client.getHttpResponse().getStatusLine().getStatusCode();
     	final ResponseHeader responseHeader = new ResponseHeader(statusCode, client.getHttpResponse().getAllHeaders());
         String requestURLString = request.url().toNormalform(true);
@@ -22,21 +22,29 @@
  */
 package net.yacy.document.importer;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.ResponseHeader;
-import net.yacy.cora.util.ByteBuffer;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.retrieval.Response;
 import net.yacy.document.TextParser;
+import net.yacy.kelondro.util.FileUtils;
+import net.yacy.kelondro.workflow.WorkflowProcessor;
 import net.yacy.search.Switchboard;
 import net.yacy.server.http.ChunkedInputStream;
 import org.jwat.common.HeaderLine;
@@ -60,20 +68,25 @@ public class WarcImporter extends Thread implements Importer {
 
     static public WarcImporter job; // static object to assure only one importer is running (if started from a servlet, this object is used to store the thread)
 
+    private static final int READ_BUFFER_SIZE = 1024 * 1024; // buffer of the warc reader
+    private static final int QUEUE_SIZE_PER_WORKER = 20; // records which are read ahead of the workers
+
     private final InputStream source; // current input warc archive
     private String name; // file name of input source
+    private final int workers; // number of threads which convert the records to responses for the indexer
     
-    private int recordCnt; // number of responses indexed (for statistic)
+    private final AtomicInteger recordCnt; // number of responses indexed (for statistic)
     private long startTime; // (for statistic)
     private final long sourceSize; // length of the input source (for statistic)
     private long consumed; // bytes consumed from input source (for statistic)
-    private boolean abort = false; // flag to signal stop of import
+    private volatile boolean abort = false; // flag to signal stop of import
 
     public WarcImporter(InputStream f) {
     	super("WarcImporter - from InputStream");
         source = f;
-        recordCnt = 0;
+        recordCnt = new AtomicInteger(0);
         sourceSize = -1;
+        workers = Math.max(1, WorkflowProcessor.availableCPU / 2);
     }
 
     /**
@@ -93,91 +106,193 @@ public class WarcImporter extends Thread implements Importer {
        name = f.getName();
        sourceSize = f.length();
        source = new FileInputStream(f);
+       recordCnt = new AtomicInteger(0);
+       workers = Math.max(1, WorkflowProcessor.availableCPU / 2);
     }
 
+    /**
+     * A http response which was read from the archive. The conversion to a
+     * {@link Response} is done by the worker threads.
+     */
+    private static final class WarcResponse {
+        private final String location;
+        private final HttpHeader http;
+        private final byte[] payload;
+        private final boolean chunked;
+
+        private WarcResponse(final String location, final HttpHeader http, final byte[] payload, final boolean chunked) {
+            this.location = location;
+            this.http = http;
+            this.payload = payload;
+            this.chunked = chunked;
+        }
+    }
+
+    private static final WarcResponse POISON = new WarcResponse(null, null, null, false);
+
     /**
      * Reads a Warc file and adds all contained responses to the index.
-     * The reader automatically handles plain or gzip'd warc files
+     * The reader automatically handles plain or gzip'd warc files.
+     * Records are read in one thread and converted to responses by a pool of
+     * worker threads. The queue to the workers is bounded, and the workers wait
+     * if the indexer queue is full, so the reader never runs far ahead of the indexer.
      *
      * @param f inputstream for the warc file
      * @throws IOException
      */
     public void indexWarcRecords(InputStream f) throws IOException {
 
-        byte[] content;
         job = this;
         startTime = System.currentTimeMillis();
 
-        WarcReader localwarcReader = WarcReaderFactory.getReader(f);
-        WarcRecord wrec = localwarcReader.getNextRecord();
-        while (wrec != null && !abort) {
+        final BlockingQueue<WarcResponse> queue = new ArrayBlockingQueue<WarcResponse>(this.workers * QUEUE_SIZE_PER_WORKER);
+        final Thread[] t = new Thread[this.workers];
+        for (int i = 0; i < t.length; i++) {
+            t[i] = new Thread("WarcImporter.worker-" + i) {
+                @Override
+                public void run() {
+                    WarcResponse r;
+                    try {
+                        while ((r = queue.take()) != POISON) {
+                            try {
+                                if (index(r)) recordCnt.incrementAndGet();
+                            } catch (final IOException e) {
+                                ConcurrentLog.info("WarcImporter", "cannot index " + r.location + ": " + e.getMessage());
+                            } catch (final Throwable e) {
+                                // a single broken record must not stop the worker, the reader would wait for it forever
+                                ConcurrentLog.warn("WarcImporter", "cannot index " + r.location, e);
+                            }
+                        }
+                    } catch (final InterruptedException e) {
+                    }
+                }
+            };
+            t[i].start();
+        }
 
-            HeaderLine hl = wrec.getHeader(WarcConstants.FN_WARC_TYPE);
-            if (hl != null && hl.value.equals(WarcConstants.RT_RESPONSE)) { // filter responses
+        WarcReader localwarcReader = null;
+        try {
+            localwarcReader = WarcReaderFactory.getReader(f, READ_BUFFER_SIZE);
+            localwarcReader.setBlockDigestEnabled(false);
+            localwarcReader.setPayloadDigestEnabled(false);
+            WarcRecord wrec = localwarcReader.getNextRecord();
+            while (wrec != null && !abort) {
 
-                hl = wrec.getHeader(WarcConstants.FN_WARC_TARGET_URI);
-                DigestURL location = new DigestURL(hl.value);
+                HeaderLine hl = wrec.getHeader(WarcConstants.FN_WARC_TYPE);
+                if (hl != null && hl.value.equals(WarcConstants.RT_RESPONSE)) { // filter responses
 
-                HttpHeader http = wrec.getHttpHeader();
+                    hl = wrec.getHeader(WarcConstants.FN_WARC_TARGET_URI);
+                    HttpHeader http = wrec.getHttpHeader();
 
-                if (http != null && http.statusCode == 200) { // process http response header OK (status 200)
+                    if (hl != null && http != null && http.statusCode == 200) { // process http response header OK (status 200)
 
-                    if (TextParser.supportsMime(http.contentType) == null) { // check availability of parser
+                        if (TextParser.supportsMime(http.contentType) == null) { // check availability of parser
 
-                        InputStream istream = wrec.getPayloadContent();
-                        hl = http.getHeader(HeaderFramework.TRANSFER_ENCODING);
-                        if (hl != null && hl.value.contains("chunked")) {
-                            // because chunked stream.read doesn't read source fully, make sure all chunks are read
-                            istream = new ChunkedInputStream(istream);
-                            final ByteBuffer bbuffer = new ByteBuffer();
-                            int c;
-                            while ((c = istream.read()) >= 0) {
-                                bbuffer.append(c);
+                            // the payload must be read here because the next record is read from the same stream
+                            final InputStream istream = wrec.getPayloadContent();
+                            final byte[] payload = read(istream, http.getPayloadLength());
+                            istream.close();
+                            final HeaderLine te = http.getHeader(HeaderFramework.TRANSFER_ENCODING);
+                            if (!offer(queue, new WarcResponse(hl.value, http, payload, te != null && te.value.contains("chunked")), t)) {
+                                ConcurrentLog.warn("WarcImporter", "all workers terminated, import stopped");
+                                break;
                             }
-                            content = bbuffer.getBytes();
-                        } else {
-                            content = new byte[(int) http.getPayloadLength()];
-                            istream.read(content, 0, content.length);
                         }
-                        istream.close();
-
-                        RequestHeader requestHeader = new RequestHeader();
-
-                        ResponseHeader responseHeader = new ResponseHeader(http.statusCode);
-                        for (HeaderLine hx : http.getHeaderList()) { // include all original response headers for parser
-                            responseHeader.put(hx.name, hx.value);
-                        }
-
-                        final Request request = new Request(
-                                ASCII.getBytes(Switchboard.getSwitchboard().peers.mySeed().hash),
-                                location,
-                                requestHeader.referer() == null ? null : requestHeader.referer().hash(),
-                                "warc",
-                                responseHeader.lastModified(),
-                                Switchboard.getSwitchboard().crawler.defaultSurrogateProfile.handle(),
-                                0,
-                                Switchboard.getSwitchboard().crawler.defaultSurrogateProfile.timezoneOffset());
-
-                        final Response response = new Response(
-                                request,
-                                requestHeader,
-                                responseHeader,
-                                Switchboard.getSwitchboard().crawler.defaultSurrogateProfile,
-                                false,
-                                content
-                        );
-
-                        Switchboard.getSwitchboard().toIndexer(response);
-                        recordCnt++;
                     }
                 }
+                this.consumed = localwarcReader.getConsumed();
+                wrec = localwarcReader.getNextRecord();
             }
-            this.consumed = localwarcReader.getConsumed();
-            wrec = localwarcReader.getNextRecord();
+        } catch (final InterruptedException e) {
+        } finally {
+            try {
+                for (int i = 0; i < t.length; i++) {
+                    if (!offer(queue, POISON, t)) break;
+                }
+                for (int i = 0; i < t.length; i++) t[i].join();
+            } catch (final InterruptedException e) {
+                for (int i = 0; i < t.length; i++) t[i].interrupt();
+            }
+            if (localwarcReader != null) localwarcReader.close();
+            ConcurrentLog.info("WarcImporter", "Indexed " + recordCnt.get() + " documents");
+            job = null;
         }
-        localwarcReader.close();
-        ConcurrentLog.info("WarcImporter", "Indexed " + recordCnt + " documents");
-        job = null;
+    }
+
+    /**
+     * put a record into the queue of the workers; waits while the queue is full and at least one worker is alive
+     * @return false if all workers have terminated, the record was then not queued
+     * @throws InterruptedException
+     */
+    private static boolean offer(final BlockingQueue<WarcResponse> queue, final WarcResponse r, final Thread[] workers) throws InterruptedException {
+        while (!queue.offer(r, 1, TimeUnit.SECONDS)) {
+            boolean alive = false;
+            for (final Thread w: workers) alive |= w.isAlive();
+            if (!alive) return false;
+        }
+        return true;
+    }
+
+    /**
+     * read the payload of a record with bulk reads
+     * @param istream the payload stream
+     * @param length the payload length from the record header
+     * @return the payload
+     * @throws IOException
+     */
+    private static byte[] read(final InputStream istream, final long length) throws IOException {
+        if (length < 0 || length > Integer.MAX_VALUE) return FileUtils.read(istream, -1);
+        final byte[] b = new byte[(int) length];
+        int p = 0, c;
+        while (p < b.length && (c = istream.read(b, p, b.length - p)) > 0) p += c;
+        return p == b.length ? b : Arrays.copyOf(b, p);
+    }
+
+    /**
+     * convert a response record to a {@link Response} and put it to the indexer
+     * @param r the response record
+     * @return true if the response was accepted by the indexer
+     * @throws IOException
+     */
+    private static boolean index(final WarcResponse r) throws IOException {
+        final DigestURL location = new DigestURL(r.location);
+        final byte[] content;
+        if (r.chunked) {
+            // because chunked stream.read doesn't read source fully, make sure all chunks are read
+            content = FileUtils.read(new ChunkedInputStream(new ByteArrayInputStream(r.payload)));
+        } else {
+            content = r.payload;
+        }
+
+        RequestHeader requestHeader = new RequestHeader();
+
+        ResponseHeader responseHeader = new ResponseHeader(r.http.statusCode);
+        for (HeaderLine hx : r.http.getHeaderList()) { // include all original response headers for parser
+            responseHeader.put(hx.name, hx.value);
+        }
+
+        final Switchboard sb = Switchboard.getSwitchboard();
+        final Request request = new Request(
+                ASCII.getBytes(sb.peers.mySeed().hash),
+                location,
+                requestHeader.referer() == null ? null : requestHeader.referer().hash(),
+                "warc",
+                responseHeader.lastModified(),
+                sb.crawler.defaultSurrogateProfile.handle(),
+                0,
+                sb.crawler.defaultSurrogateProfile.timezoneOffset());
+
+        final Response response = new Response(
+                request,
+                requestHeader,
+                responseHeader,
+                sb.crawler.defaultSurrogateProfile,
+                false,
+                content
+        );
+
+        // this waits if the queue of the indexer is full
+        return sb.toIndexer(response) == null;
     }
 
     @Override
@@ -211,7 +326,7 @@ public class WarcImporter extends Thread implements Importer {
      */
     @Override
     public int count() {
-        return this.recordCnt;
+        return this.recordCnt.get();
     }
 
     /**
@@ -220,8 +335,8 @@ public class WarcImporter extends Thread implements Importer {
      */
     @Override
     public int speed() {
-        if (this.recordCnt == 0) return 0;
-        return (int) (this.recordCnt / Math.max(0L, runningTime() ));
+        if (this.recordCnt.get() == 0) return 0;
+        return (int) (this.recordCnt.get() / Math.max(1L, runningTime() ));
     }
 
     /**
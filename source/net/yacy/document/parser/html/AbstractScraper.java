@@ -102,6 +102,38 @@ public abstract class AbstractScraper implements Scraper {
         return sb.toString().trim();
     }
 
+    /**
+     * strip all tags and clean the white space in one pass without intermediate strings.
+     * The result is the same as cleanLine(stripAllTags(s)).
+     * @param s the text
+     * @param target a builder which is re-used for the result; it is cleared first
+     * @return the target
+     */
+    public static StringBuilder stripAllTagsAndClean(final char[] s, final StringBuilder target) {
+        target.setLength(0);
+        if (s.length > 80 && !MemoryControl.request(s.length * 2, false)) return target;
+        int bc = 0;
+        for (char c : s) {
+            if (c == lb) {
+                bc++;
+                c = sp;
+            } else if (c == rb) {
+                bc--;
+                continue;
+            } else if (bc > 0) {
+                continue;
+            }
+            if (c <= sp) {
+                // at most one space between words and none at the beginning
+                if (target.length() > 0 && target.charAt(target.length() - 1) != sp) target.append(sp);
+            } else {
+                target.append(c);
+            }
+        }
+        if (target.length() > 0 && target.charAt(target.length() - 1) == sp) target.setLength(target.length() - 1);
+        return target;
+    }
+
     @Override
     public void close() {
         // free resources
@@ -77,6 +77,13 @@ public class ContentScraper extends AbstractScraper implements Scraper {
 
     private final char degree = '\u00B0';
     private final char[] minuteCharsHTML = "&#039;".toCharArray();
+    private static final char[] DEGREE_HTML = "&deg;".toCharArray();
+    private static final char[] MINUTE = "'".toCharArray();
+    private static final char[] EAST = " E".toCharArray();
+    private static final char[] WEST = " W".toCharArray();
+
+    /** the re-used text buffers are replaced when a very long text made them larger than this */
+    private static final int MAX_REUSED_BUFFER = 64 * 1024;
 
     // statics: for initialization of the HTMLFilterAbstractScraper
     /** Set of tag names processed as singletons (no end tag, or not processing the eventual end tag) */
@@ -259,6 +266,16 @@ public class ContentScraper extends AbstractScraper implements Scraper {
     
     /** Set to true when the maxAnchors limit has been exceeded */
     private boolean maxAnchorsExceeded;
+
+    /** The number of anchors which were found, also in streaming mode where they are not stored */
+    private int anchorsCount;
+
+    /** When true, text and anchors are only sent to the listeners and not collected */
+    private boolean streaming;
+
+    /** re-used buffers for the text of one scrapeText call */
+    private StringBuilder textBuffer;
+    private char[] textChars;
     
     /**
      * Create an ContentScraper instance
@@ -316,6 +333,10 @@ public class ContentScraper extends AbstractScraper implements Scraper {
         this.contentSizeLimitExceeded = false;
         this.maxAnchorsExceeded = false;
         this.maxAnchors = maxAnchors;
+        this.anchorsCount = 0;
+        this.streaming = false;
+        this.textBuffer = new StringBuilder(256);
+        this.textChars = new char[256];
     }
     
     /**
@@ -345,7 +366,8 @@ public class ContentScraper extends AbstractScraper implements Scraper {
 			}
         }
         int p, pl, q, s = 0;
-        char[] newtext = CharacterCoding.html2unicode(new String(newtext0)).toCharArray();
+        // most text chunks contain no character entities and can be used as they are
+        final char[] newtext = CharBuffer.indexOf(newtext0, '&') < 0 ? newtext0 : CharacterCoding.html2unicode(new String(newtext0)).toCharArray();
         
         // match evaluation pattern
         this.evaluationScores.match(Element.text, newtext);
@@ -357,12 +379,12 @@ public class ContentScraper extends AbstractScraper implements Scraper {
         location: while (s < newtext.length) {
             pl = 1;
             p = CharBuffer.indexOf(newtext, s, this.degree);
-            if (p < 0) {p = CharBuffer.indexOf(newtext, s, "&deg;".toCharArray()); if (p >= 0) pl = 5;}
+            if (p < 0) {p = CharBuffer.indexOf(newtext, s, DEGREE_HTML); if (p >= 0) pl = 5;}
             if (p < 0) break location;
             q = CharBuffer.indexOf(newtext, p + pl, this.minuteCharsHTML);
-            if (q < 0) q = CharBuffer.indexOf(newtext, p + pl, "'".toCharArray());
-            if (q < 0) q = CharBuffer.indexOf(newtext, p + pl, " E".toCharArray());
-            if (q < 0) q = CharBuffer.indexOf(newtext, p + pl, " W".toCharArray());
+            if (q < 0) q = CharBuffer.indexOf(newtext, p + pl, MINUTE);
+            if (q < 0) q = CharBuffer.indexOf(newtext, p + pl, EAST);
+            if (q < 0) q = CharBuffer.indexOf(newtext, p + pl, WEST);
             if (q < 0 && newtext.length - p == 7 + pl) q = newtext.length;
             if (q < 0) break location;
             int r = p;
@@ -402,44 +424,55 @@ public class ContentScraper extends AbstractScraper implements Scraper {
             }
             break location;
         }
-        // find tags inside text
-        String b = cleanLine(stripAllTags(newtext));
+        // find tags inside text; the text is collected in a re-used buffer instead of intermediate strings
+        final StringBuilder b = stripAllTagsAndClean(newtext, this.textBuffer);
         if ((insideTag != null) && (!(insideTag.name.equals(TagName.a.name())))) {
             // texts inside tags sometimes have no punctuation at the line end
             // this is bad for the text semantics, because it is not possible for the
             // condenser to distinguish headlines from text beginnings.
             // to make it easier for the condenser, a dot ('.') is appended in case that
             // no punctuation is part of the newtext line
-            if ((b.length() != 0) && (!(SentenceReader.punctuation(b.charAt(b.length() - 1))))) b = b + '.';
+            if ((b.length() != 0) && (!(SentenceReader.punctuation(b.charAt(b.length() - 1))))) b.append('.');
             //System.out.println("*** Appended dot: " + b.toString());
         }
-        // find absolute URLs inside text
-        final Object[] listeners = this.htmlFilterEventListeners.getListenerList();
-        List<ContentScraperListener> anchorListeners = new ArrayList<>();
-        for (int i = 0; i < listeners.length; i += 2) {
-            if (listeners[i] == ContentScraperListener.class) {
-            	anchorListeners.add((ContentScraperListener)listeners[i+1]);
-            }
-        }
-        
-        if(!this.maxAnchorsExceeded) {
-        	int maxLinksToDetect = this.maxAnchors - this.anchors.size();
+        // find absolute URLs inside text; all detected url schemes contain "://"
+        if(!this.maxAnchorsExceeded && b.indexOf("://") >= 0) {
+        	List<ContentScraperListener> anchorListeners = null;
+        	if (this.htmlFilterEventListeners.getListenerCount(ContentScraperListener.class) > 0) {
+        		final Object[] listeners = this.htmlFilterEventListeners.getListenerList();
+        		anchorListeners = new ArrayList<>();
+        		for (int i = 0; i < listeners.length; i += 2) {
+        			if (listeners[i] == ContentScraperListener.class) {
+        				anchorListeners.add((ContentScraperListener)listeners[i+1]);
+        			}
+        		}
+        	}
+        	int maxLinksToDetect = this.maxAnchors - this.anchorsCount;
         	if(maxLinksToDetect < Integer.MAX_VALUE) {
         		/* Add one to the anchors limit to detect when the limit is exceeded */
         		maxLinksToDetect++;
         	}
-        	findAbsoluteURLs(b, this.anchors, anchorListeners, maxLinksToDetect);
-        	if(this.anchors.size() > this.maxAnchors) {
+        	this.anchorsCount += (int) findAbsoluteURLs(b.toString(), this.streaming ? null : this.anchors, anchorListeners, maxLinksToDetect);
+        	if(this.anchorsCount > this.maxAnchors) {
         		this.maxAnchorsExceeded = true;
-        		this.anchors.remove(this.anchors.size() -1);
+        		this.anchorsCount = this.maxAnchors;
+        		if (!this.streaming) this.anchors.remove(this.anchors.size() -1);
         	}
         }
         
-        // append string to content
-        if (!b.isEmpty()) {
-            this.content.append(b);
-            this.content.appendSpace();
+        // append text to content and send it to the listeners
+        final int length = b.length();
+        if (length > 0) {
+            if (this.textChars.length < length) this.textChars = new char[Math.max(length, 2 * this.textChars.length)];
+            b.getChars(0, length, this.textChars, 0);
+            if (!this.streaming) {
+                this.content.append(this.textChars, 0, length);
+                this.content.appendSpace();
+            }
+            this.fireAddText(this.textChars, 0, length);
         }
+        if (this.textChars.length > MAX_REUSED_BUFFER) this.textChars = new char[256];
+        if (b.capacity() > MAX_REUSED_BUFFER) this.textBuffer = new StringBuilder(256);
     }
 
     private final static Pattern protp = Pattern.compile("smb://|ftp://|http://|https://");
@@ -786,7 +819,7 @@ public class ContentScraper extends AbstractScraper implements Scraper {
             final String areatitle = cleanLine(tag.opts.getProperty("title", EMPTY_STRING));
             //String alt   = tag.opts.getProperty("alt",EMPTY_STRING);
             final String href  = tag.opts.getProperty("href", EMPTY_STRING);
-            if (href.length() > 0) {
+            if (href.length() > 0 && !anchorsLimitReached()) {
                 tag.opts.put("name", areatitle);
                 AnchorURL url = absolutePath(href);
                 if(url != null) {
@@ -864,7 +897,7 @@ public class ContentScraper extends AbstractScraper implements Scraper {
             } catch (final NumberFormatException e) {}
         } else if(tag.name.equalsIgnoreCase("param")) {
             final String name = tag.opts.getProperty("name", EMPTY_STRING);
-            if (name.equalsIgnoreCase("movie")) {
+            if (name.equalsIgnoreCase("movie") && !anchorsLimitReached()) {
                 AnchorURL url = absolutePath(tag.opts.getProperty("value", EMPTY_STRING));
                 if(url != null) {
                 	tag.opts.put("value", url.toNormalform(true));
@@ -906,7 +939,7 @@ public class ContentScraper extends AbstractScraper implements Scraper {
             String href = tag.opts.getProperty("href", EMPTY_STRING);
             href = CharacterCoding.html2unicode(href);
             AnchorURL url;
-            if ((href.length() > 0) && ((url = absolutePath(href)) != null)) {
+            if ((href.length() > 0) && !anchorsLimitReached() && ((url = absolutePath(href)) != null)) {
                 if (followDenied()) {
                     String rel = tag.opts.getProperty("rel", EMPTY_STRING);
                     if (rel.length() == 0) rel = "nofollow"; else if (rel.indexOf("nofollow") < 0) rel += ",nofollow";
@@ -928,50 +961,50 @@ public class ContentScraper extends AbstractScraper implements Scraper {
 	    	   breadcrumbs++;
 	       }
         } else if ((tag.name.equalsIgnoreCase("h1")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.headlines[0].add(h);
         } else if((tag.name.equalsIgnoreCase("h2")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.headlines[1].add(h);
         } else if ((tag.name.equalsIgnoreCase("h3")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.headlines[2].add(h);
         } else if ((tag.name.equalsIgnoreCase("h4")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.headlines[3].add(h);
         } else if ((tag.name.equalsIgnoreCase("h5")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.headlines[4].add(h);
         } else if ((tag.name.equalsIgnoreCase("h6")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.headlines[5].add(h);
         } else if ((tag.name.equalsIgnoreCase("title")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             this.titles.add(h);
             this.evaluationScores.match(Element.title, h);
         } else if ((tag.name.equalsIgnoreCase("b")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.bold.inc(h);
         } else if ((tag.name.equalsIgnoreCase("strong")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.bold.inc(h);
         } else if ((tag.name.equalsIgnoreCase("em")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.bold.inc(h);
         } else if ((tag.name.equalsIgnoreCase("i")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.italic.inc(h);
         } else if ((tag.name.equalsIgnoreCase("u")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.underline.inc(h);
         } else if ((tag.name.equalsIgnoreCase("li")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.li.add(h);
         } else if ((tag.name.equalsIgnoreCase("dt")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.dt.add(h);
         } else if ((tag.name.equalsIgnoreCase("dd")) && (tag.content.length() < 1024)) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.dd.add(h);
         } else if (tag.name.equalsIgnoreCase("script")) {
             final String src = tag.opts.getProperty("src", EMPTY_STRING);
@@ -985,7 +1018,7 @@ public class ContentScraper extends AbstractScraper implements Scraper {
                 this.evaluationScores.match(Element.scriptcode, LB.matcher(new String(tag.content.getChars())).replaceAll(" "));
             }
         } else if (tag.name.equalsIgnoreCase("article")) {
-            h = cleanLine(CharacterCoding.html2unicode(stripAllTags(tag.content.getChars())));
+            h = cleanTagText(tag.content);
             if (h.length() > 0) this.articles.add(h);
         } else if (tag.name.equalsIgnoreCase(TagName.time.name())) { // html5 tag <time datetime="2016-12-23">Event</time>
             h = tag.opts.getProperty("datetime"); // TODO: checkOpts() also parses datetime property if in combination with schema.org itemprop=startDate/endDate
@@ -1043,14 +1076,37 @@ public class ContentScraper extends AbstractScraper implements Scraper {
      * @param anchor anchor to add. Must not be null.
      */
     protected void addAnchor(AnchorURL anchor) {
-    	if(this.anchors.size() >= this.maxAnchors) {
+    	if(this.anchorsCount >= this.maxAnchors) {
     		this.maxAnchorsExceeded = true;
     	} else {
-    		this.anchors.add(anchor);
+    		this.anchorsCount++;
+    		if (!this.streaming) this.anchors.add(anchor);
     		this.fireAddAnchor(anchor.toNormalform(false));
     	}
     }
 
+    /**
+     * Check the anchors limit before an anchor url is constructed, so no url objects are created for links which are dropped anyway
+     * @return true when no more anchors can be added
+     */
+    private boolean anchorsLimitReached() {
+    	if(this.anchorsCount >= this.maxAnchors) {
+    		this.maxAnchorsExceeded = true;
+    		return true;
+    	}
+    	return false;
+    }
+
+    /**
+     * @param content the content of a paired tag
+     * @return the text of the content without tags, with decoded character entities and cleaned white space
+     */
+    private String cleanTagText(final CharBuffer content) {
+        final char[] chars = content.getChars();
+        if (CharBuffer.indexOf(chars, '&') >= 0) return cleanLine(CharacterCoding.html2unicode(stripAllTags(chars)));
+        return stripAllTagsAndClean(chars, this.textBuffer).toString();
+    }
+
 
     @Override
     public void scrapeComment(final char[] comment) {
@@ -1273,6 +1329,23 @@ public class ContentScraper extends AbstractScraper implements Scraper {
 		this.contentSizeLimitExceeded = contentSizeLimitExceeded;
 	}
     
+    /**
+     * Switch the streaming mode. In streaming mode the text and the anchors are only sent to the registered
+     * {@link ContentScraperListener} instances and not collected, so getText() and getAnchors() stay empty
+     * and the memory use does not grow with the document size. The maxAnchors limit is applied in both modes.
+     * @param streaming true to switch streaming on
+     */
+    public void setStreaming(final boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * @return true when text and anchors are only sent to the listeners
+     */
+    public boolean isStreaming() {
+        return this.streaming;
+    }
+
     /**
      * @return true when the maxAnchors limit has been exceeded
      */
@@ -1590,6 +1663,21 @@ public class ContentScraper extends AbstractScraper implements Scraper {
         }
     }
     
+    /**
+     * Fire addText event to any listener implementing {@link ContentScraperListener} interface
+     * @param text a buffer which is re-used after the call
+     * @param offset the start of the text in the buffer
+     * @param length the length of the text
+     */
+    private void fireAddText(final char[] text, final int offset, final int length) {
+        final Object[] listeners = this.htmlFilterEventListeners.getListenerList();
+        for (int i = 0; i < listeners.length; i += 2) {
+            if (listeners[i] == ContentScraperListener.class) {
+                    ((ContentScraperListener)listeners[i+1]).textAdded(text, offset, length);
+            }
+        }
+    }
+
     /**
      * Fire addAnchor event to any listener implemening {@link ContentScraperListener} interface
      * @param url anchor url
@@ -31,4 +31,12 @@ public interface ContentScraperListener extends ScraperListener {
 	 * @param anchorURL the anchor normalized URL
 	 */
     public void anchorAdded(String anchorURL);
+
+	/**
+	 * Triggered by {@link ContentScraper#scrapeText(char[], net.yacy.document.parser.html.ContentScraper.Tag)} for each cleaned text chunk
+	 * @param text a buffer which is re-used by the scraper: the text must be copied if it is used after the call
+	 * @param offset the start of the text in the buffer
+	 * @param length the length of the text
+	 */
+    public void textAdded(char[] text, int offset, int length);
 }
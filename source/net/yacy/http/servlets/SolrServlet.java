@@ -95,6 +95,8 @@ public class SolrServlet extends HttpServlet {
 			if ("/solr/collection1/update".equals(hrequest.getServletPath())
 					|| "/solr/webgraph/update".equals(hrequest.getServletPath())) {
 				handler = new UpdateRequestHandler();
+				// documents which are written here are not known to the url filter of the crawler
+				if (defaultConnector) sb.index.fulltext().getURLSeenFilter().invalidate();
 			} else {
 				handler = new LukeRequestHandler();
 			}
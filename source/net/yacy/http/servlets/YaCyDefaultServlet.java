@@ -21,7 +21,7 @@ package net.yacy.http.servlets;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -48,11 +48,14 @@ import java.util.concurrent.LinkedBlockingQueue;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.UnavailableException;
+import javax.servlet.WriteListener;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.fileupload.FileItemFactory;
@@ -88,10 +91,13 @@ import net.yacy.peers.graphics.EncodedImage;
 import net.yacy.peers.operation.yacyBuildProperties;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
+import net.yacy.search.query.ResultPageCache;
+import net.yacy.search.query.SearchEvent;
 import net.yacy.server.serverClassLoader;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
 import net.yacy.server.servletProperties;
+import net.yacy.server.http.CompiledTemplate;
 import net.yacy.server.http.HTTPDFileHandler;
 import net.yacy.server.http.TemplateEngine;
 import net.yacy.visualization.RasterPlotter;
@@ -982,6 +988,23 @@ public class YaCyDefaultServlet extends HttpServlet  {
             } else {
                 templatePatterns = new servletProperties((serverObjects) tmp);
             }
+
+            // a finished page from the result page cache replaces the template
+            final Object cachedPage = request.getAttribute(ResultPageCache.ATTRIBUTE_PAGE);
+            if (cachedPage instanceof ResultPageCache.Page) {
+                request.removeAttribute(ResultPageCache.ATTRIBUTE_PAGE);
+                final byte[] content = ((ResultPageCache.Page) cachedPage).getContent();
+                response.setContentType(((ResultPageCache.Page) cachedPage).getMimeType());
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.setContentLength(content.length);
+                response.getOutputStream().write(content);
+                return;
+            }
+            // the key and the event must not be seen by the included templates
+            final Object resultPageKey = request.getAttribute(ResultPageCache.ATTRIBUTE_KEY);
+            if (resultPageKey != null) request.removeAttribute(ResultPageCache.ATTRIBUTE_KEY);
+            final Object resultPageEvent = request.getAttribute(ResultPageCache.ATTRIBUTE_EVENT);
+            if (resultPageEvent != null) request.removeAttribute(ResultPageCache.ATTRIBUTE_EVENT);
             
             if(templatePatterns.containsKey(TransactionManager.TRANSACTION_TOKEN_PARAM)) {
                 /* The response contains a transaction token : we also write the transaction token as a custom header 
@@ -1057,19 +1080,31 @@ public class YaCyDefaultServlet extends HttpServlet  {
                 
                 String mimeType = Classification.ext2mime(targetExt, MimeTypes.Type.TEXT_HTML.asString());
 
-                InputStream fis;
                 long fileSize = targetFile.length();
 
-                if (fileSize <= Math.min(4 * 1024 * 1204, MemoryControl.available() / 100)) {
-                    // read file completely into ram, avoid that too many files are open at the same time
-                    fis = new ByteArrayInputStream(FileUtils.read(targetFile));
-                } else {
-                    fis = new BufferedInputStream(new FileInputStream(targetFile));
-                }
-
                 // set response header
                 response.setContentType(mimeType);
                 response.setStatus(HttpServletResponse.SC_OK);
+                if (fileSize <= Math.min(4 * 1024 * 1204, MemoryControl.available() / 100)) {
+                    // apply the compiled template and write it directly to the response, SSI includes are done on the way
+                    final CompiledTemplate template = CompiledTemplate.get(targetFile);
+                    if (resultPageKey instanceof String && resultPageEvent instanceof SearchEvent) {
+                        // keep a copy of the complete page including all includes for the result page cache
+                        final CapturingResponse capture = new CapturingResponse(response, ResultPageCache.maxBytes() / 4);
+                        writeTemplate(template, templatePatterns, request, capture);
+                        final byte[] page = capture.captured();
+                        // a page of an event with running feeders or missing items would be served incomplete for the whole lifetime
+                        if (page != null && response.getStatus() == HttpServletResponse.SC_OK && ((SearchEvent) resultPageEvent).isPageComplete()) {
+                            ResultPageCache.put((String) resultPageKey, mimeType, page);
+                        }
+                    } else {
+                        writeTemplate(template, templatePatterns, request, response);
+                    }
+                    return;
+                }
+
+                // very large files are not compiled but interpreted while they are read
+                final InputStream fis = new BufferedInputStream(new FileInputStream(targetFile));
                 ByteArrayOutputStream bas = new ByteArrayOutputStream(4096);
                 try {
                 	// apply templates
@@ -1181,6 +1216,112 @@ public class YaCyDefaultServlet extends HttpServlet  {
         return proplist + "," + path;
     }
     
+    /**
+     * A response which keeps a copy of everything written to its output stream, up to a size limit.
+     */
+    private static class CapturingResponse extends HttpServletResponseWrapper {
+
+        private final ByteArrayOutputStream copy;
+        private final long limit;
+        private ServletOutputStream out;
+        private boolean overflow;
+
+        private CapturingResponse(final HttpServletResponse response, final long limit) {
+            super(response);
+            this.copy = new ByteArrayOutputStream(8192);
+            this.limit = limit;
+            this.out = null;
+            this.overflow = false;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (this.out == null) {
+                final ServletOutputStream target = super.getOutputStream();
+                this.out = new ServletOutputStream() {
+                    @Override
+                    public void write(final int b) throws IOException {
+                        target.write(b);
+                        copy(new byte[]{(byte) b}, 0, 1);
+                    }
+                    @Override
+                    public void write(final byte[] b, final int off, final int len) throws IOException {
+                        target.write(b, off, len);
+                        copy(b, off, len);
+                    }
+                    @Override
+                    public void flush() throws IOException {
+                        target.flush();
+                    }
+                    @Override
+                    public void close() throws IOException {
+                        target.close();
+                    }
+                    @Override
+                    public boolean isReady() {
+                        return target.isReady();
+                    }
+                    @Override
+                    public void setWriteListener(final WriteListener writeListener) {
+                        target.setWriteListener(writeListener);
+                    }
+                };
+            }
+            return this.out;
+        }
+
+        private void copy(final byte[] b, final int off, final int len) {
+            if (this.overflow) return;
+            if (this.copy.size() + len > this.limit) {
+                this.overflow = true;
+                return;
+            }
+            this.copy.write(b, off, len);
+        }
+
+        /**
+         * @return the bytes written to the response or null if they exceeded the limit
+         */
+        private byte[] captured() {
+            return this.overflow ? null : this.copy.toByteArray();
+        }
+    }
+
+    /**
+     * write a compiled template to the response and execute the SSI includes at their position in the page
+     */
+    private void writeTemplate(final CompiledTemplate template, final servletProperties templatePatterns, final HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
+        if (template.hasUnresolvedSSI()) {
+            // the page must be scanned for SSI markers
+            final ByteArrayOutputStream bas = new ByteArrayOutputStream(4096);
+            template.write(bas, templatePatterns, null);
+            parseSSI(bas.toByteArray(), request, response);
+            return;
+        }
+        final OutputStream out = new BufferedOutputStream(response.getOutputStream(), 8192);
+        try {
+            template.write(out, templatePatterns, new CompiledTemplate.SSIHandler() {
+                @Override
+                public void include(final String path) throws IOException {
+                    final RequestDispatcher dispatcher = request.getRequestDispatcher(path);
+                    try {
+                        dispatcher.include(request, response);
+                    } catch (final IOException ex) {
+                        if (path.indexOf("yacysearch") < 0) ConcurrentLog.warn("FILEHANDLER", "YaCyDefaultServlet: SSI dispatcher problem - " + ex.getMessage() + ": " + path);
+                        // this is probably a time-out; it may occur during search requests; for search requests we consider that normal
+                    } catch (final ServletException ex) {
+                        throw new IOException(ex);
+                    }
+                }
+            });
+        } catch (final IOException e) {
+            if (e.getCause() instanceof ServletException) throw (ServletException) e.getCause();
+            throw e;
+        } finally {
+            out.close();
+        }
+    }
+
     /**
      * parse SSI line and include resource (<!--#include virtual="file.html" -->)
      */
@@ -31,10 +31,14 @@ import java.io.IOException;
 import java.lang.reflect.Array;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
@@ -98,6 +102,7 @@ public class ArrayStack implements BLOB {
     private final String         prefix;
     private final int            buffersize;
     private final boolean        trimall;
+    private final boolean        mapped;
 
     /** the thread pool for the keeperOf executor service */
     private final ExecutorService executor;
@@ -114,6 +119,30 @@ public class ArrayStack implements BLOB {
             final int buffersize,
             final boolean trimall,
             final boolean deleteonfail) throws IOException {
+        this(heapLocation, prefix, ordering, keylength, buffersize, trimall, deleteonfail, false);
+    }
+
+    /**
+     * open a BLOB array
+     * @param heapLocation
+     * @param prefix
+     * @param ordering
+     * @param keylength
+     * @param buffersize
+     * @param trimall
+     * @param deleteonfail
+     * @param mapped if true, all BLOB files which are not used for writing are read from memory mappings without locking
+     * @throws IOException
+     */
+    public ArrayStack(
+            final File heapLocation,
+            final String prefix,
+            final ByteOrder ordering,
+            final int keylength,
+            final int buffersize,
+            final boolean trimall,
+            final boolean deleteonfail,
+            final boolean mapped) throws IOException {
         this.keylength = keylength;
         this.prefix = prefix;
         this.ordering = ordering;
@@ -124,6 +153,7 @@ public class ArrayStack implements BLOB {
         this.repositoryAgeMax = Long.MAX_VALUE;
         this.repositorySizeMax = Long.MAX_VALUE;
         this.trimall = trimall;
+        this.mapped = mapped;
 
         // init the thread pool for the keeperOf executor service
         this.executor = new ThreadPoolExecutor(
@@ -206,7 +236,7 @@ public class ArrayStack implements BLOB {
                        if (time == maxtime && !trimall) {
                            oneBlob = new Heap(f, keylength, ordering, buffersize);
                        } else {
-                           oneBlob = new HeapModifier(f, keylength, ordering);
+                           oneBlob = new HeapModifier(f, keylength, ordering, mapped);
                            oneBlob.optimize(); // no writings here, can be used with minimum memory
                        }
                        sortedItems.put(Long.valueOf(time), new blobItem(d, f, oneBlob));
@@ -261,7 +291,7 @@ public class ArrayStack implements BLOB {
         if (full && this.buffersize > 0 && !this.trimall) {
             oneBlob = new Heap(location, this.keylength, this.ordering, this.buffersize);
         } else {
-            oneBlob = new HeapModifier(location, this.keylength, this.ordering);
+            oneBlob = new HeapModifier(location, this.keylength, this.ordering, this.mapped);
             oneBlob.optimize();
         }
         this.blobs.add(new blobItem(d, location, oneBlob));
@@ -345,6 +375,34 @@ public class ArrayStack implements BLOB {
         return new File[]{f0, f1};
     }
 
+    /**
+     * unmount the smallest BLOB files for a multi-way merge
+     * @param count the maximum number of files
+     * @param maxResultSize the maximum sum of the file sizes
+     * @return the unmounted files or null if there are not at least two files which fit into maxResultSize
+     */
+    public synchronized File[] unmountSmallest(final int count, final long maxResultSize) {
+        if (this.blobs.size() < 2 || count < 2) return null;
+        final List<File> files = new ArrayList<File>(this.blobs.size());
+        for (final blobItem b: this.blobs) files.add(b.location);
+        Collections.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(final File f0, final File f1) {
+                return Long.compare(f0.length(), f1.length());
+            }
+        });
+        final List<File> selected = new ArrayList<File>(count);
+        long size = 0;
+        for (final File f: files) {
+            if (selected.size() >= count || size + f.length() > maxResultSize) break;
+            selected.add(f);
+            size += f.length();
+        }
+        if (selected.size() < 2) return null;
+        for (final File f: selected) unmountBLOB(f, false);
+        return selected.toArray(new File[selected.size()]);
+    }
+
     private synchronized File smallestBLOB(final File excluding, final long maxsize) {
         if (this.blobs.isEmpty()) return null;
         File bestFile = null;
@@ -728,6 +786,55 @@ public class ArrayStack implements BLOB {
         return -1;
     }
 
+    /**
+     * get the first bytes of all BLOBs of a key in the array
+     * @param key
+     * @param n the maximum number of bytes of each BLOB
+     * @return
+     * @throws IOException
+     */
+    public Iterable<byte[]> headAll(final byte[] key, final int n) throws IOException {
+        return new BlobHeads(key, n);
+    }
+
+    private class BlobHeads extends LookAheadIterator<byte[]> {
+
+        private final Iterator<blobItem> bii;
+        private final byte[] key;
+        private final int n;
+
+        public BlobHeads(final byte[] key, final int n) {
+            this.bii = ArrayStack.this.blobs.iterator();
+            this.key = key;
+            this.n = n;
+        }
+
+        @Override
+        protected byte[] next0() {
+            while (this.bii.hasNext()) {
+                final BLOB b = this.bii.next().blob;
+                if (b == null) continue;
+                try {
+                    final byte[] h;
+                    if (b instanceof HeapReader) {
+                        h = ((HeapReader) b).head(this.key, this.n);
+                    } else {
+                        final byte[] v = b.get(this.key);
+                        h = v == null || v.length <= this.n ? v : Arrays.copyOf(v, this.n);
+                    }
+                    if (h != null) return h;
+                } catch (final IOException e) {
+                    ConcurrentLog.severe("ArrayStack", "BlobHeads - IOException: " + e.getMessage(), e);
+                    return null;
+                } catch (final SpaceExceededException e) {
+                    ConcurrentLog.severe("ArrayStack", "BlobHeads - RowSpaceExceededException: " + e.getMessage(), e);
+                    break;
+                }
+            }
+            return null;
+        }
+    }
+
     /**
      * get all BLOBs in the array.
      * this is useful when it is not clear if an entry is unique in all BLOBs in this array.
@@ -956,6 +1063,75 @@ public class ArrayStack implements BLOB {
         return resultFile;
     }
 
+    /**
+     * merge any number of BLOB files in one pass and mount the result.
+     * Compared to a cascade of pairwise merges every reference is read and written only once.
+     * @param files the files to merge; they must be unmounted
+     * @param factory
+     * @param newFile
+     * @param writeBuffer
+     * @return the target file where the given files are merged in
+     */
+    public File mergeMount(final File[] files,
+            final ReferenceFactory<? extends Reference> factory,
+            final File newFile, final int writeBuffer) {
+        if (files.length == 1) return mergeMount(files[0], null, factory, newFile, writeBuffer);
+        if (files.length == 2) return mergeMount(files[0], files[1], factory, newFile, writeBuffer);
+        ConcurrentLog.info("BLOBArray", "merging " + files.length + " files into " + newFile.getName());
+        final File resultFile = mergeWorker(factory, this.keylength, this.ordering, files, newFile, writeBuffer);
+        if (resultFile == null) {
+            ConcurrentLog.warn("BLOBArray", "merge of " + files.length + " files returned null. newFile = " + newFile);
+            return null;
+        }
+        try {
+            mountBLOB(resultFile, false);
+        } catch (final IOException e) {
+            ConcurrentLog.warn("BLOBArray", "merge of " + files.length + " files successfull, but read failed. resultFile = " + resultFile);
+            return null;
+        }
+        ConcurrentLog.info("BLOBArray", "merged " + files.length + " files into " + resultFile);
+        return resultFile;
+    }
+
+    private static <ReferenceType extends Reference> File mergeWorker(
+            final ReferenceFactory<ReferenceType> factory,
+            final int keylength, final ByteOrder order, final File[] files, final File newFile, final int writeBuffer) {
+        final List<ReferenceIterator<ReferenceType>> iterators = new ArrayList<ReferenceIterator<ReferenceType>>(files.length);
+        try {
+            for (final File f: files) iterators.add(new ReferenceIterator<ReferenceType>(f, factory));
+            boolean empty = true;
+            for (final ReferenceIterator<ReferenceType> i: iterators) if (i.hasNext()) {empty = false; break;}
+            if (empty) {
+                for (final File f: files) HeapWriter.delete(f);
+                return null;
+            }
+            final File tmpFile = new File(newFile.getParentFile(), newFile.getName() + ".prt");
+            try {
+                final HeapWriter writer = new HeapWriter(tmpFile, newFile, keylength, order, writeBuffer);
+                merge(iterators, order, writer);
+                writer.close(true);
+            } catch (final IOException e) {
+                ConcurrentLog.severe("ArrayStack", "cannot writing or close writing merge, newFile = " + newFile.toString() + ", tmpFile = " + tmpFile.toString() + ": " + e.getMessage(), e);
+                HeapWriter.delete(tmpFile);
+                HeapWriter.delete(newFile);
+                return null;
+            } catch (final SpaceExceededException e) {
+                ConcurrentLog.severe("ArrayStack", "cannot merge because of memory failure: " + e.getMessage(), e);
+                HeapWriter.delete(tmpFile);
+                HeapWriter.delete(newFile);
+                return null;
+            }
+            // we don't need the old files any more
+            for (final File f: files) HeapWriter.delete(f);
+            return newFile;
+        } catch (final IOException e) {
+            ConcurrentLog.severe("ArrayStack", "cannot merge because input files cannot be read, file " + (iterators.size() < files.length ? files[iterators.size()].toString() : "") + ": " + e.getMessage(), e);
+            return null;
+        } finally {
+            for (final ReferenceIterator<ReferenceType> i: iterators) i.close();
+        }
+    }
+
     private static <ReferenceType extends Reference> File mergeWorker(
                     final ReferenceFactory<ReferenceType> factory,
                     final int keylength, final ByteOrder order, final File f1, final File f2, final File newFile, final int writeBuffer) {
@@ -1073,7 +1249,7 @@ public class ArrayStack implements BLOB {
             if (e < 0) {
             	s = c1.shrinkReferences();
             	if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-                writer.add(c1.getTermHash(), c1.exportCollection());
+                writer.add(c1.getTermHash(), c1.exportContainer());
                 if (i1.hasNext()) {
                     c1lh = c1.getTermHash();
                     c1 = i1.next();
@@ -1086,7 +1262,7 @@ public class ArrayStack implements BLOB {
             if (e > 0) {
                 s = c2.shrinkReferences();
                 if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c2.getTermHash()) + " by " + s + " to " + c2.size() + " entries");
-                writer.add(c2.getTermHash(), c2.exportCollection());
+                writer.add(c2.getTermHash(), c2.exportContainer());
                 if (i2.hasNext()) {
                     c2lh = c2.getTermHash();
                     c2 = i2.next();
@@ -1101,7 +1277,7 @@ public class ArrayStack implements BLOB {
             c1 = c1.merge(c2);
             s = c1.shrinkReferences();
             if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-            writer.add(c1.getTermHash(), c1.exportCollection());
+            writer.add(c1.getTermHash(), c1.exportContainer());
             c1lh = c1.getTermHash();
             c2lh = c2.getTermHash();
             if (i1.hasNext() && i2.hasNext()) {
@@ -1131,7 +1307,7 @@ public class ArrayStack implements BLOB {
             //System.out.println("FLUSH REMAINING 1: " + c1.getWordHash());
             s = c1.shrinkReferences();
             if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-            writer.add(c1.getTermHash(), c1.exportCollection());
+            writer.add(c1.getTermHash(), c1.exportContainer());
             if (i1.hasNext()) {
                 c1lh = c1.getTermHash();
                 c1 = i1.next();
@@ -1144,7 +1320,7 @@ public class ArrayStack implements BLOB {
             //System.out.println("FLUSH REMAINING 2: " + c2.getWordHash());
             s = c2.shrinkReferences();
             if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c2.getTermHash()) + " by " + s + " to " + c2.size() + " entries");
-            writer.add(c2.getTermHash(), c2.exportCollection());
+            writer.add(c2.getTermHash(), c2.exportContainer());
             if (i2.hasNext()) {
                 c2lh = c2.getTermHash();
                 c2 = i2.next();
@@ -1156,6 +1332,58 @@ public class ArrayStack implements BLOB {
         // finished with writing
     }
 
+    /**
+     * the current container of one input of a multi-way merge
+     */
+    private static class MergeHead<ReferenceType extends Reference> {
+        private ReferenceContainer<ReferenceType> container;
+        private final CloneableIterator<ReferenceContainer<ReferenceType>> i;
+        private MergeHead(final CloneableIterator<ReferenceContainer<ReferenceType>> i) {
+            this.i = i;
+            this.container = i.next();
+        }
+        private boolean advance(final ByteOrder ordering) {
+            if (!this.i.hasNext()) return false;
+            final byte[] lh = this.container.getTermHash();
+            this.container = this.i.next();
+            assert ordering.compare(this.container.getTermHash(), lh) > 0;
+            return true;
+        }
+    }
+
+    private static <ReferenceType extends Reference> void merge(
+            final List<? extends CloneableIterator<ReferenceContainer<ReferenceType>>> iterators,
+            final ByteOrder ordering, final HeapWriter writer) throws IOException, SpaceExceededException {
+        // the inputs are ordered by the term hash of their current container
+        final PriorityQueue<MergeHead<ReferenceType>> heads = new PriorityQueue<MergeHead<ReferenceType>>(iterators.size(), new Comparator<MergeHead<ReferenceType>>() {
+            @Override
+            public int compare(final MergeHead<ReferenceType> h0, final MergeHead<ReferenceType> h1) {
+                return ordering.compare(h0.container.getTermHash(), h1.container.getTermHash());
+            }
+        });
+        for (final CloneableIterator<ReferenceContainer<ReferenceType>> i: iterators) {
+            if (i.hasNext()) heads.add(new MergeHead<ReferenceType>(i));
+        }
+        MergeHead<ReferenceType> head;
+        ReferenceContainer<ReferenceType> c;
+        int s;
+        while (!heads.isEmpty()) {
+            head = heads.poll();
+            c = head.container;
+            if (head.advance(ordering)) heads.add(head);
+            // merge the containers of the same term from all other inputs
+            while (!heads.isEmpty() && ordering.compare(heads.peek().container.getTermHash(), c.getTermHash()) == 0) {
+                head = heads.poll();
+                c = c.merge(head.container);
+                if (head.advance(ordering)) heads.add(head);
+            }
+            s = c.shrinkReferences();
+            if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c.getTermHash()) + " by " + s + " to " + c.size() + " entries");
+            writer.add(c.getTermHash(), c.exportContainer());
+        }
+        // finished with writing
+    }
+
     private static <ReferenceType extends Reference> void rewrite(
             final CloneableIterator<ReferenceContainer<ReferenceType>> i,
             final ByteOrder ordering, final HeapWriter writer) throws IOException, SpaceExceededException {
@@ -1168,7 +1396,7 @@ public class ArrayStack implements BLOB {
             assert c != null;
             s = c.shrinkReferences();
             if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c.getTermHash()) + " by " + s + " to " + c.size() + " entries");
-            writer.add(c.getTermHash(), c.exportCollection());
+            writer.add(c.getTermHash(), c.exportContainer());
             if (i.hasNext()) {
                 clh = c.getTermHash();
                 c = i.next();
@@ -28,6 +28,7 @@ package net.yacy.kelondro.blob;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -273,6 +274,28 @@ public final class Heap extends HeapModifier implements BLOB {
             return super.length(key);
         }
     }
+
+    /**
+     * read the first bytes of a BLOB
+     * @param key
+     * @param n the maximum number of bytes
+     * @return the first n bytes of the BLOB, less if the BLOB is smaller, or null if the BLOB does not exist
+     * @throws IOException
+     */
+    @Override
+    public byte[] head(byte[] key, final int n) throws IOException {
+        key = normalizeKey(key);
+
+        synchronized (this) {
+            // check the buffer
+            if (this.buffer != null) {
+                byte[] blob = this.buffer.get(key);
+                if (blob != null) return blob.length <= n ? blob : Arrays.copyOf(blob, n);
+            }
+
+            return super.head(key, n);
+        }
+    }
     
     /**
      * clears the content of the database
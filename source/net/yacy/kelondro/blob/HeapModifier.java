@@ -58,12 +58,25 @@ public class HeapModifier extends HeapReader implements BLOB {
         super(heapFile, keylength, ordering);
     }
 
+    /**
+     * create a heap file with an optional memory-mapped read access
+     * @param heapFile
+     * @param keylength
+     * @param ordering
+     * @param mapped if true, read operations are done on a memory mapping of the heap file without locking
+     * @throws IOException
+     */
+    public HeapModifier(final File heapFile, final int keylength, final ByteOrder ordering, final boolean mapped) throws IOException {
+        super(heapFile, keylength, ordering, mapped);
+    }
+
     /**
      * clears the content of the database
      * @throws IOException
      */
     @Override
     public synchronized void clear() throws IOException {
+        unmap();
         this.index.clear();
         this.free.clear();
         this.file.close();
@@ -71,6 +84,7 @@ public class HeapModifier extends HeapReader implements BLOB {
         FileUtils.deletedelete(this.heapFile);
         super.deleteFingerprint();
         this.file = new CachedFileWriter(this.heapFile);
+        remap();
     }
 
     /**
@@ -78,6 +92,7 @@ public class HeapModifier extends HeapReader implements BLOB {
      */
     @Override
     public synchronized void close(boolean writeIDX) {
+        unmap(); // the file may be shrinked
         shrinkWithGapsAtEnd();
         super.close(writeIDX);
     }
@@ -227,17 +242,25 @@ public class HeapModifier extends HeapReader implements BLOB {
     protected void shrinkWithGapsAtEnd() {
         // find gaps at the end of the file and shrink the file by these gaps
     	if (this.free == null) return;
+        boolean unmapped = false;
         try {
             while (!this.free.isEmpty()) {
                 Long seek = this.free.lastKey();
                 int size = this.free.get(seek).intValue();
                 if (seek.longValue() + size + 4 != this.file.length()) return;
+                // the mapping must not cover the truncated end of the file
+                if (!unmapped && this.mapped != null) {
+                    unmap();
+                    unmapped = true;
+                }
                 // shrink the file
                 this.file.setLength(seek.longValue());
                 this.free.remove(seek);
             }
         } catch (final IOException e) {
             ConcurrentLog.logException(e);
+        } finally {
+            if (unmapped) remap();
         }
     }
 
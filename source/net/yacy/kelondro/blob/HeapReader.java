@@ -35,6 +35,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
@@ -48,6 +49,7 @@ import net.yacy.cora.util.LookAheadIterator;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.index.RowHandleMap;
 import net.yacy.kelondro.io.CachedFileWriter;
+import net.yacy.kelondro.io.MappedFileReader;
 import net.yacy.kelondro.io.Writer;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.MemoryControl;
@@ -69,6 +71,9 @@ public class HeapReader {
     protected Writer             file;       // a random access to the file
     protected HandleMap          index;      // key/seek relation for used records
     protected Gap                free;       // set of {seek, size} pairs denoting space and position of free records
+    protected volatile MappedFileReader mapped; // a memory-mapped read view on the file; if not null, reads are done without the index monitor
+    private   final boolean      mapRequested; // true if the file shall be mapped whenever it has content
+    private   final ReentrantReadWriteLock mapLock = new ReentrantReadWriteLock(); // reads on the mapping hold the read lock, unmap waits for them
     private   File               fingerprintFileIdx, fingerprintFileGap; // files with dumped indexes. Will be deleted if file is written
     private   Date               closeDate;  // records a time when the file was closed; used for debugging
 
@@ -76,9 +81,30 @@ public class HeapReader {
             final File heapFile,
             final int keylength,
             final ByteOrder ordering) throws IOException {
+        this(heapFile, keylength, ordering, false);
+    }
+
+    /**
+     * open a heap file for reading
+     * @param heapFile the heap file
+     * @param keylength the length of the primary key
+     * @param ordering the ordering on keys
+     * @param mapped if true, the heap file is mapped into memory and get(), length() and containsKey()
+     *   are served with positional reads from the mapping without holding the index monitor. This should
+     *   only be used for heap files which do not grow any more, like the merged BLOB files of an ArrayStack.
+     *   The reads hold a shared lock which unmap() acquires exclusively, so the file is never truncated
+     *   below a mapped region which is read.
+     * @throws IOException
+     */
+    public HeapReader(
+            final File heapFile,
+            final int keylength,
+            final ByteOrder ordering,
+            final boolean mapped) throws IOException {
         this.ordering = ordering;
         this.heapFile = heapFile;
         this.keylength = keylength;
+        this.mapRequested = mapped;
         this.index = null; // will be created as result of initialization process
         this.free = null; // will be initialized later depending on existing idx/gap file
         this.heapFile.getParentFile().mkdirs();
@@ -125,6 +151,49 @@ public class HeapReader {
         // of file descriptors is too low and the number of files is too high
         this.file.close();
         // the file will be opened again automatically when the next access to it comes.
+
+        this.mapped = null;
+        remap();
+    }
+
+    /**
+     * @return true if reads are served from a memory mapping of the heap file
+     */
+    public boolean isMapped() {
+        return this.mapped != null;
+    }
+
+    /**
+     * drop the memory mapping of the heap file; all following reads will be done with the
+     * synchronized file pointer access. This must be called before the file is shrinked or deleted.
+     * The method waits until all reads on the mapping are finished: an access to a mapped region
+     * behind the end of a truncated file would crash the JVM with a SIGBUS.
+     */
+    protected void unmap() {
+        this.mapLock.writeLock().lock();
+        try {
+            this.mapped = null;
+        } finally {
+            this.mapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * map the heap file again with its current length, if the mapping was requested when the heap was opened;
+     * this must be called after the length of the file was changed
+     */
+    protected void remap() {
+        if (!this.mapRequested) return;
+        this.mapLock.writeLock().lock();
+        try {
+            this.mapped = null;
+            if (this.heapFile.length() > 0) this.mapped = new MappedFileReader(this.heapFile);
+        } catch (final IOException e) {
+            // i.e. the address space is exhausted; we still can read with the file pointer
+            log.warn("cannot map " + this.heapFile.getName() + " into memory, using synchronized reads: " + e.getMessage());
+        } finally {
+            this.mapLock.writeLock().unlock();
+        }
     }
 
     public long mem() {
@@ -388,6 +457,10 @@ public class HeapReader {
         }
         key = normalizeKey(key);
 
+        // the index has its own synchronization; the monitor is only needed to be consistent with file operations
+        final HandleMap idx = this.index;
+        if (this.mapped != null && idx != null) return idx.get(key) >= 0;
+
         synchronized (this.index) {
             // check if the file index contains the key
             return this.index.get(key) >= 0;
@@ -489,6 +562,22 @@ public class HeapReader {
         }
         key = normalizeKey(key);
 
+        final HandleMap idx = this.index;
+        if (this.mapped != null && idx != null) {
+            this.mapLock.readLock().lock();
+            try {
+                final MappedFileReader m = this.mapped;
+                if (m != null) {
+                    final long pos = idx.get(key);
+                    if (pos < 0) return null;
+                    if (m.covers(pos, 4 + this.keylength)) return getMapped(m, key, pos);
+                    // the record is not inside of the mapping, read it with the file pointer
+                }
+            } finally {
+                this.mapLock.readLock().unlock();
+            }
+        }
+
         synchronized (this.index) {
             // check if the index contains the key
             final long pos = this.index.get(key);
@@ -549,6 +638,40 @@ public class HeapReader {
         }
     }
 
+    /**
+     * read a blob from the memory mapping of the heap file without the index monitor; the caller holds the read lock of the mapping
+     * @param m the mapping
+     * @param key a normalized key
+     * @param pos the seek position of the record as taken from the index
+     * @return the blob or null if the record could not be verified
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    private byte[] getMapped(final MappedFileReader m, final byte[] key, final long pos) throws IOException, SpaceExceededException {
+        final int len = m.readInt(pos) - this.keylength;
+        if (len < 0 || !m.covers(pos + 4 + this.keylength, len)) {
+            // the record may have been deleted concurrently; this is handled like a missing entry
+            return null;
+        }
+        long memr = len + this.keylength + 64;
+        if (MemoryControl.available() < memr) {
+            if (!MemoryControl.request(memr, true)) throw new SpaceExceededException(memr, "HeapReader.getMapped()/check");
+        }
+
+        final byte[] keyf = new byte[this.keylength];
+        m.readFully(pos + 4, keyf, 0, keyf.length);
+        if (!this.ordering.equal(key, keyf)) return null; // the record may have been deleted concurrently
+
+        byte[] blob;
+        try {
+            blob = new byte[len];
+        } catch (final OutOfMemoryError e) {
+            throw new SpaceExceededException(len, "HeapReader.getMapped()/blob");
+        }
+        m.readFully(pos + 4 + this.keylength, blob, 0, len);
+        return blob;
+    }
+
     public byte[] get(Object key) {
         if (!(key instanceof byte[])) return null;
         try {
@@ -586,6 +709,21 @@ public class HeapReader {
         }
         key = normalizeKey(key);
 
+        final HandleMap idx = this.index;
+        if (this.mapped != null && idx != null) {
+            this.mapLock.readLock().lock();
+            try {
+                final MappedFileReader m = this.mapped;
+                if (m != null) {
+                    final long pos = idx.get(key);
+                    if (pos < 0) return -1;
+                    if (m.covers(pos, 4)) return m.readInt(pos) - this.keylength;
+                }
+            } finally {
+                this.mapLock.readLock().unlock();
+            }
+        }
+
         synchronized (this.index) {
             // check if the index contains the key
             final long pos = this.index.get(key);
@@ -597,11 +735,65 @@ public class HeapReader {
         }
     }
 
+    /**
+     * read the first bytes of a BLOB. This is much cheaper than get() if only the header of a large BLOB is needed.
+     * @param key
+     * @param n the maximum number of bytes
+     * @return the first n bytes of the BLOB, less if the BLOB is smaller, or null if the BLOB does not exist
+     * @throws IOException
+     */
+    public byte[] head(byte[] key, final int n) throws IOException {
+        assert (this.index != null) : "index == null; closeDate=" + this.closeDate + ", now=" + new Date();
+        if (this.index == null) {
+            log.severe("this.index == null in head(); closeDate=" + this.closeDate + ", now=" + new Date() + this.heapFile == null ? "" : (" file = " + this.heapFile.toString()));
+            return null;
+        }
+        key = normalizeKey(key);
+
+        final HandleMap idx = this.index;
+        if (this.mapped != null && idx != null) {
+            this.mapLock.readLock().lock();
+            try {
+                final MappedFileReader m = this.mapped;
+                if (m != null) {
+                    final long pos = idx.get(key);
+                    if (pos < 0) return null;
+                    if (m.covers(pos, 4)) {
+                        final int len = Math.min(n, m.readInt(pos) - this.keylength);
+                        if (len >= 0 && m.covers(pos + 4 + this.keylength, len)) {
+                            final byte[] b = new byte[len];
+                            m.readFully(pos + 4 + this.keylength, b, 0, len);
+                            return b;
+                        }
+                    }
+                }
+            } finally {
+                this.mapLock.readLock().unlock();
+            }
+        }
+
+        synchronized (this.index) {
+            // check if the index contains the key
+            final long pos = this.index.get(key);
+            if (pos < 0) return null;
+
+            // access the file and read the beginning of the container
+            this.file.seek(pos);
+            final int len = Math.min(n, this.file.readInt() - this.keylength);
+            if (len < 0) return null;
+            final byte[] b = new byte[len];
+            this.file.seek(pos + 4 + this.keylength);
+            this.file.readFully(b, 0, len);
+            return b;
+        }
+    }
+
     /**
      * close the BLOB table
      */
     public void close(boolean writeIDX) {
         if (this.index == null) return;
+        unmap();
         synchronized (this.index) {
             try {
             if (this.file != null)
@@ -26,13 +26,13 @@
 
 package net.yacy.kelondro.data.word;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Locale;
 
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.order.Digest;
-import net.yacy.cora.storage.ARC;
-import net.yacy.cora.storage.ConcurrentARC;
 import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
@@ -53,16 +53,8 @@ public class Word {
     public static final Base64Order commonHashOrder  = Base64Order.enhancedCoder;
 
     private static final int hashCacheSize = Math.max(20000, Math.min(200000, (int) (MemoryControl.available() / 40000L)));
-    private static ARC<String, byte[]> hashCache = null;
-    static {
-        try {
-            hashCache = new ConcurrentARC<String, byte[]>(hashCacheSize, Math.min(32, 2 * Runtime.getRuntime().availableProcessors()));
-            ConcurrentLog.info("Word", "hashCache.size = " + hashCacheSize);
-        } catch (final OutOfMemoryError e) {
-            hashCache = new ConcurrentARC<String, byte[]>(1000, Math.min(8, 1 + Runtime.getRuntime().availableProcessors()));
-            ConcurrentLog.info("Word", "hashCache.size = " + 1000);
-        }
-    }
+    private static WordHashCache hashCache = new WordHashCache(hashCacheSize, false); // replaced by initCache with the configured size
+    private static File hashCacheFile = null;
 
     // object carries statistics for words and sentences
     public  int      count;       // number of occurrences
@@ -79,6 +71,61 @@ public class Word {
         this.flags = null;
     }
 
+    /**
+     * replace the word hash cache
+     * @param entries the maximum number of cached words; if 0 the size is computed from the available memory
+     * @param offHeap if true, the cache is allocated outside of the java heap
+     * @param file if not null, the cache is loaded from this file and is written to the file in closeCache()
+     */
+    public static void initCache(final int entries, final boolean offHeap, final File file) {
+        final int size = entries > 0 ? entries : (int) Math.max(20000L, Math.min(WordHashCache.MAX_ENTRIES / 16, MemoryControl.available() / 2000L));
+        final WordHashCache cache = new WordHashCache(size, offHeap);
+        if (file != null && file.exists()) try {
+            final long start = System.currentTimeMillis();
+            final int count = cache.load(file);
+            ConcurrentLog.info("Word", "loaded " + count + " word hashes from " + file + " in " + (System.currentTimeMillis() - start) + " milliseconds");
+        } catch (final IOException e) {
+            ConcurrentLog.warn("Word", "cannot load the word hash cache: " + e.getMessage());
+        }
+        hashCache = cache;
+        hashCacheFile = file;
+        ConcurrentLog.info("Word", "hashCache.size = " + cache.capacity() + (cache.isOffHeap() ? ", off-heap" : ""));
+    }
+
+    /**
+     * add the hashes of the given words to the cache until the cache holds the given number of words
+     * @param words words from a dictionary
+     * @param max the number of cached words where the seeding stops
+     * @return the number of words which were looked up
+     */
+    public static int seedCache(final Iterable<? extends CharSequence> words, final int max) {
+        final int size = hashCache.size();
+        int count = 0;
+        for (final CharSequence word: words) {
+            if (size + count >= max) break;
+            word2hash(word.toString());
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * write the word hash cache to the file which was given in initCache
+     */
+    public static void closeCache() {
+        if (hashCacheFile == null) return;
+        try {
+            final int count = hashCache.save(hashCacheFile);
+            ConcurrentLog.info("Word", "saved " + count + " word hashes to " + hashCacheFile);
+        } catch (final IOException e) {
+            ConcurrentLog.warn("Word", "cannot save the word hash cache: " + e.getMessage());
+        }
+    }
+
+    public static WordHashCache cache() {
+        return hashCache;
+    }
+
     public static void clearCache() {
         hashCache.clear();
     }
@@ -112,9 +159,11 @@ public class Word {
     // create a word hash
     public static final byte[] word2hash(final String word) {
     	final String wordlc = word.toLowerCase(Locale.ENGLISH);
-    	byte[] h = hashCache.get(wordlc);
+    	final WordHashCache cache = hashCache;
+    	byte[] h = cache.get(wordlc);
         if (h != null) return h;
         // calculate the hash
+        final long start = System.nanoTime();
     	h = commonHashOrder.encodeSubstring(Digest.encodeMD5Raw(wordlc), commonHashLength);
     	while (h[0] == highByte && h[1] == highByte && h[2] == highByte && h[3] == highByte && h[4] == highByte) {
     	    // ensure that word hashes do not start with hash '_____' which is a key for an extra hash range for private usage on the local peer
@@ -123,12 +172,8 @@ public class Word {
     	    h[commonHashLength - 1] = lowByte;
     	}
         assert h[2] != '@';
-        if (MemoryControl.shortStatus()) {
-            hashCache.clear();
-        } else {
-            //hashCache.putIfAbsent(wordlc, h); // prevent expensive MD5 computation and encoding
-            hashCache.insertIfAbsent(wordlc, h); // prevent expensive MD5 computation and encoding
-        }
+        cache.hashNanos.add(System.nanoTime() - start);
+        cache.put(wordlc, h); // prevent expensive MD5 computation and encoding; the cache has a fixed size and evicts old entries
         return h;
     }
 
@@ -0,0 +1,330 @@
+// WordHashCache.java
+// ------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.data.word;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.storage.ARC;
+import net.yacy.cora.storage.ConcurrentARC;
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * A cache for the mapping of lower case words to word hashes in one fixed size byte buffer.
+ * The buffer is divided into buckets of {@link #BUCKET_SLOTS} slots; a word is stored in the bucket
+ * which is selected by the hash code of the word. A slot holds the UTF-8 encoding of the word
+ * (up to {@link #MAX_WORD_LENGTH} bytes) and the word hash.
+ * When a bucket is full, a slot which was not read since the last insert into this bucket is replaced
+ * (second chance), so the cache never grows and never has to be cleared if the memory is short.
+ * An entry needs {@link #SLOT_SIZE} bytes, the buffer may be allocated outside of the java heap.
+ * Longer words are kept in a small ARC on the java heap with a fixed share of the capacity;
+ * they are not written by {@link #save(File)}.
+ */
+public final class WordHashCache {
+
+    private static final ConcurrentLog log = new ConcurrentLog("WordHashCache");
+
+    public static final int SLOT_SIZE = 32;
+    public static final int MAX_WORD_LENGTH = SLOT_SIZE - Word.commonHashLength - 1;
+    public static final int BUCKET_SLOTS = 8;
+    public static final int MAX_ENTRIES = 1 << 25; // the buffer must be smaller than 2GB
+    public static final int LONG_WORDS_SHARE = 16; // the capacity of the cache for long words is 1/16 of the capacity of the buffer
+    public static final int LONG_WORDS_MAX = 65536; // the maximum number of long words, about 100 bytes each
+
+    private static final int BUCKET_SIZE = SLOT_SIZE * BUCKET_SLOTS;
+    private static final int LOCK_STRIPES = 256;
+    private static final byte REFERENCED = (byte) 0x80;
+    private static final byte LENGTH_MASK = 0x1f;
+    private static final int FILE_MAGIC = 0x59574831; // 'YWH1'
+
+    private final ByteBuffer table;
+    private final int bucketMask;
+    private final boolean offHeap;
+    private final Object[] locks;
+    private final ARC<String, byte[]> longWords; // the words which do not fit into a slot
+
+    // statistics
+    public final LongAdder hit = new LongAdder();
+    public final LongAdder miss = new LongAdder();
+    public final LongAdder insert = new LongAdder();
+    public final LongAdder evict = new LongAdder();
+    public final LongAdder hashNanos = new LongAdder(); // time to compute the hashes of the misses
+    public final LongAdder documents = new LongAdder();
+    public final LongAdder documentNanos = new LongAdder(); // time to get the hashes of the words of the documents
+
+    /**
+     * create an empty cache
+     * @param entries the maximum number of cached words; this is rounded up to a power of two
+     * @param offHeap if true, the buffer is allocated outside of the java heap
+     */
+    public WordHashCache(final int entries, final boolean offHeap) {
+        final int n = Math.max(1, Math.min(MAX_ENTRIES, entries) / BUCKET_SLOTS);
+        final int buckets = n == 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+        ByteBuffer b = null;
+        if (offHeap) try {
+            b = ByteBuffer.allocateDirect(buckets * BUCKET_SIZE);
+        } catch (final OutOfMemoryError e) {
+            // the direct memory of the jvm is too small; see -XX:MaxDirectMemorySize
+            log.warn("cannot allocate " + (buckets * BUCKET_SIZE) + " bytes outside of the heap, using heap memory: " + e.getMessage());
+        }
+        this.offHeap = b != null;
+        this.table = b == null ? ByteBuffer.allocate(buckets * BUCKET_SIZE) : b;
+        this.bucketMask = buckets - 1;
+        this.locks = new Object[Math.min(LOCK_STRIPES, buckets)];
+        for (int i = 0; i < this.locks.length; i++) this.locks[i] = new Object();
+        this.longWords = new ConcurrentARC<String, byte[]>(Math.max(64, Math.min(LONG_WORDS_MAX, buckets * BUCKET_SLOTS / LONG_WORDS_SHARE)), Math.min(32, 2 * Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @return the maximum number of entries in the buffer, without the long words
+     */
+    public int capacity() {
+        return (this.bucketMask + 1) * BUCKET_SLOTS;
+    }
+
+    /**
+     * @return the number of bytes of the buffer
+     */
+    public long mem() {
+        return this.table.capacity();
+    }
+
+    public boolean isOffHeap() {
+        return this.offHeap;
+    }
+
+    private static int bucket(final String wordlc, final int mask) {
+        int h = wordlc.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h & mask;
+    }
+
+    private static boolean cacheable(final byte[] w) {
+        return w.length > 0 && w.length <= MAX_WORD_LENGTH;
+    }
+
+    private boolean equalWord(final int slot, final byte[] w) {
+        if ((this.table.get(slot) & LENGTH_MASK) != w.length) return false;
+        for (int i = 0; i < w.length; i++) {
+            if (this.table.get(slot + 1 + i) != w[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * get the hash of a word
+     * @param wordlc a word in lower case
+     * @return a copy of the cached hash or null if the word is not cached
+     */
+    public byte[] get(final String wordlc) {
+        final byte[] w = UTF8.getBytes(wordlc);
+        if (!cacheable(w)) {
+            final byte[] h = w.length == 0 ? null : this.longWords.get(wordlc);
+            if (h == null) {
+                this.miss.increment();
+                return null;
+            }
+            this.hit.increment();
+            return h.clone();
+        }
+        final int bucket = bucket(wordlc, this.bucketMask);
+        final int offset = bucket * BUCKET_SIZE;
+        synchronized (this.locks[bucket & (this.locks.length - 1)]) {
+            for (int slot = offset; slot < offset + BUCKET_SIZE; slot += SLOT_SIZE) {
+                final byte flags = this.table.get(slot);
+                if (flags == 0) break; // slots are filled from the start of the bucket
+                if (!equalWord(slot, w)) continue;
+                this.table.put(slot, (byte) (flags | REFERENCED));
+                final byte[] h = new byte[Word.commonHashLength];
+                for (int i = 0; i < h.length; i++) h[i] = this.table.get(slot + 1 + MAX_WORD_LENGTH + i);
+                this.hit.increment();
+                return h;
+            }
+        }
+        this.miss.increment();
+        return null;
+    }
+
+    /**
+     * store the hash of a word if the word is not already cached.
+     * If the bucket of the word is full, a slot which was not read recently is replaced.
+     * @param wordlc a word in lower case
+     * @param h the hash of the word
+     */
+    public void put(final String wordlc, final byte[] h) {
+        final byte[] w = UTF8.getBytes(wordlc);
+        if (!cacheable(w)) {
+            if (w.length == 0 || this.longWords.containsKey(wordlc)) return;
+            this.longWords.insert(wordlc, h.clone());
+            this.insert.increment();
+            return;
+        }
+        final int bucket = bucket(wordlc, this.bucketMask);
+        final int offset = bucket * BUCKET_SIZE;
+        synchronized (this.locks[bucket & (this.locks.length - 1)]) {
+            int target = -1;
+            for (int slot = offset; slot < offset + BUCKET_SIZE; slot += SLOT_SIZE) {
+                final byte flags = this.table.get(slot);
+                if (flags == 0) {
+                    target = slot;
+                    break;
+                }
+                if (equalWord(slot, w)) return;
+            }
+            if (target < 0) {
+                // second chance: take the first slot which was not read since the last eviction in this bucket
+                for (int slot = offset; slot < offset + BUCKET_SIZE; slot += SLOT_SIZE) {
+                    final byte flags = this.table.get(slot);
+                    if ((flags & REFERENCED) == 0) {
+                        if (target < 0) target = slot;
+                    } else {
+                        this.table.put(slot, (byte) (flags & LENGTH_MASK));
+                    }
+                }
+                if (target < 0) target = offset + (((wordlc.hashCode() >>> 8) & (BUCKET_SLOTS - 1)) * SLOT_SIZE);
+                this.evict.increment();
+            }
+            this.table.put(target, (byte) w.length);
+            for (int i = 0; i < w.length; i++) this.table.put(target + 1 + i, w[i]);
+            for (int i = 0; i < h.length; i++) this.table.put(target + 1 + MAX_WORD_LENGTH + i, h[i]);
+        }
+        this.insert.increment();
+    }
+
+    /**
+     * remove all entries; the statistics are not changed
+     */
+    public void clear() {
+        for (int bucket = 0; bucket <= this.bucketMask; bucket++) {
+            final int offset = bucket * BUCKET_SIZE;
+            synchronized (this.locks[bucket & (this.locks.length - 1)]) {
+                for (int slot = offset; slot < offset + BUCKET_SIZE; slot += SLOT_SIZE) this.table.put(slot, (byte) 0);
+            }
+        }
+        this.longWords.clear();
+    }
+
+    /**
+     * @return the number of cached words, including the long words
+     */
+    public int size() {
+        int size = this.longWords.size();
+        for (int slot = 0; slot < this.table.capacity(); slot += SLOT_SIZE) {
+            if (this.table.get(slot) != 0) size++;
+        }
+        return size;
+    }
+
+    /**
+     * count the hashing time of the words of one document
+     * @param nanos the time in nanoseconds to get the hashes of all words of the document
+     */
+    public void document(final long nanos) {
+        this.documents.increment();
+        this.documentNanos.add(nanos);
+    }
+
+    /**
+     * write the cached words to a file
+     * @param file
+     * @return the number of written entries
+     * @throws IOException
+     */
+    public int save(final File file) throws IOException {
+        final File tmp = new File(file.getParentFile(), file.getName() + ".prt");
+        final CRC32 crc = new CRC32();
+        int count = 0;
+        try (final DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 65536), crc))) {
+            out.writeInt(FILE_MAGIC);
+            final byte[] slotBytes = new byte[SLOT_SIZE];
+            for (int bucket = 0; bucket <= this.bucketMask; bucket++) {
+                final int offset = bucket * BUCKET_SIZE;
+                synchronized (this.locks[bucket & (this.locks.length - 1)]) {
+                    for (int slot = offset; slot < offset + BUCKET_SIZE; slot += SLOT_SIZE) {
+                        final int length = this.table.get(slot) & LENGTH_MASK;
+                        if (length == 0) break;
+                        slotBytes[0] = (byte) length;
+                        for (int i = 1; i < SLOT_SIZE; i++) slotBytes[i] = this.table.get(slot + i);
+                        out.write(slotBytes, 0, 1 + length);
+                        out.write(slotBytes, 1 + MAX_WORD_LENGTH, Word.commonHashLength);
+                        count++;
+                    }
+                }
+            }
+            out.writeByte(0);
+            out.flush();
+            out.writeLong(crc.getValue());
+        }
+        if (file.exists() && !file.delete()) throw new IOException("cannot delete " + file);
+        if (!tmp.renameTo(file)) throw new IOException("cannot rename " + tmp + " to " + file);
+        return count;
+    }
+
+    /**
+     * add the words of a file which was written with {@link #save(File)}.
+     * The file is checked completely before an entry is added; a damaged file is ignored.
+     * @param file
+     * @return the number of loaded entries
+     * @throws IOException if the file cannot be read or is damaged
+     */
+    public int load(final File file) throws IOException {
+        final CRC32 crc = new CRC32();
+        final byte[] content;
+        try (final DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(new FileInputStream(file), 65536), crc))) {
+            if (in.readInt() != FILE_MAGIC) throw new IOException("wrong file format: " + file);
+            content = new byte[(int) Math.min(Integer.MAX_VALUE - 16, Math.max(0, file.length() - 4 - 8))];
+            in.readFully(content);
+            final long checksum = crc.getValue();
+            if (in.readLong() != checksum) throw new IOException("checksum error: " + file);
+        } catch (final EOFException e) {
+            throw new IOException("file is truncated: " + file);
+        }
+        int count = 0;
+        int p = 0;
+        while (p < content.length) {
+            final int length = content[p++];
+            if (length == 0) break;
+            if (length < 0 || length > MAX_WORD_LENGTH || p + length + Word.commonHashLength > content.length) throw new IOException("wrong entry in " + file);
+            final String word = UTF8.String(content, p, length);
+            p += length;
+            final byte[] h = new byte[Word.commonHashLength];
+            System.arraycopy(content, p, h, 0, h.length);
+            p += h.length;
+            put(word, h);
+            count++;
+        }
+        return count;
+    }
+
+}
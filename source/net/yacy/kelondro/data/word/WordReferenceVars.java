@@ -29,7 +29,6 @@ package net.yacy.kelondro.data.word;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Queue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import net.yacy.cora.date.MicroDate;
@@ -37,14 +36,11 @@ import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.util.ByteArray;
-import net.yacy.cora.util.ConcurrentLog;
-import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.index.Row.Entry;
 import net.yacy.kelondro.rwi.AbstractReference;
 import net.yacy.kelondro.rwi.Reference;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.Bitfield;
-import net.yacy.kelondro.workflow.WorkflowProcessor;
 
 
 public class WordReferenceVars extends AbstractReference implements WordReference, Reference, Cloneable, Comparable<WordReferenceVars>, Comparator<WordReferenceVars> {
@@ -537,120 +533,19 @@ public class WordReferenceVars extends AbstractReference implements WordReferenc
     }
 
     /**
-     * transform a reference container into a stream of parsed entries
+     * transform a range of a reference container into parsed entries
      * @param container
-     * @return a blocking queue filled with WordReferenceVars that is still filled when the object is returned
+     * @param from the first position in the container
+     * @param to the position after the last transformed entry
+     * @param local
+     * @return the parsed entries in the order of the container
      */
-    public static BlockingQueue<WordReferenceVars> transform(final ReferenceContainer<WordReference> container, final long maxtime, final boolean local) {
-    	final LinkedBlockingQueue<WordReferenceVars> vars = new LinkedBlockingQueue<WordReferenceVars>();
-    	if (container.size() <= 100) {
-    	    // transform without concurrency to omit thread creation overhead
-    	    for (final Row.Entry entry: container) {
-    	        try {
-    	            vars.put(new WordReferenceVars(new WordReferenceRow(entry), local));
-    	        } catch (final InterruptedException e) {}
-    	    }
-            try {
-                vars.put(WordReferenceVars.poison);
-            } catch (final InterruptedException e) {}
-            return vars;
-    	}
-    	final Thread distributor = new TransformDistributor(container, vars, maxtime, local);
-    	distributor.start();
-
-    	// return the resulting queue while the processing queues are still working
-    	return vars;
-    }
-
-    private static class TransformDistributor extends Thread {
-
-    	private ReferenceContainer<WordReference> container;
-    	private BlockingQueue<WordReferenceVars> out;
-    	private long maxtime;
-    	private final boolean local;
-    	private TransformDistributor(final ReferenceContainer<WordReference> container, final BlockingQueue<WordReferenceVars> out, final long maxtime, final boolean local) {
-    		super("WordReferenceVars.TransformDistributor");
-    		this.container = container;
-    		this.out = out;
-    		this.maxtime = maxtime;
-    		this.local = local;
-    	}
-
-        @Override
-    	public void run() {
-        	// start the transformation threads
-        	final int cores0 = Math.min(WorkflowProcessor.availableCPU, this.container.size() / 100) + 1;
-        	final TransformWorker[] worker = new TransformWorker[cores0];
-        	for (int i = 0; i < cores0; i++) {
-        		worker[i] = new TransformWorker(this.out, this.maxtime, this.local);
-        		worker[i].start();
-        	}
-        	long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
-
-        	// fill the queue
-        	int p = this.container.size();
-    		while (p > 0) {
-    			p--;
-				worker[p % cores0].add(this.container.get(p, false));
-				if (p % 100 == 0 && System.currentTimeMillis() > timeout) {
-				    ConcurrentLog.warn("TransformDistributor", "distribution of WordReference entries to worker queues ended with timeout = " + this.maxtime);
-				    break;
-				}
-            }
-
-        	// insert poison to stop the queues
-        	for (int i = 0; i < cores0; i++) {
-        	    worker[i].add(WordReferenceRow.poisonRowEntry);
-        	}
-
-        	// wait for the worker to terminate because we want to place a poison entry into the out queue afterwards
-        	for (int i = 0; i < cores0; i++) {
-                try {
-                    worker[i].join();
-                } catch (final InterruptedException e) {
-                }
-            }
-
-        	this.out.add(WordReferenceVars.poison);
-    	}
-    }
-
-    private static class TransformWorker extends Thread {
-
-    	private BlockingQueue<Row.Entry> in;
-    	private BlockingQueue<WordReferenceVars> out;
-    	private long maxtime;
-    	private final boolean local;
-
-    	private TransformWorker(final BlockingQueue<WordReferenceVars> out, final long maxtime, final boolean local) {
-    		super("WordReferenceVars.TransformWorker");
-    		this.in = new LinkedBlockingQueue<Row.Entry>();
-    		this.out = out;
-    		this.maxtime = maxtime;
-    		this.local = local;
-    	}
-
-    	private void add(final Row.Entry entry) {
-    		try {
-				this.in.put(entry);
-			} catch (final InterruptedException e) {
-			}
-    	}
-
-        @Override
-    	public void run() {
-        	Row.Entry entry;
-        	long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
-    		try {
-				while ((entry = this.in.take()) != WordReferenceRow.poisonRowEntry) {
-				    this.out.put(new WordReferenceVars(new WordReferenceRow(entry), local));
-				    if (System.currentTimeMillis() > timeout) {
-	                    ConcurrentLog.warn("TransformWorker", "normalization of row entries from row to vars ended with timeout = " + this.maxtime);
-				        break;
-				    }
-				}
-			} catch (final InterruptedException e) {}
-    	}
+    public static WordReferenceVars[] transform(final ReferenceContainer<WordReference> container, final int from, final int to, final boolean local) {
+        final WordReferenceVars[] vars = new WordReferenceVars[to - from];
+        for (int p = from; p < to; p++) {
+            vars[p - from] = new WordReferenceVars(new WordReferenceRow(container.get(p, false)), local);
+        }
+        return vars;
     }
 
 }
@@ -0,0 +1,452 @@
+/**
+ *  CompressedRowSet
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Iterator;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.util.kelondroException;
+
+/**
+ * A compressed export format for sorted row sets and a read-only view on it.
+ * The rows are stored in blocks of BLOCKSIZE rows. The primary keys of a block are front-coded: each key
+ * stores the length of the prefix it shares with the previous key and the remaining bytes; if all keys are
+ * base64 strings, the remaining characters are packed with 6 bits each. The other columns of a block are
+ * transposed into byte planes, so equal or similar values of a column are adjacent, and deflated.
+ * A skip table with the first key and the position of every block makes it possible to find single
+ * keys or to intersect the set with sorted keys while only the affected blocks are decoded.
+ *
+ * The header has the same layout as the one of RowCollection.exportCollection(), with a marker instead
+ * of the order signature, so both formats can be stored side by side and RowSet.importRowSet reads both.
+ */
+public final class CompressedRowSet {
+
+    /** the number of rows in one block */
+    public static final int BLOCKSIZE = 128;
+
+    private static final byte[] MARKER = new byte[]{'z', 'c'};
+    private static final byte VERSION = 1;
+    private static final byte KEYS_RAW = 0;
+    private static final byte KEYS_BASE64 = 1;
+    private static final int HEADERSIZE = 24;
+    private static final long day = 1000 * 60 * 60 * 24;
+
+    private final Row rowdef;
+    private final byte[] b;
+    private final int size, sortBound, blocksize, blockCount, keymode, keylength, width;
+    private final int skipStart, dataStart;
+
+    /**
+     * create a view on a compressed row set
+     * @param rowdef the row definition which was used for the compression
+     * @param b the compressed rows as produced by compress()
+     * @throws kelondroException if b is not a compressed row set of this row definition
+     */
+    public CompressedRowSet(final Row rowdef, final byte[] b) {
+        if (!isCompressed(b) || b.length < HEADERSIZE || b[14] != VERSION) throw new kelondroException("not a compressed row set");
+        this.rowdef = rowdef;
+        this.b = b;
+        this.size = (int) NaturalOrder.decodeLong(b, 0, 4);
+        this.sortBound = (int) NaturalOrder.decodeLong(b, 10, 4);
+        this.keymode = b[15];
+        this.blocksize = (int) NaturalOrder.decodeLong(b, 16, 4);
+        this.blockCount = (int) NaturalOrder.decodeLong(b, 20, 4);
+        this.keylength = rowdef.primaryKeyLength;
+        this.width = rowdef.objectsize - this.keylength;
+        this.skipStart = HEADERSIZE;
+        this.dataStart = this.skipStart + this.blockCount * (this.keylength + 4);
+        if (this.size < 0 || this.blocksize <= 0 || this.blockCount != (this.size + this.blocksize - 1) / this.blocksize || this.dataStart > b.length) {
+            throw new kelondroException("corrupted compressed row set: size = " + this.size + ", blocks = " + this.blockCount + ", length = " + b.length);
+        }
+    }
+
+    /**
+     * test if an exported row set is compressed
+     * @param b an export of RowCollection.exportCollection() or CompressedRowSet.compress()
+     * @return true if the export is compressed
+     */
+    public static boolean isCompressed(final byte[] b) {
+        return b != null && b.length >= 14 && b[8] == MARKER[0] && b[9] == MARKER[1];
+    }
+
+    /**
+     * compress a row set. The rows are sorted before they are compressed.
+     * @param rows
+     * @return the compressed rows
+     */
+    public static byte[] compress(final RowCollection rows) {
+        synchronized (rows) {
+            rows.sort();
+            final Row rowdef = rows.rowdef;
+            final int size = rows.size();
+            final int keylength = rowdef.primaryKeyLength;
+            final int objectsize = rowdef.objectsize;
+            final int width = objectsize - keylength;
+            final byte[] cache = rows.chunkcache;
+            final int blockCount = (size + BLOCKSIZE - 1) / BLOCKSIZE;
+
+            // keys can be packed if they are all base64
+            byte keymode = KEYS_BASE64;
+            for (int i = 0; i < size; i++) {
+                if (!Base64Order.enhancedCoder.wellformed(cache, i * objectsize, keylength)) {
+                    keymode = KEYS_RAW;
+                    break;
+                }
+            }
+
+            final ByteArrayOutputStream data = new ByteArrayOutputStream(size * objectsize / 2 + 16);
+            final byte[] skip = new byte[blockCount * (keylength + 4)];
+            final ByteArrayOutputStream keys = new ByteArrayOutputStream(BLOCKSIZE * keylength);
+            final byte[] plane = new byte[BLOCKSIZE * width];
+            final byte[] deflated = new byte[plane.length + plane.length / 8 + 64];
+            final byte[] digits = new byte[keylength];
+            final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                for (int block = 0; block < blockCount; block++) {
+                    final int start = block * BLOCKSIZE;
+                    final int n = Math.min(BLOCKSIZE, size - start);
+
+                    // skip table entry
+                    System.arraycopy(cache, start * objectsize, skip, block * (keylength + 4), keylength);
+                    NaturalOrder.encodeLong(data.size(), skip, block * (keylength + 4) + keylength, 4);
+
+                    // front-coded keys; the first key is in the skip table
+                    keys.reset();
+                    for (int i = 1; i < n; i++) {
+                        final int prev = (start + i - 1) * objectsize;
+                        final int cur = (start + i) * objectsize;
+                        int p = 0;
+                        while (p < keylength && cache[prev + p] == cache[cur + p]) p++;
+                        keys.write(p);
+                        if (keymode == KEYS_BASE64) {
+                            for (int j = p; j < keylength; j++) digits[j - p] = Base64Order.enhancedCoder.decodeByte(cache[cur + j]);
+                            packDigits(digits, keylength - p, keys);
+                        } else {
+                            keys.write(cache, cur + p, keylength - p);
+                        }
+                    }
+                    writeInt(data, keys.size());
+                    final byte[] k = keys.toByteArray();
+                    data.write(k, 0, k.length);
+
+                    // byte planes of the other columns
+                    for (int i = 0; i < n; i++) {
+                        final int row = (start + i) * objectsize + keylength;
+                        for (int j = 0; j < width; j++) plane[j * n + i] = cache[row + j];
+                    }
+                    deflater.reset();
+                    deflater.setInput(plane, 0, n * width);
+                    deflater.finish();
+                    int dl = 0;
+                    while (!deflater.finished()) {
+                        dl += deflater.deflate(deflated, dl, deflated.length - dl);
+                        if (dl == deflated.length && !deflater.finished()) throw new kelondroException("deflate buffer too small");
+                    }
+                    writeInt(data, dl);
+                    data.write(deflated, 0, dl);
+                }
+            } finally {
+                deflater.end();
+            }
+
+            final byte[] c = new byte[HEADERSIZE + skip.length + data.size()];
+            NaturalOrder.encodeLong(size, c, 0, 4);
+            NaturalOrder.encodeLong(daysSince2000(System.currentTimeMillis()), c, 4, 2);
+            NaturalOrder.encodeLong(daysSince2000(rows.lastTimeWrote), c, 6, 2);
+            c[8] = MARKER[0];
+            c[9] = MARKER[1];
+            NaturalOrder.encodeLong(size, c, 10, 4); // the rows are sorted
+            c[14] = VERSION;
+            c[15] = keymode;
+            NaturalOrder.encodeLong(BLOCKSIZE, c, 16, 4);
+            NaturalOrder.encodeLong(blockCount, c, 20, 4);
+            System.arraycopy(skip, 0, c, HEADERSIZE, skip.length);
+            System.arraycopy(data.toByteArray(), 0, c, HEADERSIZE + skip.length, data.size());
+            return c;
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * decode all rows
+     * @return a sorted row set
+     * @throws SpaceExceededException
+     */
+    public RowSet toRowSet() throws SpaceExceededException {
+        final long alloc = ((long) this.size) * ((long) this.rowdef.objectsize);
+        if (alloc > Integer.MAX_VALUE) throw new SpaceExceededException((int) alloc, "CompressedRowSet: alloc > Integer.MAX_VALUE");
+        final byte[] chunkcache;
+        try {
+            chunkcache = new byte[(int) alloc];
+        } catch (final OutOfMemoryError e) {
+            throw new SpaceExceededException((int) alloc, "CompressedRowSet: OutOfMemoryError");
+        }
+        final byte[] keys = new byte[this.blocksize * this.keylength];
+        final byte[] attributes = new byte[this.blocksize * this.width];
+        final Inflater inflater = new Inflater();
+        try {
+            for (int block = 0; block < this.blockCount; block++) {
+                final int n = blockRows(block);
+                decodeKeys(block, keys);
+                decodeAttributes(block, attributes, inflater);
+                copyRows(keys, attributes, 0, n, chunkcache, block * this.blocksize * this.rowdef.objectsize);
+            }
+        } finally {
+            inflater.end();
+        }
+        return new RowSet(this.rowdef, this.size, chunkcache, Math.min(this.sortBound, this.size));
+    }
+
+    /**
+     * get a single row; only the block which may contain the key is decoded
+     * @param key
+     * @return the row or null if the key is not in the set
+     */
+    public Row.Entry get(final byte[] key) {
+        final int block = findBlock(key, 0);
+        if (block < 0) return null;
+        final byte[] keys = new byte[this.blocksize * this.keylength];
+        decodeKeys(block, keys);
+        final int i = findKey(keys, blockRows(block), key, 0);
+        if (i < 0) return null;
+        final byte[] attributes = new byte[this.blocksize * this.width];
+        final Inflater inflater = new Inflater();
+        try {
+            decodeAttributes(block, attributes, inflater);
+        } finally {
+            inflater.end();
+        }
+        final byte[] row = new byte[this.rowdef.objectsize];
+        copyRows(keys, attributes, i, 1, row, 0);
+        return this.rowdef.newEntry(row);
+    }
+
+    /**
+     * intersect the set with sorted keys. The skip table is searched by galloping from the block of the
+     * previous key, and only blocks which may contain a key are decoded; the other columns are only
+     * decoded for blocks with at least one hit.
+     * @param sortedKeys keys in the order of the row definition
+     * @return the rows of the given keys which are in the set, sorted
+     */
+    public RowSet select(final Iterator<byte[]> sortedKeys) {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        if (this.size == 0) return new RowSet(this.rowdef, 0, result.toByteArray(), 0);
+        final byte[] keys = new byte[this.blocksize * this.keylength];
+        final byte[] attributes = new byte[this.blocksize * this.width];
+        final int[] hits = new int[this.blocksize];
+        final byte[] row = new byte[this.rowdef.objectsize];
+        final Inflater inflater = new Inflater();
+        try {
+            int block = -1, n = 0, hitCount = 0, pos = 0;
+            while (sortedKeys.hasNext()) {
+                final byte[] key = sortedKeys.next();
+                final int next = findBlock(key, Math.max(0, block));
+                if (next < 0) continue; // smaller than the first key
+                if (next != block) {
+                    addHits(block, keys, attributes, hits, hitCount, row, result, inflater);
+                    block = next;
+                    n = blockRows(block);
+                    decodeKeys(block, keys);
+                    hitCount = 0;
+                    pos = 0;
+                }
+                final int i = findKey(keys, n, key, pos);
+                if (i >= 0) {
+                    hits[hitCount++] = i;
+                    pos = i + 1;
+                } else {
+                    pos = -i - 1;
+                }
+            }
+            addHits(block, keys, attributes, hits, hitCount, row, result, inflater);
+        } finally {
+            inflater.end();
+        }
+        final int count = result.size() / this.rowdef.objectsize;
+        return new RowSet(this.rowdef, count, result.toByteArray(), count);
+    }
+
+    private void addHits(final int block, final byte[] keys, final byte[] attributes, final int[] hits, final int hitCount,
+            final byte[] row, final ByteArrayOutputStream result, final Inflater inflater) {
+        if (hitCount == 0) return;
+        decodeAttributes(block, attributes, inflater);
+        for (int h = 0; h < hitCount; h++) {
+            copyRows(keys, attributes, hits[h], 1, row, 0);
+            result.write(row, 0, row.length);
+        }
+    }
+
+    private int blockRows(final int block) {
+        return Math.min(this.blocksize, this.size - block * this.blocksize);
+    }
+
+    private int blockPosition(final int block) {
+        return this.dataStart + (int) NaturalOrder.decodeLong(this.b, this.skipStart + block * (this.keylength + 4) + this.keylength, 4);
+    }
+
+    private int compareFirstKey(final byte[] key, final int block) {
+        return this.rowdef.objectOrder.compare(key, 0, this.b, this.skipStart + block * (this.keylength + 4), this.keylength);
+    }
+
+    /**
+     * find the last block with a first key which is not greater than the key
+     * @param key
+     * @param from the first block to consider; the key must not be smaller than the first key of this block
+     * @return the block or -1 if the key is smaller than the first key of the set
+     */
+    private int findBlock(final byte[] key, final int from) {
+        final ByteOrder order = this.rowdef.objectOrder;
+        assert order != null;
+        if (compareFirstKey(key, from) < 0) return from == 0 ? -1 : from;
+        // galloping: find a block with a first key greater than the key
+        int lo = from, step = 1, hi = from + 1;
+        while (hi < this.blockCount && compareFirstKey(key, hi) >= 0) {
+            lo = hi;
+            step <<= 1;
+            hi = lo + step;
+        }
+        if (hi > this.blockCount) hi = this.blockCount;
+        // binary search for the last block with a first key not greater than the key in [lo, hi)
+        while (hi - lo > 1) {
+            final int mid = (lo + hi) >>> 1;
+            if (compareFirstKey(key, mid) >= 0) lo = mid; else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * search a key in the decoded keys of a block
+     * @return the index of the key or (-(insertion point) - 1)
+     */
+    private int findKey(final byte[] keys, final int n, final byte[] key, final int from) {
+        int lo = from, hi = n - 1;
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int c = this.rowdef.objectOrder.compare(keys, mid * this.keylength, key, 0, this.keylength);
+            if (c < 0) lo = mid + 1; else if (c > 0) hi = mid - 1; else return mid;
+        }
+        return -lo - 1;
+    }
+
+    private void decodeKeys(final int block, final byte[] keys) {
+        final int n = blockRows(block);
+        System.arraycopy(this.b, this.skipStart + block * (this.keylength + 4), keys, 0, this.keylength);
+        int p = blockPosition(block);
+        final int end = p + 4 + (int) NaturalOrder.decodeLong(this.b, p, 4);
+        p += 4;
+        for (int i = 1; i < n; i++) {
+            final int k = i * this.keylength;
+            final int shared = this.b[p++];
+            if (shared < 0 || shared > this.keylength) throw new kelondroException("corrupted key in compressed row set");
+            System.arraycopy(keys, k - this.keylength, keys, k, shared);
+            final int r = this.keylength - shared;
+            if (this.keymode == KEYS_BASE64) {
+                p = unpackDigits(this.b, p, r, keys, k + shared);
+            } else {
+                System.arraycopy(this.b, p, keys, k + shared, r);
+                p += r;
+            }
+        }
+        if (p != end) throw new kelondroException("corrupted keys in compressed row set");
+    }
+
+    private void decodeAttributes(final int block, final byte[] attributes, final Inflater inflater) {
+        final int n = blockRows(block);
+        int p = blockPosition(block);
+        p += 4 + (int) NaturalOrder.decodeLong(this.b, p, 4);
+        final int l = (int) NaturalOrder.decodeLong(this.b, p, 4);
+        p += 4;
+        final byte[] plane = new byte[n * this.width];
+        inflater.reset();
+        inflater.setInput(this.b, p, l);
+        try {
+            int r = 0;
+            while (r < plane.length) {
+                final int i = inflater.inflate(plane, r, plane.length - r);
+                if (i == 0 && (inflater.finished() || inflater.needsInput())) break;
+                r += i;
+            }
+            if (r != plane.length) throw new kelondroException("corrupted attributes in compressed row set");
+        } catch (final DataFormatException e) {
+            throw new kelondroException("corrupted attributes in compressed row set: " + e.getMessage());
+        }
+        // transpose the byte planes back into rows
+        for (int i = 0; i < n; i++) {
+            final int row = i * this.width;
+            for (int j = 0; j < this.width; j++) attributes[row + j] = plane[j * n + i];
+        }
+    }
+
+    private void copyRows(final byte[] keys, final byte[] attributes, final int from, final int count, final byte[] target, final int offset) {
+        final int objectsize = this.rowdef.objectsize;
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(keys, (from + i) * this.keylength, target, offset + i * objectsize, this.keylength);
+            System.arraycopy(attributes, (from + i) * this.width, target, offset + i * objectsize + this.keylength, this.width);
+        }
+    }
+
+    private static void packDigits(final byte[] digits, final int count, final ByteArrayOutputStream out) {
+        int acc = 0, bits = 0;
+        for (int i = 0; i < count; i++) {
+            acc = (acc << 6) | digits[i];
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                out.write((acc >>> bits) & 0xff);
+            }
+        }
+        if (bits > 0) out.write((acc << (8 - bits)) & 0xff);
+    }
+
+    private static int unpackDigits(final byte[] b, int p, final int count, final byte[] target, final int offset) {
+        int acc = 0, bits = 0;
+        for (int i = 0; i < count; i++) {
+            if (bits < 6) {
+                acc = (acc << 8) | (b[p++] & 0xff);
+                bits += 8;
+            }
+            bits -= 6;
+            target[offset + i] = (byte) Base64Order.enhancedCoder.encodeByte((byte) ((acc >>> bits) & 0x3f));
+        }
+        return p;
+    }
+
+    private static void writeInt(final ByteArrayOutputStream out, final int v) {
+        out.write((v >>> 24) & 0xff);
+        out.write((v >>> 16) & 0xff);
+        out.write((v >>> 8) & 0xff);
+        out.write(v & 0xff);
+    }
+
+    private static int daysSince2000(final long time) {
+        return (int) (time / day) - 10957;
+    }
+
+}
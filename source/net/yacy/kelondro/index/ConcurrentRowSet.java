@@ -0,0 +1,386 @@
+/**
+ *  ConcurrentRowSet
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.StampedLock;
+
+import net.yacy.cora.order.CloneableIterator;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.Row.Entry;
+import net.yacy.kelondro.util.MergeIterator;
+import net.yacy.kelondro.util.StackIterator;
+
+/**
+ * A RAM index for many concurrent readers. The rows are distributed over stripes of RowSets,
+ * each one guarded by a StampedLock: reads are optimistic and do not block unless a write to
+ * the same stripe happens at the same time, writes lock only their stripe.
+ * Lookups never sort a stripe; the unsorted tail of a stripe is sorted by the writers when it
+ * grows too large for an iterative search. Iterators work on sorted copies of the stripes.
+ */
+public final class ConcurrentRowSet implements MemoryIndex, Iterable<Row.Entry> {
+
+    private final String name;
+    private final Row rowdef;
+    private final Stripe[] stripes;
+
+    private final static class Stripe {
+        private final StampedLock lock = new StampedLock();
+        private RowSet set;
+
+        private Stripe(final Row rowdef) {
+            this.set = new RowSet(rowdef);
+        }
+
+        private Row.Entry get(final byte[] key) {
+            final long stamp = this.lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    final Row.Entry entry = this.set.getUnsynchronized(key);
+                    if (this.lock.validate(stamp)) return entry;
+                } catch (final RuntimeException e) {
+                    // the stripe was changed during the read; read again with a lock
+                }
+            }
+            final long readStamp = this.lock.readLock();
+            try {
+                return this.set.getUnsynchronized(key);
+            } finally {
+                this.lock.unlockRead(readStamp);
+            }
+        }
+    }
+
+    /**
+     * @param name the name of the index
+     * @param rowdef the row definition; it must have an object order
+     * @param stripeCount the number of independently locked stripes; should be at least the number of concurrent threads
+     */
+    public ConcurrentRowSet(final String name, final Row rowdef, final int stripeCount) {
+        this.name = name;
+        this.rowdef = rowdef;
+        this.stripes = new Stripe[Math.max(1, stripeCount)];
+        for (int i = 0; i < this.stripes.length; i++) this.stripes[i] = new Stripe(rowdef);
+    }
+
+    private final Stripe stripeFor(final byte[] key) {
+        return this.stripes[(int) ((this.rowdef.objectOrder.cardinal(key) / 17) % this.stripes.length)];
+    }
+
+    private final Stripe stripeFor(final Entry row) {
+        return this.stripes[(int) ((this.rowdef.objectOrder.cardinal(row.bytes(), 0, row.getPrimaryKeyLength()) / 17) % this.stripes.length)];
+    }
+
+    @Override
+    public final String filename() {
+        // we don't have a file name
+        return null;
+    }
+
+    @Override
+    public final Row row() {
+        return this.rowdef;
+    }
+
+    @Override
+    public final int size() {
+        int c = 0;
+        for (final Stripe s: this.stripes) c += s.set.size();
+        return c;
+    }
+
+    @Override
+    public final boolean isEmpty() {
+        for (final Stripe s: this.stripes) if (!s.set.isEmpty()) return false;
+        return true;
+    }
+
+    @Override
+    public final long mem() {
+        long m = 0;
+        for (final Stripe s: this.stripes) m += s.set.mem();
+        return m;
+    }
+
+    @Override
+    public final void optimize() {
+        for (final Stripe s: this.stripes) {
+            final long stamp = s.lock.writeLock();
+            try {
+                s.set.optimize();
+            } finally {
+                s.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    @Override
+    public final boolean has(final byte[] key) {
+        return stripeFor(key).get(key) != null;
+    }
+
+    @Override
+    public final Entry get(final byte[] key, final boolean forcecopy) {
+        // the row is always a copy because the chunk cache may change after the read
+        return stripeFor(key).get(key);
+    }
+
+    @Override
+    public final Map<byte[], Row.Entry> get(final Collection<byte[]> keys, final boolean forcecopy) {
+        final Map<byte[], Row.Entry> map = new TreeMap<byte[], Row.Entry>(this.rowdef.objectOrder);
+        Row.Entry entry;
+        for (final byte[] key: keys) {
+            entry = get(key, forcecopy);
+            if (entry != null) map.put(key, entry);
+        }
+        return map;
+    }
+
+    @Override
+    public final Entry replace(final Entry row) throws SpaceExceededException {
+        final Stripe s = stripeFor(row);
+        final long stamp = s.lock.writeLock();
+        try {
+            return s.set.replace(row);
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Adds the row to the index. The row is identified by the primary key of the row.
+     * @param row a index row
+     * @return true if this set did _not_ already contain the given row.
+     * @throws SpaceExceededException
+     */
+    @Override
+    public final boolean put(final Entry row) throws SpaceExceededException {
+        final Stripe s = stripeFor(row);
+        final long stamp = s.lock.writeLock();
+        try {
+            return s.set.put(row);
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public final void addUnique(final Entry row) throws SpaceExceededException {
+        final Stripe s = stripeFor(row);
+        final long stamp = s.lock.writeLock();
+        try {
+            s.set.addUnique(row);
+            s.set.sortTail();
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    public final long inc(final byte[] key, final int col, final long add, final Entry initrow) throws SpaceExceededException {
+        final Stripe s = stripeFor(key);
+        final long stamp = s.lock.writeLock();
+        try {
+            final long l = s.set.inc(key, col, add, initrow);
+            s.set.sortTail();
+            return l;
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public final boolean delete(final byte[] key) {
+        final Stripe s = stripeFor(key);
+        final long stamp = s.lock.writeLock();
+        try {
+            return s.set.delete(key);
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public final Entry remove(final byte[] key) {
+        final Stripe s = stripeFor(key);
+        final long stamp = s.lock.writeLock();
+        try {
+            return s.set.remove(key);
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public final List<RowCollection> removeDoubles() throws SpaceExceededException {
+        final List<RowCollection> col = new ArrayList<RowCollection>();
+        for (final Stripe s: this.stripes) {
+            final long stamp = s.lock.writeLock();
+            try {
+                col.addAll(s.set.removeDoubles());
+            } finally {
+                s.lock.unlockWrite(stamp);
+            }
+        }
+        return col;
+    }
+
+    @Override
+    public final Entry removeOne() {
+        for (final Stripe s: this.stripes) {
+            final long stamp = s.lock.writeLock();
+            try {
+                if (!s.set.isEmpty()) return s.set.removeOne();
+            } finally {
+                s.lock.unlockWrite(stamp);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public final List<Row.Entry> top(final int count) {
+        final List<Row.Entry> list = new ArrayList<Row.Entry>();
+        for (final Stripe s: this.stripes) {
+            if (list.size() >= count) break;
+            final long stamp = s.lock.writeLock();
+            try {
+                list.addAll(s.set.top(count - list.size()));
+            } finally {
+                s.lock.unlockWrite(stamp);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public final List<Row.Entry> random(final int count) {
+        final List<Row.Entry> list = new ArrayList<Row.Entry>();
+        for (final Stripe s: this.stripes) {
+            if (list.size() >= count) break;
+            final long stamp = s.lock.writeLock();
+            try {
+                list.addAll(s.set.random(count - list.size()));
+            } finally {
+                s.lock.unlockWrite(stamp);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public final byte[] smallestKey() {
+        byte[] smallest = null, b;
+        for (final RowSet set: sortedCopies()) {
+            b = set.smallestKey();
+            if (b != null && (smallest == null || this.rowdef.objectOrder.compare(b, smallest) < 0)) smallest = b;
+        }
+        return smallest;
+    }
+
+    @Override
+    public final byte[] largestKey() {
+        byte[] largest = null, b;
+        for (final RowSet set: sortedCopies()) {
+            b = set.largestKey();
+            if (b != null && (largest == null || this.rowdef.objectOrder.compare(b, largest) > 0)) largest = b;
+        }
+        return largest;
+    }
+
+    /**
+     * @return sorted copies of all stripes which are not empty; the copies are not affected by later writes
+     */
+    private final List<RowSet> sortedCopies() {
+        final List<RowSet> copies = new ArrayList<RowSet>(this.stripes.length);
+        for (final Stripe s: this.stripes) {
+            final long stamp = s.lock.writeLock(); // sorting changes the stripe
+            try {
+                if (!s.set.isEmpty()) copies.add(s.set.sortedCopy());
+            } finally {
+                s.lock.unlockWrite(stamp);
+            }
+        }
+        return copies;
+    }
+
+    @Override
+    public final CloneableIterator<byte[]> keys(final boolean up, final byte[] firstKey) {
+        final Collection<CloneableIterator<byte[]>> col = new ArrayList<CloneableIterator<byte[]>>();
+        for (final RowSet set: sortedCopies()) col.add(set.keys(up, firstKey));
+        return MergeIterator.cascade(col, this.rowdef.objectOrder, MergeIterator.simpleMerge, up);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public final CloneableIterator<Row.Entry> rows(final boolean up, final byte[] firstKey) {
+        final List<CloneableIterator<Row.Entry>> col = new ArrayList<CloneableIterator<Row.Entry>>(this.stripes.length);
+        for (final RowSet set: sortedCopies()) col.add(set.rows(up, firstKey));
+        return StackIterator.stack(col.toArray((CloneableIterator<Row.Entry>[]) Array.newInstance(CloneableIterator.class, col.size())), new Comparator<Row.Entry>() {
+            @Override
+            public int compare(final Row.Entry o1, final Row.Entry o2) {
+                return ConcurrentRowSet.this.rowdef.objectOrder.compare(o1.getPrimaryKeyBytes(), o2.getPrimaryKeyBytes());
+            }
+        }, up);
+    }
+
+    @Override
+    public final CloneableIterator<Row.Entry> rows() {
+        return rows(true, null);
+    }
+
+    @Override
+    public final Iterator<Entry> iterator() {
+        return rows(true, null);
+    }
+
+    @Override
+    public final void clear() {
+        for (final Stripe s: this.stripes) {
+            final long stamp = s.lock.writeLock();
+            try {
+                s.set = new RowSet(this.rowdef);
+            } finally {
+                s.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    @Override
+    public final void deleteOnExit() {
+        // no nothing here
+    }
+
+    @Override
+    public final void close() {
+        clear();
+    }
+
+    @Override
+    public String toString() {
+        return this.name + ": " + size() + " rows in " + this.stripes.length + " stripes";
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ *  HashBloomFilter
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A blocked bloom filter for hashes like url hashes. All bits of one key are placed in a block of
+ * 512 bits, so a test touches only one cache line. A negative answer of mightContain is definite,
+ * a positive answer may be wrong with a small probability. Keys can not be removed.
+ * Adding and testing is thread-safe and does not block.
+ */
+public final class HashBloomFilter {
+
+    private static final long MAGIC = 0x5961437942463031L; // "YaCyBF01"
+    private static final int BLOCK_LONGS = 8;  // 512 bits per block
+    private static final int HASHES = 7;       // number of bits set per key, 9 bits of the hash are used for each
+
+    /** the number of bits per expected entry; with 7 hashes this gives a false positive rate of about 1.5 percent */
+    public static final int BITS_PER_ENTRY = 10;
+
+    private final AtomicLongArray bits;
+    private final int blocks;
+    private final long capacity;
+    private final AtomicLong count;
+
+    /**
+     * @param capacity the expected number of entries; the false positive rate grows if more entries are added
+     */
+    public HashBloomFilter(final long capacity) {
+        this.capacity = Math.max(1, capacity);
+        final long b = (this.capacity * BITS_PER_ENTRY + 511) / 512;
+        if (b * BLOCK_LONGS > Integer.MAX_VALUE) throw new IllegalArgumentException("capacity too large: " + capacity);
+        this.blocks = (int) b;
+        this.bits = new AtomicLongArray(this.blocks * BLOCK_LONGS);
+        this.count = new AtomicLong(0);
+    }
+
+    private HashBloomFilter(final long capacity, final long count, final long[] bits) {
+        this.capacity = capacity;
+        this.blocks = bits.length / BLOCK_LONGS;
+        this.bits = new AtomicLongArray(bits);
+        this.count = new AtomicLong(count);
+    }
+
+    /**
+     * add a key
+     * @param key
+     * @return true if the key was not contained before
+     */
+    public boolean add(final byte[] key) {
+        final long h = hash(key);
+        final int base = block(h);
+        long positions = mix(h + 0x9E3779B97F4A7C15L);
+        boolean changed = false;
+        for (int i = 0; i < HASHES; i++) {
+            final int p = (int) (positions & 511);
+            positions >>>= 9;
+            final int index = base + (p >>> 6);
+            final long mask = 1L << (p & 63);
+            long word;
+            while (((word = this.bits.get(index)) & mask) == 0) {
+                if (this.bits.compareAndSet(index, word, word | mask)) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        if (changed) this.count.incrementAndGet();
+        return changed;
+    }
+
+    /**
+     * test a key
+     * @param key
+     * @return false if the key was never added, true if it was probably added
+     */
+    public boolean mightContain(final byte[] key) {
+        final long h = hash(key);
+        final int base = block(h);
+        long positions = mix(h + 0x9E3779B97F4A7C15L);
+        for (int i = 0; i < HASHES; i++) {
+            final int p = (int) (positions & 511);
+            positions >>>= 9;
+            if ((this.bits.get(base + (p >>> 6)) & (1L << (p & 63))) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of added different keys; keys which collide completely with other keys are not counted
+     */
+    public long size() {
+        return this.count.get();
+    }
+
+    /**
+     * @return the number of entries this filter was sized for
+     */
+    public long capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return the size of the bit array in bytes
+     */
+    public long mem() {
+        return (long) this.bits.length() * 8L;
+    }
+
+    private int block(final long h) {
+        return (int) ((h & Long.MAX_VALUE) % this.blocks) * BLOCK_LONGS;
+    }
+
+    private static long hash(final byte[] key) {
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        for (final byte b: key) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        // the murmur3 finalizer
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * write the filter to a stream
+     * @param os
+     * @throws IOException
+     */
+    public void write(final DataOutputStream os) throws IOException {
+        os.writeLong(MAGIC);
+        os.writeLong(this.capacity);
+        os.writeLong(this.count.get());
+        os.writeInt(this.bits.length());
+        for (int i = 0; i < this.bits.length(); i++) os.writeLong(this.bits.get(i));
+    }
+
+    /**
+     * read a filter which was written with write()
+     * @param is
+     * @return the filter
+     * @throws IOException if the stream does not contain a filter
+     */
+    public static HashBloomFilter read(final DataInputStream is) throws IOException {
+        if (is.readLong() != MAGIC) throw new IOException("not a bloom filter");
+        final long capacity = is.readLong();
+        final long count = is.readLong();
+        final int length = is.readInt();
+        if (length <= 0 || length % BLOCK_LONGS != 0) throw new IOException("bad bloom filter size " + length);
+        final long[] bits = new long[length];
+        for (int i = 0; i < length; i++) bits[i] = is.readLong();
+        return new HashBloomFilter(capacity, count, bits);
+    }
+
+}
@@ -31,6 +31,8 @@ package net.yacy.kelondro.index;
 import java.util.HashMap;
 import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
@@ -61,6 +63,50 @@ public class IndexTest {
 
     public static final long mb = 1024 * 1024;
 
+    /**
+     * measure the throughput of a HandleMap which is accessed by several threads at the same time
+     * @param map a map which contains the test keys
+     * @param tests the test keys
+     * @param threads the number of concurrent threads
+     * @param writePercent the percentage of write accesses, the others are lookups
+     * @param time the duration of the test in milliseconds
+     * @return the number of accesses per second
+     */
+    public static long concurrentThroughput(final HandleMap map, final byte[][] tests, final int threads, final int writePercent, final long time) throws InterruptedException {
+        final AtomicLong count = new AtomicLong(0);
+        final AtomicInteger bugs = new AtomicInteger(0);
+        final long timeout = System.currentTimeMillis() + time;
+        final Thread[] t = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final Random r = new Random(i);
+            t[i] = new Thread("IndexTest.concurrentThroughput." + i) {
+                @Override
+                public void run() {
+                    long c = 0;
+                    while ((c & 0xff) != 0 || System.currentTimeMillis() < timeout) {
+                        final byte[] key = tests[r.nextInt(tests.length)];
+                        if (r.nextInt(100) < writePercent) {
+                            try {
+                                map.put(key, 1);
+                            } catch (final SpaceExceededException e) {
+                                bugs.incrementAndGet();
+                            }
+                        } else {
+                            if (map.get(key) != 1) bugs.incrementAndGet();
+                        }
+                        c++;
+                    }
+                    count.addAndGet(c);
+                }
+            };
+        }
+        final long start = System.currentTimeMillis();
+        for (final Thread thread: t) thread.start();
+        for (final Thread thread: t) thread.join();
+        if (bugs.get() > 0) System.out.println(bugs.get() + " bugs");
+        return count.get() * 1000L / Math.max(1, System.currentTimeMillis() - start);
+    }
+
     public static void main(final String[] args) {
 
         // pre-generate test data so it will not influence test case time
@@ -155,6 +201,24 @@ public class IndexTest {
         System.out.println("time   for HashMap<ByteArray> test: " + (t9 - t8) + ", " + bugs + " bugs");
         System.out.println("memory for HashMap<ByteArray>: " + (freeStartBA - freeEndBA) / mb + " MB\n");
 
+        // test concurrent access
+        System.out.println("\nMULTITHREADED ACCESS \n");
+        final int threads = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+        for (final boolean concurrent: new boolean[]{false, true}) {
+            final RowHandleMap map = new RowHandleMap(12, Base64Order.enhancedCoder, 4, count, "test", concurrent);
+            try {
+                for (int i = 0; i < count; i++) map.putUnique(tests[i], 1);
+                map.get(randomHash(r)); // trigger sort
+                for (final int writePercent: new int[]{0, 10}) {
+                    System.out.println("accesses/second with " + threads + " threads and " + writePercent + "% writes, " +
+                            (concurrent ? "ConcurrentRowSet" : "RAMIndexCluster") + ": " + concurrentThroughput(map, tests, threads, writePercent, 5000));
+                }
+            } catch (final SpaceExceededException | InterruptedException e) {
+                e.printStackTrace();
+            }
+            map.close();
+        }
+
         System.exit(0);
     }
 }
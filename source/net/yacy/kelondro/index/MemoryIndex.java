@@ -0,0 +1,60 @@
+/**
+ *  MemoryIndex
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.util.List;
+
+import net.yacy.cora.order.CloneableIterator;
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * an Index which is held in RAM only; the access methods do not throw IOException
+ */
+interface MemoryIndex extends Index {
+
+    @Override
+    public Row.Entry get(byte[] key, boolean forcecopy);
+    @Override
+    public Row.Entry replace(Row.Entry row) throws SpaceExceededException;
+    @Override
+    public boolean put(Row.Entry row) throws SpaceExceededException;
+    @Override
+    public void addUnique(Row.Entry row) throws SpaceExceededException;
+    @Override
+    public List<RowCollection> removeDoubles() throws SpaceExceededException;
+    @Override
+    public boolean delete(byte[] key);
+    @Override
+    public Row.Entry remove(byte[] key);
+    @Override
+    public Row.Entry removeOne();
+    @Override
+    public List<Row.Entry> top(int count);
+    @Override
+    public List<Row.Entry> random(int count);
+    @Override
+    public CloneableIterator<byte[]> keys(boolean up, byte[] firstKey);
+    @Override
+    public CloneableIterator<Row.Entry> rows(boolean up, byte[] firstKey);
+    @Override
+    public CloneableIterator<Row.Entry> rows();
+    @Override
+    public void clear();
+}
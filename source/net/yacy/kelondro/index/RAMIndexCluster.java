@@ -43,7 +43,7 @@ import net.yacy.kelondro.util.MergeIterator;
 import net.yacy.kelondro.util.StackIterator;
 
 
-public final class RAMIndexCluster implements Index, Iterable<Row.Entry>, Cloneable {
+public final class RAMIndexCluster implements MemoryIndex, Iterable<Row.Entry>, Cloneable {
 
     private final String             name;
     private final Row                rowdef;
@@ -686,7 +686,11 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
         synchronized (this) {
             if (this.sortBound == this.chunkcount) return; // check again
             //Log.logInfo("RowCollection.sort()", "sorting array of size " + this.chunkcount + ", sortBound = " + this.sortBound);
-            net.yacy.cora.sorting.Array.sort(this);
+            if (this.chunkcount >= RowSort.PARALLEL_SORT_LIMIT && this.rowdef.objectOrder != null) {
+                this.chunkcache = RowSort.sort(this.rowdef, this.chunkcache, this.chunkcount, this.sortBound);
+            } else {
+                net.yacy.cora.sorting.Array.sort(this);
+            }
             this.sortBound = this.chunkcount;
         }
     }
@@ -61,7 +61,7 @@ import net.yacy.kelondro.workflow.WorkflowProcessor;
 public final class RowHandleMap implements HandleMap, Iterable<Map.Entry<byte[], Long>> {
 
     private   final Row rowdef;
-    private RAMIndexCluster index;
+    private MemoryIndex index;
 
     /**
      * initialize a HandleMap
@@ -72,8 +72,18 @@ public final class RowHandleMap implements HandleMap, Iterable<Map.Entry<byte[],
      * @param space
      */
     public RowHandleMap(final int keylength, final ByteOrder objectOrder, final int idxbytes, final int expectedspace, final String name) {
+        this(keylength, objectOrder, idxbytes, expectedspace, name, false);
+    }
+
+    /**
+     * initialize a HandleMap
+     * @param concurrent if true, the map is optimized for many concurrent readers: lookups do not block each other
+     */
+    public RowHandleMap(final int keylength, final ByteOrder objectOrder, final int idxbytes, final int expectedspace, final String name, final boolean concurrent) {
         this.rowdef = new Row(new Column[]{new Column("key", Column.celltype_binary, Column.encoder_bytes, keylength, "key"), new Column("long c-" + idxbytes + " {b256}")}, objectOrder);
-        this.index = new RAMIndexCluster(name, this.rowdef, spread(expectedspace));
+        this.index = concurrent ?
+                new ConcurrentRowSet(name, this.rowdef, 4 * WorkflowProcessor.availableCPU) :
+                new RAMIndexCluster(name, this.rowdef, spread(expectedspace));
     }
 
     /**
@@ -327,7 +337,7 @@ public final class RowHandleMap implements HandleMap, Iterable<Map.Entry<byte[],
         int c;
         long l;
         final int initialSize = size();
-        final ArrayList<RowCollection> rd = this.index.removeDoubles();
+        final List<RowCollection> rd = this.index.removeDoubles();
         for (final RowCollection rowset: rd) {
             is = new long[rowset.size()];
             c = 0;
@@ -42,6 +42,7 @@ import net.yacy.cora.order.NaturalOrder;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.kelondro.util.kelondroException;
 
 
 public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>, Serializable {
@@ -81,6 +82,14 @@ public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>,
     public final static RowSet importRowSet(final byte[] b, final Row rowdef) throws SpaceExceededException {
     	assert b.length >= exportOverheadSize : "b.length = " + b.length;
     	if (b.length < exportOverheadSize) return new RowSet(rowdef, 0);
+        if (CompressedRowSet.isCompressed(b)) {
+            try {
+                return new CompressedRowSet(rowdef, b).toRowSet();
+            } catch (final kelondroException e) {
+                ConcurrentLog.severe("RowSet", "cannot import compressed row set: " + e.getMessage());
+                return new RowSet(rowdef, 0);
+            }
+        }
         final int size = (int) NaturalOrder.decodeLong(b, 0, 4);
         assert size >= 0 : "size = " + size;
         if (size < 0) return new RowSet(rowdef, 0);
@@ -108,6 +117,17 @@ public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>,
         return new RowSet(rowdef, size, chunkcache, orderbound);
     }
 
+    /**
+     * read the number of rows from the head of an export; this works for exported and compressed row sets
+     * @param head at least the first four bytes of the export
+     * @return the number of rows
+     */
+    public final static int importRowCount(final byte[] head) {
+        if (head == null || head.length < 4) return 0;
+        final int c = (int) NaturalOrder.decodeLong(head, 0, 4);
+        return Math.max(0, c);
+    }
+
     public final static int importRowCount(final long blength, final Row rowdef) {
         assert blength >= exportOverheadSize : "blength = " + blength;
         if (blength < exportOverheadSize) return 0;
@@ -307,6 +327,100 @@ public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>,
         return iterativeSearch(a, astart, this.sortBound, this.chunkcount);
     }
 
+    /**
+     * Find a row without synchronization and without sorting the unsorted tail of the set.
+     * This is for owners which protect the set with an own lock, see {@link ConcurrentRowSet}.
+     * If the set is modified concurrently, the result is undefined and a RuntimeException may be
+     * thrown; such callers must validate the result.
+     * @return a copy of the row or null if the key is not in the set
+     */
+    final Row.Entry getUnsynchronized(final byte[] key) {
+        final byte[] cache = this.chunkcache;
+        final int count = this.chunkcount;
+        final int bound = this.sortBound;
+        if (cache == null) return null;
+        final int objectsize = this.rowdef.objectsize;
+        final int keylength = this.rowdef.primaryKeyLength;
+        assert key.length == keylength;
+        int index = -1;
+        int l = 0, rbound = bound, p, d;
+        while (l < rbound) {
+            p = (l + rbound) >> 1;
+            d = this.rowdef.objectOrder.compare(key, 0, cache, p * objectsize, keylength);
+            if (d == 0) {index = p; break;}
+            if (d < 0) rbound = p; else l = p + 1;
+        }
+        if (index < 0) {
+            search: for (int i = bound; i < count; i++) {
+                final int a = i * objectsize;
+                for (int k = 0; k < keylength; k++) if (key[k] != cache[a + k]) continue search;
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) return null;
+        return this.rowdef.newEntry(cache, index * objectsize, true);
+    }
+
+    /**
+     * sort the set if the unsorted tail is too large for a fast iterative search
+     */
+    final synchronized void sortTail() {
+        if ((this.chunkcount - this.sortBound) > collectionReSortLimit()) sort();
+    }
+
+    /**
+     * @return a sorted copy of the set which does not share the chunk cache
+     */
+    final synchronized RowSet sortedCopy() {
+        sort();
+        final int length = this.chunkcount * this.rowdef.objectsize;
+        return new RowSet(this.rowdef, this.chunkcount, length == 0 ? new byte[0] : Arrays.copyOf(this.chunkcache, length), this.chunkcount);
+    }
+
+    /**
+     * find the key of a row of another set in this set with a galloping search: starting at a given position,
+     * the distance is doubled until a greater key is found, then the last interval is searched binary.
+     * This is cheaper than a binary search in the whole set if ascending keys are searched one after another,
+     * and the keys are compared in place without a copy. Both sets must be sorted and must have the same row definition.
+     * @param other the set which contains the key
+     * @param i the position of the key in the other set
+     * @param from the position where the search starts; all keys before this position must be smaller than the key
+     * @return the position of the key, or -(insertion point) - 1 if the key is not in this set
+     */
+    public final synchronized int gallop(final RowSet other, final int i, final int from) {
+        assert this.sortBound == this.chunkcount : "sortBound = " + this.sortBound + ", chunkcount = " + this.chunkcount;
+        assert other.rowdef.objectsize == this.rowdef.objectsize;
+        final byte[] a = other.chunkcache;
+        final int astart = i * other.rowdef.objectsize;
+        if (from >= this.chunkcount) return -this.chunkcount - 1;
+        int d = compare(a, astart, from);
+        if (d <= 0) return d == 0 ? from : -from - 1;
+
+        // the key is greater than the key at l; find a position r with a greater key
+        int l = from, r = from + 1, step = 1;
+        while (r < this.chunkcount) {
+            d = compare(a, astart, r);
+            if (d == 0) return r;
+            if (d < 0) break;
+            l = r;
+            step = step << 1;
+            r = l + step;
+        }
+        if (r > this.chunkcount) r = this.chunkcount;
+
+        // binary search between l and r
+        l++;
+        int p;
+        while (l < r) {
+            p = (l + r) >> 1;
+            d = compare(a, astart, p);
+            if (d == 0) return p;
+            if (d < 0) r = p; else l = p + 1;
+        }
+        return -l - 1;
+    }
+
     private final int iterativeSearch(final byte[] key, final int astart, final int leftBorder, final int rightBound) {
         // returns the chunknumber
         for (int i = leftBorder; i < rightBound; i++) {
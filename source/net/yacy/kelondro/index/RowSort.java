@@ -0,0 +1,223 @@
+/**
+ *  RowSort
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.kelondro.util.MemoryControl;
+
+/**
+ * Fork-join sort of the rows in a flat chunk cache. The rows are compared with the object order of
+ * the row definition directly on the byte slices of their primary keys, no row objects are created.
+ * If a sorted prefix exists, only the unsorted tail is sorted and then merged with the prefix.
+ */
+final class RowSort {
+
+    /** collections with at least this number of rows are sorted with this class */
+    static final int PARALLEL_SORT_LIMIT = 50000;
+
+    private static final int SEQUENTIAL_LIMIT = 8192; // ranges below this size are not split into tasks
+    private static final int INSERTION_LIMIT = 16;
+
+    private static final ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+
+    private final ByteOrder order;
+    private final int objectsize, keylength;
+
+    private RowSort(final Row rowdef) {
+        this.order = rowdef.objectOrder;
+        this.objectsize = rowdef.objectsize;
+        this.keylength = rowdef.primaryKeyLength;
+    }
+
+    /**
+     * sort the rows in a chunk cache
+     * @param rowdef the row definition; the object order must not be null
+     * @param cache the chunk cache
+     * @param count the number of rows in the cache
+     * @param sortBound the number of rows at the beginning of the cache which are already sorted
+     * @return the sorted chunk cache; this is a new array if the sorted prefix was merged with the tail
+     */
+    static byte[] sort(final Row rowdef, final byte[] cache, final int count, final int sortBound) {
+        final RowSort s = new RowSort(rowdef);
+        final int tail = count - sortBound;
+        if (sortBound < tail || !MemoryControl.request(cache.length, false)) {
+            // the prefix is too small to be worth a merge or there is no RAM for a copy: sort everything in place
+            pool.invoke(s.new QuickSort(cache, 0, count));
+            return cache;
+        }
+        pool.invoke(s.new QuickSort(cache, sortBound, count));
+        final byte[] target = new byte[cache.length];
+        pool.invoke(s.new Merge(cache, 0, sortBound, sortBound, count, target, 0));
+        return target;
+    }
+
+    private final int compare(final byte[] a, final int i, final byte[] b, final int j) {
+        return this.order.compare(a, i * this.objectsize, b, j * this.objectsize, this.keylength);
+    }
+
+    private final void swap(final byte[] a, final int i, final int j, final byte[] swapspace) {
+        System.arraycopy(a, i * this.objectsize, swapspace, 0, this.objectsize);
+        System.arraycopy(a, j * this.objectsize, a, i * this.objectsize, this.objectsize);
+        System.arraycopy(swapspace, 0, a, j * this.objectsize, this.objectsize);
+    }
+
+    private final class QuickSort extends RecursiveAction {
+
+        private static final long serialVersionUID = 2417307469227512034L;
+
+        private final byte[] a;
+        private final int lo, hi; // the range [lo, hi)
+
+        private QuickSort(final byte[] a, final int lo, final int hi) {
+            this.a = a;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            final byte[] swapspace = new byte[RowSort.this.objectsize];
+            final byte[] pivot = new byte[RowSort.this.keylength];
+            final List<QuickSort> forked = new ArrayList<QuickSort>();
+            int l = this.lo, h = this.hi;
+            while (h - l > SEQUENTIAL_LIMIT) {
+                // split the range; the smaller part is sorted in a new task, the larger one in this task
+                final int p = partition(this.a, l, h, pivot, swapspace);
+                if (p - l < h - p) {
+                    forked.add(new QuickSort(this.a, l, p));
+                    l = p;
+                } else {
+                    forked.add(new QuickSort(this.a, p, h));
+                    h = p;
+                }
+                forked.get(forked.size() - 1).fork();
+            }
+            sequential(this.a, l, h, pivot, swapspace);
+            for (final QuickSort task: forked) task.join();
+        }
+    }
+
+    /**
+     * split a range into [lo, p) and [p, hi) where no row of the first part is greater than a row of the second part
+     * @return p with lo < p < hi
+     */
+    private final int partition(final byte[] a, final int lo, final int hi, final byte[] pivot, final byte[] swapspace) {
+        // order the first, the middle and the last row; the middle one becomes the pivot
+        final int m = (lo + hi) >>> 1;
+        if (compare(a, m, a, lo) < 0) swap(a, m, lo, swapspace);
+        if (compare(a, hi - 1, a, lo) < 0) swap(a, hi - 1, lo, swapspace);
+        if (compare(a, hi - 1, a, m) < 0) swap(a, hi - 1, m, swapspace);
+        System.arraycopy(a, m * this.objectsize, pivot, 0, this.keylength);
+        int i = lo - 1, j = hi;
+        while (true) {
+            do i++; while (compare(a, i, pivot, 0) < 0);
+            do j--; while (compare(a, j, pivot, 0) > 0);
+            if (i >= j) return j + 1;
+            swap(a, i, j, swapspace);
+        }
+    }
+
+    private final void sequential(final byte[] a, int lo, int hi, final byte[] pivot, final byte[] swapspace) {
+        while (hi - lo > INSERTION_LIMIT) {
+            final int p = partition(a, lo, hi, pivot, swapspace);
+            // recursion into the smaller part limits the stack depth
+            if (p - lo < hi - p) {
+                sequential(a, lo, p, pivot, swapspace);
+                lo = p;
+            } else {
+                sequential(a, p, hi, pivot, swapspace);
+                hi = p;
+            }
+        }
+        for (int i = lo + 1; i < hi; i++) {
+            for (int j = i; j > lo && compare(a, j, a, j - 1) < 0; j--) swap(a, j, j - 1, swapspace);
+        }
+    }
+
+    /**
+     * merge two sorted ranges of the source into the target
+     */
+    private final class Merge extends RecursiveAction {
+
+        private static final long serialVersionUID = -2400207006358839236L;
+
+        private final byte[] a, target;
+        private final int lo1, hi1, lo2, hi2, t;
+
+        private Merge(final byte[] a, final int lo1, final int hi1, final int lo2, final int hi2, final byte[] target, final int t) {
+            this.a = a;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.target = target;
+            this.t = t;
+        }
+
+        @Override
+        protected void compute() {
+            final int n1 = this.hi1 - this.lo1, n2 = this.hi2 - this.lo2;
+            if (n1 + n2 <= SEQUENTIAL_LIMIT || n1 == 0 || n2 == 0) {
+                merge(this.a, this.lo1, this.hi1, this.lo2, this.hi2, this.target, this.t);
+                return;
+            }
+            // split the larger range in the middle and the other one at the same key
+            final boolean firstLarger = n1 >= n2;
+            final int lo = firstLarger ? this.lo1 : this.lo2, hi = firstLarger ? this.hi1 : this.hi2;
+            final int olo = firstLarger ? this.lo2 : this.lo1, ohi = firstLarger ? this.hi2 : this.hi1;
+            final int m = (lo + hi) >>> 1;
+            final int om = lowerBound(this.a, olo, ohi, m);
+            final int tm = this.t + (m - lo) + (om - olo);
+            invokeAll(
+                new Merge(this.a, lo, m, olo, om, this.target, this.t),
+                new Merge(this.a, m, hi, om, ohi, this.target, tm));
+        }
+    }
+
+    /**
+     * @return the first position in [lo, hi) with a row which is not smaller than row k
+     */
+    private final int lowerBound(final byte[] a, int lo, int hi, final int k) {
+        while (lo < hi) {
+            final int m = (lo + hi) >>> 1;
+            if (compare(a, m, a, k) < 0) lo = m + 1; else hi = m;
+        }
+        return lo;
+    }
+
+    private final void merge(final byte[] a, int i, final int hi1, int j, final int hi2, final byte[] target, int t) {
+        final int size = this.objectsize;
+        while (i < hi1 && j < hi2) {
+            if (compare(a, j, a, i) < 0) {
+                System.arraycopy(a, j++ * size, target, t++ * size, size);
+            } else {
+                System.arraycopy(a, i++ * size, target, t++ * size, size);
+            }
+        }
+        if (i < hi1) System.arraycopy(a, i * size, target, t * size, (hi1 - i) * size);
+        if (j < hi2) System.arraycopy(a, j * size, target, t * size, (hi2 - j) * size);
+    }
+
+}
@@ -0,0 +1,113 @@
+// MappedFileReader.java
+// ---------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+
+package net.yacy.kelondro.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only view on a file which is mapped into memory with {@link FileChannel#map}.
+ * All read methods take an absolute position and do not share a file pointer, therefore
+ * they can be called concurrently from many threads without any synchronization.
+ * Files larger than 2GB are mapped as a sequence of segments.
+ * The mapping reflects the file length at the time of construction; writes to the mapped
+ * region by other writers of the same file (i.e. deletion marks) are visible, appended data is not.
+ * There is no close method: the mapping is released when the reader is garbage collected.
+ * A read of a mapped region behind the end of a file which was truncated after mapping crashes
+ * the JVM (SIGBUS), so an owner must drop the reader and wait for running reads before it
+ * truncates the file; the HeapReader uses a read/write lock for this.
+ */
+public final class MappedFileReader {
+
+    private static final int SEGMENT_SHIFT = 30; // 1 GB segments
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final File file;
+    private final long length;
+    private final MappedByteBuffer[] segments;
+
+    public MappedFileReader(final File file) throws IOException {
+        this.file = file;
+        try (final RandomAccessFile raf = new RandomAccessFile(file, "r");
+             final FileChannel channel = raf.getChannel()) {
+            this.length = channel.size();
+            final int count = (int) ((this.length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+            this.segments = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                final long start = ((long) i) << SEGMENT_SHIFT;
+                this.segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, this.length - start));
+            }
+        }
+        // the mapping stays valid after the channel is closed
+    }
+
+    public File file() {
+        return this.file;
+    }
+
+    /**
+     * @return the length of the mapped region, which is the file length at the time of mapping
+     */
+    public long length() {
+        return this.length;
+    }
+
+    /**
+     * test if a region is completely inside of the mapping
+     * @param pos the start position
+     * @param len the length of the region
+     * @return true if the region can be read with this reader
+     */
+    public boolean covers(final long pos, final long len) {
+        return pos >= 0 && len >= 0 && pos + len <= this.length;
+    }
+
+    public int readInt(final long pos) throws IOException {
+        if (!covers(pos, 4)) throw new EOFException("read of 4 bytes at " + pos + " beyond mapped length " + this.length + " of " + this.file.getName());
+        final int offset = (int) (pos & SEGMENT_MASK);
+        final ByteBuffer segment = this.segments[(int) (pos >>> SEGMENT_SHIFT)];
+        if (offset + 4 <= segment.limit()) return segment.getInt(offset); // absolute get does not touch the buffer position
+        final byte[] b = new byte[4];
+        readFully(pos, b, 0, 4);
+        return ((b[0] & 0xFF) << 24) | ((b[1] & 0xFF) << 16) | ((b[2] & 0xFF) << 8) | (b[3] & 0xFF);
+    }
+
+    public void readFully(long pos, final byte[] b, int off, int len) throws IOException {
+        if (!covers(pos, len)) throw new EOFException("read of " + len + " bytes at " + pos + " beyond mapped length " + this.length + " of " + this.file.getName());
+        while (len > 0) {
+            final int offset = (int) (pos & SEGMENT_MASK);
+            // a duplicate has its own position, so the shared segment is never modified
+            final ByteBuffer view = this.segments[(int) (pos >>> SEGMENT_SHIFT)].duplicate();
+            final int chunk = Math.min(len, view.limit() - offset);
+            view.position(offset);
+            view.get(b, off, chunk);
+            pos += chunk;
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
+}
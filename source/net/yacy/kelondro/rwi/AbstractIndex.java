@@ -136,6 +136,16 @@ public abstract class AbstractIndex <ReferenceType extends Reference> implements
         return new TermSearch<ReferenceType>(this, queryHashes, excludeHashes, urlselection, termFactory, maxDistance);
     }
 
+    public TermSearch<ReferenceType> query(
+            final HandleSet queryHashes,
+            final HandleSet excludeHashes,
+            final HandleSet urlselection,
+            final ReferenceFactory<ReferenceType> termFactory,
+            final int maxDistance,
+            final int maxCount) throws SpaceExceededException {
+        return new TermSearch<ReferenceType>(this, queryHashes, excludeHashes, urlselection, termFactory, maxDistance, maxCount);
+    }
+
     @Override
     public Row referenceRow() {
         return this.factory.getRow();
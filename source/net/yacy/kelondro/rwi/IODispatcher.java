@@ -27,11 +27,18 @@ package net.yacy.kelondro.rwi;
 import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.blob.ArrayStack;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
 
 /**
@@ -45,6 +52,11 @@ import net.yacy.kelondro.util.MemoryControl;
  * to use this class, first instantiate a object and then start the concurrent execution
  * of merging with a call to the start() - method. To shut down all mergings, call terminate()
  * only once.
+ *
+ * On storage which can handle concurrent IO (SSDs, RAID) a dispatcher can run more than one
+ * job at the same time; the number of concurrent jobs is limited by the concurrency value.
+ * Merge jobs may merge more than two files in one pass (fan-in), which reduces the number of
+ * times a reference is rewritten until it reaches a large file.
  */
 public class IODispatcher extends Thread {
 
@@ -56,17 +68,77 @@ public class IODispatcher extends Thread {
     private   ArrayBlockingQueue<DumpJob<? extends Reference>> dumpQueue;
     private   boolean                      terminate;
     private final int                      writeBufferSize;
+    private final int                      concurrency;
+    private final int                      fanIn;
+    private final Semaphore                ioSlots; // limits the number of concurrently running io jobs
+    private final ExecutorService          mergeExecutor; // null if merges run in the dispatcher thread
+
+    // statistics
+    private final AtomicInteger runningMerges = new AtomicInteger(0);
+    private final AtomicLong dumpBytes = new AtomicLong(0);
+    private final AtomicLong mergeReadBytes = new AtomicLong(0);
+    private final AtomicLong mergeWriteBytes = new AtomicLong(0);
+    private final AtomicLong mergeTime = new AtomicLong(0);
+    private final AtomicLong mergeCount = new AtomicLong(0);
 
     public IODispatcher(final int dumpQueueLength, final int mergeQueueLength, final int writeBufferSize) {
+        this(dumpQueueLength, mergeQueueLength, writeBufferSize, 1, 2);
+    }
+
+    /**
+     * @param concurrency the maximum number of io jobs running at the same time; 1 for strictly serial io
+     * @param fanIn the maximum number of files which are merged in one pass
+     */
+    public IODispatcher(final int dumpQueueLength, final int mergeQueueLength, final int writeBufferSize, final int concurrency, final int fanIn) {
     	super("IODispatcher");
         this.termination = new Semaphore(0);
         this.controlQueue = new Semaphore(0);
         this.dumpQueue = new ArrayBlockingQueue<DumpJob<? extends Reference>>(dumpQueueLength);
         this.mergeQueue = new ArrayBlockingQueue<MergeJob>(mergeQueueLength);
         this.writeBufferSize = writeBufferSize;
+        this.concurrency = Math.max(1, concurrency);
+        this.fanIn = Math.max(2, fanIn);
+        this.ioSlots = new Semaphore(this.concurrency, true);
+        this.mergeExecutor = this.concurrency > 1 ? Executors.newFixedThreadPool(this.concurrency, new NamePrefixThreadFactory("IODispatcher.merge")) : null;
         this.terminate = false;
     }
 
+    public int concurrency() {
+        return this.concurrency;
+    }
+
+    public int fanIn() {
+        return this.fanIn;
+    }
+
+    /**
+     * @return the number of merge jobs which are waiting or running
+     */
+    public int mergeBacklog() {
+        final ArrayBlockingQueue<MergeJob> q = this.mergeQueue;
+        return (q == null ? 0 : q.size()) + this.runningMerges.get();
+    }
+
+    /**
+     * @return the average number of input bytes per second of all finished merges
+     */
+    public long mergeBytesPerSecond() {
+        final long time = this.mergeTime.get();
+        return time == 0 ? 0 : this.mergeReadBytes.get() * 1000L / time;
+    }
+
+    /**
+     * @return the number of bytes written by dumps and merges for each byte written by dumps; 0 if nothing was dumped yet
+     */
+    public double writeAmplification() {
+        final long dumped = this.dumpBytes.get();
+        return dumped == 0 ? 0.0d : ((double) (dumped + this.mergeWriteBytes.get())) / ((double) dumped);
+    }
+
+    public long mergeCount() {
+        return this.mergeCount.get();
+    }
+
     public void terminate() {
         this.terminate = true; // asure current run() loop will termiate
         if (this.termination != null && this.controlQueue != null && isAlive()) {
@@ -111,23 +183,30 @@ public class IODispatcher extends Thread {
         return (this.controlQueue == null || !isAlive()) ? 0 : this.controlQueue.availablePermits();
     }
 
-    protected synchronized void merge(final File f1, final File f2, final ReferenceFactory<? extends Reference> factory, final ArrayStack array, final File newFile) {
+    protected void merge(final File f1, final File f2, final ReferenceFactory<? extends Reference> factory, final ArrayStack array, final File newFile) {
+        merge(f2 == null ? new File[]{f1} : new File[]{f1, f2}, factory, array, newFile);
+    }
+
+    /**
+     * merge the given files into a new file; a single file is rewritten
+     */
+    protected synchronized void merge(final File[] files, final ReferenceFactory<? extends Reference> factory, final ArrayStack array, final File newFile) {
         if (this.mergeQueue == null || this.controlQueue == null || !isAlive()) {
-            if (f2 == null) {
-                log.warn("emergency rewrite of file " + f1.getName() + " to " + newFile.getName());
+            if (files.length == 1) {
+                log.warn("emergency rewrite of file " + files[0].getName() + " to " + newFile.getName());
             } else {
-                log.warn("emergency merge of files " + f1.getName() + ", " + f2.getName() + " to " + newFile.getName());
+                log.warn("emergency merge of files " + names(files) + " to " + newFile.getName());
             }
-            array.mergeMount(f1, f2, factory, newFile, (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize));
+            array.mergeMount(files, factory, newFile, (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize));
         } else {
-            final MergeJob job = new MergeJob(f1, f2, factory, array, newFile);
+            final MergeJob job = new MergeJob(files, factory, array, newFile);
             if (isAlive()) {
                 try {
                     this.mergeQueue.add(job);
-                    if (f2 == null) {
-                        log.info("appended rewrite job of file " + f1.getName() + " to " + newFile.getName());
+                    if (files.length == 1) {
+                        log.info("appended rewrite job of file " + files[0].getName() + " to " + newFile.getName());
                     } else {
-                        log.info("appended merge job of files " + f1.getName() + ", " + f2.getName() + " to " + newFile.getName());
+                        log.info("appended merge job of files " + names(files) + " to " + newFile.getName());
                     }
                 } catch (final IllegalStateException e) { // because mergeQueue size is 1, IllegalStateException could happen frequently (serial execution ensured in run() )
                 	log.warn("Could not add merge job to queue: " + e.getMessage());
@@ -136,15 +215,24 @@ public class IODispatcher extends Thread {
                 }
             } else {
                 job.merge();
-                if (f2 == null) {
-                    log.warn("dispatcher not running, merged files " + f1.getName() + " to " + newFile.getName());
+                if (files.length == 1) {
+                    log.warn("dispatcher not running, rewrote file " + files[0].getName() + " to " + newFile.getName());
                 } else {
-                    log.warn("dispatcher not running, rewrote file " + f1.getName() + ", " + f2.getName() + " to " + newFile.getName());
+                    log.warn("dispatcher not running, merged files " + names(files) + " to " + newFile.getName());
                 }
             }
         }
     }
 
+    private static String names(final File[] files) {
+        final StringBuilder sb = new StringBuilder(files.length * 40);
+        for (final File f: files) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append(f.getName());
+        }
+        return sb.toString();
+    }
+
     @Override
     public void run() {
         MergeJob mergeJob;
@@ -159,7 +247,12 @@ public class IODispatcher extends Thread {
                     try {
                         dumpJob = this.dumpQueue.take();
                         f = dumpJob.file;
-                        dumpJob.dump();
+                        this.ioSlots.acquire();
+                        try {
+                            dumpJob.dump();
+                        } finally {
+                            this.ioSlots.release();
+                        }
                     } catch (final InterruptedException e) {
                         log.severe("main run job was interrupted (1)", e);
                     } catch (final Throwable e) {
@@ -173,21 +266,24 @@ public class IODispatcher extends Thread {
 
                 // otherwise do a merge operation
                 if (!this.mergeQueue.isEmpty() && !MemoryControl.shortStatus()) {
-                	File f = null, f1 = null, f2 = null;
                     try {
                         mergeJob = this.mergeQueue.take();
-                        f = mergeJob.newFile;
-                        f1 = mergeJob.f1;
-                        f2 = mergeJob.f2;
-                        mergeJob.merge();
+                        // wait for a free io slot; with a concurrency of 1 this is always free because dumps run in this thread
+                        this.ioSlots.acquire();
+                        this.runningMerges.incrementAndGet();
+                        if (this.mergeExecutor == null) {
+                            mergeJob.run();
+                        } else {
+                            try {
+                                this.mergeExecutor.execute(mergeJob);
+                            } catch (final RejectedExecutionException e) {
+                                mergeJob.run();
+                            }
+                        }
                     } catch (final InterruptedException e) {
                         log.severe("main run job was interrupted (2)", e);
                     } catch (final Throwable e) {
-                        if (f2 == null) {
-                            log.severe("main run job had errors (2), dump to " + f + " failed. Input file is " + f1, e);
-                        } else {
-                            log.severe("main run job had errors (2), dump to " + f + " failed. Input files are " + f1 + " and " + f2, e);
-                        }
+                        log.severe("main run job had errors (2)", e);
                     } finally {
                         // make sure (on error) loop never hangs on controlQueue.acquire() (after/on error)
                         if (this.terminate) this.controlQueue.release();
@@ -209,6 +305,15 @@ public class IODispatcher extends Thread {
             log.severe("main run job failed (4)", e);
         } finally {
             log.info("terminating run job");
+            if (this.mergeExecutor != null) {
+                // running merges must be finished before the index files are closed
+                this.mergeExecutor.shutdown();
+                try {
+                    while (!this.mergeExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                        log.info("waiting for " + this.runningMerges.get() + " running merges");
+                    }
+                } catch (final InterruptedException e) {}
+            }
             this.controlQueue = null;
             this.dumpQueue = null;
             this.mergeQueue = null;
@@ -228,6 +333,7 @@ public class IODispatcher extends Thread {
         private void dump() {
             try {
                 if (!this.cache.isEmpty()) this.cache.dump(this.file, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize), true);
+                IODispatcher.this.dumpBytes.addAndGet(this.file.length());
                 this.array.mountBLOBFile(this.file);
             } catch (final IOException e) {
                 ConcurrentLog.logException(e);
@@ -235,35 +341,55 @@ public class IODispatcher extends Thread {
         }
     }
 
-    private class MergeJob {
+    private class MergeJob implements Runnable {
 
-        private final File f1, f2, newFile;
+        private final File[] files;
+        private final File newFile;
         private final ArrayStack array;
         private final ReferenceFactory<? extends Reference> factory;
 
         private MergeJob(
-                final File f1,
-                final File f2,
+                final File[] files,
                 final ReferenceFactory<? extends Reference> factory,
                 final ArrayStack array,
                 final File newFile) {
-            this.f1 = f1;
-            this.f2 = f2;
+            this.files = files;
             this.factory = factory;
             this.newFile = newFile;
             this.array = array;
         }
 
+        /**
+         * run the job in the dispatcher or in a merge thread; the io slot is released when the job is finished
+         */
+        @Override
+        public void run() {
+            try {
+                merge();
+            } catch (final Throwable e) {
+                log.severe("merge job had errors, dump to " + this.newFile + " failed. Input files are " + names(this.files), e);
+            } finally {
+                IODispatcher.this.runningMerges.decrementAndGet();
+                IODispatcher.this.ioSlots.release();
+            }
+        }
+
         private File merge() {
-        	if (!this.f1.exists()) {
-        	    log.warn("merge of file (1) " + this.f1.getName() + " failed: file does not exists");
-        		return null;
-        	}
-        	if (this.f2 != null && !this.f2.exists()) {
-        	    log.warn("merge of file (2) " + this.f2.getName() + " failed: file does not exists");
-        		return null;
-        	}
-            return this.array.mergeMount(this.f1, this.f2, this.factory, this.newFile, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize));
+            long inputBytes = 0;
+            for (final File f: this.files) {
+                if (!f.exists()) {
+                    log.warn("merge of file " + f.getName() + " failed: file does not exists");
+                    return null;
+                }
+                inputBytes += f.length();
+            }
+            final long start = System.currentTimeMillis();
+            final File resultFile = this.array.mergeMount(this.files, this.factory, this.newFile, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize));
+            IODispatcher.this.mergeTime.addAndGet(System.currentTimeMillis() - start);
+            IODispatcher.this.mergeReadBytes.addAndGet(inputBytes);
+            if (resultFile != null) IODispatcher.this.mergeWriteBytes.addAndGet(resultFile.length());
+            IODispatcher.this.mergeCount.incrementAndGet();
+            return resultFile;
         }
     }
 
@@ -80,6 +80,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
     private final Map<byte[], HandleSet>                 removeDelayedURLs; // mapping from word hashes to a list of url hashes
     private       boolean                                flushShallRun;
     private final Thread                                 flushThread;
+    private final OffHeapSlabPool                        offHeapPool; // null if the RAM cache is on the heap
 
     public IndexCell(
             final File cellPath,
@@ -93,11 +94,48 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
             final int writeBufferSize,
             final IODispatcher merger
             ) throws IOException {
+        this(cellPath, prefix, factory, termOrder, termSize, maxRamEntries, targetFileSize, maxFileSize, writeBufferSize, merger, false);
+    }
+
+    public IndexCell(
+            final File cellPath,
+            final String prefix,
+            final ReferenceFactory<ReferenceType> factory,
+            final ByteOrder termOrder,
+            final int termSize,
+            final int maxRamEntries,
+            final long targetFileSize,
+            final long maxFileSize,
+            final int writeBufferSize,
+            final IODispatcher merger,
+            final boolean mappedRead
+            ) throws IOException {
+        this(cellPath, prefix, factory, termOrder, termSize, maxRamEntries, targetFileSize, maxFileSize, writeBufferSize, merger, mappedRead, null);
+    }
+
+    /**
+     * @param offHeapPool if not null, the RAM cache stores its references in slabs from this pool outside of the heap
+     */
+    public IndexCell(
+            final File cellPath,
+            final String prefix,
+            final ReferenceFactory<ReferenceType> factory,
+            final ByteOrder termOrder,
+            final int termSize,
+            final int maxRamEntries,
+            final long targetFileSize,
+            final long maxFileSize,
+            final int writeBufferSize,
+            final IODispatcher merger,
+            final boolean mappedRead,
+            final OffHeapSlabPool offHeapPool
+            ) throws IOException {
         super(factory);
 
         this.merger = merger;
-        this.array = new ReferenceContainerArray<ReferenceType>(cellPath, prefix, factory, termOrder, termSize);
-        this.ram = new ReferenceContainerCache<ReferenceType>(factory, termOrder, termSize);
+        this.offHeapPool = offHeapPool;
+        this.array = new ReferenceContainerArray<ReferenceType>(cellPath, prefix, factory, termOrder, termSize, mappedRead);
+        this.ram = new ReferenceContainerCache<ReferenceType>(factory, termOrder, termSize, offHeapPool);
         this.countCache = new ComparableARC<byte[], Integer>(1000, termOrder);
         this.maxRamEntries = maxRamEntries;
         this.lastCleanup = System.currentTimeMillis();
@@ -132,13 +170,9 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
 
             // dump the cache if necessary
             final long t = System.currentTimeMillis();
-            if ((IndexCell.this.ram.size() >= IndexCell.this.maxRamEntries ||
-                (IndexCell.this.ram.size() > 3000 && !MemoryControl.request(80L * 1024L * 1024L, false)) ||
-                (!IndexCell.this.ram.isEmpty() && IndexCell.this.lastDump + dumpCycle < t))) {
+            if (dumpRequired(t)) {
                 synchronized (IndexCell.this.merger) {
-                    if (IndexCell.this.ram.size() >= IndexCell.this.maxRamEntries ||
-                        (IndexCell.this.ram.size() > 3000 && !MemoryControl.request(80L * 1024L * 1024L, false)) ||
-                        (!IndexCell.this.ram.isEmpty() && IndexCell.this.lastDump + dumpCycle < t)) try {
+                    if (dumpRequired(t)) try {
                             IndexCell.this.lastDump = System.currentTimeMillis();
                         // removed delayed
                         try {removeDelayed();} catch (final IOException e) {}
@@ -152,7 +186,7 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
                         synchronized (this) {
                             ramdump = IndexCell.this.ram;
                             // get a fresh ram cache
-                            IndexCell.this.ram = new ReferenceContainerCache<ReferenceType>(IndexCell.this.factory, termOrder, termSize);
+                            IndexCell.this.ram = new ReferenceContainerCache<ReferenceType>(IndexCell.this.factory, termOrder, termSize, IndexCell.this.offHeapPool);
                         }
                         // WARNING : if this cell is queried before this dump termination, terms are no longer in the cache and would therefore not be found
                         // dump the buffer
@@ -183,12 +217,32 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
 
     }
 
+    /**
+     * check if the RAM cache must be dumped. An off-heap cache moves its references out of the heap
+     * when the heap gets short and is dumped only when its slabs are full.
+     */
+    private boolean dumpRequired(final long t) {
+        if (!this.ram.isEmpty() && this.lastDump + dumpCycle < t) return true;
+        if (this.ram.size() >= this.maxRamEntries) return true;
+        if (this.ram.size() <= 3000 || MemoryControl.request(80L * 1024L * 1024L, false)) return this.ram.offHeapFull();
+        if (!this.ram.isOffHeap()) return true;
+        this.ram.spill();
+        return this.ram.offHeapFull();
+    }
+
     private boolean shrink(final long targetFileSize, final long maxFileSize) {
         if (this.array.entries() < 2) return false;
         boolean donesomething = false;
 
-        // first try to merge small files that match
+        // with a multi-way merger, first merge as many small files as possible in one pass
         int term = 10;
+        while (term-- > 0 && this.merger.fanIn() > 2 && (this.merger.queueLength() < 3 || this.array.entries() >= 50)) {
+            if (!this.array.shrinkManySmallFiles(this.merger, targetFileSize)) break;
+            donesomething = true;
+        }
+
+        // then try to merge small files that match
+        term = 10;
         while (term-- > 0 && (this.merger.queueLength() < 3 || this.array.entries() >= 50)) {
             if (!this.array.shrinkBestSmallFiles(this.merger, targetFileSize)) break;
             donesomething = true;
@@ -351,10 +405,10 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
      */
     @Override
     public ReferenceContainer<ReferenceType> get(final byte[] termHash, final HandleSet urlselection) throws IOException {
-        final ReferenceContainer<ReferenceType> c0 = this.ram.get(termHash, null);
+        final ReferenceContainer<ReferenceType> c0 = this.ram.get(termHash, urlselection);
         ReferenceContainer<ReferenceType> c1 = null;
         try {
-            c1 = this.array.get(termHash);
+            c1 = this.array.get(termHash, urlselection);
         } catch (final SpaceExceededException e2) {
             ConcurrentLog.logException(e2);
         }
@@ -481,32 +535,40 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
     public int remove(final byte[] termHash, final HandleSet urlHashes) throws IOException {
         this.countCache.remove(termHash);
         final int removed = this.ram.remove(termHash, urlHashes);
-        int reduced;
-        //final long am = this.array.mem();
-        try {
-            reduced = this.array.reduce(termHash, new RemoveReducer<ReferenceType>(urlHashes));
-        } catch (final SpaceExceededException e) {
-            reduced = 0;
-            ConcurrentLog.warn("IndexCell", "not possible to remove urlHashes from a RWI because of too low memory. Remove was not applied. Please increase RAM assignment");
-        }
-        //assert this.array.mem() <= am : "am = " + am + ", array.mem() = " + this.array.mem();
-        return removed + (reduced / this.array.rowdef().objectsize);
+        final int reduced = reduce(termHash, new RemoveReducer<ReferenceType>(urlHashes));
+        return removed + reduced;
     }
 
     @Override
     public boolean remove(final byte[] termHash, final byte[] urlHashBytes) throws IOException {
         this.countCache.remove(termHash);
         final boolean removed = this.ram.remove(termHash, urlHashBytes);
+        final int reduced = reduce(termHash, new RemoveReducer<ReferenceType>(urlHashBytes));
+        return removed || (reduced > 0);
+    }
+
+    /**
+     * remove references from the containers of a term in the BLOB files. Reduced containers which
+     * do not fit into the place of the old container in a BLOB are moved to the RAM cache.
+     * @return the number of removed references
+     */
+    private int reduce(final byte[] termHash, final RemoveReducer<ReferenceType> reducer) throws IOException {
+        final Collection<ReferenceContainer<ReferenceType>> overflow = new ArrayList<ReferenceContainer<ReferenceType>>(1);
         int reduced;
-        //final long am = this.array.mem();
         try {
-            reduced = this.array.reduce(termHash, new RemoveReducer<ReferenceType>(urlHashBytes));
+            reduced = this.array.reduce(termHash, reducer, overflow);
         } catch (final SpaceExceededException e) {
             reduced = 0;
             ConcurrentLog.warn("IndexCell", "not possible to remove urlHashes from a RWI because of too low memory. Remove was not applied. Please increase RAM assignment");
         }
-        //assert this.array.mem() <= am : "am = " + am + ", array.mem() = " + this.array.mem();
-        return removed || (reduced > 0);
+        for (final ReferenceContainer<ReferenceType> container: overflow) {
+            try {
+                this.ram.add(container);
+            } catch (final SpaceExceededException e) {
+                ConcurrentLog.warn("IndexCell", "lost " + container.size() + " references of a reduced RWI because of too low memory. Please increase RAM assignment");
+            }
+        }
+        return reduced;
     }
 
     private static class RemoveReducer<ReferenceType extends Reference> implements ReferenceContainerArray.ContainerReducer<ReferenceType> {
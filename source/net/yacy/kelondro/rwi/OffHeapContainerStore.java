@@ -0,0 +1,224 @@
+// OffHeapContainerStore.java
+// --------------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.rwi;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.yacy.cora.util.ByteArray;
+
+/**
+ * The off-heap part of a ReferenceContainerCache: exported reference containers are appended to slabs
+ * from an OffHeapSlabPool. A term may have several segments, one for each time the heap part of the cache
+ * was moved into this store. The store is append-only: rewritten or deleted segments are not reclaimed
+ * before the store is cleared, which happens when the cache is dumped. Reading, writing and clearing
+ * the slabs is synchronized on the store, because cleared slabs are handed out again by the pool.
+ * The term index of the store contains all terms of the cache, also those which have only heap references.
+ */
+final class OffHeapContainerStore {
+
+    /**
+     * the segments of one term; instances are immutable
+     */
+    static final class Segments {
+        private final long[] handles; // slab number in the upper and offset in the lower 32 bits
+        private final int[] lengths;
+        private final int rows;
+        private final int generation; // the generation of the store in which the segments were written
+
+        private Segments(final long[] handles, final int[] lengths, final int rows, final int generation) {
+            this.handles = handles;
+            this.lengths = lengths;
+            this.rows = rows;
+            this.generation = generation;
+        }
+
+        /**
+         * @return the number of segments
+         */
+        int count() {
+            return this.handles.length;
+        }
+
+        /**
+         * @return the number of references in all segments, double references in different segments are counted twice
+         */
+        int rows() {
+            return this.rows;
+        }
+
+        private Segments append(final long handle, final int length, final int rows, final int generation) {
+            final long[] h = new long[this.handles.length + 1];
+            final int[] l = new int[this.lengths.length + 1];
+            System.arraycopy(this.handles, 0, h, 0, this.handles.length);
+            System.arraycopy(this.lengths, 0, l, 0, this.lengths.length);
+            h[this.handles.length] = handle;
+            l[this.lengths.length] = length;
+            return new Segments(h, l, this.rows + rows, generation);
+        }
+    }
+
+    static final Segments EMPTY = new Segments(new long[0], new int[0], 0, 0);
+
+    private final OffHeapSlabPool pool;
+    private final List<ByteBuffer> slabs;
+    private final ConcurrentHashMap<ByteArray, Segments> index;
+    private int position; // the write position in the last slab
+    private int generation; // incremented with every clear
+    private boolean exhausted;
+
+    OffHeapContainerStore(final OffHeapSlabPool pool) {
+        this.pool = pool;
+        this.slabs = new CopyOnWriteArrayList<ByteBuffer>();
+        this.index = new ConcurrentHashMap<ByteArray, Segments>();
+        this.position = 0;
+        this.generation = 0;
+        this.exhausted = false;
+    }
+
+    /**
+     * register a term which has references in the heap part of the cache
+     */
+    void touch(final ByteArray term) {
+        this.index.putIfAbsent(term, EMPTY);
+    }
+
+    boolean has(final ByteArray term) {
+        return this.index.containsKey(term);
+    }
+
+    Segments get(final ByteArray term) {
+        return this.index.get(term);
+    }
+
+    Segments remove(final ByteArray term) {
+        return this.index.remove(term);
+    }
+
+    int size() {
+        return this.index.size();
+    }
+
+    Iterator<ByteArray> keys() {
+        return this.index.keySet().iterator();
+    }
+
+    /**
+     * append an exported container to the segments of a term
+     * @return false if the capacity of the pool is exhausted; the container is then not stored
+     */
+    synchronized boolean append(final ByteArray term, final byte[] b, final int rows) {
+        final long handle = write(b);
+        if (handle < 0) return false;
+        final Segments s = this.index.get(term);
+        this.index.put(term, (s == null || s.generation != this.generation ? EMPTY : s).append(handle, b.length, rows, this.generation));
+        return true;
+    }
+
+    /**
+     * replace all segments of a term with one exported container
+     * @param b the exported container or null if the term has no references left in this store
+     * @return false if the capacity of the pool is exhausted; the term then has no segments
+     */
+    synchronized boolean replace(final ByteArray term, final byte[] b, final int rows) {
+        if (b == null) {
+            this.index.put(term, EMPTY);
+            return true;
+        }
+        final long handle = write(b);
+        if (handle < 0) {
+            this.index.put(term, EMPTY);
+            return false;
+        }
+        this.index.put(term, EMPTY.append(handle, b.length, rows, this.generation));
+        return true;
+    }
+
+    private long write(final byte[] b) {
+        if (b.length > this.pool.slabSize()) return -1;
+        if (this.slabs.isEmpty() || this.position + b.length > this.pool.slabSize()) {
+            final ByteBuffer slab = this.pool.take();
+            if (slab == null) {
+                this.exhausted = true;
+                return -1;
+            }
+            this.slabs.add(slab);
+            this.position = 0;
+        }
+        final int slabNumber = this.slabs.size() - 1;
+        final ByteBuffer slab = this.slabs.get(slabNumber).duplicate();
+        slab.position(this.position);
+        slab.put(b);
+        final long handle = (((long) slabNumber) << 32) | this.position;
+        this.position += b.length;
+        return handle;
+    }
+
+    /**
+     * read the exported containers of the segments, oldest first
+     * @return the containers; the list is empty if the store was cleared after the segments were taken from it
+     */
+    synchronized List<byte[]> read(final Segments s) {
+        if (s.generation != this.generation) return new ArrayList<byte[]>(0); // the slabs may belong to another store now
+        final List<byte[]> list = new ArrayList<byte[]>(s.handles.length);
+        for (int i = 0; i < s.handles.length; i++) {
+            final ByteBuffer slab = this.slabs.get((int) (s.handles[i] >>> 32)).duplicate();
+            slab.position((int) s.handles[i]);
+            final byte[] b = new byte[s.lengths[i]];
+            slab.get(b);
+            list.add(b);
+        }
+        return list;
+    }
+
+    /**
+     * @return true if a container could not be stored because the pool had no free slab
+     */
+    boolean exhausted() {
+        return this.exhausted;
+    }
+
+    /**
+     * @return the number of bytes in the slabs of this store
+     */
+    long usedBytes() {
+        return (long) this.slabs.size() * (long) this.pool.slabSize();
+    }
+
+    OffHeapSlabPool pool() {
+        return this.pool;
+    }
+
+    /**
+     * remove all terms and return the slabs to the pool
+     */
+    synchronized void clear() {
+        this.index.clear();
+        for (final ByteBuffer slab: this.slabs) this.pool.release(slab);
+        this.slabs.clear();
+        this.position = 0;
+        this.generation++;
+        this.exhausted = false;
+    }
+
+}
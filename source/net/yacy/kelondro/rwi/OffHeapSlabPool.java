@@ -0,0 +1,110 @@
+// OffHeapSlabPool.java
+// ---------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.rwi;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * A pool of direct byte buffers of a fixed size (slabs) for the off-heap mode of the ReferenceContainerCache.
+ * Slabs are allocated on demand up to the capacity of the pool and are recycled when a cache is dumped,
+ * so the direct memory is not left to the garbage collector. The pool is shared by the cache which is
+ * filled and the cache which is currently dumped.
+ */
+public final class OffHeapSlabPool {
+
+    private static final ConcurrentLog log = new ConcurrentLog("OffHeapSlabPool");
+
+    public static final int DEFAULT_SLAB_SIZE = 64 * 1024 * 1024;
+
+    private final int slabSize, maxSlabs;
+    private final ArrayDeque<ByteBuffer> free;
+    private int allocated, taken;
+
+    /**
+     * @param capacity the maximum number of bytes allocated outside of the heap
+     * @param slabSize the size of each slab; this is also the maximum size of an exported container in the buffer
+     */
+    public OffHeapSlabPool(final long capacity, final int slabSize) {
+        this.slabSize = slabSize;
+        this.maxSlabs = (int) Math.max(1, Math.min(Integer.MAX_VALUE, capacity / slabSize));
+        this.free = new ArrayDeque<ByteBuffer>();
+        this.allocated = 0;
+        this.taken = 0;
+    }
+
+    /**
+     * take a slab from the pool
+     * @return an empty slab or null if the capacity of the pool is exhausted
+     */
+    public synchronized ByteBuffer take() {
+        if (!this.free.isEmpty()) {
+            this.taken++;
+            return this.free.pop();
+        }
+        if (this.allocated >= this.maxSlabs) return null;
+        try {
+            final ByteBuffer slab = ByteBuffer.allocateDirect(this.slabSize);
+            this.allocated++;
+            this.taken++;
+            return slab;
+        } catch (final OutOfMemoryError e) {
+            // the direct memory of the jvm is smaller than the capacity; see -XX:MaxDirectMemorySize
+            log.warn("cannot allocate slab " + (this.allocated + 1) + " of " + this.maxSlabs + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * return a slab to the pool; the content of the slab is discarded
+     */
+    public synchronized void release(final ByteBuffer slab) {
+        slab.clear();
+        this.free.push(slab);
+        this.taken--;
+    }
+
+    public int slabSize() {
+        return this.slabSize;
+    }
+
+    /**
+     * @return the maximum number of bytes in the pool
+     */
+    public long capacity() {
+        return (long) this.maxSlabs * (long) this.slabSize;
+    }
+
+    /**
+     * @return the number of bytes in slabs which are taken from the pool
+     */
+    public synchronized long used() {
+        return (long) this.taken * (long) this.slabSize;
+    }
+
+    /**
+     * @return the number of bytes allocated outside of the heap
+     */
+    public synchronized long allocated() {
+        return (long) this.allocated * (long) this.slabSize;
+    }
+
+}
@@ -42,6 +42,7 @@ import net.yacy.cora.order.ByteOrder;
 import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.CompressedRowSet;
 import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.index.RowSet;
 
@@ -60,6 +61,7 @@ public class ReferenceContainer<ReferenceType extends Reference> extends RowSet
     private   byte[] termHash;
     protected ReferenceFactory<ReferenceType> factory;
     public static int maxReferences = 0; // overwrite this to enable automatic index shrinking. 0 means no shrinking
+    public static boolean compressExports = false; // overwrite this to write containers to the BLOB heaps in the compressed format
 
     public ReferenceContainer(final ReferenceFactory<ReferenceType> factory, final byte[] termHash, final RowSet collection) {
         super(collection);
@@ -84,6 +86,15 @@ public class ReferenceContainer<ReferenceType extends Reference> extends RowSet
         this.lastTimeWrote = 0;
     }
 
+    /**
+     * export the container for a BLOB heap; the export is compressed if compressExports is set.
+     * RowSet.importRowSet reads both formats.
+     * @return the exported container
+     */
+    public byte[] exportContainer() {
+        return compressExports ? CompressedRowSet.compress(this) : exportCollection();
+    }
+
     public ReferenceContainer<ReferenceType> topLevelClone() throws SpaceExceededException {
         final ReferenceContainer<ReferenceType> newContainer = new ReferenceContainer<ReferenceType>(this.factory, this.termHash, size());
         newContainer.addAllUnique(this);
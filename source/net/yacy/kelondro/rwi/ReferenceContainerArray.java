@@ -26,19 +26,24 @@ package net.yacy.kelondro.rwi;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 
 import net.yacy.cora.order.ByteOrder;
 import net.yacy.cora.order.CloneableIterator;
 import net.yacy.cora.sorting.Rating;
+import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.blob.ArrayStack;
 import net.yacy.kelondro.blob.BLOB;
 import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.CompressedRowSet;
 import net.yacy.kelondro.index.Row;
 import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.util.kelondroException;
 
 
 public final class ReferenceContainerArray<ReferenceType extends Reference> {
@@ -47,6 +52,9 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
 
     private final ReferenceFactory<ReferenceType> factory;
     private final ArrayStack array;
+    private final File compressedMarker; // exists if a BLOB in the heap location may contain compressed containers
+    private volatile boolean compressed;
+    private long lastBLOBTime = 0;
 
     /**
      * open a index container array based on BLOB dumps. The content of the BLOBs will not be read
@@ -64,6 +72,21 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
     		final ReferenceFactory<ReferenceType> factory,
     		final ByteOrder termOrder,
     		final int termSize) throws IOException {
+        this(heapLocation, prefix, factory, termOrder, termSize, false);
+    }
+
+    /**
+     * open a index container array based on BLOB dumps
+     * @param mapped if true, the BLOB files are mapped into memory and containers are read without locking
+     * @throws IOException
+     */
+    public ReferenceContainerArray(
+    		final File heapLocation,
+    		final String prefix,
+    		final ReferenceFactory<ReferenceType> factory,
+    		final ByteOrder termOrder,
+    		final int termSize,
+    		final boolean mapped) throws IOException {
         this.factory = factory;
         this.array = new ArrayStack(
             heapLocation,
@@ -72,7 +95,24 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
             termSize,
             0,
             true,
-            true);
+            true,
+            mapped);
+        this.compressedMarker = new File(heapLocation, prefix + ".compressed");
+        this.compressed = this.compressedMarker.exists();
+    }
+
+    /**
+     * remember that containers are written to the BLOB files in the compressed format. As long as no
+     * compressed container exists, the references are counted from the lengths of the containers.
+     */
+    private void markCompressed() {
+        if (this.compressed) return;
+        try {
+            this.compressedMarker.createNewFile();
+        } catch (final IOException e) {
+            ConcurrentLog.warn("ReferenceContainerArray", "cannot create " + this.compressedMarker, e);
+        }
+        this.compressed = true;
     }
 
     public synchronized void close() {
@@ -81,6 +121,8 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
 
     public void clear() throws IOException {
     	this.array.clear();
+    	this.compressedMarker.delete();
+    	this.compressed = false;
     }
 
     public int[] sizes() {
@@ -91,8 +133,12 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
         return this.array.ordering();
     }
 
-    public File newContainerBLOBFile() {
-    	return this.array.newBLOB(new Date());
+    public synchronized File newContainerBLOBFile() {
+        // merges may run concurrently, so the target file names must be unique even if they are requested in the same millisecond
+        final long time = Math.max(System.currentTimeMillis(), this.lastBLOBTime + 1);
+        this.lastBLOBTime = time;
+        if (ReferenceContainer.compressExports) markCompressed(); // before anything is written to the new BLOB
+    	return this.array.newBLOB(new Date(time));
     }
 
     public void mountBLOBFile(final File location) throws IOException {
@@ -324,7 +370,81 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
     	return c;
     }
 
+    /**
+     * get the references of an indexContainer from a heap which point to the given urls.
+     * Compressed containers are intersected with the url selection using their skip tables,
+     * without decoding the whole container.
+     * @param termHash
+     * @param urlselection the selected urls or null to get the whole container
+     * @return the indexContainer if one exist, null otherwise
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public ReferenceContainer<ReferenceType> get(final byte[] termHash, final HandleSet urlselection) throws IOException, SpaceExceededException {
+        final Row row = this.factory.getRow();
+        if (urlselection == null || !row.objectOrder.equals(urlselection.comparator())) return get(termHash);
+        final long timeout = System.currentTimeMillis() + METHOD_MAXRUNTIME;
+        final Iterator<byte[]> entries = this.array.getAll(termHash).iterator();
+        if (entries == null || !entries.hasNext()) return null;
+        ReferenceContainer<ReferenceType> c = null;
+        int k = 0;
+        while (entries.hasNext()) {
+            final byte[] b = entries.next();
+            RowSet selected;
+            if (CompressedRowSet.isCompressed(b)) {
+                try {
+                    selected = new CompressedRowSet(row, b).select(urlselection.iterator());
+                } catch (final kelondroException e) {
+                    ConcurrentLog.severe("ReferenceContainerArray", "cannot read compressed container: " + e.getMessage());
+                    continue;
+                }
+            } else {
+                final RowSet all = RowSet.importRowSet(b, row);
+                selected = new RowSet(row, Math.min(all.size(), urlselection.size()));
+                for (final byte[] urlhash: urlselection) {
+                    final Row.Entry entry = all.get(urlhash, false);
+                    if (entry != null) selected.addUnique(entry);
+                }
+            }
+            final ReferenceContainer<ReferenceType> s = new ReferenceContainer<ReferenceType>(this.factory, termHash, selected);
+            c = c == null ? s : c.merge(s);
+            k++;
+            if (System.currentTimeMillis() > timeout) {
+                ConcurrentLog.warn("ReferenceContainerArray", "timout in get() (3): " + k + " tables searched. timeout = " + METHOD_MAXRUNTIME);
+                return c;
+            }
+        }
+        return c;
+    }
+
     public int count(final byte[] termHash) throws IOException {
+        if (!this.compressed) return countLengths(termHash);
+        final long timeout = System.currentTimeMillis() + METHOD_MAXRUNTIME;
+        // the count is in the header of the containers; the length can not be used because containers may be compressed
+        final Iterator<byte[]> entries = this.array.headAll(termHash, 4).iterator();
+        if (entries == null || !entries.hasNext()) return 0;
+        final byte[] a = entries.next();
+        int k = 1;
+        int c = RowSet.importRowCount(a);
+        assert c >= 0;
+        if (System.currentTimeMillis() > timeout) {
+            ConcurrentLog.warn("ReferenceContainerArray", "timout in count() (1): " + k + " tables searched. timeout = " + METHOD_MAXRUNTIME);
+            return c;
+        }
+        while (entries.hasNext()) {
+            c += RowSet.importRowCount(entries.next());
+            assert c >= 0;
+            k++;
+            if (System.currentTimeMillis() > timeout) {
+                ConcurrentLog.warn("ReferenceContainerArray", "timout in count() (2): " + k + " tables searched. timeout = " + METHOD_MAXRUNTIME);
+                return c;
+            }
+        }
+        assert c >= 0;
+        return c;
+    }
+
+    private int countLengths(final byte[] termHash) throws IOException {
         final long timeout = System.currentTimeMillis() + METHOD_MAXRUNTIME;
         final Iterator<Long> entries = this.array.lengthAll(termHash).iterator();
         if (entries == null || !entries.hasNext()) return 0;
@@ -360,28 +480,73 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
     	this.array.delete(termHash);
     }
 
-    public int reduce(final byte[] termHash, final ContainerReducer<ReferenceType> reducer) throws IOException, SpaceExceededException {
-        return this.array.reduce(termHash, new BLOBReducer(termHash, reducer));
+    /**
+     * reduce the containers of a term in all BLOB files
+     * @param termHash
+     * @param reducer
+     * @param overflow receives the reduced containers which do not fit into the place of the old container in a BLOB.
+     *        They are removed from the BLOB, so the caller must store them again.
+     * @return the number of references which have been removed
+     * @throws IOException
+     * @throws SpaceExceededException
+     */
+    public int reduce(final byte[] termHash, final ContainerReducer<ReferenceType> reducer, final Collection<ReferenceContainer<ReferenceType>> overflow) throws IOException, SpaceExceededException {
+        final BLOBReducer blobReducer = new BLOBReducer(termHash, reducer, overflow);
+        this.array.reduce(termHash, blobReducer);
+        return blobReducer.removed;
     }
 
     public class BLOBReducer implements BLOB.Reducer {
 
         ContainerReducer<ReferenceType> rewriter;
         byte[] wordHash;
+        Collection<ReferenceContainer<ReferenceType>> overflow;
+        int removed;
 
-        public BLOBReducer(final byte[] wordHash, final ContainerReducer<ReferenceType> rewriter) {
+        public BLOBReducer(final byte[] wordHash, final ContainerReducer<ReferenceType> rewriter, final Collection<ReferenceContainer<ReferenceType>> overflow) {
             this.rewriter = rewriter;
             this.wordHash = wordHash;
+            this.overflow = overflow;
+            this.removed = 0;
         }
 
         @Override
         public byte[] rewrite(final byte[] b) throws SpaceExceededException {
             if (b == null) return null;
-            final ReferenceContainer<ReferenceType> c = this.rewriter.reduce(new ReferenceContainer<ReferenceType>(ReferenceContainerArray.this.factory, this.wordHash, RowSet.importRowSet(b, ReferenceContainerArray.this.factory.getRow())));
+            final Row row = ReferenceContainerArray.this.factory.getRow();
+            final RowSet rows = RowSet.importRowSet(b, row);
+            final int size = rows.size();
+            final ReferenceContainer<ReferenceType> c = this.rewriter.reduce(new ReferenceContainer<ReferenceType>(ReferenceContainerArray.this.factory, this.wordHash, rows));
             if (c == null) return null;
-            final byte bb[] = c.exportCollection();
-            assert bb.length <= b.length;
-            return bb;
+            this.removed += size - c.size();
+            if (c.size() == size) return b;
+
+            // the heap stores the reduced container in the place of the old one, so it must have the same length
+            // or leave a gap of at least 4 bytes. A compressed container with less references is usually smaller,
+            // but not always; trailing bytes after a compressed container are ignored, so it can be padded.
+            final boolean compress = ReferenceContainer.compressExports;
+            final byte[] first = compress ? CompressedRowSet.compress(c) : c.exportCollection();
+            final byte[] fit = fit(first, b.length, compress);
+            if (fit != null) return fit;
+            final byte[] second = compress ? c.exportCollection() : CompressedRowSet.compress(c);
+            final byte[] fit2 = fit(second, b.length, !compress);
+            if (fit2 != null) return fit2;
+
+            // move the reduced container out of this BLOB and leave an empty container here
+            this.overflow.add(c);
+            return new RowSet(row, 0).exportCollection();
+        }
+
+        private byte[] fit(final byte[] bb, final int length, final boolean compressed) {
+            if (bb.length == length || bb.length <= length - 4) {
+                if (compressed) markCompressed();
+                return bb;
+            }
+            if (compressed && bb.length < length) {
+                markCompressed();
+                return Arrays.copyOf(bb, length);
+            }
+            return null;
         }
     }
 
@@ -399,6 +564,19 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
         return this.array.entries();
     }
 
+    /**
+     * merge up to fanIn of the smallest files in one pass
+     * @return false if the merger does not support multi-way merges or there are no files to merge
+     */
+    public boolean shrinkManySmallFiles(final IODispatcher merger, final long targetFileSize) {
+        if (merger.fanIn() <= 2) return false;
+        final File[] ff = this.array.unmountSmallest(merger.fanIn(), targetFileSize);
+        if (ff == null) return false;
+        ConcurrentLog.info("RICELL-shrink0", "unmountSmallest(" + merger.fanIn() + ", " + targetFileSize + ")");
+        merger.merge(ff, this.factory, this.array, newContainerBLOBFile());
+        return true;
+    }
+
     public boolean shrinkBestSmallFiles(final IODispatcher merger, final long targetFileSize) {
         final File[] ff = this.array.unmountBestMatch(2.0f, targetFileSize);
         if (ff == null) return false;
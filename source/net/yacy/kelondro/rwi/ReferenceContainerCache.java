@@ -35,6 +35,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.order.ByteOrder;
@@ -47,6 +48,7 @@ import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.blob.HeapWriter;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowSet;
 import net.yacy.kelondro.util.FileUtils;
 
 /**
@@ -56,6 +58,10 @@ import net.yacy.kelondro.util.FileUtils;
  * the <ReferenceType>. A ReferenceContainerCache has no active backup in a file, it must be flushed to
  * a file to save the content of the cache.
  *
+ * In off-heap mode the cache keeps only the recently added references on the heap. When they exceed
+ * a size limit, their containers are exported to direct byte buffers from an OffHeapSlabPool.
+ * Reads merge the exported segments with the heap containers; the dump format is the same in both modes.
+ *
  * @param <ReferenceType>
  */
 public final class ReferenceContainerCache<ReferenceType extends Reference> extends AbstractIndex<ReferenceType> implements Index<ReferenceType>, IndexReader<ReferenceType>, Iterable<ReferenceContainer<ReferenceType>> {
@@ -66,8 +72,13 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
     private final ByteOrder termOrder;
     private final ContainerOrder<ReferenceType> containerOrder;
     private ConcurrentHashMap<ByteArray, ReferenceContainer<ReferenceType>> cache;
+    private final OffHeapContainerStore offheap; // null in heap mode
+    private final AtomicLong heapRows; // references added to the heap since the last spill; only counted in off-heap mode
+    private final long spillRows;
+
+    /** in off-heap mode, the heap containers are moved off the heap when they have about this size */
+    private static final long SPILL_SIZE = 16L * 1024L * 1024L;
 
-    
     /**
      * open an existing heap file in undefined mode
      * after this a initialization should be made to use the heap:
@@ -77,12 +88,25 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
      * @param termSize the fixed size of search terms
      */
     public ReferenceContainerCache(final ReferenceFactory<ReferenceType> factory, final ByteOrder termOrder, final int termSize) {
+        this(factory, termOrder, termSize, null);
+    }
+
+    /**
+     * @param factory the factory for payload reference objects
+     * @param termOrder the order on search terms for the cache
+     * @param termSize the fixed size of search terms
+     * @param pool the slabs for the off-heap mode or null for a cache which is completely on the heap
+     */
+    public ReferenceContainerCache(final ReferenceFactory<ReferenceType> factory, final ByteOrder termOrder, final int termSize, final OffHeapSlabPool pool) {
         super(factory);
         assert termOrder != null;
         this.termOrder = termOrder;
         this.termSize = termSize;
         this.containerOrder = new ContainerOrder<ReferenceType>(this.termOrder);
         this.cache = new ConcurrentHashMap<ByteArray, ReferenceContainer<ReferenceType>>();
+        this.offheap = pool == null ? null : new OffHeapContainerStore(pool);
+        this.heapRows = new AtomicLong(0);
+        this.spillRows = Math.max(1000, Math.min(SPILL_SIZE, pool == null ? SPILL_SIZE : pool.slabSize()) / factory.getRow().objectsize);
     }
 
     public Row rowdef() {
@@ -102,17 +126,130 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
     @Override
     public void clear() {
         if (this.cache != null) this.cache.clear();
+        if (this.offheap != null) this.offheap.clear();
+        this.heapRows.set(0);
     }
 
     @Override
     public synchronized void close() {
+        if (this.offheap != null) this.offheap.clear();
     	this.cache = null;
     }
-    
+
     public Iterator<ByteArray> keys() {
+        if (this.offheap != null) return this.offheap.keys();
         return this.cache.keySet().iterator();
     }
 
+    /**
+     * @return true if the references of this cache are stored outside of the heap
+     */
+    public boolean isOffHeap() {
+        return this.offheap != null;
+    }
+
+    /**
+     * in off-heap mode, the cache should be dumped if it holds half of the slab pool;
+     * the other half is left for a new cache while this one is dumped
+     * @return true if the off-heap buffer is full, always false in heap mode
+     */
+    public boolean offHeapFull() {
+        if (this.offheap == null) return false;
+        return this.offheap.exhausted() || this.offheap.usedBytes() >= this.offheap.pool().capacity() / 2;
+    }
+
+    /**
+     * @return the number of bytes in off-heap slabs
+     */
+    public long offHeapMemory() {
+        return this.offheap == null ? 0 : this.offheap.usedBytes();
+    }
+
+    private void spillIfNecessary() {
+        if (this.offheap != null && this.heapRows.get() >= this.spillRows) spill();
+    }
+
+    /**
+     * move the containers on the heap into the off-heap store. Containers which do not fit
+     * into a slab and containers which find no space when the pool is exhausted stay on the heap.
+     * In heap mode this does nothing.
+     */
+    public void spill() {
+        if (this.offheap == null || this.cache == null) return;
+        synchronized (this.cache) {
+            long remaining = 0;
+            for (final Map.Entry<ByteArray, ReferenceContainer<ReferenceType>> entry: this.cache.entrySet()) {
+                final ByteArray term = entry.getKey();
+                final ReferenceContainer<ReferenceType> container = entry.getValue();
+                if (this.offheap.exhausted()) {
+                    remaining += container.size();
+                    continue;
+                }
+                // remove the container before it is exported; add(byte[], ReferenceType) changes containers only after a remove
+                if (!this.cache.remove(term, container) || container.isEmpty()) continue;
+                if (!this.offheap.append(term, container.exportCollection(), container.size())) {
+                    try {
+                        final ReferenceContainer<ReferenceType> concurrent = this.cache.putIfAbsent(term, container);
+                        if (concurrent != null) concurrent.putAllRecent(container);
+                    } catch (final SpaceExceededException e) {
+                        ConcurrentLog.logException(e);
+                    }
+                    remaining += container.size();
+                }
+            }
+            this.heapRows.set(remaining);
+        }
+    }
+
+    /**
+     * get the segments of a term from the off-heap store as one container
+     * @return the container or null if there are no segments
+     */
+    private ReferenceContainer<ReferenceType> offHeapContainer(final ByteArray term, final OffHeapContainerStore.Segments s) throws SpaceExceededException {
+        if (s == null || s.count() == 0) return null;
+        ReferenceContainer<ReferenceType> c = null;
+        for (final byte[] b: this.offheap.read(s)) {
+            final ReferenceContainer<ReferenceType> r = new ReferenceContainer<ReferenceType>(this.factory, term.asBytes(), RowSet.importRowSet(b, this.factory.getRow()));
+            if (c == null) c = r; else c.putAllRecent(r);
+        }
+        return c;
+    }
+
+    /**
+     * get all references of a term; in off-heap mode the segments are merged with the heap container
+     * @return the container, which is only a copy in off-heap mode, or null if the term is unknown
+     */
+    private ReferenceContainer<ReferenceType> container(final ByteArray term) throws SpaceExceededException {
+        final ReferenceContainer<ReferenceType> h = this.cache.get(term);
+        if (this.offheap == null) return h;
+        final ReferenceContainer<ReferenceType> c = offHeapContainer(term, this.offheap.get(term));
+        if (c == null) return h;
+        if (h != null) c.putAllRecent(h);
+        return c;
+    }
+
+    /**
+     * remove references from the off-heap segments of a term
+     * @param urlHash a single reference to remove or null
+     * @param urlHashes a set of references to remove, used if urlHash is null
+     * @return the number of removed references
+     */
+    private int removeOffHeap(final ByteArray term, final byte[] urlHash, final HandleSet urlHashes) throws SpaceExceededException {
+        final ReferenceContainer<ReferenceType> c = offHeapContainer(term, this.offheap.get(term));
+        if (c == null) return 0;
+        final int count = urlHash == null ? c.removeEntries(urlHashes) : (c.delete(urlHash) ? 1 : 0);
+        if (count == 0) return 0;
+        if (c.isEmpty()) {
+            this.offheap.replace(term, null, 0);
+        } else if (!this.offheap.replace(term, c.exportCollection(), c.size())) {
+            // no space for the rewritten container: put it back to the heap
+            final ReferenceContainer<ReferenceType> h = this.cache.get(term);
+            if (h != null) c.putAllRecent(h);
+            this.cache.put(term, c);
+        }
+        return count;
+    }
+
     /**
      * dump the cache to a file. This method can be used in a destructive way
      * which means that memory can be freed during the dump. This may be important
@@ -137,14 +274,36 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
         }
         final long startTime = System.currentTimeMillis();
 
-        // sort the map
-        final List<ReferenceContainer<ReferenceType>> cachecopy = sortedClone();
-
         // write wCache
         long wordcount = 0, urlcount = 0;
         byte[] term = null, lwh;
         assert this.termKeyOrdering() != null;
-        for (final ReferenceContainer<ReferenceType> container: cachecopy) {
+        if (this.offheap != null) {
+            // containers are merged one by one from the segments and the heap
+            for (final byte[] t: sortedTerms()) {
+                final ByteArray tha = new ByteArray(t);
+                try {
+                    final OffHeapContainerStore.Segments s = this.offheap.get(tha);
+                    final ReferenceContainer<ReferenceType> h = this.cache.get(tha);
+                    if (h == null && s != null && s.count() == 1) {
+                        // a single segment is already in the dump format
+                        dump.add(t, this.offheap.read(s).get(0));
+                        urlcount += s.rows();
+                    } else {
+                        final ReferenceContainer<ReferenceType> container = container(tha);
+                        if (container == null || container.isEmpty()) continue;
+                        dump.add(t, container.exportContainer());
+                        urlcount += container.size();
+                    }
+                } catch (final IOException e) {
+                    ConcurrentLog.logException(e);
+                } catch (final SpaceExceededException e) {
+                    ConcurrentLog.logException(e);
+                }
+                wordcount++;
+            }
+            if (destructive) clear(); // return the slabs to the pool
+        } else for (final ReferenceContainer<ReferenceType> container: sortedClone()) {
             // get entries
             lwh = term;
             term = container.getTermHash();
@@ -157,7 +316,7 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
             if (container != null && term.length == this.termSize) {
                 //System.out.println("Dump: " + wordHash);
                 try {
-                    dump.add(term, container.exportCollection());
+                    dump.add(term, container.exportContainer());
                 } catch (final IOException e) {
                     ConcurrentLog.logException(e);
                 } catch (final SpaceExceededException e) {
@@ -193,8 +352,28 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
         return cachecopy;
     }
 
+    /**
+     * @return all terms of the cache sorted using the this.termOrder
+     */
+    private List<byte[]> sortedTerms() {
+        final List<byte[]> terms = new ArrayList<byte[]>(size());
+        final Iterator<ByteArray> i = keys();
+        while (i.hasNext()) terms.add(i.next().asBytes());
+        Collections.sort(terms, this.termOrder);
+        return terms;
+    }
+
     private List<Rating<ByteArray>> ratingList() {
-        final List<Rating<ByteArray>> list = new ArrayList<Rating<ByteArray>>(this.cache.size());
+        final List<Rating<ByteArray>> list = new ArrayList<Rating<ByteArray>>(size());
+        if (this.offheap != null) {
+            final Iterator<ByteArray> i = this.offheap.keys();
+            ByteArray term;
+            while (i.hasNext()) {
+                term = i.next();
+                list.add(new Rating<ByteArray>(term, count(term.asBytes())));
+            }
+            return list;
+        }
         synchronized (this.cache) {
             for (final Map.Entry<ByteArray, ReferenceContainer<ReferenceType>> entry: this.cache.entrySet()) {
                 if (entry.getValue() != null && entry.getValue().getTermHash() != null) list.add(new Rating<ByteArray>(entry.getKey(), entry.getValue().size()));
@@ -205,12 +384,16 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
 
     @Override
     public int size() {
+        if (this.offheap != null) return this.offheap.size();
         return (this.cache == null) ? 0 : this.cache.size();
     }
-    
+
+    /**
+     * @return the memory used for the references on the heap and outside of the heap
+     */
     public long usedMemory() {
         if (this.cache == null) return 0;
-        long b = 0L;
+        long b = offHeapMemory();
         for (Map.Entry<ByteArray, ReferenceContainer<ReferenceType>> e: this.cache.entrySet()) {
             b += e.getKey().usedMemory();
             b += e.getValue().mem();
@@ -220,12 +403,19 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
 
     public boolean isEmpty() {
         if (this.cache == null) return true;
+        if (this.offheap != null) return this.offheap.size() == 0;
         return this.cache.isEmpty();
     }
 
     public int maxReferences() {
         // iterate to find the max score
         int max = 0;
+        if (this.offheap != null) {
+            for (final Rating<ByteArray> r: ratingList()) {
+                if (r.getScore() > max) max = (int) r.getScore();
+            }
+            return max;
+        }
         for (final ReferenceContainer<ReferenceType> container : this.cache.values()) {
             if (container.size() > max) max = container.size();
         }
@@ -259,7 +449,7 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
         // plus the mentioned features
 
         private final boolean rot, excludePrivate;
-        private final List<ReferenceContainer<ReferenceType>> cachecopy;
+        private final List<byte[]> cachecopy;
         private int p;
         private byte[] latestTermHash;
 
@@ -267,14 +457,15 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
             this.rot = rot;
             this.excludePrivate = excludePrivate;
             if (startWordHash != null && startWordHash.length == 0) startWordHash = null;
-            this.cachecopy = sortedClone();
+            // only the terms are copied, the containers are cloned during the iteration
+            this.cachecopy = sortedTerms();
             assert this.cachecopy != null;
             assert ReferenceContainerCache.this.termOrder != null;
             this.p = 0;
             if (startWordHash != null) {
                 byte[] b;
                 while ( this.p < this.cachecopy.size() &&
-                        ReferenceContainerCache.this.termOrder.compare(b = this.cachecopy.get(this.p).getTermHash(), startWordHash) < 0 &&
+                        ReferenceContainerCache.this.termOrder.compare(b = this.cachecopy.get(this.p), startWordHash) < 0 &&
                         !(excludePrivate && Word.isPrivate(b))
                       ) this.p++;
             }
@@ -296,15 +487,10 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
         @Override
         public ReferenceContainer<ReferenceType> next() {
             while (this.p < this.cachecopy.size()) {
-                final ReferenceContainer<ReferenceType> c = this.cachecopy.get(this.p++);
-                this.latestTermHash = c.getTermHash();
+                this.latestTermHash = this.cachecopy.get(this.p++);
                 if (this.excludePrivate && Word.isPrivate(this.latestTermHash)) continue;
-                try {
-                    return c.topLevelClone();
-                } catch (final SpaceExceededException e) {
-                    ConcurrentLog.logException(e);
-                    return null;
-                }
+                final ReferenceContainer<ReferenceType> c = clone(this.latestTermHash);
+                if (c != null) return c;
             }
             // rotation iteration
             if (!this.rot) {
@@ -313,23 +499,32 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
             if (this.cachecopy.isEmpty()) return null;
             this.p = 0;
             while  (this.p < this.cachecopy.size()) {
-                final ReferenceContainer<ReferenceType> c = this.cachecopy.get(this.p++);
-                this.latestTermHash = c.getTermHash();
+                this.latestTermHash = this.cachecopy.get(this.p++);
                 if (this.excludePrivate && Word.isPrivate(this.latestTermHash)) continue;
-                try {
-                    return c.topLevelClone();
-                } catch (final SpaceExceededException e) {
-                    ConcurrentLog.logException(e);
-                    return null;
-                }
+                final ReferenceContainer<ReferenceType> c = clone(this.latestTermHash);
+                if (c != null) return c;
             }
             return null;
         }
 
+        /**
+         * @return a top-level-clone of the container of the term or null if the term was removed from the cache
+         */
+        private ReferenceContainer<ReferenceType> clone(final byte[] termHash) {
+            try {
+                final ReferenceContainer<ReferenceType> c = ReferenceContainerCache.this.container(new ByteArray(termHash));
+                if (c == null) return null;
+                return ReferenceContainerCache.this.offheap == null ? c.topLevelClone() : c;
+            } catch (final SpaceExceededException e) {
+                ConcurrentLog.logException(e);
+                return null;
+            }
+        }
+
         @Override
         public void remove() {
-            System.arraycopy(this.cachecopy, this.p, this.cachecopy, this.p - 1, this.cachecopy.size() - this.p);
-            ReferenceContainerCache.this.cache.remove(new ByteArray(this.latestTermHash));
+            this.cachecopy.remove(--this.p);
+            ReferenceContainerCache.this.delete(this.latestTermHash);
         }
 
         @Override
@@ -413,8 +608,8 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
 
         @Override
         public void remove() {
-            System.arraycopy(this.cachecounts, this.p, this.cachecounts, this.p - 1, this.cachecounts.size() - this.p);
-            ReferenceContainerCache.this.cache.remove(new ByteArray(this.latestTermHash));
+            this.cachecounts.remove(--this.p);
+            ReferenceContainerCache.this.delete(this.latestTermHash);
         }
 
         @Override
@@ -435,6 +630,7 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
      */
     @Override
     public boolean has(final byte[] key) {
+        if (this.offheap != null) return this.offheap.has(new ByteArray(key));
         return this.cache.containsKey(new ByteArray(key));
     }
 
@@ -447,7 +643,13 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
     @Override
     public ReferenceContainer<ReferenceType> get(final byte[] key, final HandleSet urlselection) {
         if (this.cache == null) return null;
-        final ReferenceContainer<ReferenceType> c = this.cache.get(new ByteArray(key));
+        final ReferenceContainer<ReferenceType> c;
+        try {
+            c = container(new ByteArray(key));
+        } catch (final SpaceExceededException e) {
+            ConcurrentLog.logException(e);
+            return null;
+        }
         if (urlselection == null) return c;
         if (c == null) return null;
         // because this is all in RAM, we must clone the entries (flat)
@@ -475,9 +677,22 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
      */
     @Override
     public int count(final byte[] key) {
-        final ReferenceContainer<ReferenceType> c = this.cache.get(new ByteArray(key));
-        if (c == null) return 0;
-        return c.size();
+        final ByteArray tha = new ByteArray(key);
+        final ReferenceContainer<ReferenceType> c = this.cache.get(tha);
+        int count = c == null ? 0 : c.size();
+        if (this.offheap != null) {
+            final OffHeapContainerStore.Segments s = this.offheap.get(tha);
+            if (s == null || s.count() == 0) return count;
+            if (count == 0 && s.count() == 1) return s.rows();
+            // the same reference may be in several segments and in the heap container: count the merged container
+            try {
+                final ReferenceContainer<ReferenceType> merged = container(tha);
+                return merged == null ? 0 : merged.size();
+            } catch (final SpaceExceededException e) {
+                count += s.rows();
+            }
+        }
+        return count;
     }
 
     /**
@@ -490,7 +705,19 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
         // returns the index that had been deleted
         assert this.cache != null;
         if (this.cache == null) return null;
-        return this.cache.remove(new ByteArray(termHash));
+        final ByteArray tha = new ByteArray(termHash);
+        if (this.offheap == null) return this.cache.remove(tha);
+        synchronized (this.cache) {
+            ReferenceContainer<ReferenceType> c = null;
+            try {
+                c = container(tha);
+            } catch (final SpaceExceededException e) {
+                ConcurrentLog.logException(e);
+            }
+            this.cache.remove(tha);
+            this.offheap.remove(tha);
+            return c;
+        }
     }
 
     @Override
@@ -498,7 +725,9 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
         // returns the index that had been deleted
         assert this.cache != null;
         if (this.cache == null) return;
-        this.cache.remove(new ByteArray(termHash));
+        final ByteArray tha = new ByteArray(termHash);
+        this.cache.remove(tha);
+        if (this.offheap != null) this.offheap.remove(tha);
     }
 
     @Override
@@ -511,6 +740,7 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
         assert this.cache != null;
         if (this.cache == null) return false;
         final ByteArray tha = new ByteArray(termHash);
+        if (this.offheap != null) return removeReferences(tha, urlHashBytes, null) > 0;
         synchronized (this.cache) {
 	        final ReferenceContainer<ReferenceType> c = this.cache.get(tha);
 	        if (c != null && c.delete(urlHashBytes)) {
@@ -532,6 +762,7 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
         if (this.cache == null) return  0;
         if (urlHashes.isEmpty()) return 0;
         final ByteArray tha = new ByteArray(termHash);
+        if (this.offheap != null) return removeReferences(tha, null, urlHashes);
         int count;
         synchronized (this.cache) {
             final ReferenceContainer<ReferenceType> c = this.cache.get(tha);
@@ -548,6 +779,31 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
         return 0;
     }
 
+    /**
+     * remove references of a term from the heap container and the off-heap segments
+     * @param urlHash a single reference to remove or null
+     * @param urlHashes a set of references to remove, used if urlHash is null
+     * @return the number of removed references
+     */
+    private int removeReferences(final ByteArray tha, final byte[] urlHash, final HandleSet urlHashes) {
+        int count = 0;
+        synchronized (this.cache) {
+            final ReferenceContainer<ReferenceType> c = this.cache.get(tha);
+            if (c != null) {
+                count += urlHash == null ? c.removeEntries(urlHashes) : (c.delete(urlHash) ? 1 : 0);
+                if (c.isEmpty()) this.cache.remove(tha);
+            }
+            try {
+                count += removeOffHeap(tha, urlHash, urlHashes);
+            } catch (final SpaceExceededException e) {
+                ConcurrentLog.logException(e);
+            }
+            final OffHeapContainerStore.Segments s = this.offheap.get(tha);
+            if (!this.cache.containsKey(tha) && (s == null || s.count() == 0)) this.offheap.remove(tha);
+        }
+        return count;
+    }
+
     @Override
     public void removeDelayed() {}
 
@@ -569,10 +825,14 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
             }
             if (added > 0) {
                 this.cache.put(tha, entries);
+                if (this.offheap != null) {
+                    this.offheap.touch(tha);
+                    this.heapRows.addAndGet(added);
+                }
             }
             entries = null;
-            return;
         }
+        spillIfNecessary();
     }
 
     @Override
@@ -588,24 +848,26 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
 
         // synchronization: check if the entry is still empty and set new value
         final ReferenceContainer<ReferenceType> container0 = this.cache.put(tha, container);
+        if (this.offheap != null) {
+            this.offheap.touch(tha);
+            this.heapRows.incrementAndGet();
+        }
         if (container0 != null) synchronized (this.cache) {
             // no luck here, we get a lock exclusively to sort this out
             final ReferenceContainer<ReferenceType> containerNew = this.cache.put(tha, container0);
-            if (containerNew == null) return;
-            if (container0 == containerNew) {
-                // The containers are the same, so nothing needs to be done
-                return;
-            }
-            // Now merge the smaller container into the lager.
-            // The other way around can become very slow
-            if (container0.size() >= containerNew.size()) {
-                container0.putAllRecent(containerNew);
-       	        this.cache.put(tha, container0);
-            } else {
-                containerNew.putAllRecent(container0);
-                this.cache.put(tha, containerNew);
+            if (containerNew != null && container0 != containerNew) {
+                // Now merge the smaller container into the lager.
+                // The other way around can become very slow
+                if (container0.size() >= containerNew.size()) {
+                    container0.putAllRecent(containerNew);
+           	        this.cache.put(tha, container0);
+                } else {
+                    containerNew.putAllRecent(container0);
+                    this.cache.put(tha, containerNew);
+                }
             }
         }
+        spillIfNecessary();
     }
 
     @Override
@@ -637,10 +899,11 @@ public final class ReferenceContainerCache<ReferenceType extends Reference> exte
      */
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder(cache.size() * 13 + 2);
+        StringBuilder sb = new StringBuilder(size() * 13 + 2);
         sb.append('[');
-        for (ByteArray k: cache.keySet()) {
-            sb.append(ASCII.String(k.asBytes())).append(',');
+        final Iterator<ByteArray> i = keys();
+        while (i.hasNext()) {
+            sb.append(ASCII.String(i.next().asBytes())).append(',');
         }
         if (sb.length() == 1) sb.append(']'); else sb.setCharAt(sb.length() - 1, ']');
         return sb.toString();
@@ -0,0 +1,172 @@
+/**
+ *  ReferenceJoin
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.rwi;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.yacy.cora.util.SpaceExceededException;
+
+/**
+ * An n-way join of reference containers with exclusions. All containers are intersected at once:
+ * the smallest container is enumerated and the url hashes are searched in the other containers with
+ * a galloping search on the rows of the containers, starting at the position of the previous hit.
+ * If a url is missing in a container, the smallest container skips forward to the next url of that
+ * container (leapfrog). Reference objects are only produced for urls which are in all containers and
+ * in none of the exclusions, and the join can stop after a given number of references were found.
+ */
+public final class ReferenceJoin<ReferenceType extends Reference> {
+
+    private final ReferenceContainer<ReferenceType> result;
+    private final boolean complete;
+    private final int estimatedSize;
+
+    /**
+     * join the containers
+     * @param factory
+     * @param includeContainers the containers which must all contain a url
+     * @param excludeContainers the containers which must not contain a url, may be null
+     * @param maxDistance the maximum word distance of joined references
+     * @param maxCount the maximum number of references in the result
+     * @throws SpaceExceededException
+     */
+    public ReferenceJoin(
+            final ReferenceFactory<ReferenceType> factory,
+            final Collection<ReferenceContainer<ReferenceType>> includeContainers,
+            final Collection<ReferenceContainer<ReferenceType>> excludeContainers,
+            final int maxDistance,
+            final int maxCount) throws SpaceExceededException {
+        // since this is a conjunction we return an empty result if any word is not known
+        if (includeContainers == null || includeContainers.isEmpty()) {
+            this.result = ReferenceContainer.emptyContainer(factory, null, 0);
+            this.complete = true;
+            this.estimatedSize = 0;
+            return;
+        }
+        final List<ReferenceContainer<ReferenceType>> include = new ArrayList<ReferenceContainer<ReferenceType>>(includeContainers);
+        for (final ReferenceContainer<ReferenceType> c: include) {
+            if (c == null || c.isEmpty()) {
+                this.result = ReferenceContainer.emptyContainer(factory, null, 0);
+                this.complete = true;
+                this.estimatedSize = 0;
+                return;
+            }
+            c.sort();
+        }
+        final List<ReferenceContainer<ReferenceType>> exclude = new ArrayList<ReferenceContainer<ReferenceType>>();
+        if (excludeContainers != null) for (final ReferenceContainer<ReferenceType> c: excludeContainers) {
+            if (c == null || c.isEmpty()) continue;
+            c.sort();
+            exclude.add(c);
+        }
+
+        // order the containers by their size
+        Collections.sort(include, new Comparator<ReferenceContainer<ReferenceType>>() {
+            @Override
+            public int compare(final ReferenceContainer<ReferenceType> o1, final ReferenceContainer<ReferenceType> o2) {
+                return o1.size() < o2.size() ? -1 : o1.size() == o2.size() ? 0 : 1;
+            }
+        });
+        final ReferenceContainer<ReferenceType> pivot = include.get(0);
+        final int size = pivot.size();
+        if (include.size() == 1 && exclude.isEmpty() && size <= maxCount) {
+            // nothing to join
+            this.result = pivot;
+            this.complete = true;
+            this.estimatedSize = size;
+            return;
+        }
+        final ReferenceContainer<ReferenceType> conj = new ReferenceContainer<ReferenceType>(factory, null, 0);
+        final int n = include.size() - 1;
+        final int[] pos = new int[n];
+        final int[] epos = new int[exclude.size()];
+
+        int i = 0, p, q;
+        candidates: while (i < size) {
+            for (int k = 0; k < n; k++) {
+                final ReferenceContainer<ReferenceType> c = include.get(k + 1);
+                p = c.gallop(pivot, i, pos[k]);
+                if (p >= 0) {
+                    pos[k] = p;
+                    continue;
+                }
+                pos[k] = -p - 1;
+                if (pos[k] >= c.size()) break candidates; // no more urls in this container
+                // skip all urls of the smallest container which are smaller than the next url of this container
+                q = pivot.gallop(c, pos[k], i + 1);
+                i = q >= 0 ? q : -q - 1;
+                continue candidates;
+            }
+
+            // the url is in all containers; check the exclusions
+            for (int k = 0; k < epos.length; k++) {
+                if (epos[k] >= exclude.get(k).size()) continue;
+                p = exclude.get(k).gallop(pivot, i, epos[k]);
+                if (p >= 0) {
+                    epos[k] = p;
+                    i++;
+                    continue candidates;
+                }
+                epos[k] = -p - 1;
+            }
+
+            // produce the references of the url
+            if (n == 0) {
+                conj.addUnique(pivot.get(i, true));
+            } else {
+                final ReferenceType r = factory.produceFast(factory.produceSlow(pivot.get(i, false)), true);
+                for (int k = 0; k < n; k++) r.join(factory.produceSlow(include.get(k + 1).get(pos[k], false)));
+                if (r.distance() <= maxDistance) conj.add(r);
+            }
+            i++;
+            if (conj.size() >= maxCount) break;
+        }
+
+        this.result = conj;
+        this.complete = i >= size || conj.size() < maxCount;
+        this.estimatedSize = this.complete ? conj.size() : (int) Math.min(Integer.MAX_VALUE, (long) conj.size() * size / i);
+    }
+
+    /**
+     * @return the joined references
+     */
+    public ReferenceContainer<ReferenceType> joined() {
+        return this.result;
+    }
+
+    /**
+     * @return true if the join was not stopped at the maximum number of references
+     */
+    public boolean isComplete() {
+        return this.complete;
+    }
+
+    /**
+     * @return the number of references of a complete join; if the join was stopped, this is extrapolated
+     * from the part of the smallest container which was joined
+     */
+    public int estimatedSize() {
+        return this.estimatedSize;
+    }
+
+}
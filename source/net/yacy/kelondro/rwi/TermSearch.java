@@ -36,7 +36,11 @@ import net.yacy.cora.util.SpaceExceededException;
 
 public class TermSearch <ReferenceType extends Reference> {
 
+    /** the minimum ratio of the size of the smallest container to the maximum number of references for an early stop of the join */
+    public static final int EARLY_STOP_FACTOR = 10;
+
     private final ReferenceContainer<ReferenceType> joinResult;
+    private final int joinEstimatedSize;
     private TreeMap<byte[], ReferenceContainer<ReferenceType>> inclusionContainers;
 
     public TermSearch(
@@ -46,6 +50,23 @@ public class TermSearch <ReferenceType extends Reference> {
             final HandleSet urlselection,
             ReferenceFactory<ReferenceType> termFactory,
             int maxDistance) throws SpaceExceededException {
+        this(base, queryHashes, excludeHashes, urlselection, termFactory, maxDistance, Integer.MAX_VALUE);
+    }
+
+    /**
+     * search the conjunction of the query terms without the exclusion terms
+     * @param maxCount the join stops after this number of references is found. Because the join runs in the order
+     * of the url hashes, the limit is only applied if the smallest container has at least EARLY_STOP_FACTOR times
+     * more references; all other joins are complete.
+     */
+    public TermSearch(
+            Index<ReferenceType> base,
+            final HandleSet queryHashes,
+            final HandleSet excludeHashes,
+            final HandleSet urlselection,
+            ReferenceFactory<ReferenceType> termFactory,
+            int maxDistance,
+            int maxCount) throws SpaceExceededException {
 
         this.inclusionContainers =
             (queryHashes.isEmpty()) ?
@@ -61,18 +82,35 @@ public class TermSearch <ReferenceType extends Reference> {
                 new TreeMap<byte[], ReferenceContainer<ReferenceType>>(Base64Order.enhancedCoder) :
                 base.searchConjunction(excludeHashes, urlselection);
 
+        // an early stop leaves out references regardless of their rank; only do it for very large containers
+        if (maxCount < Integer.MAX_VALUE) {
+            long smallest = Long.MAX_VALUE;
+            for (final ReferenceContainer<ReferenceType> c: this.inclusionContainers.values()) smallest = Math.min(smallest, c.size());
+            if (smallest < (long) maxCount * EARLY_STOP_FACTOR) maxCount = Integer.MAX_VALUE;
+        }
+
         // join and exclude the result
-        this.joinResult = ReferenceContainer.joinExcludeContainers(
+        final ReferenceJoin<ReferenceType> join = new ReferenceJoin<ReferenceType>(
                 termFactory,
                 this.inclusionContainers.values(),
                 exclusionContainers.values(),
-                maxDistance);
+                maxDistance,
+                maxCount);
+        this.joinResult = join.joined();
+        this.joinEstimatedSize = join.estimatedSize();
     }
 
     public ReferenceContainer<ReferenceType> joined() {
         return this.joinResult;
     }
 
+    /**
+     * @return the size of the joined container, or an estimation of the size of a complete join if the join was stopped at maxCount
+     */
+    public int joinedEstimatedSize() {
+        return this.joinEstimatedSize;
+    }
+
     public TreeMap<byte[], ReferenceContainer<ReferenceType>> inclusion() {
         return this.inclusionContainers;
     }
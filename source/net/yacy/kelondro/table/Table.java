@@ -92,6 +92,22 @@ public class Table implements Index, Iterable<Row.Entry> {
     		boolean useTailCache,
     		final boolean exceed134217727,
     		final boolean warmUp) throws SpaceExceededException, kelondroException {
+        this(tablefile, rowdef, buffersize, initialSpace, useTailCache, exceed134217727, warmUp, false);
+    }
+
+    /**
+     * @param concurrentIndex if true, the RAM index of the primary keys is a {@link net.yacy.kelondro.index.ConcurrentRowSet}
+     * which does not block concurrent lookups; use this for tables which are read by many threads
+     */
+    public Table(
+    		final File tablefile,
+    		final Row rowdef,
+    		final int buffersize,
+    		final int initialSpace,
+    		boolean useTailCache,
+    		final boolean exceed134217727,
+    		final boolean warmUp,
+    		final boolean concurrentIndex) throws SpaceExceededException, kelondroException {
 
         this.rowdef = rowdef;
         this.buffersize = buffersize;
@@ -152,7 +168,7 @@ public class Table implements Index, Iterable<Row.Entry> {
                 this.table = null; System.gc();
                 log.severe(tablefile.getName() + ": RAM after releasing the table: " + (MemoryControl.available() / 1024L / 1024L) + "MB");
             }
-            this.index = new RowHandleMap(rowdef.primaryKeyLength, rowdef.objectOrder, 4, records, tablefile.getAbsolutePath());
+            this.index = new RowHandleMap(rowdef.primaryKeyLength, rowdef.objectOrder, 4, records, tablefile.getAbsolutePath(), concurrentIndex);
             final RowHandleMap errors = new RowHandleMap(rowdef.primaryKeyLength, NaturalOrder.naturalOrder, 4, records, tablefile.getAbsolutePath() + ".errors");
             if (log.isFine()) log.fine(tablefile + ": TABLE " + tablefile.toString() + " has table copy " + ((this.table == null) ? "DISABLED" : "ENABLED"));
 
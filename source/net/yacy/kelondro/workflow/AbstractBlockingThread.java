@@ -54,6 +54,7 @@ public abstract class AbstractBlockingThread<J extends WorkflowJob> extends Abst
         long timestamp;
         long memstamp0, memstamp1;
         long busyCycles = 0;
+        boolean retired = false;
 
         while (this.running) {
             try {
@@ -67,6 +68,11 @@ public abstract class AbstractBlockingThread<J extends WorkflowJob> extends Abst
                         }
                     }
                 }
+                if (this.manager.retireExecutor()) {
+                    // the concurrency of the process was decreased
+                    retired = true;
+                    break;
+                }
                 // do job
                 timestamp = System.currentTimeMillis();
                 memstamp0 = MemoryControl.used();
@@ -108,7 +114,7 @@ public abstract class AbstractBlockingThread<J extends WorkflowJob> extends Abst
                 busyCycles++;
             }
         }
-        this.manager.decExecutors();
+        if (!retired) this.manager.decExecutors();
         this.close();
         logSystem("thread '" + this.getName() + "' terminated.");
     }
@@ -0,0 +1,152 @@
+/**
+ *  WorkflowController
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.workflow;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * Periodically samples all workflow processes and, if adaptive, moves the concurrency of the added
+ * processes within their bounds. This is a hill climbing per stage: a stage with waiting jobs and busy
+ * executors gets one more executor; if that does not increase its throughput, the step is reverted and
+ * the stage is left alone for some intervals. A stage loses an executor if it is idle or if its
+ * executors mostly wait for the queue of the next stage, because then the next stage is the bottleneck.
+ */
+public class WorkflowController {
+
+    private final static ConcurrentLog log = new ConcurrentLog("WorkflowController");
+
+    /** a grow step must increase the throughput by this factor, otherwise it is reverted */
+    private static final double MIN_GAIN = 1.05d;
+
+    /** the utilization in percent above which a stage with waiting jobs gets another executor */
+    private static final int GROW_UTILIZATION = 75;
+
+    /** the utilization in percent below which a stage without waiting jobs loses an executor */
+    private static final int SHRINK_UTILIZATION = 25;
+
+    /** the back-pressure in percent above which a stage loses an executor */
+    private static final int SHRINK_BACKPRESSURE = 20;
+
+    /** the number of intervals in which a stage is not grown after a reverted grow step */
+    private static final int HOLD_INTERVALS = 6;
+
+    private static class Stage {
+        private final WorkflowProcessor<?> processor;
+        private boolean sampled, grown;
+        private double throughputBeforeGrow;
+        private int hold;
+
+        private Stage(final WorkflowProcessor<?> processor) {
+            this.processor = processor;
+            this.sampled = false;
+            this.grown = false;
+            this.throughputBeforeGrow = 0.0d;
+            this.hold = 0;
+        }
+    }
+
+    private final List<Stage> stages;
+    private volatile boolean adaptive;
+
+    public WorkflowController(final boolean adaptive) {
+        this.stages = new ArrayList<Stage>();
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * add a process which is controlled; its concurrency is changed within the bounds of the process
+     * @param processor
+     */
+    public synchronized void add(final WorkflowProcessor<?> processor) {
+        this.stages.add(new Stage(processor));
+    }
+
+    public boolean isAdaptive() {
+        return this.adaptive;
+    }
+
+    public void setAdaptive(final boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * sample the statistics of all processes and adapt the concurrency of the controlled processes
+     * @return true if the concurrency of a process was changed
+     */
+    public synchronized boolean job() {
+        final Iterator<WorkflowProcessor<?>> i = WorkflowProcessor.processes();
+        while (i.hasNext()) i.next().sample();
+        if (!this.adaptive) return false;
+        boolean changed = false;
+        for (final Stage stage: this.stages) {
+            if (!stage.sampled) {
+                // the statistics of the first sample are not from a full interval
+                stage.sampled = true;
+                continue;
+            }
+            final int before = stage.processor.getMaxConcurrency();
+            adapt(stage);
+            final int after = stage.processor.getMaxConcurrency();
+            if (before != after) {
+                changed = true;
+                if (log.isFine()) log.fine("concurrency of " + stage.processor.getName() + ": " + before + " -> " + after +
+                        " (throughput " + stage.processor.getThroughput() + "/s, utilization " + stage.processor.getUtilization() +
+                        "%, back-pressure " + stage.processor.getBackPressure() + "%, queue " + stage.processor.getQueueSize() + ")");
+            }
+        }
+        return changed;
+    }
+
+    private static void adapt(final Stage stage) {
+        final WorkflowProcessor<?> p = stage.processor;
+        final int concurrency = p.getMaxConcurrency();
+        final int queued = p.getQueueSize();
+        if (stage.grown) {
+            // keep the last grow step only if it paid off; a drained queue means it did
+            stage.grown = false;
+            if (queued > 0 && p.getThroughput() < stage.throughputBeforeGrow * MIN_GAIN) {
+                p.setConcurrency(concurrency - 1);
+                stage.hold = HOLD_INTERVALS;
+                return;
+            }
+        }
+        if (stage.hold > 0) stage.hold--;
+        if (p.getBackPressure() > SHRINK_BACKPRESSURE) {
+            // the next stage does not take the results fast enough, more executors would only wait
+            p.setConcurrency(concurrency - 1);
+            return;
+        }
+        if (queued > 0 && stage.hold == 0 && concurrency < p.getMaxConcurrencyBound() &&
+            p.getExecutors() >= concurrency && p.getUtilization() > GROW_UTILIZATION) {
+            stage.throughputBeforeGrow = p.getThroughput();
+            stage.grown = true;
+            p.setConcurrency(concurrency + 1);
+            return;
+        }
+        if (queued == 0 && p.getUtilization() < SHRINK_UTILIZATION) {
+            p.setConcurrency(concurrency - 1);
+        }
+    }
+
+}
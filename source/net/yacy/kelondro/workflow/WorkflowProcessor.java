@@ -24,9 +24,10 @@
 
 package net.yacy.kelondro.workflow;
 
-import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -40,30 +41,48 @@ import net.yacy.kelondro.util.NamePrefixThreadFactory;
 public class WorkflowProcessor<J extends WorkflowJob> {
 
     public static final int availableCPU = Runtime.getRuntime().availableProcessors();
-    private static final ArrayList<WorkflowProcessor<?>> processMonitor = new ArrayList<WorkflowProcessor<?>>();
+    private static final List<WorkflowProcessor<?>> processMonitor = new CopyOnWriteArrayList<WorkflowProcessor<?>>();
 
     private ExecutorService executor;
     private AtomicInteger executorRunning;
     private BlockingQueue<J> input;
     private final WorkflowProcessor<J> output;
-    private final int maxpoolsize;
+    private final int minpoolsize, maxpoolsize;
+    private volatile int concurrency;
     private final WorkflowTask<J> task;
     private final String processName, description;
     private final String[] childs;
     private long blockTime, execTime, passOnTime;
     private long execCount;
+    private long sampleTime, sampleExecTime, samplePassOnTime, sampleExecCount;
+    private volatile double throughput;
+    private volatile int utilization, backpressure;
 
     public WorkflowProcessor(
             final String name, final String description, final String[] childnames,
             final WorkflowTask<J> task,
             final int inputQueueSize, final WorkflowProcessor<J> output,
             final int maxpoolsize) {
-        // start a fixed number of executors that handle entries in the process queue
+        this(name, description, childnames, task, inputQueueSize, output, maxpoolsize, maxpoolsize);
+    }
+
+    /**
+     * create a process with a concurrency that can be changed with setConcurrency() within the given bounds.
+     * The initial concurrency is the maximum.
+     */
+    public WorkflowProcessor(
+            final String name, final String description, final String[] childnames,
+            final WorkflowTask<J> task,
+            final int inputQueueSize, final WorkflowProcessor<J> output,
+            final int minpoolsize, final int maxpoolsize) {
+        // start executors on demand that handle entries in the process queue
         this.processName = name;
         this.description = description;
         this.task = task;
         this.childs = childnames;
-        this.maxpoolsize = maxpoolsize;
+        this.maxpoolsize = Math.max(1, maxpoolsize);
+        this.minpoolsize = Math.max(1, Math.min(minpoolsize, this.maxpoolsize));
+        this.concurrency = this.maxpoolsize;
         this.input = new LinkedBlockingQueue<J>(Math.max(maxpoolsize + 1, inputQueueSize));
         this.output = output;
         this.executor = Executors.newCachedThreadPool(new NamePrefixThreadFactory(name));
@@ -79,6 +98,10 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         this.execTime = 0;
         this.passOnTime = 0;
         this.execCount = 0;
+        this.sampleTime = 0;
+        this.throughput = 0.0d;
+        this.utilization = 0;
+        this.backpressure = 0;
 
         // store this object for easy monitoring
         processMonitor.add(this);
@@ -102,9 +125,30 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         return this.input.size() + this.input.remainingCapacity();
     }
 
+    /**
+     * @return the number of executors which may run at the same time
+     */
     public int getMaxConcurrency() {
+        return this.concurrency;
+    }
+
+    public int getMinConcurrencyBound() {
+        return this.minpoolsize;
+    }
+
+    public int getMaxConcurrencyBound() {
         return this.maxpoolsize;
     }
+
+    /**
+     * change the number of executors which may run at the same time. If the concurrency is decreased,
+     * superfluous executors terminate before they take their next job.
+     * @param concurrency the new concurrency, it is limited to the bounds of this process
+     */
+    public void setConcurrency(final int concurrency) {
+        this.concurrency = Math.max(this.minpoolsize, Math.min(this.maxpoolsize, concurrency));
+        startExecutor();
+    }
     
     public int getExecutors() {
         return this.executorRunning.get();
@@ -117,6 +161,19 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         this.executorRunning.decrementAndGet();
     }
 
+    /**
+     * the retireExecutor method may only be called within the AbstractBlockingThread while loop before a take()!!
+     * @return true if there are more executors than the concurrency allows; then the executor was already
+     * removed from the executor count and must terminate without a call to decExecutors()
+     */
+    public boolean retireExecutor() {
+        int running;
+        while ((running = this.executorRunning.get()) > this.concurrency) {
+            if (this.executorRunning.compareAndSet(running, running - 1)) return true;
+        }
+        return false;
+    }
+
     public J take() throws InterruptedException {
         // read from the input queue
         if (this.input == null) {
@@ -183,12 +240,7 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         while (this.input != null) {
             try {
                 this.input.put(in);
-                if (this.input.size() > this.executorRunning.get() && this.executorRunning.get() < this.maxpoolsize) synchronized (executor) {
-                    if (this.input.size() > this.executorRunning.get() && this.executorRunning.get() < this.maxpoolsize) {
-                        this.executorRunning.incrementAndGet();
-                        this.executor.submit(new InstantBlockingThread<J>(this));
-                    }
-                }
+                startExecutor();
                 break;
             } catch (final Throwable e) {
                 try {Thread.sleep(10);} catch (final InterruptedException ee) {}
@@ -196,6 +248,18 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         }
     }
 
+    private void startExecutor() {
+        final ExecutorService e = this.executor;
+        final BlockingQueue<J> i = this.input;
+        if (e == null || i == null) return;
+        if (i.size() > this.executorRunning.get() && this.executorRunning.get() < this.concurrency) synchronized (e) {
+            if (i.size() > this.executorRunning.get() && this.executorRunning.get() < this.concurrency) {
+                this.executorRunning.incrementAndGet();
+                e.submit(new InstantBlockingThread<J>(this));
+            }
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public void shutdown() {
         if (this.executor == null) {
@@ -238,15 +302,7 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         this.executor = null;
         this.input = null;
         // remove entry from monitor
-        final Iterator<WorkflowProcessor<?>> i = processes();
-        WorkflowProcessor<?> p;
-        while (i.hasNext()) {
-            p = i.next();
-            if (p == this) {
-                i.remove();
-                break;
-            }
-        }
+        processMonitor.remove(this);
     }
 
     public static Iterator<WorkflowProcessor<?>> processes() {
@@ -303,4 +359,47 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         return this.passOnTime;
     }
 
+    /**
+     * compute throughput, utilization and back-pressure of the time since the last sample
+     * @return the length of the sampled interval in milliseconds, 0 for the first sample
+     */
+    public synchronized long sample() {
+        final long now = System.currentTimeMillis();
+        final long exec = this.execTime, passOn = this.passOnTime, count = this.execCount;
+        final long interval = this.sampleTime == 0 ? 0 : now - this.sampleTime;
+        if (interval > 0) {
+            final long execDelta = exec - this.sampleExecTime;
+            final long passOnDelta = passOn - this.samplePassOnTime;
+            this.throughput = 1000.0d * (count - this.sampleExecCount) / interval;
+            this.utilization = (int) Math.min(100, 100 * execDelta / (interval * Math.max(1, this.executorRunning.get())));
+            this.backpressure = execDelta + passOnDelta <= 0 ? 0 : (int) (100 * passOnDelta / (execDelta + passOnDelta));
+        }
+        this.sampleTime = now;
+        this.sampleExecTime = exec;
+        this.samplePassOnTime = passOn;
+        this.sampleExecCount = count;
+        return interval;
+    }
+
+    /**
+     * @return the number of processed jobs per second in the last sample interval
+     */
+    public double getThroughput() {
+        return this.throughput;
+    }
+
+    /**
+     * @return the percentage of the time of all executors which was spent processing jobs in the last sample interval
+     */
+    public int getUtilization() {
+        return this.utilization;
+    }
+
+    /**
+     * @return the percentage of the busy time in the last sample interval which was spent waiting for the next queue
+     */
+    public int getBackPressure() {
+        return this.backpressure;
+    }
+
 }
@@ -0,0 +1,241 @@
+// IndexTransferStream.java
+// ------------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.peers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+
+/**
+ * Binary format of a DHT index transfer. A transfer is one gzip-compressed stream of
+ * length-prefixed frames which carries the RWI entries and the metadata of the referenced URLs
+ * together, so the receiver does not need a second request to ask for unknown URLs.
+ *
+ * The stream starts with the four bytes 'Y', 'D', 'T', {@link #VERSION}, followed by frames of the form
+ * <pre>
+ * [type: 1 byte][payload length: 4 bytes, big endian][payload]
+ * </pre>
+ * <ul>
+ * <li>{@link #FRAME_RWI}: the term hash followed by a sequence of rows in the binary layout of
+ * {@link WordReferenceRow#urlEntryRow}, which is the same layout used in the RWI BLOB files</li>
+ * <li>{@link #FRAME_URL}: the metadata of one URL in the UTF-8 encoded property form of the legacy transferURL protocol</li>
+ * <li>{@link #FRAME_END}: an empty frame which terminates the stream</li>
+ * </ul>
+ */
+public final class IndexTransferStream {
+
+    /** the version of the format; peers which support it announce this with the Seed flag for binary transfer */
+    public static final byte VERSION = 1;
+
+    public static final byte FRAME_END = 0;
+    public static final byte FRAME_RWI = 1;
+    public static final byte FRAME_URL = 2;
+
+    /** limit for the payload of one frame, protection against flooding */
+    public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    private static final byte[] MAGIC = new byte[]{'Y', 'D', 'T', VERSION};
+    private static final Row ROW = WordReferenceRow.urlEntryRow;
+    private static final WordReferenceFactory FACTORY = new WordReferenceFactory();
+
+    /**
+     * writes frames into a compressed byte array
+     */
+    public static final class Writer {
+
+        private final ByteArrayOutputStream bytes;
+        private final DataOutputStream out;
+        private int rwiCount, urlCount, payloadSize;
+
+        public Writer(final int expectedSize) throws IOException {
+            this.bytes = new ByteArrayOutputStream(Math.max(256, expectedSize / 2));
+            this.out = new DataOutputStream(new GZIPOutputStream(this.bytes, 8192));
+            this.out.write(MAGIC);
+            this.rwiCount = 0;
+            this.urlCount = 0;
+            this.payloadSize = 0;
+        }
+
+        /**
+         * write the entries of a container as RWI frames; large containers are split into several frames
+         */
+        public void writeContainer(final ReferenceContainer<WordReference> container) throws IOException {
+            final byte[] termHash = container.getTermHash();
+            final int maxRows = (MAX_FRAME_SIZE - termHash.length) / ROW.objectsize;
+            final Iterator<WordReference> i = container.entries();
+            final byte[] row = new byte[ROW.objectsize];
+            while (i.hasNext()) {
+                final int rows = Math.min(maxRows, container.size());
+                final ByteArrayOutputStream frame = new ByteArrayOutputStream(termHash.length + rows * ROW.objectsize);
+                frame.write(termHash);
+                int c = 0;
+                while (c < maxRows && i.hasNext()) {
+                    i.next().toKelondroEntry().writeToArray(row, 0);
+                    frame.write(row);
+                    c++;
+                }
+                writeFrame(FRAME_RWI, frame.toByteArray());
+                this.rwiCount += c;
+            }
+        }
+
+        /**
+         * write the metadata of one URL
+         * @param metadata the property form of the metadata as produced by URIMetadataNode.toString()
+         */
+        public void writeMetadata(final String metadata) throws IOException {
+            writeFrame(FRAME_URL, UTF8.getBytes(metadata));
+            this.urlCount++;
+        }
+
+        private void writeFrame(final byte type, final byte[] payload) throws IOException {
+            this.out.writeByte(type);
+            this.out.writeInt(payload.length);
+            this.out.write(payload);
+            this.payloadSize += payload.length;
+        }
+
+        /**
+         * terminate and close the stream
+         * @return the compressed stream
+         */
+        public byte[] finish() throws IOException {
+            this.out.writeByte(FRAME_END);
+            this.out.writeInt(0);
+            this.out.close();
+            return this.bytes.toByteArray();
+        }
+
+        public int rwiCount() {
+            return this.rwiCount;
+        }
+
+        public int urlCount() {
+            return this.urlCount;
+        }
+
+        /**
+         * @return the uncompressed size of all payloads written so far
+         */
+        public int payloadSize() {
+            return this.payloadSize;
+        }
+    }
+
+    /**
+     * reads frames from a compressed byte array
+     */
+    public static final class Reader {
+
+        private final DataInputStream in;
+        private byte type;
+        private byte[] payload;
+
+        /**
+         * @param stream the compressed stream
+         * @throws IOException if the stream is not in a supported format
+         */
+        public Reader(final byte[] stream) throws IOException {
+            this.in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(stream), 8192));
+            final byte[] magic = new byte[MAGIC.length];
+            this.in.readFully(magic);
+            for (int i = 0; i < MAGIC.length - 1; i++) {
+                if (magic[i] != MAGIC[i]) throw new IOException("not an index transfer stream");
+            }
+            if (magic[MAGIC.length - 1] != VERSION) throw new IOException("unsupported index transfer stream version " + magic[MAGIC.length - 1]);
+            this.type = FRAME_END;
+            this.payload = null;
+        }
+
+        /**
+         * read the next frame
+         * @return the type of the frame, {@link #FRAME_END} at the end of the stream
+         * @throws IOException if the stream is truncated or a frame is malformed
+         */
+        public byte next() throws IOException {
+            try {
+                this.type = this.in.readByte();
+            } catch (final EOFException e) {
+                throw new IOException("index transfer stream is truncated", e);
+            }
+            final int length = this.in.readInt();
+            if (length < 0 || length > MAX_FRAME_SIZE) throw new IOException("frame length " + length + " out of bounds");
+            this.payload = new byte[length];
+            this.in.readFully(this.payload);
+            if (this.type == FRAME_RWI && (length < Word.commonHashLength || (length - Word.commonHashLength) % ROW.objectsize != 0)) {
+                throw new IOException("malformed RWI frame of length " + length);
+            }
+            return this.type;
+        }
+
+        /**
+         * @return the term hash of the current RWI frame
+         */
+        public byte[] termHash() {
+            assert this.type == FRAME_RWI;
+            final byte[] termHash = new byte[Word.commonHashLength];
+            System.arraycopy(this.payload, 0, termHash, 0, Word.commonHashLength);
+            return termHash;
+        }
+
+        /**
+         * @return the references of the current RWI frame
+         */
+        public List<WordReference> references() {
+            assert this.type == FRAME_RWI;
+            final int count = (this.payload.length - Word.commonHashLength) / ROW.objectsize;
+            final List<WordReference> references = new ArrayList<WordReference>(count);
+            for (int i = 0; i < count; i++) {
+                references.add(FACTORY.produceSlow(ROW.newEntry(this.payload, Word.commonHashLength + i * ROW.objectsize, true)));
+            }
+            return references;
+        }
+
+        /**
+         * @return the metadata property form of the current URL frame
+         */
+        public String metadata() {
+            assert this.type == FRAME_URL;
+            return UTF8.String(this.payload);
+        }
+
+        public void close() {
+            try {
+                this.in.close();
+            } catch (final IOException e) {}
+        }
+    }
+
+}
@@ -68,12 +68,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.http.entity.mime.content.ContentBody;
 import org.apache.solr.client.solrj.SolrQuery;
-import org.apache.solr.client.solrj.response.FacetField;
-import org.apache.solr.client.solrj.response.FacetField.Count;
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
 import org.apache.solr.common.SolrDocumentList;
 import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
 
 import net.yacy.migration;
 import net.yacy.cora.date.GenericFormatter;
@@ -89,10 +88,10 @@ import net.yacy.cora.federate.solr.connector.SolrConnector;
 import net.yacy.cora.federate.solr.instance.RemoteInstance;
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.order.Digest;
+import net.yacy.cora.protocol.ByteArrayBody;
 import net.yacy.cora.protocol.ClientIdentification;
 import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.http.HTTPClient;
-import net.yacy.cora.sorting.ClusteredScoreMap;
 import net.yacy.cora.sorting.ReversibleScoreMap;
 import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ByteBuffer;
@@ -109,6 +108,7 @@ import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.data.word.WordReference;
 import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
 import net.yacy.kelondro.rwi.Reference;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.rwi.ReferenceContainerCache;
@@ -124,6 +124,8 @@ import net.yacy.search.EventTracker;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
 import net.yacy.search.index.Segment;
+import net.yacy.search.query.FacetCache;
+import net.yacy.search.query.QueryParams;
 import net.yacy.search.query.SearchEvent;
 import net.yacy.search.query.SecondarySearchSuperviser;
 import net.yacy.search.schema.CollectionSchema;
@@ -1206,12 +1208,35 @@ public final class Protocol {
             return -1; // we cannot query solr only with word hashes, there is no clear text string
         }
         event.addExpectedRemoteReferences(count);
-        if (partitions > 0) solrQuery.set("partitions", partitions);
-        solrQuery.setStart(offset);
-        solrQuery.setRows(count);
+        // the query of the search event is shared by the local and the remote searches, so the facets are set on a copy
+        final SolrQuery query = solrQuery.getCopy();
+        if (partitions > 0) query.set("partitions", partitions);
+        query.setStart(offset);
+        query.setRows(count);
         
         boolean localsearch = target == null || target.equals(event.peers.mySeed());
         Map<String, ReversibleScoreMap<String>> facets = new HashMap<String, ReversibleScoreMap<String>>(event.query.facetfields.size());
+
+        // the navigator counts do not depend on the requested page: take them from the cache and request only the missing facets
+        final Map<String, String> facetDefinitions = new LinkedHashMap<String, String>();
+        final String facetScope = FacetCache.scope(query);
+        if (useSolrFacets) {
+            final long maxAge = Switchboard.getSwitchboard().crawlQueues.noticeURL.isEmpty() ? Long.MAX_VALUE : 60000; // during a local crawl, counts may change quickly
+            for (final Map.Entry<String, String> facet: event.query.getFacetDefinitions().entrySet()) {
+                final ReversibleScoreMap<String> counts = FacetCache.get(facetScope, facet.getValue(), maxAge);
+                if (counts == null) {
+                    facetDefinitions.put(facet.getKey(), facet.getValue());
+                } else {
+                    facets.put(facet.getKey(), counts);
+                }
+            }
+        }
+        query.setFacet(false);
+        if (facetDefinitions.isEmpty()) {
+            query.remove(FacetCache.JSON_FACET);
+        } else {
+            query.set(FacetCache.JSON_FACET, QueryParams.jsonFacet(facetDefinitions));
+        }
         Map<String, LinkedHashSet<String>> snippets = new HashMap<String, LinkedHashSet<String>>(); // this will be a list of urlhash-snippet entries
         final QueryResponse[] rsp = new QueryResponse[]{null};
         final SolrDocumentList[] docList = new SolrDocumentList[]{null};
@@ -1221,7 +1246,7 @@ public final class Protocol {
                 try {
                     SolrConnector sc = event.getQuery().getSegment().fulltext().getDefaultConnector();
                     if (!sc.isClosed()) {
-                        rsp[0] = sc.getResponseByParams(solrQuery);
+                        rsp[0] = sc.getResponseByParams(query);
                         docList[0] = rsp[0].getResults();
                     }
                 } catch (final Throwable e) {
@@ -1253,7 +1278,7 @@ public final class Protocol {
                         return -1;
                     }
                     final int solrtimeout = Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_TIMEOUT, 6000);
-                    SolrRequestTask remoteRequest = new SolrRequestTask(solrQuery, targetBaseURL, target, myseed, solrtimeout, rsp, docList);
+                    SolrRequestTask remoteRequest = new SolrRequestTask(query, targetBaseURL, target, myseed, solrtimeout, rsp, docList);
                     remoteRequest.start();
                     remoteRequest.join(solrtimeout); // just wait until timeout appears
                     if (remoteRequest.isAlive()) {
@@ -1295,26 +1320,14 @@ public final class Protocol {
             }
 
             // evaluate facets
-            if(useSolrFacets) {
-            	for (String field: event.query.facetfields.keySet()) {
-            		FacetField facet = rsp[0].getFacetField(field);
-            		ReversibleScoreMap<String> result = new ClusteredScoreMap<String>(UTF8.insensitiveUTF8Comparator);
-            		List<Count> values = facet == null ? null : facet.getValues();
-            		if (values == null) {
-            			continue;
-            		}
-            		for (Count ff: values) {
-            			int c = (int) ff.getCount();
-            			if (c == 0) {
-            				continue;
-            			}
-            			if (ff.getName().length() == 0) {
-            				continue; // facet entry without text is not useful
-            			}
-            			result.set(ff.getName(), c);
-            		}
-            		if (result.size() > 0) {
-            			facets.put(field, result);
+            if (!facetDefinitions.isEmpty()) {
+            	final Object jsonFacets = rsp[0].getResponse().get("facets");
+            	if (jsonFacets instanceof NamedList) {
+            		for (final Map.Entry<String, String> facet: facetDefinitions.entrySet()) {
+            			final Object values = ((NamedList<?>) jsonFacets).get(facet.getKey()); // missing if there are no results at all
+            			final ReversibleScoreMap<String> counts = FacetCache.counts(values instanceof NamedList ? (NamedList<?>) values : null);
+            			FacetCache.put(facetScope, facet.getValue(), counts);
+            			facets.put(facet.getKey(), counts); // also if empty: the navigator must not count the single documents
             		}
             	}
             }
@@ -1324,7 +1337,7 @@ public final class Protocol {
             if (rawsnippets != null) {
                 nextsnippet: for (final Map.Entry<String, Map<String, List<String>>> re: rawsnippets.entrySet()) {
                     final Map<String, List<String>> rs = re.getValue();
-                    for (final String field: solrQuery.getHighlightFields()) {
+                    for (final String field: query.getHighlightFields()) {
                         if (rs.containsKey(field)) {
                             final List<String> s = rs.get(field);
                             if (s.size() > 0) {
@@ -1344,7 +1357,7 @@ public final class Protocol {
         // evaluate result
         final int numFound = (int) docList[0].getNumFound();
         if (docList == null || docList[0].isEmpty()) {
-            Network.log.info("SEARCH (solr), returned 0 out of 0 documents from " + (target == null ? "shard" : ("peer " + target.hash + ":" + target.getName())) + " query = " + solrQuery.toString()) ;
+            Network.log.info("SEARCH (solr), returned 0 out of 0 documents from " + (target == null ? "shard" : ("peer " + target.hash + ":" + target.getName())) + " query = " + query.toString()) ;
             if(localsearch && offset > 0) {
             	/* No documents were returned from Solr because the offset is too high, but we have to keep the total number of matching documents for accurate pagination.
             	 * This case can notably happen on latest results pages, when mixing results from local RWI and local Solr ("Stealth Mode") */
@@ -1705,7 +1718,30 @@ public final class Protocol {
         
 		final boolean preferHttps = sb.getConfigBool(SwitchboardConstants.NETWORK_PROTOCOL_HTTPS_PREFERRED,
 				SwitchboardConstants.NETWORK_PROTOCOL_HTTPS_PREFERRED_DEFAULT);
-        
+
+        // transfer RWIs and URLs in one binary request if both peers support it
+        if (targetSeed.getFlagTransferBinary() &&
+            sb.getConfigBool(SwitchboardConstants.INDEX_DIST_TRANSFER_BINARY, SwitchboardConstants.INDEX_DIST_TRANSFER_BINARY_DEFAULT)) {
+            final Map<String, String> in = transferIndexBinary(targetSeed, indexes, urlRefs, segment, timeout, preferHttps);
+            if (in == null) {
+                // targetSeed interface departure is already handled within transferIndexBinary() for no response situation
+                return "no connection from transferIndex";
+            }
+            final String result = in.get("result");
+            if (result != null) {
+                if (!result.equals("ok")) {
+                    targetSeed.setFlagAcceptRemoteIndex(false); // the peer does not want our index
+                    sb.peers.addConnected(targetSeed); // update the peer
+                    return result;
+                }
+                EventChannel.channels(EventChannel.DHTSEND).addMessage(new RSSMessage("Sent " + indexes.size() + " RWIs " + indexes.toString() + " and " + in.get("urlc") + " URLs in binary format to " + targetSeed.getName() + "/[" + targetSeed.hash + "]", "", targetSeed.hash));
+                return null;
+            }
+            // the peer did not understand the request; fall back to the text format
+            Network.log.info("yacyClient.transferIndex: no result from binary transfer to " + targetSeed.getName() + ", using text format");
+            targetSeed.setFlagTransferBinary(false);
+        }
+
         // transfer the RWI without the URLs
         Map<String, String> in = transferRWI(targetSeed, indexes, gzipBody, timeout, preferHttps);
 
@@ -1885,6 +1921,129 @@ public final class Protocol {
         return null;
     }
 
+    /**
+     * Transfer Reverse Word Index entries together with the metadata of the referenced URLs
+     * to a remote peer in one request, using the binary format of {@link IndexTransferStream}.
+     * If the used IP is not responding, this IP (interface) is removed from targetSeed IP list.
+     *
+     * @param targetSeed
+     *            the target peer, which must announce the binary transfer format
+     * @param indexes
+     *            the index entries to transfer
+     * @param urlRefs
+     *            the hashes of the URLs referenced by the index entries
+     * @param segment
+     *            the segment with the URL metadata
+     * @param timeout
+     *            the maximum time in milliseconds to wait for a success of the
+     *            http(s) request(s) to the remote peer
+     * @param preferHttps
+     *            when true, use https when available on the target peer
+     * @return peer response or null if transfer failed
+     */
+    private static Map<String, String> transferIndexBinary(
+        final Seed targetSeed,
+        final ReferenceContainerCache<WordReference> indexes,
+        final HandleSet urlRefs,
+        final Segment segment,
+        final int timeout,
+        final boolean preferHttps) {
+
+        // the stream does not depend on the address, so it is produced only once
+        final byte[] stream;
+        final int indexcount, urlc;
+        try {
+            final IndexTransferStream.Writer writer = new IndexTransferStream.Writer(indexes.size() * WordReferenceRow.urlEntryRow.objectsize);
+            for (final ReferenceContainer<WordReference> ic : indexes) {
+                writer.writeContainer(ic);
+            }
+            if (writer.rwiCount() == 0) {
+                // nothing to do but everything ok
+                final Map<String, String> result = new HashMap<String, String>(2);
+                result.put("result", "ok");
+                result.put("urlc", "0");
+                return result;
+            }
+            metadataRetrievalRunning.incrementAndGet();
+            try {
+                for (final byte[] key : urlRefs) {
+                    final URIMetadataNode url = segment.fulltext().getMetadata(key);
+                    if (url == null) {
+                        if (Network.log.isFine()) Network.log.fine("DEBUG transferIndex: requested url hash '" + ASCII.String(key) + "'");
+                        continue;
+                    }
+                    final String resource = url.toString();
+                    if (resource != null && resource.indexOf(0) == -1) writer.writeMetadata(resource);
+                }
+            } finally {
+                metadataRetrievalRunning.decrementAndGet();
+            }
+            indexcount = writer.rwiCount();
+            urlc = writer.urlCount();
+            stream = writer.finish();
+        } catch (final IOException e) {
+            Network.log.warn("yacyClient.transferIndex: cannot produce transfer stream: " + e.getMessage());
+            return null;
+        }
+
+        for (final String ip : targetSeed.getIPs()) {
+            if (ip == null) {
+                Network.log.warn("no address for transferIndex");
+                return null;
+            }
+            MultiProtocolURL targetBaseURL = null;
+            try {
+                targetBaseURL = targetSeed.getPublicMultiprotocolURL(ip, preferHttps);
+            } catch(final MalformedURLException e) {
+                Network.log.info("yacyClient.transferIndex malformed target URL : " + targetBaseURL);
+                // disconnect unavailable peer ip
+                Switchboard.getSwitchboard().peers.peerActions.interfaceDeparture(targetSeed, ip);
+                continue;
+            }
+            final String salt = crypt.randomSalt();
+            try {
+                final Map<String, ContentBody> parts = basicRequestParts(Switchboard.getSwitchboard(), targetSeed.hash, salt);
+                parts.put("version", UTF8.StringBody(Integer.toString(IndexTransferStream.VERSION)));
+                parts.put("wordc", UTF8.StringBody(Integer.toString(indexes.size())));
+                parts.put("entryc", UTF8.StringBody(Integer.toString(indexcount)));
+                parts.put("urlc", UTF8.StringBody(Integer.toString(urlc)));
+                // the file name suffix .gz makes the server keep the binary content
+                parts.put("frames", new ByteArrayBody(stream, "frames.gz"));
+                final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, timeout);
+                byte[] content = null;
+                try {
+                    // the stream is compressed already
+                    content = httpClient.POSTbytes(new MultiProtocolURL(targetBaseURL, "/yacy/transferIndex.html"),
+                            targetSeed.getHexHash() + ".yacyh", parts, false, true);
+                } catch(final IOException e) {
+                    if(targetBaseURL.isHTTPS()) {
+                        targetBaseURL = targetSeed.getPublicMultiprotocolURL(ip, false);
+                        /* Failed with https : retry with http on the same address */
+                        content = httpClient.POSTbytes(new MultiProtocolURL(targetBaseURL, "/yacy/transferIndex.html"),
+                                targetSeed.getHexHash() + ".yacyh", parts, false, true);
+                        if(content != null) {
+                            /* Success with http : mark SSL as unavailable on the target peer */
+                            markSSLUnavailableOnPeer(Switchboard.getSwitchboard().peers, targetSeed, ip, "yacyClient.transferIndex");
+                        }
+                    } else {
+                        throw e;
+                    }
+                }
+                final Map<String, String> result = FileUtils.table(FileUtils.strings(content));
+                // return the transfered data in bytes (for debugging only)
+                result.put("indexPayloadSize", Integer.toString(stream.length));
+                result.put("urlc", Integer.toString(urlc));
+                result.put(Seed.IP, ip); // add used ip to result for error handling (in case no "result" key was received)
+                return result;
+            } catch (final Exception e ) {
+                Network.log.info("yacyClient.transferIndex to " + targetBaseURL + " error: " + e.getMessage());
+                // disconnect unavailable peer ip
+                Switchboard.getSwitchboard().peers.peerActions.interfaceDeparture(targetSeed, ip);
+            }
+        }
+        return null;
+    }
+
     /**
      * Transfer URL entries to remote peer
      *
@@ -48,14 +48,14 @@ import net.yacy.search.SwitchboardConstants;
 import net.yacy.search.index.Segment;
 import net.yacy.search.query.QueryParams;
 import net.yacy.search.query.SearchEvent;
+import net.yacy.search.query.SearchTask;
 import net.yacy.search.query.SecondarySearchSuperviser;
 
 /**
  * Handle remote YaCy peers selection and search requests on them, targeting either their Solr index or RWI (Reverse Word Index)
  */
-public class RemoteSearch extends Thread {
+public class RemoteSearch extends SearchTask {
 
-    private static final ThreadGroup ysThreadGroup = new ThreadGroup("yacySearchThreadGroup");
     public static final ConcurrentLog log = new ConcurrentLog("DHT");
     
     final private SearchEvent event;
@@ -66,7 +66,7 @@ public class RemoteSearch extends Thread {
     final private SecondarySearchSuperviser secondarySearchSuperviser;
     final private Blacklist blacklist;
     
-    /** The target peer of this search Thread */
+    /** The target peer of this search task */
     final private Seed targetPeer;
     private int urls;
     private final int count, maxDistance;
@@ -87,7 +87,7 @@ public class RemoteSearch extends Thread {
               final Seed targetPeer,
               final SecondarySearchSuperviser secondarySearchSuperviser,
               final Blacklist blacklist) {
-        super(ysThreadGroup, "yacySearch_" + targetPeer.getName());
+        super("yacySearch_" + targetPeer.getName());
         this.event = event;
         this.wordhashes = wordhashes;
         this.excludehashes = excludehashes;
@@ -154,7 +154,7 @@ public class RemoteSearch extends Thread {
     }
 
     /**
-     * @return the target peer of this search Thread
+     * @return the target peer of this search task
      */
     public Seed target() {
         return this.targetPeer;
@@ -279,7 +279,7 @@ public class RemoteSearch extends Thread {
 								SwitchboardConstants.REMOTESEARCH_MAXLOAD_SOLR_DEFAULT)) {
 					continue;
 				}
-                Thread t = solrRemoteSearch(event, solrQuery, start, count, s, targets, blacklist, useFacets, true);
+                SearchTask t = solrRemoteSearch(event, solrQuery, start, count, s, targets, blacklist, useFacets, true);
                 event.nodeSearchThreads.add(t);
             }
         }
@@ -308,7 +308,7 @@ public class RemoteSearch extends Thread {
                         dhtPeer,
                         event.secondarySearchSuperviser,
                         blacklist);
-                    rs.start();
+                    event.tasks.fork(rs);
                     event.primarySearchThreadsL.add(rs);
                 } catch (final OutOfMemoryError e) {
                     ConcurrentLog.logException(e);
@@ -318,7 +318,7 @@ public class RemoteSearch extends Thread {
         }
     }
 
-    public static Thread secondaryRemoteSearch(
+    public static SearchTask secondaryRemoteSearch(
     		final SearchEvent event,
             final Set<String> wordhashes,
             final String urlhashes,
@@ -334,7 +334,7 @@ public class RemoteSearch extends Thread {
         // prepare seed targets and threads
         final Seed targetPeer = event.peers.getConnected(targethash);
         if (targetPeer == null || targetPeer.hash == null) return null;
-        Thread secondary = new Thread("RemoteSearch.secondaryRemoteSearch(" + wordhashes + " to " + targethash + ")") {
+        SearchTask secondary = new SearchTask("RemoteSearch.secondaryRemoteSearch(" + wordhashes + " to " + targethash + ")") {
             @Override
             public void run() {
                 event.oneFeederStarted();
@@ -368,12 +368,11 @@ public class RemoteSearch extends Thread {
                 }
             }
         };
-        secondary.start();
-        return secondary;
+        return event.tasks.fork(secondary);
     }
 
     /**
-     * Create and start a thread running a Solr query on the specified target or on this peer when the target is null.
+     * Create and start a search task running a Solr query on the specified target or on this peer when the target is null.
      * @param event the origin search event. Must not be null.
      * @param solrQuery the Solr query derived from the search event. Must not be null.
      * @param start offset start index
@@ -383,9 +382,9 @@ public class RemoteSearch extends Thread {
      * @param blacklist the blacklist to use. Can be empty but must not be null.
      * @param useSolrFacets when true, use Solr computed facets when possible to update the event navigators counters
      * @param incrementNavigators when true, increment event navigators either with facet counts or with individual results
-     * @return the created and running Thread instance
+     * @return the created and running search task
      */
-    public static Thread solrRemoteSearch(
+    public static SearchTask solrRemoteSearch(
                     final SearchEvent event,
                     final SolrQuery solrQuery,
                     final int start,
@@ -401,8 +400,8 @@ public class RemoteSearch extends Thread {
         assert solrQuery != null;
         // check own peer status
         if (event.peers.mySeed() == null) { return null; }
-        // prepare threads
-        Thread solr = new Thread("RemoteSearch.solrRemoteSearch(" + solrQuery.getQuery() + " to " + (targetPeer == null ? "myself" : targetPeer.hash) + ")") {
+        // prepare the search task
+        SearchTask solr = new SearchTask("RemoteSearch.solrRemoteSearch(" + solrQuery.getQuery() + " to " + (targetPeer == null ? "myself" : targetPeer.hash) + ")") {
             @Override
             public void run() {
                     int urls = 0;
@@ -428,7 +427,7 @@ public class RemoteSearch extends Thread {
                             }
                         }
                     } catch (final InterruptedException e) {
-                    	Network.log.info("REMOTE SEARCH - interrupted search to remote peer " + targetPeer.hash + ":" + targetPeer.getName());
+                    	if (targetPeer != null) Network.log.info("REMOTE SEARCH - interrupted search to remote peer " + targetPeer.hash + ":" + targetPeer.getName());
                     } catch (final Exception e) {
                         ConcurrentLog.logException(e);
                     } finally {
@@ -436,8 +435,7 @@ public class RemoteSearch extends Thread {
                     }
             }
         };
-        /*if (targetPeer == null) solr.run(); else*/ solr.start();
-        return solr;
+        /*if (targetPeer == null) solr.run(); else*/ return event.tasks.fork(solr);
     }
 
     public static int remainingWaiting(final RemoteSearch[] searchThreads) {
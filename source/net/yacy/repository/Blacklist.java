@@ -106,6 +106,7 @@ public class Blacklist {
     private final ConcurrentMap<BlacklistType, HandleSet> cachedUrlHashs;
     private final ConcurrentMap<BlacklistType, Map<String, Set<Pattern>>> hostpaths_matchable; // key=host, value=path; mapped url is http://host/path; path does not start with '/' here
     private final ConcurrentMap<BlacklistType, Map<String, Set<Pattern>>> hostpaths_notmatchable; // key=host, value=path; mapped url is http://host/path; path does not start with '/' here
+    private final ConcurrentMap<BlacklistType, BlacklistMatcher> matchers; // compiled from the hostpaths maps on the first check after a change
 
     public Blacklist(final File rootPath) {
 
@@ -115,6 +116,7 @@ public class Blacklist {
         this.hostpaths_matchable = new ConcurrentHashMap<BlacklistType, Map<String, Set<Pattern>>>();
         this.hostpaths_notmatchable = new ConcurrentHashMap<BlacklistType, Map<String, Set<Pattern>>>();
         this.cachedUrlHashs = new ConcurrentHashMap<BlacklistType, HandleSet>();
+        this.matchers = new ConcurrentHashMap<BlacklistType, BlacklistMatcher>();
 
         for (final BlacklistType blacklistType : BlacklistType.values()) {
             this.hostpaths_matchable.put(blacklistType, new ConcurrentHashMap<String, Set<Pattern>>());
@@ -123,6 +125,35 @@ public class Blacklist {
         }
     }
 
+    /**
+     * drop the matcher for a blacklist type, it is created again from the host/path maps with the next check.
+     * This must be called after each change of the maps; many changes in a row cost only one compilation.
+     * @param blacklistType
+     */
+    private final void invalidate(final BlacklistType blacklistType) {
+        synchronized (this.matchers) {
+            this.matchers.remove(blacklistType);
+        }
+    }
+
+    /**
+     * get the matcher for a blacklist type, create it from the current host/path maps if they have been changed
+     * @param blacklistType
+     * @return the matcher
+     */
+    private final BlacklistMatcher matcher(final BlacklistType blacklistType) {
+        BlacklistMatcher matcher = this.matchers.get(blacklistType);
+        if (matcher != null) return matcher;
+        synchronized (this.matchers) {
+            matcher = this.matchers.get(blacklistType);
+            if (matcher == null) {
+                matcher = new BlacklistMatcher(getBlacklistMap(blacklistType, true), getBlacklistMap(blacklistType, false));
+                this.matchers.put(blacklistType, matcher);
+            }
+        }
+        return matcher;
+    }
+
     /**
      * Close (shutdown) this "sub-system", add more here for shutdown.
      */
@@ -173,6 +204,9 @@ public class Blacklist {
         for (final HandleSet entry : this.cachedUrlHashs.values()) {
             entry.clear();
         }
+        for (final BlacklistType blacklistType : BlacklistType.values()) {
+            invalidate(blacklistType);
+        }
     }
 
     public final int size() {
@@ -256,6 +290,7 @@ public class Blacklist {
                 }
             }
         }
+        invalidate(blFile.getType());
     }
 
     public final void loadList(final BlacklistType blacklistType, final String fileNames, final String sep) {
@@ -273,40 +308,57 @@ public class Blacklist {
      * @param path
      */
     public final void remove(final BlacklistType blacklistType, final String blacklistToUse, final String host, final String path) {
+        final Collection<BlacklistHostAndPath> oneItemList = new ArrayList<>();
+        oneItemList.add(new BlacklistHostAndPath(host, path));
+        this.remove(blacklistType, blacklistToUse, oneItemList);
+    }
 
-        final Map<String, Set<Pattern>> blacklistMap = getBlacklistMap(blacklistType, true);
-		removePatternFromMap(host, path, blacklistMap);
+    /**
+     * remove the host/path items from internal blacklist maps for given blacklistType
+     * !! and removes the entries from source blacklist file !!
+     * The source file is read and written only once for all items.
+     * @param blacklistType
+     * @param blacklistToUse
+     * @param items blacklist host/path items to remove
+     */
+    public final void remove(final BlacklistType blacklistType, final String blacklistToUse, final Collection<BlacklistHostAndPath> items) {
+        if (items == null || items.isEmpty()) return;
 
+        final Map<String, Set<Pattern>> blacklistMap = getBlacklistMap(blacklistType, true);
         final Map<String, Set<Pattern>> blacklistMapNotMatch = getBlacklistMap(blacklistType, false);
-        removePatternFromMap(host, path, blacklistMapNotMatch);
+        /* delete the old entries from file, in any normalized or not normalized possible combinations */
+        final Set<String> entriesToDelete = new HashSet<>();
+        for (final BlacklistHostAndPath item : items) {
+            final String host = item.getHost();
+            final String path = item.getPath();
+            removePatternFromMap(host, path, blacklistMap);
+            removePatternFromMap(host, path, blacklistMapNotMatch);
+
+            final String normalizedPathPattern = MultiProtocolURL.escapePathPattern(path);
+            entriesToDelete.add(host + "/" + path);
+            entriesToDelete.add(host + "/" + normalizedPathPattern);
+            if (!Punycode.isBasic(host)) {
+                try {
+                    final String normalizedHost = MultiProtocolURL.toPunycode(host);
+                    entriesToDelete.add(normalizedHost + "/" + path);
+                    entriesToDelete.add(normalizedHost + "/" + normalizedPathPattern);
+                } catch (final PunycodeException ignored) {
+                    /* We continue even if a punycode flavor can not be produced */
+                }
+            }
+        }
+        invalidate(blacklistType);
 
         //TODO: check if delete from blacklist is desired, on reload entry will not be available in any blacklist
         //      even if remove (above) from internal maps (at runtime) is only done for given blacklistType
         // load blacklist data from file
         final List<String> list = FileUtils.getListArray(new File(ListManager.listsPath, blacklistToUse));
-        
-        /* delete the old entry from file, in any normalized or not normalized possible combinations */
-		final Set<String> entriesToDelete = new HashSet<>();
-		final String normalizedPathPattern = MultiProtocolURL.escapePathPattern(path);
-		entriesToDelete.add(host + "/" + path);
-		entriesToDelete.add(host + "/" + normalizedPathPattern);
-		if (!Punycode.isBasic(host)) {
-			try {
-				final String normalizedHost = MultiProtocolURL.toPunycode(host);
-				entriesToDelete.add(normalizedHost + "/" + path);
-				entriesToDelete.add(normalizedHost + "/" + normalizedPathPattern);
-			} catch (final PunycodeException ignored) {
-				/* We continue even if a punycode flavor can not be produced */
-			}
-		}
         if (list != null) {
+            final List<String> remaining = new ArrayList<>(list.size());
             for (final String e : list) {
-                if (entriesToDelete.contains(e)) {
-                    list.remove(e);
-                    break;
-                }
+                if (!entriesToDelete.contains(e)) remaining.add(e);
             }
-            FileUtils.writeList(new File(ListManager.listsPath, blacklistToUse), list.toArray(new String[list.size()]));
+            FileUtils.writeList(new File(ListManager.listsPath, blacklistToUse), remaining.toArray(new String[remaining.size()]));
         }
     }
 
@@ -430,6 +482,7 @@ public class Blacklist {
 						log.warn("could not close stream to " + blacklistToUse + "! ");
 					}
 				}
+				invalidate(blacklistType);
 			}
 		}
 	}
@@ -489,6 +542,7 @@ public class Blacklist {
                     blacklistMap.put(h, (hostList = new HashSet<Pattern>()));
                 }
                 hostList.add(pattern);
+                invalidate(supportedBlacklistType);
             }
         }
 
@@ -633,16 +687,12 @@ public class Blacklist {
             throw new IllegalArgumentException("path may not be null");
         }
 
-        // getting the proper blacklists
-        final Map<String, Set<Pattern>> blacklistMapMatched = getBlacklistMap(blacklistType, true);
-        
-        final Map<String, Set<Pattern>> blacklistMapNotMatched = getBlacklistMap(blacklistType, false);
-
-        return Blacklist.isListed(hostlow, path, blacklistMapMatched, blacklistMapNotMatched);
+        return matcher(blacklistType).isListed(hostlow, path);
     }
 
     /**
      * Check if the URL made of the specified host and path is blacklisted. All parameters must not be null.
+     * This probes the maps directly; the blacklist itself uses a {@link BlacklistMatcher} compiled from the maps.
      * @param hostlow host part
      * @param path path on the host
      * @param blacklistMapMatched blacklist patterns indexed by matched hosts
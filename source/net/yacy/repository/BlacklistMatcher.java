@@ -0,0 +1,265 @@
+// BlacklistMatcher.java
+// part of YaCy
+//
+// This is a part of YaCy, a peer-to-peer based web search engine
+//
+// LICENSE
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+package net.yacy.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A compiled form of the host/path maps of one blacklist type. The matcher is immutable and is
+ * created again by the {@link Blacklist} whenever the entries are loaded, added or removed.
+ * <ul>
+ * <li>host entries like 'yacy.net' and '*.yacy.net' are stored in a trie of the host labels from the right,</li>
+ * <li>host entries like 'www.yacy' and 'ftp.*' are stored in a trie of the host labels from the left,</li>
+ * <li>regular expressions for hosts are compiled once,</li>
+ * <li>the path patterns of a host entry are joined to one pattern.</li>
+ * </ul>
+ * The result of {@link #isListed(String, String)} is the same as the result of
+ * {@link Blacklist#isListed(String, String, Map, Map)} for the maps which were used to create the matcher.
+ */
+public final class BlacklistMatcher {
+
+    private static final Pattern BACKREFERENCE = Pattern.compile("\\\\(?:[1-9]|k<)");
+
+    private final Node reverse; // labels from the right: 'yacy.net' matches the host and all subdomains, '*.yacy.net' only the subdomains
+    private final Node forward; // labels from the left: 'www.yacy' and 'www.yacy.*' match all hosts starting with 'www.yacy.'
+    private final Pattern[] hostPatterns;
+    private final PathMatcher[] hostPaths;
+    private final Pattern hostFilter; // all host expressions in one alternation; if it does not match, no expression matches
+
+    /**
+     * compile the blacklist maps
+     * @param blacklistMapMatched blacklist patterns indexed by matchable hosts
+     * @param blacklistMapNotMatched blacklist patterns indexed by host regular expressions
+     */
+    public BlacklistMatcher(final Map<String, Set<Pattern>> blacklistMapMatched, final Map<String, Set<Pattern>> blacklistMapNotMatched) {
+        final NodeBuilder reverseBuilder = new NodeBuilder();
+        final NodeBuilder forwardBuilder = new NodeBuilder();
+        for (final Map.Entry<String, Set<Pattern>> entry: blacklistMapMatched.entrySet()) {
+            final String host = entry.getKey();
+            final Set<Pattern> paths = entry.getValue();
+            if (paths == null || paths.isEmpty()) continue;
+            if (host.endsWith(".*")) {
+                final String prefix = host.substring(0, host.length() - 2);
+                if (!prefix.isEmpty()) forwardBuilder.forward(prefix).more.addAll(paths);
+            } else if (host.startsWith("*.")) {
+                reverseBuilder.reverse(host.substring(2)).more.addAll(paths);
+            } else {
+                reverseBuilder.reverse(host).equalOrMore.addAll(paths);
+                if (!host.isEmpty()) forwardBuilder.forward(host).more.addAll(paths);
+            }
+        }
+        this.reverse = reverseBuilder.compile();
+        this.forward = forwardBuilder.compile();
+
+        final List<Pattern> hostPatternList = new ArrayList<Pattern>(blacklistMapNotMatched.size());
+        final List<PathMatcher> hostPathList = new ArrayList<PathMatcher>(blacklistMapNotMatched.size());
+        for (final Map.Entry<String, Set<Pattern>> entry: blacklistMapNotMatched.entrySet()) {
+            final Set<Pattern> paths = entry.getValue();
+            if (paths == null || paths.isEmpty()) continue;
+            try {
+                hostPatternList.add(Pattern.compile(entry.getKey()));
+                hostPathList.add(new PathMatcher(paths));
+            } catch (final PatternSyntaxException e) {
+                // such an entry never matched a host
+            }
+        }
+        this.hostPatterns = hostPatternList.toArray(new Pattern[hostPatternList.size()]);
+        this.hostPaths = hostPathList.toArray(new PathMatcher[hostPathList.size()]);
+        this.hostFilter = this.hostPatterns.length < 2 ? null : PathMatcher.join(hostPatternList);
+    }
+
+    /**
+     * Check if the URL made of the specified host and path is blacklisted. All parameters must not be null.
+     * @param hostlow host part in lower case
+     * @param path path on the host
+     * @return true when host/path is blacklisted
+     */
+    public boolean isListed(final String hostlow, final String path) {
+        final String p = (!path.isEmpty() && path.charAt(0) == '/') ? path.substring(1) : path;
+
+        // walk the labels from the right
+        Node node = this.reverse;
+        int end = hostlow.length();
+        while (node != null) {
+            final int start = hostlow.lastIndexOf('.', end - 1) + 1;
+            node = node.child(hostlow.substring(start, end));
+            if (node == null) break;
+            if (node.equalOrMore != null && node.equalOrMore.matches(p)) return true;
+            if (start == 0) break;
+            if (node.more != null && node.more.matches(p)) return true;
+            end = start - 1;
+        }
+
+        // walk the labels from the left; the last label is never part of a prefix
+        node = this.forward;
+        int start = 0;
+        while (node != null) {
+            end = hostlow.indexOf('.', start);
+            if (end < 0) break;
+            node = node.child(hostlow.substring(start, end));
+            if (node == null) break;
+            if (node.more != null && node.more.matches(p)) return true;
+            start = end + 1;
+        }
+
+        // the regular expressions
+        if (this.hostFilter != null && !this.hostFilter.matcher(hostlow).matches()) return false;
+        for (int i = 0; i < this.hostPatterns.length; i++) {
+            if (this.hostPatterns[i].matcher(hostlow).matches() && this.hostPaths[i].matches(p)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * a node of a label trie; the labels of a host name are the parts between the dots
+     */
+    private static final class Node {
+        private final Map<String, Node> children;
+        private final PathMatcher equalOrMore; // paths for host names ending (or starting) with the labels up to this node
+        private final PathMatcher more; // paths for host names with more labels after this node
+
+        private Node(final Map<String, Node> children, final PathMatcher equalOrMore, final PathMatcher more) {
+            this.children = children;
+            this.equalOrMore = equalOrMore;
+            this.more = more;
+        }
+
+        private Node child(final String label) {
+            return this.children == null ? null : this.children.get(label);
+        }
+    }
+
+    private static final class NodeBuilder {
+        private final Map<String, NodeBuilder> children = new HashMap<String, NodeBuilder>();
+        private final Set<Pattern> equalOrMore = new HashSet<Pattern>();
+        private final Set<Pattern> more = new HashSet<Pattern>();
+
+        private NodeBuilder child(final String label) {
+            NodeBuilder child = this.children.get(label);
+            if (child == null) {
+                child = new NodeBuilder();
+                this.children.put(label, child);
+            }
+            return child;
+        }
+
+        private NodeBuilder reverse(final String host) {
+            NodeBuilder node = this;
+            int end = host.length();
+            while (true) {
+                final int start = host.lastIndexOf('.', end - 1) + 1;
+                node = node.child(host.substring(start, end));
+                if (start == 0) return node;
+                end = start - 1;
+            }
+        }
+
+        private NodeBuilder forward(final String host) {
+            NodeBuilder node = this;
+            int start = 0;
+            while (true) {
+                final int end = host.indexOf('.', start);
+                node = node.child(end < 0 ? host.substring(start) : host.substring(start, end));
+                if (end < 0) return node;
+                start = end + 1;
+            }
+        }
+
+        private Node compile() {
+            Map<String, Node> c = null;
+            if (!this.children.isEmpty()) {
+                c = new HashMap<String, Node>(this.children.size() * 4 / 3 + 1);
+                for (final Map.Entry<String, NodeBuilder> entry: this.children.entrySet()) c.put(entry.getKey(), entry.getValue().compile());
+            }
+            return new Node(c,
+                    this.equalOrMore.isEmpty() ? null : new PathMatcher(this.equalOrMore),
+                    this.more.isEmpty() ? null : new PathMatcher(this.more));
+        }
+    }
+
+    /**
+     * the path patterns of a host entry, joined to one alternation where possible
+     */
+    private static final class PathMatcher {
+        private final boolean all;
+        private final Pattern joined;
+        private final Pattern[] separate;
+
+        private PathMatcher(final Collection<Pattern> patterns) {
+            boolean a = false;
+            final List<Pattern> joinable = new ArrayList<Pattern>(patterns.size());
+            final List<Pattern> other = new ArrayList<Pattern>();
+            for (final Pattern pattern: patterns) {
+                if (".*".equals(pattern.pattern())) a = true;
+                // patterns which can not be joined are matched one by one
+                if ((pattern.flags() & ~Pattern.CASE_INSENSITIVE) == 0 && !BACKREFERENCE.matcher(pattern.pattern()).find()) joinable.add(pattern); else other.add(pattern);
+            }
+            this.all = a;
+            Pattern j = null;
+            if (!a && joinable.size() == 1) {
+                j = joinable.get(0);
+            } else if (!a && joinable.size() > 1) {
+                j = join(joinable);
+                if (j == null) other.addAll(joinable); // a pattern which is only valid alone; match them one by one
+            }
+            this.joined = j;
+            this.separate = other.toArray(new Pattern[other.size()]);
+        }
+
+        /**
+         * join patterns to one alternation
+         * @param patterns
+         * @return a pattern which matches if one of the patterns matches, or null if they can not be joined
+         */
+        private static Pattern join(final Collection<Pattern> patterns) {
+            final StringBuilder sb = new StringBuilder();
+            for (final Pattern pattern: patterns) {
+                // group numbers change in an alternation, and other flags can not be expressed as a group
+                if ((pattern.flags() & ~Pattern.CASE_INSENSITIVE) != 0 || BACKREFERENCE.matcher(pattern.pattern()).find()) return null;
+                if (sb.length() > 0) sb.append('|');
+                sb.append((pattern.flags() & Pattern.CASE_INSENSITIVE) == 0 ? "(?:" : "(?i:").append(pattern.pattern()).append(')');
+            }
+            try {
+                return Pattern.compile(sb.toString());
+            } catch (final PatternSyntaxException e) {
+                return null;
+            }
+        }
+
+        private boolean matches(final String path) {
+            if (this.all) return true;
+            if (this.joined != null && this.joined.matcher(path).matches()) return true;
+            for (final Pattern pattern: this.separate) {
+                if (pattern.matcher(path).matches()) return true;
+            }
+            return false;
+        }
+    }
+
+}
@@ -200,6 +200,7 @@ import net.yacy.kelondro.util.SetTools;
 import net.yacy.kelondro.workflow.BusyThread;
 import net.yacy.kelondro.workflow.InstantBusyThread;
 import net.yacy.kelondro.workflow.OneTimeBusyThread;
+import net.yacy.kelondro.workflow.WorkflowController;
 import net.yacy.kelondro.workflow.WorkflowProcessor;
 import net.yacy.kelondro.workflow.WorkflowTask;
 import net.yacy.kelondro.workflow.WorkflowThread;
@@ -226,7 +227,10 @@ import net.yacy.search.index.Segment.ReferenceReportCache;
 import net.yacy.search.index.SingleDocumentMatcher;
 import net.yacy.search.query.AccessTracker;
 import net.yacy.search.query.SearchEvent;
+import net.yacy.search.query.FacetCache;
+import net.yacy.search.query.ResultPageCache;
 import net.yacy.search.query.SearchEventCache;
+import net.yacy.search.query.SearchTaskScope;
 import net.yacy.search.ranking.RankingProfile;
 import net.yacy.search.schema.CollectionConfiguration;
 import net.yacy.search.schema.CollectionSchema;
@@ -307,6 +311,7 @@ public final class Switchboard extends serverSwitch {
     public WorkflowProcessor<IndexingQueueEntry> indexingCondensementProcessor;
     public WorkflowProcessor<IndexingQueueEntry> indexingAnalysisProcessor;
     public WorkflowProcessor<IndexingQueueEntry> indexingStorageProcessor;
+    public WorkflowController workflowController;
 
     public RobotsTxtConfig robotstxtConfig = null;
     public boolean useTailCache;
@@ -420,6 +425,12 @@ public final class Switchboard extends serverSwitch {
         CollectionConfiguration.UNIQUE_HEURISTIC_PREFER_WWWPREFIX = this.getConfigBool("search.ranking.uniqueheuristic.preferwwwprefix", true);
         
         
+        // init the word hash cache
+        Word.initCache(
+                this.getConfigInt(SwitchboardConstants.INDEX_WORDHASHCACHE_SIZE, SwitchboardConstants.INDEX_WORDHASHCACHE_SIZE_DEFAULT),
+                this.getConfigBool(SwitchboardConstants.INDEX_WORDHASHCACHE_OFFHEAP, SwitchboardConstants.INDEX_WORDHASHCACHE_OFFHEAP_DEFAULT),
+                this.getConfigBool(SwitchboardConstants.INDEX_WORDHASHCACHE_PERSISTENT, SwitchboardConstants.INDEX_WORDHASHCACHE_PERSISTENT_DEFAULT) ? new File(indexPath, "wordhash.cache") : null);
+
         // init libraries
         this.log.config("initializing libraries");
         new Thread("LibraryProvider.initialize") {
@@ -449,6 +460,16 @@ public final class Switchboard extends serverSwitch {
 					}
 				}
 
+                // fill an empty word hash cache with the words of the dictionaries
+                final int wordHashCacheCapacity = Word.cache().capacity();
+                if (Word.cache().size() < wordHashCacheCapacity / 4) {
+                    int seeded = 0;
+                    for (final WordCache.Dictionary dictionary: LibraryProvider.dymLib.getDictionaries().values()) {
+                        seeded += Word.seedCache(dictionary.getWords(), wordHashCacheCapacity / 2);
+                    }
+                    log.config("word hash cache seeded with " + seeded + " dictionary words");
+                }
+
                 Thread.currentThread().setName("ProbabilisticClassification.initialize");
                 ProbabilisticClassifier.initialize(Switchboard.this.classificationPath);
             }
@@ -549,6 +570,21 @@ public final class Switchboard extends serverSwitch {
             solrWebgraphConfigurationWork.commit();
         } catch (final IOException e) {ConcurrentLog.logException(e);}
 
+        // cache of finished search api result pages
+        ResultPageCache.setLimits(
+                this.getConfigLong(SwitchboardConstants.SEARCH_RESULTPAGE_CACHE_SIZE, SwitchboardConstants.SEARCH_RESULTPAGE_CACHE_SIZE_DEFAULT) * 1024L * 1024L,
+                this.getConfigLong(SwitchboardConstants.SEARCH_RESULTPAGE_CACHE_MAXAGE, SwitchboardConstants.SEARCH_RESULTPAGE_CACHE_MAXAGE_DEFAULT));
+
+        // cache of navigator counts computed by Solr facets
+        FacetCache.setLimits(
+                this.getConfigInt(SwitchboardConstants.SEARCH_FACET_CACHE_SIZE, SwitchboardConstants.SEARCH_FACET_CACHE_SIZE_DEFAULT),
+                this.getConfigLong(SwitchboardConstants.SEARCH_FACET_CACHE_MAXAGE, SwitchboardConstants.SEARCH_FACET_CACHE_MAXAGE_DEFAULT));
+
+        // executor for the concurrent tasks of search events
+        SearchTaskScope.setExecutor(
+                this.getConfigBool(SwitchboardConstants.SEARCH_TASKS_VIRTUAL, SwitchboardConstants.SEARCH_TASKS_VIRTUAL_DEFAULT),
+                this.getConfigInt(SwitchboardConstants.SEARCH_TASKS_MAXTHREADS, SwitchboardConstants.SEARCH_TASKS_MAXTHREADS_DEFAULT));
+
         // define boosts
         Ranking.setMinTokenLen(this.getConfigInt(SwitchboardConstants.SEARCH_RANKING_SOLR_DOUBLEDETECTION_MINLENGTH, 3));
         Ranking.setQuantRate(this.getConfigFloat(SwitchboardConstants.SEARCH_RANKING_SOLR_DOUBLEDETECTION_QUANTRATE, 0.5f));
@@ -576,10 +612,16 @@ public final class Switchboard extends serverSwitch {
 
         // initialize index
         ReferenceContainer.maxReferences = getConfigInt("index.maxReferences", 0);
+        ReferenceContainer.compressExports = getConfigBool(SwitchboardConstants.INDEX_RWI_COMPRESSED, SwitchboardConstants.INDEX_RWI_COMPRESSED_DEFAULT);
         final File segmentsPath = new File(new File(indexPath, networkName), "SEGMENTS");
         try {this.index = new Segment(this.log, segmentsPath, archivePath, solrCollectionConfigurationWork, solrWebgraphConfigurationWork);} catch (IOException e) {ConcurrentLog.logException(e);}
+        this.index.setMergePolicy(
+                this.getConfigInt(SwitchboardConstants.INDEX_RWI_MERGE_CONCURRENCY, SwitchboardConstants.INDEX_RWI_MERGE_CONCURRENCY_DEFAULT),
+                this.getConfigInt(SwitchboardConstants.INDEX_RWI_MERGE_FANIN, SwitchboardConstants.INDEX_RWI_MERGE_FANIN_DEFAULT));
+        this.index.setRWIOffHeapBuffer(this.getConfigLong(SwitchboardConstants.INDEX_RWI_OFFHEAP_BUFFER, SwitchboardConstants.INDEX_RWI_OFFHEAP_BUFFER_DEFAULT) * 1024L * 1024L);
         if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_RWI, true)) try {
-            this.index.connectRWI(wordCacheMaxCount, fileSizeMax);
+            this.index.connectRWI(wordCacheMaxCount, fileSizeMax,
+                    this.getConfigBool(SwitchboardConstants.INDEX_RWI_MAPPED_READ, SwitchboardConstants.INDEX_RWI_MAPPED_READ_DEFAULT));
         } catch (final IOException e) {ConcurrentLog.logException(e);}
         if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_CITATION, true)) try {
             this.index.connectCitation(wordCacheMaxCount, fileSizeMax);
@@ -589,6 +631,10 @@ public final class Switchboard extends serverSwitch {
             try {this.index.fulltext().connectLocalSolr();} catch (final IOException e) {ConcurrentLog.logException(e);}
         }
         this.index.fulltext().setUseWebgraph(this.getConfigBool(SwitchboardConstants.CORE_SERVICE_WEBGRAPH, false));
+        this.index.fulltext().setBatchWriting(
+                this.getConfigInt(SwitchboardConstants.CORE_SERVICE_BATCH_SIZE, SwitchboardConstants.CORE_SERVICE_BATCH_SIZE_DEFAULT),
+                this.getConfigLong(SwitchboardConstants.CORE_SERVICE_BATCH_MAXDELAY, SwitchboardConstants.CORE_SERVICE_BATCH_MAXDELAY_DEFAULT),
+                this.getConfigInt(SwitchboardConstants.CORE_SERVICE_BATCH_CAPACITY, SwitchboardConstants.CORE_SERVICE_BATCH_CAPACITY_DEFAULT));
 
         // set up the solr interface
         final String solrurls = getConfig(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_URL, "http://127.0.0.1:8983/solr");
@@ -1026,6 +1072,10 @@ public final class Switchboard extends serverSwitch {
         this.clusterhashes = this.peers.clusterHashes(getConfig("cluster.peers.yacydomain", ""));
 
         // deploy blocking threads
+        // with an adaptive workflow the concurrency of each indexing stage is moved between one executor and the
+        // configured maximum by the workflow controller, starting with the fixed concurrency of a non-adaptive workflow
+        final boolean adaptiveWorkflow = getConfigBool(SwitchboardConstants.WORKFLOW_ADAPTIVE, SwitchboardConstants.WORKFLOW_ADAPTIVE_DEFAULT);
+        this.workflowController = new WorkflowController(adaptiveWorkflow);
         this.indexingStorageProcessor =
             new WorkflowProcessor<IndexingQueueEntry>(
                 "storeDocumentIndex",
@@ -1043,7 +1093,9 @@ public final class Switchboard extends serverSwitch {
 				},
                 2,
                 null,
-                1);
+                1,
+                workflowMaxConcurrency(adaptiveWorkflow, SwitchboardConstants.WORKFLOW_STORE_MAXTHREADS, SwitchboardConstants.WORKFLOW_STORE_MAXTHREADS_DEFAULT, 1));
+        this.indexingStorageProcessor.setConcurrency(1);
         this.indexingAnalysisProcessor =
             new WorkflowProcessor<IndexingQueueEntry>(
                 "webStructureAnalysis",
@@ -1060,7 +1112,9 @@ public final class Switchboard extends serverSwitch {
 				},
                 WorkflowProcessor.availableCPU + 1,
                 this.indexingStorageProcessor,
-                WorkflowProcessor.availableCPU);
+                1,
+                workflowMaxConcurrency(adaptiveWorkflow, SwitchboardConstants.WORKFLOW_ANALYSIS_MAXTHREADS, SwitchboardConstants.WORKFLOW_ANALYSIS_MAXTHREADS_DEFAULT, WorkflowProcessor.availableCPU));
+        this.indexingAnalysisProcessor.setConcurrency(WorkflowProcessor.availableCPU);
         this.indexingCondensementProcessor =
             new WorkflowProcessor<IndexingQueueEntry>(
                 "condenseDocument",
@@ -1077,7 +1131,9 @@ public final class Switchboard extends serverSwitch {
 				},
                 WorkflowProcessor.availableCPU + 1,
                 this.indexingAnalysisProcessor,
-                WorkflowProcessor.availableCPU);
+                1,
+                workflowMaxConcurrency(adaptiveWorkflow, SwitchboardConstants.WORKFLOW_CONDENSE_MAXTHREADS, SwitchboardConstants.WORKFLOW_CONDENSE_MAXTHREADS_DEFAULT, WorkflowProcessor.availableCPU));
+        this.indexingCondensementProcessor.setConcurrency(WorkflowProcessor.availableCPU);
         this.indexingDocumentProcessor =
             new WorkflowProcessor<IndexingQueueEntry>(
                 "parseDocument",
@@ -1094,7 +1150,13 @@ public final class Switchboard extends serverSwitch {
 				},
                 Math.max(20, WorkflowProcessor.availableCPU * 2), // it may happen that this is filled with new files from the search process. That means there should be enough place for two result pages
                 this.indexingCondensementProcessor,
-                WorkflowProcessor.availableCPU);
+                1,
+                workflowMaxConcurrency(adaptiveWorkflow, SwitchboardConstants.WORKFLOW_PARSE_MAXTHREADS, SwitchboardConstants.WORKFLOW_PARSE_MAXTHREADS_DEFAULT, WorkflowProcessor.availableCPU));
+        this.indexingDocumentProcessor.setConcurrency(WorkflowProcessor.availableCPU);
+        this.workflowController.add(this.indexingDocumentProcessor);
+        this.workflowController.add(this.indexingCondensementProcessor);
+        this.workflowController.add(this.indexingAnalysisProcessor);
+        this.workflowController.add(this.indexingStorageProcessor);
 
         // deploy busy threads
         this.log.config("Starting Threads");
@@ -1124,6 +1186,28 @@ public final class Switchboard extends serverSwitch {
 				},
                 60000); // all 10 minutes, wait 1 minute until first run
         
+        deployThread(
+                SwitchboardConstants.WORKFLOW_CONTROL,
+                "Workflow Control",
+                "samples the indexing workflow and adapts the concurrency of its stages",
+                "/PerformanceConcurrency_p.html",
+				new InstantBusyThread("Switchboard.workflowControlJob", 5000, 5000) {
+					@Override
+					public boolean jobImpl() throws Exception {
+						return Switchboard.this.workflowController.job();
+					}
+
+					@Override
+					public int getJobCount() {
+						return 0;
+					}
+
+					@Override
+					public void freememImpl() {
+					}
+				},
+                10000);
+
         deployThread(
                 SwitchboardConstants.SCHEDULER,
                 "Scheduler",
@@ -1511,13 +1595,22 @@ public final class Switchboard extends serverSwitch {
             final File segmentsPath = new File(new File(indexPrimaryPath, networkName), "SEGMENTS");
             final File archivePath = getDataPath(SwitchboardConstants.INDEX_ARCHIVE_PATH, SwitchboardConstants.INDEX_ARCHIVE_DEFAULT);
             this.index = new Segment(this.log, segmentsPath, archivePath, collectionConfiguration, webgraphConfiguration);
-            if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_RWI, true)) this.index.connectRWI(wordCacheMaxCount, fileSizeMax);
+            this.index.setMergePolicy(
+                    this.getConfigInt(SwitchboardConstants.INDEX_RWI_MERGE_CONCURRENCY, SwitchboardConstants.INDEX_RWI_MERGE_CONCURRENCY_DEFAULT),
+                    this.getConfigInt(SwitchboardConstants.INDEX_RWI_MERGE_FANIN, SwitchboardConstants.INDEX_RWI_MERGE_FANIN_DEFAULT));
+            this.index.setRWIOffHeapBuffer(this.getConfigLong(SwitchboardConstants.INDEX_RWI_OFFHEAP_BUFFER, SwitchboardConstants.INDEX_RWI_OFFHEAP_BUFFER_DEFAULT) * 1024L * 1024L);
+            if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_RWI, true)) this.index.connectRWI(wordCacheMaxCount, fileSizeMax,
+                    this.getConfigBool(SwitchboardConstants.INDEX_RWI_MAPPED_READ, SwitchboardConstants.INDEX_RWI_MAPPED_READ_DEFAULT));
             if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_CITATION, true)) this.index.connectCitation(wordCacheMaxCount, fileSizeMax);
 			if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_FULLTEXT,
 					SwitchboardConstants.CORE_SERVICE_FULLTEXT_DEFAULT)) {
                 this.index.fulltext().connectLocalSolr();
             }
             this.index.fulltext().setUseWebgraph(this.getConfigBool(SwitchboardConstants.CORE_SERVICE_WEBGRAPH, false));
+            this.index.fulltext().setBatchWriting(
+                    this.getConfigInt(SwitchboardConstants.CORE_SERVICE_BATCH_SIZE, SwitchboardConstants.CORE_SERVICE_BATCH_SIZE_DEFAULT),
+                    this.getConfigLong(SwitchboardConstants.CORE_SERVICE_BATCH_MAXDELAY, SwitchboardConstants.CORE_SERVICE_BATCH_MAXDELAY_DEFAULT),
+                    this.getConfigInt(SwitchboardConstants.CORE_SERVICE_BATCH_CAPACITY, SwitchboardConstants.CORE_SERVICE_BATCH_CAPACITY_DEFAULT));
 
             // set up the solr interface
             final String solrurls = getConfig(SwitchboardConstants.FEDERATED_SERVICE_SOLR_INDEXING_URL, "http://127.0.0.1:8983/solr");
@@ -1873,7 +1966,7 @@ public final class Switchboard extends serverSwitch {
      * @return if it exists, the name of the database is returned, if it not exists, null is returned
      */
     public HarvestProcess urlExists(final String hash) throws IOException {
-        LoadTimeURL md = this.index.fulltext().getDefaultConnector().getLoadTimeURL(hash);
+        LoadTimeURL md = this.index.fulltext().isUnseenURL(hash) ? null : this.index.fulltext().getDefaultConnector().getLoadTimeURL(hash);
         if (md != null && md.date >= 0) return HarvestProcess.LOADED;
         HarvestProcess hp = this.crawlQueues.exists(ASCII.getBytes(hash));
         if (hp != null) return hp;
@@ -2018,6 +2111,7 @@ public final class Switchboard extends serverSwitch {
         this.crawler.close();
         this.log.config("SWITCHBOARD SHUTDOWN STEP 3: sending termination signal to database manager (stand by...)");
         this.index.close();
+        Word.closeCache();
         this.peers.close();
         Cache.close();
         this.tables.close();
@@ -2463,7 +2557,7 @@ public final class Switchboard extends serverSwitch {
         
         // clear caches
         if (WordCache.sizeCommonWords() > 1000) WordCache.clearCommonWords();
-        Word.clearCache();
+        // the word hash cache has a fixed size and is not cleared
         // Domains.clear();
         
         // clean up image stack
@@ -2966,6 +3060,19 @@ public final class Switchboard extends serverSwitch {
         }
     }
 
+    /**
+     * @param adaptive true if the concurrency of the workflow stages is adapted at runtime
+     * @param key the configuration key of the maximum concurrency of a stage
+     * @param dflt the default maximum, zero means twice the number of processors
+     * @param fixed the concurrency of the stage in a non-adaptive workflow
+     * @return the upper bound of the concurrency of a workflow stage
+     */
+    private int workflowMaxConcurrency(final boolean adaptive, final String key, final int dflt, final int fixed) {
+        if (!adaptive) return fixed;
+        final int max = getConfigInt(key, dflt);
+        return max <= 0 ? 2 * WorkflowProcessor.availableCPU : max;
+    }
+
     /**
      * Parse a response to produce a new document to add to the index.
      */
@@ -4387,6 +4494,7 @@ public final class Switchboard extends serverSwitch {
         mySeed.setFlagAcceptRemoteCrawl(getConfigBool(SwitchboardConstants.CRAWLJOB_REMOTE, false));
         mySeed.setFlagAcceptRemoteIndex(getConfigBool(SwitchboardConstants.INDEX_RECEIVE_ALLOW, true));
         mySeed.setFlagSSLAvailable(this.getHttpServer() != null && this.getHttpServer().withSSL() && getConfigBool("server.https", false));
+        mySeed.setFlagTransferBinary(getConfigBool(SwitchboardConstants.INDEX_DIST_TRANSFER_BINARY, SwitchboardConstants.INDEX_DIST_TRANSFER_BINARY_DEFAULT));
         if (mySeed.getFlagSSLAvailable()) mySeed.put(Seed.PORTSSL, Integer.toString(getPublicPort(SwitchboardConstants.SERVER_SSLPORT, 8443)));
 
         // set local ips
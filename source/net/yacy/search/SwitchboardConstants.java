@@ -167,6 +167,14 @@ public final class SwitchboardConstants {
     public static final String CLEANUP                      = "90_cleanup";
     public static final String CLEANUP_IDLESLEEP            = "90_cleanup_idlesleep";
     public static final String CLEANUP_BUSYSLEEP            = "90_cleanup_busysleep";
+    // 80_workflowcontrol
+    /**
+     * <p><code>public static final String <strong>WORKFLOW_CONTROL</strong> = "80_workflowcontrol"</code></p>
+     * <p>The thread which samples the indexing workflow and adapts the concurrency of its stages</p>
+     */
+    public static final String WORKFLOW_CONTROL             = "80_workflowcontrol";
+    public static final String WORKFLOW_CONTROL_IDLESLEEP   = "80_workflowcontrol_idlesleep";
+    public static final String WORKFLOW_CONTROL_BUSYSLEEP   = "80_workflowcontrol_busysleep";
     /**
      * <p><code>public static final String <strong>INDEX_DIST_CHUNK_SIZE_START</strong> = "indexDistribution.startChunkSize"</code></p>
      * <p>Name of the setting specifying how many words the very first chunk will contain when the DHT-thread starts</p>
@@ -193,6 +201,13 @@ public final class SwitchboardConstants {
      * <p>Name of the setting whether DHT chunks shall be transferred gzip-encodedly</p>
      */
     public static final String INDEX_DIST_GZIP_BODY             = "indexDistribution.gzipBody";
+    /**
+     * <p><code>public static final String <strong>INDEX_DIST_TRANSFER_BINARY</strong> = "indexDistribution.transferBinary"</code></p>
+     * <p>Name of the setting whether DHT chunks shall be sent and received in the binary transfer format
+     * to and from peers which announce it; other peers are served with the legacy text format</p>
+     */
+    public static final String INDEX_DIST_TRANSFER_BINARY       = "indexDistribution.transferBinary";
+    public static final boolean INDEX_DIST_TRANSFER_BINARY_DEFAULT = true;
     /**
      * <p><code>public static final String <strong>INDEX_DIST_ALLOW</strong> = "allowDistributeIndex"</code></p>
      * <p>Name of the setting whether Index Distribution shall be allowed (and the DHT-thread therefore started) or not</p>
@@ -339,6 +354,30 @@ public final class SwitchboardConstants {
     public static final String CORE_SERVICE_CITATION            = "core.service.citation.tmp";
     public static final String CORE_SERVICE_WEBGRAPH            = "core.service.webgraph.tmp";
 
+    /** Key of the setting for the maximum number of documents written to the local Solr cores with one add call; values below 2 disable batching */
+    public static final String CORE_SERVICE_BATCH_SIZE          = "core.service.batch.size";
+
+    /** Default number of documents in one Solr add call: documents are written one by one */
+    public static final int CORE_SERVICE_BATCH_SIZE_DEFAULT     = 1;
+
+    /** Key of the setting for the maximum time in milliseconds which a document waits in the Solr write batch */
+    public static final String CORE_SERVICE_BATCH_MAXDELAY      = "core.service.batch.maxDelay";
+
+    /** Default maximum waiting time of a document in the Solr write batch */
+    public static final long CORE_SERVICE_BATCH_MAXDELAY_DEFAULT = 1000;
+
+    /** Key of the setting for the maximum number of documents waiting to be written; the indexer is blocked if this is reached */
+    public static final String CORE_SERVICE_BATCH_CAPACITY      = "core.service.batch.capacity";
+
+    /** Default maximum number of documents waiting to be written */
+    public static final int CORE_SERVICE_BATCH_CAPACITY_DEFAULT = 1000;
+
+    /** Key of the setting to keep a bloom filter of the urls in the local index, so the crawler does not ask Solr for unknown urls */
+    public static final String CRAWLER_URLSEEN_FILTER           = "crawler.urlSeenFilter";
+
+    /** Default setting of the url filter of the crawler: enabled */
+    public static final boolean CRAWLER_URLSEEN_FILTER_DEFAULT  = true;
+
     /**
      * <p><code>public static final String <strong>CRAWLER_THREADS_ACTIVE_MAX</strong> = "crawler.MaxActiveThreads"</code></p>
      * <p>Name of the setting how many active crawler-threads may maximal be running on the same time</p>
@@ -348,6 +387,18 @@ public final class SwitchboardConstants {
     public static final String CRAWLER_MAX_SAME_HOST_IN_QUEUE   = "crawler.MaxSameHostInQueue";
     public static final String CRAWLER_FOLLOW_REDIRECTS         = "crawler.http.FollowRedirects"; // ignore the target url and follow to the redirect
     public static final String CRAWLER_RECORD_REDIRECTS         = "crawler.http.RecordRedirects"; // record the ignored redirected page to the index store
+
+    /** Key of the setting controlling whether the crawler keeps the connections to hosts alive which are loaded in short intervals */
+    public static final String CRAWLER_KEEP_ALIVE               = "crawler.http.keepAlive";
+
+    /** Default value of the setting controlling whether the crawler keeps connections alive */
+    public static final boolean CRAWLER_KEEP_ALIVE_DEFAULT      = true;
+    
+    /** Key of the setting controlling whether the crawl stacks use the delay-ordered ShardedHostBalancer instead of the HostBalancer */
+    public static final String CRAWLER_BALANCER_SHARDED         = "crawler.balancer.sharded";
+    
+    /** Default value of the setting controlling whether the crawl stacks use the ShardedHostBalancer */
+    public static final boolean CRAWLER_BALANCER_SHARDED_DEFAULT = false;
     
     public static final String CRAWLER_USER_AGENT_NAME          = "crawler.userAgent.name";
     public static final String CRAWLER_USER_AGENT_STRING        = "crawler.userAgent.string";
@@ -392,6 +443,54 @@ public final class SwitchboardConstants {
      * cache has reached this limit will slow down the indexing process by flushing some of it's entries</p>
      */
     public static final String WORDCACHE_MAX_COUNT              = "wordCacheMaxCount";
+
+    /** Key of the setting controlling whether the RWI BLOB files are memory-mapped and read without locking */
+    public static final String INDEX_RWI_MAPPED_READ            = "index.rwi.mappedRead";
+
+    /** Default value of the setting controlling whether the RWI BLOB files are memory-mapped */
+    public static final boolean INDEX_RWI_MAPPED_READ_DEFAULT   = false;
+
+    /** Key of the setting controlling whether the RWI containers are written to the BLOB files in the compressed format */
+    public static final String INDEX_RWI_COMPRESSED             = "index.rwi.compressed";
+
+    /** Default value of the setting controlling whether the RWI containers are compressed */
+    public static final boolean INDEX_RWI_COMPRESSED_DEFAULT    = false;
+
+    /** Key of the setting for the maximum number of concurrent dump and merge jobs of the RWI BLOB files */
+    public static final String INDEX_RWI_MERGE_CONCURRENCY      = "index.rwi.merge.concurrency";
+
+    /** Default number of concurrent dump and merge jobs: strictly serial io as on a single hard disk */
+    public static final int INDEX_RWI_MERGE_CONCURRENCY_DEFAULT = 1;
+
+    /** Key of the setting for the maximum number of RWI BLOB files which are merged in one pass */
+    public static final String INDEX_RWI_MERGE_FANIN            = "index.rwi.merge.fanIn";
+
+    /** Default number of RWI BLOB files merged in one pass: pairwise merges */
+    public static final int INDEX_RWI_MERGE_FANIN_DEFAULT       = 2;
+
+    /** Key of the setting for the size in MB of the off-heap buffer of the RWI RAM cache */
+    public static final String INDEX_RWI_OFFHEAP_BUFFER         = "index.rwi.offHeapBuffer";
+
+    /** Default size of the off-heap buffer of the RWI RAM cache: none, the cache is on the heap */
+    public static final long INDEX_RWI_OFFHEAP_BUFFER_DEFAULT   = 0;
+
+    /** Key of the setting for the maximum number of words in the word hash cache; 0 for a size computed from the available memory */
+    public static final String INDEX_WORDHASHCACHE_SIZE         = "index.wordHashCache.size";
+
+    /** Default size of the word hash cache: computed from the available memory */
+    public static final int INDEX_WORDHASHCACHE_SIZE_DEFAULT    = 0;
+
+    /** Key of the setting to allocate the word hash cache outside of the java heap */
+    public static final String INDEX_WORDHASHCACHE_OFFHEAP      = "index.wordHashCache.offHeap";
+
+    /** Default: the word hash cache is on the heap */
+    public static final boolean INDEX_WORDHASHCACHE_OFFHEAP_DEFAULT = false;
+
+    /** Key of the setting to write the word hash cache to disk at shutdown and to load it at start-up */
+    public static final String INDEX_WORDHASHCACHE_PERSISTENT   = "index.wordHashCache.persistent";
+
+    /** Default: the word hash cache is kept across restarts */
+    public static final boolean INDEX_WORDHASHCACHE_PERSISTENT_DEFAULT = true;
     public static final String HTTPC_NAME_CACHE_CACHING_PATTERNS_NO = "httpc.nameCacheNoCachingPatterns";
     public static final String ROBOTS_TXT                       = "httpd.robots.txt";
     public static final String ROBOTS_TXT_DEFAULT               = RobotsTxtConfig.LOCKED + "," + RobotsTxtConfig.DIRS;
@@ -615,6 +714,78 @@ public final class SwitchboardConstants {
     public static final String SEARCH_TARGET_SPECIAL_PATTERN  = "search.target.special.pattern"; // ie 'own' addresses in topframe, 'other' in iframe
     public static final String SEARCH_VERIFY  = "search.verify";
     public static final String SEARCH_VERIFY_DELETE = "search.verify.delete";
+
+    /** Key of the setting for the size in MB of the cache of rendered search api result pages; 0 switches the cache off */
+    public static final String SEARCH_RESULTPAGE_CACHE_SIZE = "search.resultPageCache.size";
+
+    /** Default size in MB of the result page cache */
+    public static final long SEARCH_RESULTPAGE_CACHE_SIZE_DEFAULT = 32;
+
+    /** Key of the setting for the time in milliseconds a result page is served from the cache */
+    public static final String SEARCH_RESULTPAGE_CACHE_MAXAGE = "search.resultPageCache.maxAge";
+
+    /** Default lifetime of a cached result page: the same as for a search event with much free memory */
+    public static final long SEARCH_RESULTPAGE_CACHE_MAXAGE_DEFAULT = 600000;
+
+    /** Key of the setting for the maximum number of cached navigator counts computed by Solr facets; 0 switches the cache off */
+    public static final String SEARCH_FACET_CACHE_SIZE = "search.facetCache.size";
+
+    /** Default size of the navigator facet cache: about the navigators of some hundred queries */
+    public static final int SEARCH_FACET_CACHE_SIZE_DEFAULT = 2000;
+
+    /** Key of the setting for the time in milliseconds the counts of a navigator are taken from the cache */
+    public static final String SEARCH_FACET_CACHE_MAXAGE = "search.facetCache.maxAge";
+
+    /** Default lifetime of cached navigator counts: the same as for a result page */
+    public static final long SEARCH_FACET_CACHE_MAXAGE_DEFAULT = 600000;
+
+    /** Key of the setting to run the concurrent tasks of search events on virtual threads if the JVM supports them */
+    public static final String SEARCH_TASKS_VIRTUAL = "search.tasks.virtualThreads";
+
+    /** Default: use virtual threads where available */
+    public static final boolean SEARCH_TASKS_VIRTUAL_DEFAULT = true;
+
+    /** Key of the setting for the maximum number of pooled threads for search event tasks when virtual threads are not used */
+    public static final String SEARCH_TASKS_MAXTHREADS = "search.tasks.maxThreads";
+
+    /** Default maximum number of pooled search task threads */
+    public static final int SEARCH_TASKS_MAXTHREADS_DEFAULT = 256;
+
+    /** Key of the setting for the number of references per requested result after which the local RWI join may stop; 0 joins all references */
+    public static final String SEARCH_RWI_JOIN_LIMIT = "search.rwi.joinLimit";
+
+    /** Default: the local RWI join is complete, so all references are ranked */
+    public static final int SEARCH_RWI_JOIN_LIMIT_DEFAULT = 0;
+
+    /** Key of the setting to adapt the number of executor threads of the indexing workflow stages at runtime */
+    public static final String WORKFLOW_ADAPTIVE = "indexing.workflow.adaptive";
+
+    /** Default: adapt the concurrency of the indexing stages */
+    public static final boolean WORKFLOW_ADAPTIVE_DEFAULT = true;
+
+    /** Key of the setting for the maximum number of parser threads of an adaptive workflow, 0 for twice the number of processors */
+    public static final String WORKFLOW_PARSE_MAXTHREADS = "indexing.workflow.parseDocument.maxThreads";
+
+    /** Default maximum number of parser threads */
+    public static final int WORKFLOW_PARSE_MAXTHREADS_DEFAULT = 0;
+
+    /** Key of the setting for the maximum number of condenser threads of an adaptive workflow, 0 for twice the number of processors */
+    public static final String WORKFLOW_CONDENSE_MAXTHREADS = "indexing.workflow.condenseDocument.maxThreads";
+
+    /** Default maximum number of condenser threads */
+    public static final int WORKFLOW_CONDENSE_MAXTHREADS_DEFAULT = 0;
+
+    /** Key of the setting for the maximum number of web structure analysis threads of an adaptive workflow, 0 for twice the number of processors */
+    public static final String WORKFLOW_ANALYSIS_MAXTHREADS = "indexing.workflow.webStructureAnalysis.maxThreads";
+
+    /** Default maximum number of web structure analysis threads */
+    public static final int WORKFLOW_ANALYSIS_MAXTHREADS_DEFAULT = 0;
+
+    /** Key of the setting for the maximum number of index storage threads of an adaptive workflow, 0 for twice the number of processors */
+    public static final String WORKFLOW_STORE_MAXTHREADS = "indexing.workflow.storeDocumentIndex.maxThreads";
+
+    /** Default maximum number of index storage threads: storing is sequential */
+    public static final int WORKFLOW_STORE_MAXTHREADS_DEFAULT = 1;
     
 	/**
 	 * Key of the setting controlling whether content domain filtering is strict :
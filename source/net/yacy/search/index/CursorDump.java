@@ -0,0 +1,420 @@
+/**
+ *  CursorDump
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.params.CommonParams;
+import org.apache.solr.common.params.CursorMarkParams;
+import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.JavaBinCodec;
+
+import net.yacy.cora.federate.solr.connector.SolrConnector;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.FileUtils;
+import net.yacy.search.schema.CollectionConfiguration;
+import net.yacy.search.schema.CollectionSchema;
+
+/**
+ * A dump of the collection in a directory of gzip'd javabin chunk files which can be
+ * written and read while the index is in use, i.e. for moving an index to another peer.
+ * <ul>
+ * <li>The export splits the documents by the first character of the id into partitions which are
+ * read in parallel. Each partition is paged with a Solr cursor mark; every page is written to its own
+ * chunk file and the cursor mark after the page is written to a checkpoint file of the partition.
+ * An interrupted export continues at the cursor mark of the checkpoints.</li>
+ * <li>The import adds the documents of the chunk files in bulk with several threads and does not commit
+ * until all files are added. The names of imported chunk files are appended to a log, so an interrupted
+ * import skips the files which were already imported.</li>
+ * </ul>
+ */
+public class CursorDump {
+
+    public static final String CHUNK_EXT = ".javabin.gz";
+    public static final String CHECKPOINT_EXT = ".checkpoint";
+    public static final String MANIFEST_NAME = "dump.properties";
+    public static final String IMPORT_LOG_NAME = "import.log";
+
+    private static final String PARTITION_PREFIX = "partition-";
+
+    /**
+     * compute the filter query for a partition of the ids; the partitions are ranges of the first character
+     * of the id which cover all strings, also ids which are not base64 hashes
+     * @param partition the number of the partition, 0 &lt;= partition &lt; partitions
+     * @param partitions the number of partitions, 1 to 64
+     * @return a filter query or null if there is only one partition
+     */
+    public static String partitionFilter(final int partition, final int partitions) {
+        if (partitions <= 1) return null;
+        final byte[] alphabet = Arrays.copyOf(Base64Order.alpha_enhanced, Base64Order.alpha_enhanced.length);
+        Arrays.sort(alphabet);
+        final String field = CollectionSchema.id.getSolrFieldName();
+        final String lower = partition == 0 ? "*" : "\"" + (char) alphabet[partition * alphabet.length / partitions] + "\"";
+        final String upper = partition == partitions - 1 ? "*]" : "\"" + (char) alphabet[(partition + 1) * alphabet.length / partitions] + "\"}";
+        return field + ":[" + lower + " TO " + upper;
+    }
+
+    private static File chunkFile(final File dir, final int partition, final int chunk) {
+        return new File(dir, PARTITION_PREFIX + partition + "-" + String.format("%06d", chunk) + CHUNK_EXT);
+    }
+
+    private static File checkpointFile(final File dir, final int partition) {
+        return new File(dir, PARTITION_PREFIX + partition + CHECKPOINT_EXT);
+    }
+
+    /**
+     * read a properties file
+     * @return the properties or null if the file does not exist
+     */
+    private static Properties readProperties(final File f) throws IOException {
+        if (!f.exists()) return null;
+        final Properties p = new Properties();
+        try (final InputStream is = new FileInputStream(f)) {
+            p.load(is);
+        }
+        return p;
+    }
+
+    /**
+     * write a properties file; the file is written to a temporary file first, so a checkpoint is never incomplete
+     */
+    private static void writeProperties(final File f, final Properties p) throws IOException {
+        final File tmp = new File(f.getParentFile(), f.getName() + ".prt");
+        try (final OutputStream os = new FileOutputStream(tmp)) {
+            p.store(os, null);
+        }
+        FileUtils.deletedelete(f);
+        if (!tmp.renameTo(f)) throw new IOException("cannot rename " + tmp + " to " + f);
+    }
+
+    /**
+     * write documents to a chunk file
+     */
+    public static void writeChunk(final File f, final SolrDocumentList docs) throws IOException {
+        final File tmp = new File(f.getParentFile(), f.getName() + ".prt");
+        try (final OutputStream os = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 65536), 65536)) {
+            new JavaBinCodec().marshal(docs, os);
+        }
+        FileUtils.deletedelete(f);
+        if (!tmp.renameTo(f)) throw new IOException("cannot rename " + tmp + " to " + f);
+    }
+
+    /**
+     * read the documents of a chunk file
+     */
+    public static SolrDocumentList readChunk(final File f) throws IOException {
+        try (final InputStream is = new GZIPInputStream(new BufferedInputStream(new FileInputStream(f), 65536), 65536)) {
+            final Object o = new JavaBinCodec().unmarshal(is);
+            if (o instanceof SolrDocumentList) return (SolrDocumentList) o;
+            throw new IOException("no document list in " + f);
+        }
+    }
+
+    public static class Export extends Thread {
+
+        private final SolrConnector connector;
+        private final String query;
+        private final File dir;
+        private final int partitions, chunkSize;
+        private final AtomicLong count;
+        private volatile String failure;
+
+        /**
+         * @param connector the source of the documents
+         * @param query the query for the exported documents
+         * @param dir the directory of the dump; if it contains an interrupted export of the same query, that export is continued
+         * @param partitions the number of partitions which are exported concurrently; this is ignored when an export is continued
+         * @param chunkSize the number of documents in a chunk file
+         */
+        public Export(final SolrConnector connector, final String query, final File dir, final int partitions, final int chunkSize) {
+            super("CursorDump.Export");
+            this.connector = connector;
+            this.query = query;
+            this.dir = dir;
+            this.partitions = Math.max(1, Math.min(Base64Order.alpha_enhanced.length, partitions));
+            this.chunkSize = Math.max(1, chunkSize);
+            this.count = new AtomicLong(0);
+            this.failure = null;
+        }
+
+        @Override
+        public void run() {
+            final int parts;
+            try {
+                this.dir.mkdirs();
+                final File manifestFile = new File(this.dir, MANIFEST_NAME);
+                Properties manifest = readProperties(manifestFile);
+                if (manifest == null) {
+                    manifest = new Properties();
+                    manifest.setProperty("query", this.query);
+                    manifest.setProperty("partitions", Integer.toString(this.partitions));
+                    writeProperties(manifestFile, manifest);
+                } else if (!this.query.equals(manifest.getProperty("query"))) {
+                    throw new IOException("the directory " + this.dir + " contains an export of another query: " + manifest.getProperty("query"));
+                }
+                parts = Integer.parseInt(manifest.getProperty("partitions", "1"));
+            } catch (final IOException | NumberFormatException e) {
+                ConcurrentLog.warn("CursorDump", "export failed: " + e.getMessage());
+                this.failure = e.getMessage();
+                return;
+            }
+
+            final Thread[] workers = new Thread[parts];
+            for (int i = 0; i < parts; i++) {
+                final int partition = i;
+                workers[i] = new Thread("CursorDump.Export-" + i) {
+                    @Override
+                    public void run() {
+                        try {
+                            exportPartition(partition, parts);
+                        } catch (final IOException | SolrException | NumberFormatException e) {
+                            ConcurrentLog.warn("CursorDump", "export of partition " + partition + " failed: " + e.getMessage());
+                            Export.this.failure = e.getMessage();
+                        }
+                    }
+                };
+                workers[i].start();
+            }
+            for (final Thread worker: workers) {
+                try {
+                    worker.join();
+                } catch (final InterruptedException e) {
+                    for (final Thread w: workers) w.interrupt();
+                    this.failure = "interrupted";
+                    return;
+                }
+            }
+            ConcurrentLog.info("CursorDump", "exported " + this.count.get() + " documents to " + this.dir);
+        }
+
+        private void exportPartition(final int partition, final int parts) throws IOException {
+            final File checkpointFile = checkpointFile(this.dir, partition);
+            Properties checkpoint = readProperties(checkpointFile);
+            if (checkpoint == null) {
+                checkpoint = new Properties();
+                checkpoint.setProperty("chunk", "0");
+                checkpoint.setProperty("cursor", CursorMarkParams.CURSOR_MARK_START);
+                checkpoint.setProperty("count", "0");
+            } else {
+                this.count.addAndGet(Long.parseLong(checkpoint.getProperty("count", "0")));
+            }
+            if (Boolean.parseBoolean(checkpoint.getProperty("done"))) return;
+            int chunk = Integer.parseInt(checkpoint.getProperty("chunk", "0"));
+            String cursor = checkpoint.getProperty("cursor", CursorMarkParams.CURSOR_MARK_START);
+            long partitionCount = Long.parseLong(checkpoint.getProperty("count", "0"));
+            final String fq = partitionFilter(partition, parts);
+
+            while (!Thread.currentThread().isInterrupted()) {
+                final ModifiableSolrParams params = new ModifiableSolrParams();
+                params.set(CommonParams.Q, this.query);
+                if (fq != null) params.set(CommonParams.FQ, fq);
+                params.set(CommonParams.SORT, CollectionSchema.id.getSolrFieldName() + " asc");
+                params.set(CommonParams.ROWS, this.chunkSize);
+                params.set(CommonParams.FL, "*");
+                params.set(CursorMarkParams.CURSOR_MARK_PARAM, cursor);
+                final QueryResponse rsp = this.connector.getResponseByParams(params);
+                final SolrDocumentList docs = rsp.getResults();
+                final String next = rsp.getNextCursorMark();
+                if (next == null) throw new IOException("the Solr server does not support cursor marks");
+                if (docs != null && !docs.isEmpty()) {
+                    writeChunk(chunkFile(this.dir, partition, chunk), docs);
+                    chunk++;
+                    partitionCount += docs.size();
+                    this.count.addAndGet(docs.size());
+                }
+                final boolean done = next.equals(cursor) || docs == null || docs.size() < this.chunkSize;
+                checkpoint.setProperty("chunk", Integer.toString(chunk));
+                checkpoint.setProperty("cursor", next);
+                checkpoint.setProperty("count", Long.toString(partitionCount));
+                checkpoint.setProperty("done", Boolean.toString(done));
+                writeProperties(checkpointFile, checkpoint);
+                if (done) return;
+                cursor = next;
+            }
+        }
+
+        public File dir() {
+            return this.dir;
+        }
+
+        public String failed() {
+            return this.failure;
+        }
+
+        public long count() {
+            return this.count.get();
+        }
+    }
+
+    public static class Import extends Thread {
+
+        private final SolrConnector connector;
+        private final CollectionConfiguration configuration;
+        private final URLSeenFilter urlSeen;
+        private final File dir;
+        private final int concurrency;
+        private final AtomicLong count;
+        private volatile String failure;
+        private int chunks, skipped;
+
+        /**
+         * @param connector the target of the documents; the connector is committed after all chunks are added
+         * @param configuration the schema of the target, fields which are not in the schema are omitted
+         * @param urlSeen the seen filter of the target collection which learns the ids of the imported documents; may be null
+         * @param dir the directory of the dump
+         * @param concurrency the number of threads which read chunk files and add the documents
+         */
+        public Import(final SolrConnector connector, final CollectionConfiguration configuration, final URLSeenFilter urlSeen, final File dir, final int concurrency) {
+            super("CursorDump.Import");
+            this.connector = connector;
+            this.configuration = configuration;
+            this.urlSeen = urlSeen;
+            this.dir = dir;
+            this.concurrency = Math.max(1, concurrency);
+            this.count = new AtomicLong(0);
+            this.failure = null;
+            this.chunks = 0;
+            this.skipped = 0;
+        }
+
+        @Override
+        public void run() {
+            final File logFile = new File(this.dir, IMPORT_LOG_NAME);
+            final Set<String> imported = new HashSet<String>();
+            if (logFile.exists()) {
+                // an import log of an empty target is left from an index which has been cleared since
+                if (this.connector.getSize() > 0) imported.addAll(FileUtils.getListArray(logFile)); else logFile.delete();
+            }
+            final String[] names = this.dir.list();
+            if (names == null) {
+                this.failure = "cannot read the directory " + this.dir;
+                return;
+            }
+            Arrays.sort(names);
+            final ConcurrentLinkedQueue<File> files = new ConcurrentLinkedQueue<File>();
+            for (final String name: names) {
+                if (!name.endsWith(CHUNK_EXT)) continue;
+                this.chunks++;
+                if (imported.contains(name)) this.skipped++; else files.add(new File(this.dir, name));
+            }
+
+            try (final PrintWriter log = new PrintWriter(new FileWriter(logFile, true))) {
+                final Thread[] workers = new Thread[this.concurrency];
+                for (int i = 0; i < workers.length; i++) {
+                    workers[i] = new Thread("CursorDump.Import-" + i) {
+                        @Override
+                        public void run() {
+                            File f;
+                            while (Import.this.failure == null && !Thread.currentThread().isInterrupted() && (f = files.poll()) != null) {
+                                try {
+                                    final SolrDocumentList docs = readChunk(f);
+                                    final List<SolrInputDocument> input = new ArrayList<SolrInputDocument>(docs.size());
+                                    for (final SolrDocument doc: docs) input.add(Import.this.configuration.toSolrInputDocument(doc));
+                                    // the ids must be in the seen filter before the documents are written, otherwise the crawler would load them again;
+                                    // a rebuild of the filter must not read the collection before the documents are written
+                                    int registered = 0;
+                                    try {
+                                        if (Import.this.urlSeen != null) {
+                                            for (final SolrInputDocument doc: input) {
+                                                Import.this.urlSeen.put((String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName()));
+                                                registered++;
+                                            }
+                                        }
+                                        Import.this.connector.add(input);
+                                    } finally {
+                                        for (int j = 0; j < registered; j++) Import.this.urlSeen.putFinished();
+                                    }
+                                    Import.this.count.addAndGet(input.size());
+                                    synchronized (log) {
+                                        log.println(f.getName());
+                                        log.flush();
+                                    }
+                                } catch (final IOException | SolrException e) {
+                                    ConcurrentLog.warn("CursorDump", "import of " + f + " failed: " + e.getMessage());
+                                    Import.this.failure = e.getMessage();
+                                }
+                            }
+                        }
+                    };
+                    workers[i].start();
+                }
+                for (final Thread worker: workers) {
+                    try {
+                        worker.join();
+                    } catch (final InterruptedException e) {
+                        for (final Thread w: workers) w.interrupt();
+                        this.failure = "interrupted";
+                    }
+                }
+            } catch (final IOException e) {
+                this.failure = e.getMessage();
+            } finally {
+                // the added documents are committed also after a failure, the import log names only added chunks
+                this.connector.commit(false);
+            }
+            ConcurrentLog.info("CursorDump", "imported " + this.count.get() + " documents from " + this.dir + ", " + this.skipped + " of " + this.chunks + " chunks were imported before");
+        }
+
+        public File dir() {
+            return this.dir;
+        }
+
+        public String failed() {
+            return this.failure;
+        }
+
+        public long count() {
+            return this.count.get();
+        }
+
+        /**
+         * @return the number of chunk files in the dump directory
+         */
+        public int chunks() {
+            return this.chunks;
+        }
+    }
+
+}
@@ -119,7 +119,7 @@ public class ErrorCache {
                         olddoc.getFieldValue(CollectionSchema.httpstatus_i.getSolrFieldName()) == null ||
                         ((Integer) olddoc.getFieldValue(CollectionSchema.httpstatus_i.getSolrFieldName())) == 200) {
                         SolrInputDocument errorDoc = failDoc.toSolr(this.sb.index.fulltext().getDefaultConfiguration());
-                        this.sb.index.fulltext().getDefaultConnector().add(errorDoc);
+                        this.sb.index.fulltext().putDocument(errorDoc);
                     }
                 } catch (final IOException e) {
                     ConcurrentLog.warn("SOLR", "failed to send error " + url.toNormalform(true) + " to solr: " + e.getMessage());
@@ -71,6 +71,7 @@ import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.document.parser.html.CharacterCoding;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.table.IndexTable;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
@@ -90,12 +91,15 @@ import org.apache.lucene.util.Version;
 public final class Fulltext {
 
     private static final String SOLR_PATH = "solr_6_6"; // the number should be identical to the number in the property luceneMatchVersion in solrconfig.xml
+    private static final String URLSEEN_DUMP = "urlseen.bloom";
     private static final String SOLR_OLD_PATH[] = new String[]{"solr_36", "solr_40", "solr_44", "solr_45", "solr_46", "solr_47", "solr_4_9", "solr_4_10", "solr_5_2", "solr_5_5"};
     
     // class objects
     private final File                    segmentPath;
     private final File                    archivePath;
     private       Export                  exportthread; // will have a export thread assigned if exporter is running
+    private       CursorDump.Export       cursorExportThread; // the last export to a cursor dump
+    private       CursorDump.Import       cursorImportThread; // the last import of a cursor dump
     private       InstanceMirror          solrInstances;
     
     /** Synchronization lock for solrInstances property */
@@ -104,9 +108,12 @@ public final class Fulltext {
     private final CollectionConfiguration collectionConfiguration;
     private final WebgraphConfiguration   webgraphConfiguration;
     private       boolean                 writeWebgraph;
+    private volatile SolrBatchWriter      collectionWriter, webgraphWriter; // null if documents are written synchronously
+    private final URLSeenFilter           urlSeen;
+    private final IndexTable              citationRankIndex; // the host citation rank of the documents, only used during postprocessing
 
     protected Fulltext(final File segmentPath, final File archivePath,
-            final CollectionConfiguration collectionConfiguration, final WebgraphConfiguration webgraphConfiguration) {
+            final CollectionConfiguration collectionConfiguration, final WebgraphConfiguration webgraphConfiguration) throws IOException {
         this.segmentPath = segmentPath;
         this.archivePath = archivePath;
         this.exportthread = null; // will have a export thread assigned if exporter is running
@@ -115,6 +122,8 @@ public final class Fulltext {
         this.collectionConfiguration = collectionConfiguration;
         this.webgraphConfiguration = webgraphConfiguration;
         this.writeWebgraph = false;
+        this.urlSeen = new URLSeenFilter(this, new File(segmentPath, URLSEEN_DUMP));
+        this.citationRankIndex = new IndexTable(new File(segmentPath, Segment.citationRankIndexName), 12, 8, false, false);
     }
     
     public void setUseWebgraph(boolean check) {
@@ -125,6 +134,125 @@ public final class Fulltext {
         return this.writeWebgraph;
     }
 
+    /**
+     * switch between synchronous and batched writing of documents.
+     * Documents which are waiting in the current writers are written before the writers are replaced.
+     * @param batchSize the maximum number of documents in one add call; a value below 2 switches batching off
+     * @param maxDelay the maximum time in milliseconds which a document waits before it is written
+     * @param capacity the maximum number of waiting documents, the indexer is blocked if it is reached
+     */
+    public synchronized void setBatchWriting(final int batchSize, final long maxDelay, final int capacity) {
+        final SolrBatchWriter oldCollectionWriter = this.collectionWriter;
+        final SolrBatchWriter oldWebgraphWriter = this.webgraphWriter;
+        if (batchSize > 1) {
+            this.collectionWriter = new SolrBatchWriter(CollectionSchema.CORE_NAME, new SolrBatchWriter.Sink() {
+                @Override
+                public void add(final Collection<SolrInputDocument> docs) throws IOException, SolrException {
+                    final SolrConnector connector = Fulltext.this.getDefaultConnector();
+                    if (connector == null) return;
+                    connector.add(docs);
+                    if (MemoryControl.shortStatus()) clearCaches();
+                }
+            }, batchSize, maxDelay, capacity);
+            this.webgraphWriter = new SolrBatchWriter(WebgraphSchema.CORE_NAME, new SolrBatchWriter.Sink() {
+                @Override
+                public void add(final Collection<SolrInputDocument> docs) throws IOException, SolrException {
+                    final SolrConnector connector = Fulltext.this.getWebgraphConnector();
+                    if (connector == null) return;
+                    connector.add(docs);
+                    if (MemoryControl.shortStatus()) clearCaches();
+                }
+            }, batchSize, maxDelay, capacity);
+        } else {
+            this.collectionWriter = null;
+            this.webgraphWriter = null;
+        }
+        if (oldCollectionWriter != null) oldCollectionWriter.close();
+        if (oldWebgraphWriter != null) oldWebgraphWriter.close();
+    }
+
+    /**
+     * @return the batch writer of the collection core or null if documents are written synchronously
+     */
+    public SolrBatchWriter getCollectionWriter() {
+        return this.collectionWriter;
+    }
+
+    /**
+     * @return the batch writer of the webgraph core or null if documents are written synchronously
+     */
+    public SolrBatchWriter getWebgraphWriter() {
+        return this.webgraphWriter;
+    }
+
+    /**
+     * @return the filter of the ids of all documents in the collection
+     */
+    public URLSeenFilter getURLSeenFilter() {
+        return this.urlSeen;
+    }
+
+    /**
+     * store the converged host citation rank of a document. The value is used as start value
+     * for the next citation rank computation of the host, which then needs only a few steps.
+     * The value is removed together with the document.
+     * @param urlhash the document id
+     * @param cr the citation rank within the host of the document
+     */
+    public void setCitationRank(final byte[] urlhash, final double cr) {
+        if (urlhash == null || cr <= 0.0d) return;
+        try {
+            this.citationRankIndex.put(urlhash, Double.doubleToLongBits(cr));
+        } catch (IOException e) {
+            ConcurrentLog.logException(e);
+        }
+    }
+
+    /**
+     * get the host citation rank of a document from the last computation
+     * @param urlhash the document id
+     * @return the citation rank or -1 if it was never computed for the document
+     */
+    public double getCitationRank(final byte[] urlhash) {
+        if (urlhash == null) return -1.0d;
+        try {
+            final long cr = this.citationRankIndex.get(urlhash);
+            return cr < 0 ? -1.0d : Double.longBitsToDouble(cr);
+        } catch (IOException e) {
+            ConcurrentLog.logException(e);
+            return -1.0d;
+        }
+    }
+
+    private void removeCitationRank(final String id) {
+        try {
+            this.citationRankIndex.remove(ASCII.getBytes(id));
+        } catch (IOException e) {
+            ConcurrentLog.logException(e);
+        }
+    }
+
+    /**
+     * test if a url is definitely not in the collection, without a Solr request. If the answer is false, the
+     * url may be in the collection and Solr must be asked. A remote Solr may be written by other peers,
+     * in that case the answer is always false.
+     * @param urlhash
+     * @return true if the url is not in the collection
+     */
+    public boolean isUnseenURL(final String urlhash) {
+        return !this.solrInstances.isConnectedRemote() && this.urlSeen.isUnseen(urlhash);
+    }
+
+    /**
+     * write all documents which are waiting in the batch writers
+     */
+    public void flushBatches() {
+        final SolrBatchWriter cw = this.collectionWriter;
+        if (cw != null) cw.flush();
+        final SolrBatchWriter ww = this.webgraphWriter;
+        if (ww != null) ww.flush();
+    }
+
     public CollectionConfiguration getDefaultConfiguration() {
         return this.collectionConfiguration;
     }
@@ -157,9 +285,15 @@ public final class Fulltext {
         assert SOLR_PATH.endsWith(lvn) : "luceneVersion = " + lvn + ", solrPath = " + SOLR_PATH + ", check defaults/solr/solrconfig.xml";
         ConcurrentLog.info("Fulltext", "connected solr in " + solrLocation.toString() + ", lucene version " + lvn);
         this.solrInstances.connectEmbedded(localCollectionInstance);
+
+        final Switchboard sb = Switchboard.getSwitchboard();
+        if (sb == null || sb.getConfigBool(SwitchboardConstants.CRAWLER_URLSEEN_FILTER, SwitchboardConstants.CRAWLER_URLSEEN_FILTER_DEFAULT)) {
+            this.urlSeen.open(this.getDefaultConnector().getSize());
+        }
     }
 
     public void disconnectLocalSolr() {
+        this.urlSeen.close(-1);
         this.solrInstances.disconnectEmbedded();
     }
 
@@ -250,10 +384,24 @@ public final class Fulltext {
         this.solrInstances.clearCaches();
     }
 
-    public void clearLocalSolr() throws IOException {
+    public synchronized void clearLocalSolr() throws IOException {
         if (this.exportthread != null) {
         	this.exportthread.interrupt();
         }
+        // stop the cursor dumps and wait for them: documents which an import adds or commits after the clear would survive it
+        final CursorDump.Export cursorExport = this.cursorExportThread;
+        final CursorDump.Import cursorImport = this.cursorImportThread;
+        if (cursorExport != null) cursorExport.interrupt();
+        if (cursorImport != null) cursorImport.interrupt();
+        try {
+            if (cursorExport != null) cursorExport.join();
+            if (cursorImport != null) cursorImport.join();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // the import log names chunks which are not in the index any more, so an import of the same dump must read them again
+        if (cursorImport != null) new File(cursorImport.dir(), CursorDump.IMPORT_LOG_NAME).delete();
+        this.flushBatches();
     	this.solrInstancesLock.lock();
         try {
             EmbeddedInstance instance = this.solrInstances.getEmbedded();
@@ -267,9 +415,11 @@ public final class Fulltext {
         } finally {
         	this.solrInstancesLock.unlock();
         }
+        this.citationRankIndex.clear();
     }
 
     public void clearRemoteSolr() throws IOException {
+        this.flushBatches();
     	this.solrInstancesLock.lock();
         try {
             ShardInstance instance = this.solrInstances.getRemote();
@@ -309,6 +459,9 @@ public final class Fulltext {
     }
 
     public void close() {
+        this.setBatchWriting(0, 0, 0); // writes the waiting documents
+        this.urlSeen.close(connectedLocalSolr() ? this.getDefaultConnector().getSize() : -1);
+        this.citationRankIndex.close();
         try {
             this.solrInstances.close();
         } catch (Throwable e) {
@@ -318,6 +471,7 @@ public final class Fulltext {
     
     private long lastCommit = 0;
     public void commit(boolean softCommit) {
+        this.flushBatches();
         long t = System.currentTimeMillis();
         if (lastCommit + 10000 > t) return;
         lastCommit = t;
@@ -372,11 +526,21 @@ public final class Fulltext {
         String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
         String url = (String) doc.getFieldValue(CollectionSchema.sku.getSolrFieldName());
         assert url != null && url.length() < 30000;
-        ConcurrentLog.info("Fulltext", "indexing: " + id + " " + url);
+        if (ConcurrentLog.isFine("Fulltext")) ConcurrentLog.fine("Fulltext", "indexing: " + id + " " + url);
+        this.urlSeen.put(id);
         try {
-            connector.add(doc);
-        } catch (final SolrException e) {
-            throw new IOException(e.getMessage(), e);
+            final SolrBatchWriter writer = this.collectionWriter;
+            if (writer != null) {
+                writer.put(doc);
+                return;
+            }
+            try {
+                connector.add(doc);
+            } catch (final SolrException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        } finally {
+            this.urlSeen.putFinished();
         }
         if (MemoryControl.shortStatus()) clearCaches();
     }
@@ -384,6 +548,11 @@ public final class Fulltext {
     public void putEdges(final Collection<SolrInputDocument> edges) throws IOException {
         if (!this.useWebgraph()) return;
         if (edges == null || edges.size() == 0) return;
+        final SolrBatchWriter writer = this.webgraphWriter;
+        if (writer != null) {
+            writer.put(edges);
+            return;
+        }
         try {
             this.getWebgraphConnector().add(edges);
         } catch (final SolrException e) {
@@ -532,6 +701,8 @@ public final class Fulltext {
      */
     public void remove(final Collection<String> deleteIDs) {
         if (deleteIDs == null || deleteIDs.size() == 0) return;
+        this.flushBatches(); // otherwise a waiting document could be written after its deletion
+        for (String id : deleteIDs) removeCitationRank(id);
         try {
             this.getDefaultConnector().deleteByIds(deleteIDs);
             if (this.writeWebgraph) { // Webgraph.id is combination of sourceHash+targetHash+hexCounter, to be successful use source_id_s and/or target_id_s
@@ -553,8 +724,10 @@ public final class Fulltext {
      */
     public boolean remove(final byte[] urlHash) {
         if (urlHash == null) return false;
+        this.flushBatches(); // otherwise a waiting document could be written after its deletion
+        String id = ASCII.String(urlHash);
+        removeCitationRank(id);
         try {
-            String id = ASCII.String(urlHash);
             this.getDefaultConnector().deleteById(id);
             if (this.writeWebgraph) { // Webgraph.id is combination of sourceHash+targetHash+hexCounter, to be successful use source_id_s and/or target_id_s
             	/* Add quotes around the url hash to prevent Solr logging a ParseException stack trace when the hash start with a '-' character */
@@ -810,6 +983,57 @@ public final class Fulltext {
         return this.exportthread;
     }
 
+    /**
+     * start an export of the collection to a directory of javabin chunk files
+     * @param dir the dump directory; an interrupted export in this directory is continued
+     * @param query the query for the exported documents
+     * @param partitions the number of concurrent partitions
+     * @param chunkSize the number of documents per chunk file
+     * @return the running export
+     */
+    public synchronized CursorDump.Export cursorExport(final File dir, final String query, final int partitions, final int chunkSize) {
+        if (this.cursorExportThread != null && this.cursorExportThread.isAlive()) {
+            ConcurrentLog.warn("Fulltext", "cannot start another cursor export, already one running");
+            return this.cursorExportThread;
+        }
+        this.flushBatches();
+        this.cursorExportThread = new CursorDump.Export(this.getDefaultConnector(), query == null ? AbstractSolrConnector.CATCHALL_QUERY : query, dir, partitions, chunkSize);
+        this.cursorExportThread.start();
+        return this.cursorExportThread;
+    }
+
+    public CursorDump.Export cursorExport() {
+        return this.cursorExportThread;
+    }
+
+    /**
+     * start an import of a cursor dump directory. The documents are added to the embedded Solr
+     * if there is one, otherwise to the default connector.
+     * @param dir the dump directory; chunks which are listed in the import log of the directory are skipped if the target is not empty
+     * @param concurrency the number of import threads
+     * @return the running import
+     */
+    public synchronized CursorDump.Import cursorImport(final File dir, final int concurrency) {
+        if (this.cursorImportThread != null && this.cursorImportThread.isAlive()) {
+            ConcurrentLog.warn("Fulltext", "cannot start another cursor import, already one running");
+            return this.cursorImportThread;
+        }
+        final EmbeddedSolrConnector embedded = this.getDefaultEmbeddedConnector();
+        this.cursorImportThread = new CursorDump.Import(embedded == null ? this.getDefaultConnector() : embedded, this.collectionConfiguration, this.urlSeen, dir, concurrency) {
+            @Override
+            public void run() {
+                super.run();
+                Fulltext.this.clearCaches(); // the caches of the mirror do not know the added documents
+            }
+        };
+        this.cursorImportThread.start();
+        return this.cursorImportThread;
+    }
+
+    public CursorDump.Import cursorImport() {
+        return this.cursorImportThread;
+    }
+
     public class Export extends Thread {
         private final File f;
         private final Pattern pattern;
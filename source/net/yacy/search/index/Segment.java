@@ -78,6 +78,7 @@ import net.yacy.kelondro.data.word.WordReferenceRow;
 import net.yacy.kelondro.index.RowHandleSet;
 import net.yacy.kelondro.rwi.IODispatcher;
 import net.yacy.kelondro.rwi.IndexCell;
+import net.yacy.kelondro.rwi.OffHeapSlabPool;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.rwi.ReferenceFactory;
 import net.yacy.kelondro.table.IndexTable;
@@ -112,6 +113,7 @@ public class Segment {
     public static final String termIndexName = "text.index";
     public static final String citationIndexName = "citation.index";
     public static final String firstseenIndexName = "firstseen.index";
+    public static final String citationRankIndexName = "citationrank.index";
 
     // the reference factory
     public static final ReferenceFactory<WordReference> wordReferenceFactory = new WordReferenceFactory();
@@ -125,6 +127,8 @@ public class Segment {
     protected       IndexCell<CitationReference>   urlCitationIndex;
     protected       IndexTable                     firstSeenIndex;
     protected       IODispatcher                   merger = null; // shared iodispatcher for kelondro indexes
+    private         int                            mergeConcurrency = 1, mergeFanIn = 2;
+    private         OffHeapSlabPool                rwiBufferPool = null; // slabs of the off-heap RWI RAM cache
 
     /**
      * create a new Segment
@@ -142,18 +146,57 @@ public class Segment {
         this.fulltext = new Fulltext(segmentPath, archivePath, collectionConfiguration, webgraphConfiguration);
         this.termIndex = null;
         this.urlCitationIndex = null;
-        this.firstSeenIndex = new IndexTable(new File(segmentPath, firstseenIndexName), 12, 8, false, false);
+        this.firstSeenIndex = new IndexTable(new File(segmentPath, firstseenIndexName), 12, 8, false, false, true); // read by all search threads
     }
     
+    /**
+     * set the policy of the io dispatcher which dumps and merges the BLOB files of the RWI and citation index.
+     * This must be called before the indexes are connected.
+     * @param concurrency the maximum number of concurrent dump and merge jobs
+     * @param fanIn the maximum number of files merged in one pass
+     */
+    public void setMergePolicy(final int concurrency, final int fanIn) {
+        this.mergeConcurrency = concurrency;
+        this.mergeFanIn = fanIn;
+    }
+
+    /**
+     * set the size of the off-heap buffer of the RWI RAM cache. With an off-heap buffer, the references
+     * are held outside of the java heap and the cache is dumped when half of the buffer is full.
+     * This must be called before the RWI index is connected.
+     * @param size the number of bytes in direct memory; 0 keeps the RAM cache on the heap
+     */
+    public void setRWIOffHeapBuffer(final long size) {
+        this.rwiBufferPool = size <= 0 ? null : new OffHeapSlabPool(size, OffHeapSlabPool.DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * @return the io dispatcher of the RWI and citation index or null if none is connected
+     */
+    public IODispatcher merger() {
+        return this.merger;
+    }
+
     public boolean connectedRWI() {
         return this.termIndex != null;
     }
 
     public void connectRWI(final int entityCacheMaxSize, final long maxFileSize) throws IOException {
+        connectRWI(entityCacheMaxSize, maxFileSize, false);
+    }
+
+    /**
+     * connect the reverse word index
+     * @param entityCacheMaxSize maximum number of words in the RAM cache
+     * @param maxFileSize maximum size of a BLOB file
+     * @param mappedRead if true, the BLOB files are memory-mapped and read without a lock per file
+     * @throws IOException
+     */
+    public void connectRWI(final int entityCacheMaxSize, final long maxFileSize, final boolean mappedRead) throws IOException {
         if (this.termIndex != null) return;
         
         if (this.merger == null) { // init shared iodispatcher if none running
-            this.merger = new IODispatcher(2, 2, writeBufferSize);
+            this.merger = new IODispatcher(2, 2, writeBufferSize, this.mergeConcurrency, this.mergeFanIn);
             this.merger.start();
         }
         this.termIndex = new IndexCell<WordReference>(
@@ -166,7 +209,9 @@ public class Segment {
                         targetFileSize,
                         maxFileSize,
                         writeBufferSize,
-                        merger);
+                        merger,
+                        mappedRead,
+                        this.rwiBufferPool);
     }
 
     public void disconnectRWI() {
@@ -183,7 +228,7 @@ public class Segment {
         if (this.urlCitationIndex != null) return;
 
         if (this.merger == null) { // init shared iodispatcher if none running
-            this.merger = new IODispatcher(2,2,writeBufferSize);
+            this.merger = new IODispatcher(2, 2, writeBufferSize, this.mergeConcurrency, this.mergeFanIn);
             this.merger.start();
         }
         this.urlCitationIndex = new IndexCell<CitationReference>(
@@ -398,6 +443,20 @@ public class Segment {
         }
     }
 
+    /**
+     * store the converged host citation rank of a document, see Fulltext.setCitationRank
+     */
+    public void setCitationRank(final byte[] urlhash, final double cr) {
+        this.fulltext.setCitationRank(urlhash, cr);
+    }
+
+    /**
+     * get the host citation rank of a document from the last computation, see Fulltext.getCitationRank
+     */
+    public double getCitationRank(final byte[] urlhash) {
+        return this.fulltext.getCitationRank(urlhash);
+    }
+
     /**
      * get the load time of a resource.
      * @param urlhash the resource hash
@@ -733,12 +792,15 @@ public class Segment {
             Word wprop = null;
             byte[] wordhash;
             String word;
+            long hashNanos = 0;
             for (Map.Entry<String, Word> wentry: condenser.words().entrySet()) {
                 word = wentry.getKey();
                 wprop = wentry.getValue();
                 assert (wprop.flags != null);
                 ientry.setWord(wprop);
+                final long hashStart = System.nanoTime();
                 wordhash = Word.word2hash(word);
+                hashNanos += System.nanoTime() - hashStart;
                 if (this.termIndex != null && storeToRWI) try {
                     this.termIndex.add(wordhash, ientry);
                 } catch (final Exception e) {
@@ -762,6 +824,7 @@ public class Segment {
                 }
             }
             if (searchEvent != null) searchEvent.addFinalize();
+            Word.cache().document(hashNanos);
     
             // assign the catchall word
             ientry.setWord(wprop == null ? catchallWord : wprop); // we use one of the word properties as template to get the document characteristics
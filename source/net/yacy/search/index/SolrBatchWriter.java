@@ -0,0 +1,282 @@
+/**
+ *  SolrBatchWriter
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.index;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.search.schema.CollectionSchema;
+
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+
+/**
+ * A bounded write queue in front of a Solr core. Documents are collected by a flusher thread
+ * and written with one add call per batch; a batch is written when it reaches the batch size or
+ * when the oldest document in it waited for the maximum delay. Documents with the same id inside
+ * one batch are written only once, the last one put wins.
+ * If the queue is full, put blocks until the flusher has made room (back-pressure to the indexer).
+ * Write errors of the flusher cannot be thrown to the caller of put, they are logged and counted.
+ */
+public class SolrBatchWriter {
+
+    private final static ConcurrentLog log = new ConcurrentLog("SolrBatchWriter");
+    private final static String ID = CollectionSchema.id.getSolrFieldName(); // the same name in all cores
+
+    /**
+     * the target of the writes; the connector should be resolved at each call
+     * because it may change if the Solr instances are re-connected
+     */
+    public interface Sink {
+        public void add(Collection<SolrInputDocument> docs) throws IOException, SolrException;
+    }
+
+    private final String name;
+    private final Sink sink;
+    private final int batchSize;
+    private final long maxDelay;
+    private final BlockingQueue<SolrInputDocument> queue;
+    private final Semaphore available = new Semaphore(0); // one permit for each put, wakes up the flusher
+    private final Object writeLock = new Object(); // documents are taken from the queue only with this lock, so they are written in the order of put
+    private final Object putLock = new Object(); // documents are counted in the order in which they enter the queue
+    private final Thread flusher;
+    private volatile boolean running;
+
+    private volatile long accepted = 0; // the number of documents which have been put into the queue, changed only with the putLock
+    private long taken = 0; // the number of documents which have been taken from the queue, changed only with the writeLock
+    private final AtomicLong flushCount = new AtomicLong(0);
+    private final AtomicLong flushTime = new AtomicLong(0);
+    private final AtomicLong docCount = new AtomicLong(0);
+    private final AtomicLong errorCount = new AtomicLong(0);
+    private volatile long lastFlushTime = 0;
+    private volatile int lastFlushSize = 0;
+
+    /**
+     * @param name the name of the writer, used for the flusher thread and for logging
+     * @param sink the target of the batches
+     * @param batchSize the maximum number of documents in one add call
+     * @param maxDelay the maximum time in milliseconds which a document may wait before it is written
+     * @param capacity the maximum number of waiting documents; put blocks if this is reached
+     */
+    public SolrBatchWriter(final String name, final Sink sink, final int batchSize, final long maxDelay, final int capacity) {
+        this.name = name;
+        this.sink = sink;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDelay = Math.max(1, maxDelay);
+        this.queue = new ArrayBlockingQueue<SolrInputDocument>(Math.max(this.batchSize, capacity));
+        this.running = true;
+        this.flusher = new Thread("SolrBatchWriter." + name) {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        };
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * enqueue a document for writing; blocks if the queue is full.
+     * If the writer is closed, the document is written synchronously.
+     */
+    public void put(final SolrInputDocument doc) throws IOException {
+        if (!this.running) {
+            try {
+                this.sink.add(Collections.singletonList(doc));
+            } catch (final SolrException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            return;
+        }
+        try {
+            synchronized (this.putLock) {
+                this.queue.put(doc);
+                this.accepted++;
+            }
+        } catch (final InterruptedException e) {
+            throw new IOException("interrupted while waiting for the " + this.name + " write queue", e);
+        }
+        this.available.release();
+    }
+
+    public void put(final Collection<SolrInputDocument> docs) throws IOException {
+        for (final SolrInputDocument doc: docs) put(doc);
+    }
+
+    /**
+     * write all documents which have been put before this call; returns when they are written.
+     * Documents which are put concurrently are left to the flusher, so a flush ends also under continuous load.
+     */
+    public void flush() {
+        synchronized (this.writeLock) {
+            // the flusher takes documents only with the writeLock, so all documents counted until now are in the queue
+            writeBatches(this.accepted);
+        }
+    }
+
+    /**
+     * stop the flusher thread and write the remaining documents.
+     * Documents which are put after closing are written synchronously.
+     */
+    public void close() {
+        this.running = false;
+        this.flusher.interrupt();
+        try {
+            this.flusher.join(this.maxDelay + 1000);
+        } catch (final InterruptedException e) {}
+        flush();
+    }
+
+    /**
+     * @return the number of documents waiting to be written
+     */
+    public int queueSize() {
+        return this.queue.size();
+    }
+
+    public int capacity() {
+        return this.queue.size() + this.queue.remainingCapacity();
+    }
+
+    public int batchSize() {
+        return this.batchSize;
+    }
+
+    public long maxDelay() {
+        return this.maxDelay;
+    }
+
+    /**
+     * @return the number of add calls to the Solr core
+     */
+    public long flushCount() {
+        return this.flushCount.get();
+    }
+
+    /**
+     * @return the number of written documents after removal of double ids
+     */
+    public long documentCount() {
+        return this.docCount.get();
+    }
+
+    public long errorCount() {
+        return this.errorCount.get();
+    }
+
+    /**
+     * @return the time in milliseconds of the latest add call
+     */
+    public long lastFlushTime() {
+        return this.lastFlushTime;
+    }
+
+    public int lastFlushSize() {
+        return this.lastFlushSize;
+    }
+
+    /**
+     * @return the average time in milliseconds of all add calls
+     */
+    public long averageFlushTime() {
+        final long c = this.flushCount.get();
+        return c == 0 ? 0 : this.flushTime.get() / c;
+    }
+
+    private void flushLoop() {
+        final ArrayList<SolrInputDocument> batch = new ArrayList<SolrInputDocument>(this.batchSize);
+        while (this.running) {
+            try {
+                // wait for the first document of a batch without taking it from the queue: if the flusher held documents
+                // outside of the writeLock, flush() could write newer versions of the same ids before them
+                if (this.queue.isEmpty()) {
+                    this.available.drainPermits();
+                    if (this.queue.isEmpty() && !this.available.tryAcquire(this.maxDelay, TimeUnit.MILLISECONDS)) continue;
+                }
+                // then wait for more until the batch is full or the delay is over
+                final long deadline = System.currentTimeMillis() + this.maxDelay;
+                long wait;
+                while (this.queue.size() < this.batchSize && (wait = deadline - System.currentTimeMillis()) > 0) {
+                    this.available.tryAcquire(wait, TimeUnit.MILLISECONDS);
+                }
+                synchronized (this.writeLock) {
+                    this.queue.drainTo(batch, this.batchSize);
+                    if (!batch.isEmpty()) write(batch); // the queue may have been written by flush() in the meantime
+                }
+            } catch (final InterruptedException e) {
+                // closed; the remaining documents in the queue are written by close()
+            } catch (final Throwable e) {
+                log.warn("flusher of " + this.name + ": " + e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * write the queue in batches of the maximum size until the given number of documents has been taken; must be called with the writeLock
+     * @param target the number of accepted documents up to which the queue is written
+     */
+    private void writeBatches(final long target) {
+        final ArrayList<SolrInputDocument> batch = new ArrayList<SolrInputDocument>(this.batchSize);
+        while (this.taken < target && this.queue.drainTo(batch, (int) Math.min(this.batchSize, target - this.taken)) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * write a batch with double ids removed; must be called with the writeLock
+     * @param batch the documents in the order in which they were put
+     */
+    private void write(final Collection<SolrInputDocument> batch) {
+        final Map<Object, SolrInputDocument> unique = new LinkedHashMap<Object, SolrInputDocument>(batch.size() * 2);
+        for (final SolrInputDocument doc: batch) {
+            final Object id = doc.getFieldValue(ID);
+            unique.put(id == null ? doc : id, doc);
+        }
+        final long start = System.currentTimeMillis();
+        try {
+            this.sink.add(unique.values());
+            this.docCount.addAndGet(unique.size());
+        } catch (final Exception e) {
+            this.errorCount.incrementAndGet();
+            log.warn("failed to write " + unique.size() + " documents to " + this.name + ": " + e.getMessage(), e);
+        } finally {
+            final long time = System.currentTimeMillis() - start;
+            this.lastFlushTime = time;
+            this.lastFlushSize = unique.size();
+            this.flushTime.addAndGet(time);
+            this.flushCount.incrementAndGet();
+            this.taken += batch.size();
+        }
+    }
+
+}
@@ -0,0 +1,329 @@
+/**
+ *  URLSeenFilter
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.federate.solr.connector.SolrConnector;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.index.HashBloomFilter;
+import net.yacy.search.schema.CollectionSchema;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+
+/**
+ * A bloom filter of the ids (url hashes) of all documents in the collection core. It answers the
+ * question 'is this url in the index?' with 'definitely not' for most unknown urls, so the crawler
+ * does not need to ask Solr for them. The filter is only used when it is known to be complete:
+ * after it was loaded from the dump which was written at the last shutdown or after it was rebuilt
+ * from Solr in the background. Until then, all urls are reported as possibly known.
+ * Deleted documents are not removed from the filter; such urls are reported as possibly known,
+ * which only costs a Solr lookup. Writes to the collection which bypass the Fulltext class must
+ * call invalidate(), the filter is then disabled until a rebuild is finished.
+ */
+public class URLSeenFilter {
+
+    private final static ConcurrentLog log = new ConcurrentLog("URLSeenFilter");
+    private final static String ID = CollectionSchema.id.getSolrFieldName();
+
+    /** the minimum capacity of a filter */
+    private static final long MIN_CAPACITY = 1000000;
+
+    /** the number of ids which are read from Solr with one query during a rebuild */
+    private static final int PAGESIZE = 10000;
+
+    private final Fulltext fulltext;
+    private final File dumpFile;
+
+    // writers of documents share the read lock, the start of a rebuild takes the write lock.
+    // This makes sure that every document which is written after the start of a rebuild is added to the new filter.
+    private final ReentrantReadWriteLock lock;
+
+    private volatile HashBloomFilter filter;   // the filter which is used for tests
+    private volatile HashBloomFilter building; // the filter of a running rebuild or null
+    private volatile boolean ready;            // true if the filter contains all documents of the collection
+    private volatile boolean open;
+    private volatile int generation;           // increased for each change which requires a rebuild
+    private Thread rebuild;
+
+    private final AtomicLong tests, unseen;
+
+    protected URLSeenFilter(final Fulltext fulltext, final File dumpFile) {
+        this.fulltext = fulltext;
+        this.dumpFile = dumpFile;
+        this.lock = new ReentrantReadWriteLock();
+        this.filter = null;
+        this.building = null;
+        this.ready = false;
+        this.open = false;
+        this.generation = 0;
+        this.rebuild = null;
+        this.tests = new AtomicLong(0);
+        this.unseen = new AtomicLong(0);
+    }
+
+    /**
+     * start to use the filter: load the dump of the last shutdown if it matches the size of the collection,
+     * otherwise rebuild the filter from the collection in the background
+     * @param collectionSize the current number of documents in the collection
+     */
+    protected synchronized void open(final long collectionSize) {
+        if (this.open) {
+            // the Solr instance was replaced
+            invalidate();
+            return;
+        }
+        this.open = true;
+        this.ready = false;
+        if (this.dumpFile.exists()) {
+            try {
+                final DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(this.dumpFile), 64 * 1024));
+                try {
+                    final long dumpedSize = is.readLong();
+                    final HashBloomFilter f = HashBloomFilter.read(is);
+                    if (dumpedSize == collectionSize) {
+                        this.filter = f;
+                        this.ready = true;
+                        log.info("loaded url filter with " + f.size() + " entries from " + this.dumpFile.toString());
+                    } else {
+                        log.info("url filter dump does not match the collection size " + collectionSize + ", rebuilding");
+                    }
+                } finally {
+                    is.close();
+                }
+            } catch (final IOException e) {
+                log.warn("could not load url filter dump " + this.dumpFile.toString() + ": " + e.getMessage());
+            }
+            // the dump is only valid for one start; a crash must not leave an outdated dump behind
+            if (!this.dumpFile.delete()) log.warn("could not delete url filter dump " + this.dumpFile.toString());
+        }
+        if (!this.ready) startRebuild();
+    }
+
+    /**
+     * stop to use the filter and write it to the dump file if it is complete
+     * @param collectionSize the number of documents in the collection after all writes are finished
+     */
+    protected synchronized void close(final long collectionSize) {
+        if (!this.open) return;
+        this.open = false;
+        this.generation++; // stops a running rebuild
+        final HashBloomFilter f = this.filter;
+        if (this.ready && f != null && collectionSize >= 0) {
+            try {
+                final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.dumpFile), 64 * 1024));
+                try {
+                    os.writeLong(collectionSize);
+                    f.write(os);
+                } finally {
+                    os.close();
+                }
+                log.info("wrote url filter with " + f.size() + " entries to " + this.dumpFile.toString());
+            } catch (final IOException e) {
+                log.warn("could not write url filter dump " + this.dumpFile.toString() + ": " + e.getMessage());
+                this.dumpFile.delete();
+            }
+        }
+        this.ready = false;
+        this.filter = null;
+        this.building = null;
+    }
+
+    /**
+     * register a document which is written to the collection. This must be called before the document is written
+     * and the write must be followed by a call to putFinished() also if the write fails.
+     * @param id the id of the document
+     */
+    protected void put(final String id) {
+        this.lock.readLock().lock();
+        if (id == null) return;
+        final byte[] key = ASCII.getBytes(id);
+        final HashBloomFilter f = this.filter;
+        if (f != null) f.add(key);
+        final HashBloomFilter b = this.building;
+        if (b != null) b.add(key);
+        if (f != null && this.ready && f.size() > f.capacity() && b == null) {
+            // the false positive rate grows, build a larger filter; the current filter stays valid until then
+            synchronized (this) {
+                if (this.rebuild == null && this.open) startRebuild();
+            }
+        }
+    }
+
+    protected void putFinished() {
+        this.lock.readLock().unlock();
+    }
+
+    /**
+     * disable the filter until it is rebuilt. This must be called when documents were written to the collection
+     * in a way which is not tracked by put(), or when the collection was replaced or cleared.
+     */
+    public synchronized void invalidate() {
+        if (!this.open) return;
+        this.ready = false;
+        this.generation++;
+        if (this.rebuild == null) startRebuild();
+    }
+
+    /**
+     * test if a url is definitely not in the collection
+     * @param urlhash
+     * @return true if the url is not in the collection, false if it is possibly in the collection or if the filter is not ready
+     */
+    public boolean isUnseen(final String urlhash) {
+        if (!this.ready) return false;
+        final HashBloomFilter f = this.filter;
+        if (f == null) return false;
+        this.tests.incrementAndGet();
+        if (f.mightContain(ASCII.getBytes(urlhash))) return false;
+        this.unseen.incrementAndGet();
+        return true;
+    }
+
+    public boolean isReady() {
+        return this.ready;
+    }
+
+    public boolean isRebuilding() {
+        return this.building != null;
+    }
+
+    public long size() {
+        final HashBloomFilter f = this.filter;
+        return f == null ? 0 : f.size();
+    }
+
+    public long capacity() {
+        final HashBloomFilter f = this.filter;
+        return f == null ? 0 : f.capacity();
+    }
+
+    public long mem() {
+        final HashBloomFilter f = this.filter;
+        final HashBloomFilter b = this.building;
+        return (f == null ? 0 : f.mem()) + (b == null ? 0 : b.mem());
+    }
+
+    /**
+     * @return the number of tests of the complete filter
+     */
+    public long tests() {
+        return this.tests.get();
+    }
+
+    /**
+     * @return the number of tests which did not need a Solr lookup because the url was not in the filter
+     */
+    public long unseen() {
+        return this.unseen.get();
+    }
+
+    private void startRebuild() {
+        assert Thread.holdsLock(this);
+        this.rebuild = new Thread("URLSeenFilter.rebuild") {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        final int g = URLSeenFilter.this.generation;
+                        final boolean complete = rebuild(g);
+                        synchronized (URLSeenFilter.this) {
+                            if (!URLSeenFilter.this.open) break;
+                            if (complete && g == URLSeenFilter.this.generation) {
+                                URLSeenFilter.this.filter = URLSeenFilter.this.building;
+                                URLSeenFilter.this.building = null;
+                                URLSeenFilter.this.ready = true;
+                                log.info("rebuilt url filter with " + URLSeenFilter.this.filter.size() + " entries");
+                                break;
+                            }
+                            URLSeenFilter.this.building = null;
+                            if (g == URLSeenFilter.this.generation) break; // Solr failed, the filter stays disabled; the next start tries again
+                        }
+                        // the collection was changed during the rebuild, start again
+                    }
+                } catch (final Throwable e) {
+                    ConcurrentLog.logException(e);
+                } finally {
+                    synchronized (URLSeenFilter.this) {
+                        URLSeenFilter.this.building = null;
+                        URLSeenFilter.this.rebuild = null;
+                    }
+                }
+            }
+        };
+        this.rebuild.setDaemon(true);
+        this.rebuild.start();
+    }
+
+    /**
+     * fill a new filter with all ids of the collection
+     * @param g the generation at the start of the rebuild
+     * @return true if the filter was filled completely, false if the rebuild failed
+     */
+    private boolean rebuild(final int g) {
+        final SolrConnector connector = this.fulltext.getDefaultConnector();
+        if (connector == null) return false;
+        final long size = connector.getSize();
+        final HashBloomFilter f = new HashBloomFilter(Math.max(MIN_CAPACITY, 2 * size));
+        this.lock.writeLock().lock();
+        try {
+            this.building = f;
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+
+        // all documents which were registered before the new filter was set must be visible in Solr when they are read
+        this.fulltext.flushBatches();
+        connector.commit(true);
+
+        // read the ids ordered and continue after the last id, so deletions during the rebuild do not shift pages
+        final long start = System.currentTimeMillis();
+        String last = null;
+        try {
+            while (true) {
+                if (g != this.generation || !this.open) return false;
+                final SolrDocumentList docs = connector.getDocumentListByQuery(
+                        last == null ? "*:*" : ID + ":{\"" + last + "\" TO *]", ID + " asc", 0, PAGESIZE, ID);
+                for (final SolrDocument doc: docs) {
+                    last = (String) doc.getFieldValue(ID);
+                    f.add(ASCII.getBytes(last));
+                }
+                if (docs.size() < PAGESIZE) break;
+            }
+        } catch (final IOException e) {
+            log.warn("rebuild of url filter failed: " + e.getMessage());
+            return false;
+        }
+        log.info("read " + f.size() + " ids for the url filter in " + (System.currentTimeMillis() - start) + " milliseconds");
+        return true;
+    }
+
+}
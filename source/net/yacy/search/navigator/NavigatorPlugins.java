@@ -202,17 +202,7 @@ public class NavigatorPlugins {
                 navigatorPlugins.put("namespace", new NameSpaceNavigator("Wiki Name Space", parseNavSortConfig(navConfig)));
             } else if ("year".equals(navName)) {
             	// YearNavigator with possible def of :fieldname:title in configstring
-            	final LinkedHashSet<String> navProperties = new LinkedHashSet<>();
-            	Collections.addAll(navProperties, navConfig.split(NAV_PROPS_CONFIG_SEPARATOR));
-            		
-            	/* Remove sort related properties */
-            	for(final NavigatorSortType sortType : NavigatorSortType.values()) {
-            		navProperties.remove(sortType.toString().toLowerCase(Locale.ROOT));
-            	}
-            	for(final NavigatorSortDirection sortDir : NavigatorSortDirection.values()) {
-            		navProperties.remove(sortDir.toString().toLowerCase(Locale.ROOT));
-            	}
-            	final String[] navfielddef = navProperties.toArray(new String[navProperties.size()]);
+            	final String[] navfielddef = parseYearNavFieldDef(navConfig);
             		
             	if (navfielddef.length > 1) {
             		try {
@@ -236,4 +226,32 @@ public class NavigatorPlugins {
         return navigatorPlugins;
     }
 
+    /**
+     * @param navConfig a year navigator configuration String : "year", "year:fieldname" or "year:fieldname:title" with optional sort properties
+     * @return the properties of the configuration without the sort properties
+     */
+    private static String[] parseYearNavFieldDef(final String navConfig) {
+    	final LinkedHashSet<String> navProperties = new LinkedHashSet<>();
+    	Collections.addAll(navProperties, navConfig.split(NAV_PROPS_CONFIG_SEPARATOR));
+
+    	/* Remove sort related properties */
+    	for(final NavigatorSortType sortType : NavigatorSortType.values()) {
+    		navProperties.remove(sortType.toString().toLowerCase(Locale.ROOT));
+    	}
+    	for(final NavigatorSortDirection sortDir : NavigatorSortDirection.values()) {
+    		navProperties.remove(sortDir.toString().toLowerCase(Locale.ROOT));
+    	}
+    	return navProperties.toArray(new String[navProperties.size()]);
+    }
+
+    /**
+     * @param navConfig a year navigator configuration String
+     * @return the date field counted by the year navigator : the field of the configuration or last_modified when there is none
+     * @throws IllegalArgumentException when the configured field is unknown
+     */
+    public static CollectionSchema getYearNavField(final String navConfig) {
+    	final String[] navfielddef = parseYearNavFieldDef(navConfig);
+    	return navfielddef.length > 1 ? CollectionSchema.valueOf(navfielddef[1]) : CollectionSchema.last_modified;
+    }
+
 }
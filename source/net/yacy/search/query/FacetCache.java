@@ -0,0 +1,219 @@
+// FacetCache.java
+// ---------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.search.query;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.solr.common.params.SolrParams;
+import org.apache.solr.common.util.NamedList;
+
+import net.yacy.cora.date.ISO8601Formatter;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.sorting.ClusteredScoreMap;
+import net.yacy.cora.sorting.ReversibleScoreMap;
+import net.yacy.kelondro.util.MemoryControl;
+
+/**
+ * A cache for the counts of the search navigators which are computed with facets of the Solr JSON Facet API.
+ * The counts of a facet do not depend on the page of a result list, so all pages of a query (and all search
+ * events of the same query) share them. Every navigator is cached on its own: the key of an entry is the scope
+ * of the query, which is built from all parameters which select the matching documents, and the definition of
+ * the facet. A query which shows another navigator or changes the sort of one navigator requests only the
+ * facets which are not cached. The size of the cache is limited by the number of entries; the least recently
+ * used entries are evicted first.
+ */
+public class FacetCache {
+
+    /** the name of the Solr parameter for the facets of the JSON Facet API */
+    public static final String JSON_FACET = "json.facet";
+
+    private static final class Entry {
+        private final ReversibleScoreMap<String> counts;
+        private final long time;
+
+        private Entry(final ReversibleScoreMap<String> counts) {
+            this.counts = counts;
+            this.time = System.currentTimeMillis();
+        }
+    }
+
+    private static final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(64, 0.75f, true); // access order
+    private static int maxSize = 0;
+    private static long lifetime = 600000;
+    public static final AtomicLong cacheHit = new AtomicLong(0), cacheMiss = new AtomicLong(0), cacheInsert = new AtomicLong(0), cacheEvict = new AtomicLong(0);
+
+    /**
+     * set the limits of the cache; a size of 0 switches the cache off
+     * @param size the maximum number of cached navigator counts
+     * @param maxAge the time in milliseconds after which the counts are not used any more
+     */
+    public static void setLimits(final int size, final long maxAge) {
+        synchronized (entries) {
+            maxSize = Math.max(0, size);
+            lifetime = maxAge;
+            evict();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * compute the scope of a query: all parameters except those which only select the part of the
+     * result list, the order, the fields, snippets and facets of the response
+     * @param params the parameters of a Solr query
+     * @return a string which is equal for all queries with the same matching documents
+     */
+    public static String scope(final SolrParams params) {
+        final TreeSet<String> names = new TreeSet<String>();
+        final Iterator<String> i = params.getParameterNamesIterator();
+        while (i.hasNext()) {
+            final String name = i.next();
+            if ("start".equals(name) || "rows".equals(name) || "sort".equals(name) || "fl".equals(name) ||
+                "partitions".equals(name) || JSON_FACET.equals(name) ||
+                "facet".equals(name) || name.startsWith("facet.") || name.startsWith("f.") ||
+                "hl".equals(name) || name.startsWith("hl.")) continue;
+            names.add(name);
+        }
+        final StringBuilder scope = new StringBuilder(200);
+        for (final String name: names) {
+            for (final String value: params.getParams(name)) {
+                scope.append(name).append('=').append(value).append('&');
+            }
+        }
+        return scope.toString();
+    }
+
+    /**
+     * get the counts of a navigator
+     * @param scope the scope of the query, computed with scope()
+     * @param facet the definition of the facet of the navigator
+     * @param maxAge the maximum age of the counts in milliseconds; the lifetime of the cache is used if it is smaller
+     * @return a copy of the counts which may be changed by the caller or null if there are none which are young enough
+     */
+    public static ReversibleScoreMap<String> get(final String scope, final String facet, final long maxAge) {
+        if (maxSize <= 0) return null;
+        final String key = scope + '*' + facet;
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && entry.time + Math.min(maxAge, lifetime) < System.currentTimeMillis()) {
+                if (entry.time + lifetime < System.currentTimeMillis()) entries.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            cacheMiss.incrementAndGet();
+            return null;
+        }
+        cacheHit.incrementAndGet();
+        return copy(entry.counts);
+    }
+
+    /**
+     * store the counts of a navigator
+     * @param scope the scope of the query, computed with scope()
+     * @param facet the definition of the facet of the navigator
+     * @param counts the counts computed by Solr; the cache stores a copy
+     */
+    public static void put(final String scope, final String facet, final ReversibleScoreMap<String> counts) {
+        if (maxSize <= 0 || counts == null) return;
+        if (MemoryControl.shortStatus()) {
+            clear();
+            return;
+        }
+        final Entry entry = new Entry(copy(counts));
+        synchronized (entries) {
+            entries.put(scope + '*' + facet, entry);
+            evict();
+        }
+        cacheInsert.incrementAndGet();
+    }
+
+    /**
+     * remove entries in order of their last access until the cache is below its limit
+     */
+    private static void evict() {
+        final Iterator<Map.Entry<String, Entry>> i = entries.entrySet().iterator();
+        final long expired = System.currentTimeMillis() - lifetime;
+        while (i.hasNext()) {
+            final Map.Entry<String, Entry> entry = i.next();
+            if (entries.size() <= maxSize && entry.getValue().time >= expired) break;
+            i.remove();
+            cacheEvict.incrementAndGet();
+        }
+    }
+
+    /**
+     * remove all entries; this must be done when the index changes in a way that cached counts are wrong
+     */
+    public static void clear() {
+        synchronized (entries) {
+            cacheEvict.addAndGet(entries.size());
+            entries.clear();
+        }
+    }
+
+    public static int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public static int maxSize() {
+        return maxSize;
+    }
+
+    private static ReversibleScoreMap<String> copy(final ReversibleScoreMap<String> counts) {
+        final ReversibleScoreMap<String> copy = new ClusteredScoreMap<String>(UTF8.insensitiveUTF8Comparator);
+        for (final String key: counts) copy.set(key, counts.get(key));
+        return copy;
+    }
+
+    /**
+     * convert the buckets of a terms or range facet of a Solr JSON Facet API response to navigator counts.
+     * Date values are written in the same format as the values of the classic Solr facets.
+     * @param facet the response of one facet, a list with the entry "buckets"; may be null if the query has no results
+     * @return the counts of all buckets with a non-empty value and a count greater than zero
+     */
+    public static ReversibleScoreMap<String> counts(final NamedList<?> facet) {
+        final ReversibleScoreMap<String> result = new ClusteredScoreMap<String>(UTF8.insensitiveUTF8Comparator);
+        final Object buckets = facet == null ? null : facet.get("buckets");
+        if (!(buckets instanceof List)) return result;
+        for (final Object b: (List<?>) buckets) {
+            if (!(b instanceof NamedList)) continue;
+            final Object val = ((NamedList<?>) b).get("val");
+            final Object count = ((NamedList<?>) b).get("count");
+            if (val == null || !(count instanceof Number)) continue;
+            final int c = ((Number) count).intValue();
+            if (c == 0) continue;
+            final String name = val instanceof Date ? ISO8601Formatter.FORMATTER.format((Date) val) : val.toString();
+            if (name.length() == 0) continue; // facet entry without text is not useful
+            result.set(name, c);
+        }
+        return result;
+    }
+}
@@ -31,9 +31,10 @@ import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -51,7 +52,6 @@ import org.apache.lucene.util.automaton.RegExp;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrQuery.SortClause;
 import org.apache.solr.common.params.DisMaxParams;
-import org.apache.solr.common.params.FacetParams;
 
 import net.yacy.cora.document.analysis.Classification;
 import net.yacy.cora.document.analysis.Classification.ContentDomain;
@@ -66,6 +66,7 @@ import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.JSONObject;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.document.LibraryProvider;
 import net.yacy.document.ProbabilisticClassifier;
@@ -92,16 +93,15 @@ public final class QueryParams {
     public static final int FACETS_DATE_MAXCOUNT_DEFAULT = 640;
     
 	/**
-	 * The Solr facet limit to apply when resorting or filtering is done in a YaCy
-	 * search navigator. For example sort by ascending counts or by descending
-	 * indexed terms are not supported with Solr 6.6 (but should be on Solr 7 JSON
-	 * Facet API - see
-	 * https://lucene.apache.org/solr/guide/7_6/json-facet-api.html). The limit
-	 * defined here is set large enough so that resorting can be done by the YaCy
-	 * Navigator itself. We don't set the facet to unlimited to prevent a too high
-	 * memory usage.
+	 * The Solr facet limit to apply when filtering is done in a YaCy search
+	 * navigator. The limit defined here is set large enough so that the navigator
+	 * can apply its rules without missing elements. We don't set the facet to
+	 * unlimited to prevent a too high memory usage.
 	 */
 	private static final int FACETS_MAXCOUNT_FOR_RESORT_ON_SEARCH_NAV = 100000;
+
+	/** The Solr date math expression for the first year counted by a year navigator with a range facet */
+	private static final String FACETS_YEAR_RANGE_START = "NOW/YEAR-50YEARS";
     
     public enum Searchdom {
         LOCAL, CLUSTER, GLOBAL;
@@ -205,6 +205,9 @@ public final class QueryParams {
     
     /** Map from facet/navigator name to sort properties */
     public Map<String, NavigatorSort> facetfields;
+
+    /** Date fields of the year navigators which are counted by year with a range facet */
+    private final Set<String> yearfacetfields;
     private SolrQuery cachedQuery;
     private CollectionConfiguration solrSchema;
     public final int timezoneOffset;
@@ -322,6 +325,16 @@ public final class QueryParams {
             if (f != null && (solrSchema.contains(f) || f == CollectionSchema.author_sxt || f == CollectionSchema.coordinate_p_0_coordinate))
                 this.facetfields.put(f.getSolrFieldName(), NavigatorPlugins.parseNavSortConfig(navConfig));
         }
+        this.yearfacetfields = new LinkedHashSet<>();
+        for (final String navConfig: navConfigs) {
+            if (!"year".equals(NavigatorPlugins.getNavName(navConfig))) continue;
+            try {
+                final CollectionSchema f = NavigatorPlugins.getYearNavField(navConfig);
+                if (solrSchema.contains(f)) this.yearfacetfields.add(f.getSolrFieldName());
+            } catch (final IllegalArgumentException e) {
+                // the wrong configuration is logged when the navigator is created
+            }
+        }
         if (LibraryProvider.autotagging != null) for (Tagging v: LibraryProvider.autotagging.getVocabularies()) {
             if (v.isFacet()) {
                 this.facetfields.put(CollectionSchema.VOCABULARY_PREFIX + v.getName() + CollectionSchema.VOCABULARY_TERMS_SUFFIX, NavigatorSort.COUNT_DESC);
@@ -624,7 +637,10 @@ public final class QueryParams {
     private SolrQuery solrQuery(final boolean getFacets, final List<String> filterQueries) {
         if (this.cachedQuery != null) {
             this.cachedQuery.setStart(this.offset);
-            if (!getFacets) this.cachedQuery.setFacet(false);
+            if (!getFacets) {
+                this.cachedQuery.setFacet(false);
+                this.cachedQuery.remove(FacetCache.JSON_FACET);
+            }
             return this.cachedQuery;
         }
         
@@ -678,7 +694,10 @@ public final class QueryParams {
     private SolrQuery solrImageQuery(final boolean getFacets, final boolean strictContentDom) {
         if (this.cachedQuery != null) {
             this.cachedQuery.setStart(this.offset);
-            if (!getFacets) this.cachedQuery.setFacet(false);
+            if (!getFacets) {
+                this.cachedQuery.setFacet(false);
+                this.cachedQuery.remove(FacetCache.JSON_FACET);
+            }
             return this.cachedQuery;
         }
         
@@ -703,58 +722,96 @@ public final class QueryParams {
     }
     
 	/**
-	 * Fill the Solr parameters with the relevant values to apply the search
-	 * navigator sort properties.
+	 * Build the definition of a terms facet of the Solr JSON Facet API which applies
+	 * the search navigator sort properties. Filters tagged with the field name are
+	 * excluded from the facet domain, so that the other values of a selected
+	 * navigator entry are still counted.
 	 * 
-	 * @param params  the Solr parameters to modify
-	 * @param a       Solr field name
-	 * @param navSort navigator sort properties to apply
+	 * @param solrFieldName a Solr field name
+	 * @param navSort       navigator sort properties to apply
+	 * @param limit         the maximum number of facet values
+	 * @return a JSON object
 	 */
-	private void fillSolrParamWithNavSort(final SolrQuery params, final String solrFieldName,
-			final NavigatorSort navSort) {
-		if (params != null && solrFieldName != null && navSort != null) {
-			switch (navSort) {
-			case COUNT_ASC:
-				params.setParam("f." + solrFieldName + ".facet.sort", FacetParams.FACET_SORT_COUNT);
-				/*
-				 * Ascending count is not supported with Solr 6.6 (but should be on Solr 7 JSON
-				 * Facet API https://lucene.apache.org/solr/guide/7_6/json-facet-api.html) So we
-				 * use a here a high limit and ascending resorting will be done by YaCy
-				 * Navigator
-				 */
-				params.setParam("f." + solrFieldName + ".facet.limit",
-						String.valueOf(FACETS_MAXCOUNT_FOR_RESORT_ON_SEARCH_NAV));
-				break;
-			case LABEL_DESC:
-				/*
-				 * Descending index order is not supported with Solr 6.6 (but should be on Solr
-				 * 7 JSON Facet API
-				 * https://lucene.apache.org/solr/guide/7_6/json-facet-api.html) So we use a
-				 * here a high limit and descending resorting will be done by YaCy Navigator
-				 */
-				params.setParam("f." + solrFieldName + ".facet.sort", FacetParams.FACET_SORT_INDEX);
-				params.setParam("f." + solrFieldName + ".facet.limit",
-						String.valueOf(FACETS_MAXCOUNT_FOR_RESORT_ON_SEARCH_NAV));
-				break;
-			case LABEL_ASC:
-				params.setParam("f." + solrFieldName + ".facet.sort", FacetParams.FACET_SORT_INDEX);
-				break;
-			default:
-				/* Nothing to add for COUNT_DESC which is the default for Solr */
-				break;
-			}
+	protected static String termsFacet(final String solrFieldName, final NavigatorSort navSort, final int limit) {
+		final String sort;
+		switch (navSort == null ? NavigatorSort.COUNT_DESC : navSort) {
+		case COUNT_ASC:
+			sort = "count asc";
+			break;
+		case LABEL_DESC:
+			sort = "index desc";
+			break;
+		case LABEL_ASC:
+			sort = "index asc";
+			break;
+		default:
+			sort = "count desc";
+			break;
+		}
+		final String field = JSONObject.quote(solrFieldName);
+		return "{\"type\":\"terms\",\"field\":" + field + ",\"limit\":" + limit + ",\"mincount\":1,\"sort\":\"" + sort
+				+ "\",\"domain\":{\"excludeTags\":" + field + "}}";
+	}
+
+	/**
+	 * Build the definition of a range facet of the Solr JSON Facet API which counts
+	 * the documents by the year of a date field. The value of a bucket is the start
+	 * of the year, which is shortened to the year by the YearNavigator.
+	 * 
+	 * @param solrFieldName a Solr date field name
+	 * @return a JSON object
+	 */
+	protected static String yearFacet(final String solrFieldName) {
+		return "{\"type\":\"range\",\"field\":" + JSONObject.quote(solrFieldName) + ",\"start\":\"" + FACETS_YEAR_RANGE_START
+				+ "\",\"end\":\"NOW/YEAR+1YEAR\",\"gap\":\"+1YEAR\",\"mincount\":1}";
+	}
+
+	/**
+	 * @param facets a map from the facet names to their definitions
+	 * @return the value of the Solr json.facet parameter
+	 */
+	public static String jsonFacet(final Map<String, String> facets) {
+		final StringBuilder json = new StringBuilder(facets.size() * 160);
+		json.append('{');
+		for (final Entry<String, String> facet : facets.entrySet()) {
+			if (json.length() > 1) json.append(',');
+			json.append(JSONObject.quote(facet.getKey())).append(':').append(facet.getValue());
+		}
+		return json.append('}').toString();
+	}
 
-			if (CollectionSchema.language_s.getSolrFieldName().equals(solrFieldName)
+	/**
+	 * All navigator counts of a query are computed with one request of the Solr
+	 * JSON Facet API: terms facets for the facet fields and range facets for the
+	 * year navigators on fields which are not a facet field. The name of a facet
+	 * is the name of the Solr field.
+	 * 
+	 * @return a map from the facet names to their definitions
+	 */
+	public Map<String, String> getFacetDefinitions() {
+		final Map<String, String> facets = new LinkedHashMap<>();
+		for (final Entry<String, NavigatorSort> entry : this.facetfields.entrySet()) {
+			final String solrFieldName = entry.getKey();
+			final int limit;
+			if (CollectionSchema.dates_in_content_dts.getSolrFieldName().equals(solrFieldName)) {
+				limit = this.dateFacetMaxCount; // the year constraint should cause that limitation already
+			} else if (CollectionSchema.language_s.getSolrFieldName().equals(solrFieldName)
 					|| CollectionSchema.url_file_ext_s.getSolrFieldName().equals(solrFieldName)
 					|| CollectionSchema.collection_sxt.getSolrFieldName().equals(solrFieldName)) {
 				/*
 				 * For these search navigators additional filtering or resorting is done in the navigator itself. 
 				 * So we use a here a high limit so that the navigator apply its rules without missing elements.
 				 */
-				params.setParam("f." + solrFieldName + ".facet.limit",
-						String.valueOf(FACETS_MAXCOUNT_FOR_RESORT_ON_SEARCH_NAV));
+				limit = FACETS_MAXCOUNT_FOR_RESORT_ON_SEARCH_NAV;
+			} else {
+				limit = this.standardFacetsMaxCount;
 			}
+			facets.put(solrFieldName, termsFacet(solrFieldName, entry.getValue(), limit));
 		}
+		for (final String solrFieldName : this.yearfacetfields) {
+			if (!facets.containsKey(solrFieldName)) facets.put(solrFieldName, yearFacet(solrFieldName));
+		}
+		return facets;
 	}
     
     private SolrQuery getBasicParams(final boolean getFacets, final List<String> fqs) {
@@ -777,32 +834,11 @@ public final class QueryParams {
             params.setFilterQueries(fqs.toArray(new String[fqs.size()]));
         }
         
-        // set facet query attributes
-        if (getFacets && this.facetfields.size() > 0) {
-            params.setFacet(true);
-            params.setFacetMinCount(1);
-            params.setFacetLimit(this.standardFacetsMaxCount);
-            params.setFacetSort(FacetParams.FACET_SORT_COUNT);
-            params.setParam(FacetParams.FACET_METHOD, FacetParams.FACET_METHOD_enum); // fight the fieldcache
-            for (final Entry<String, NavigatorSort> entry : this.facetfields.entrySet()) {
-            	params.addFacetField("{!ex=" + entry.getKey() + "}" + entry.getKey()); // params.addFacetField("{!ex=" + field + "}" + field);
-                fillSolrParamWithNavSort(params, entry.getKey(), entry.getValue());                	
-            }
-            final NavigatorSort datesInContentSort = this.facetfields.get(CollectionSchema.dates_in_content_dts.name());
-            if (datesInContentSort != null) {
-            	params.setParam(FacetParams.FACET_RANGE, CollectionSchema.dates_in_content_dts.name());
-                String start = new Date(System.currentTimeMillis() - 1000L * 60L * 60L * 24L * 3).toInstant().toString();
-                String end = new Date(System.currentTimeMillis() + 1000L * 60L * 60L * 24L * 3).toInstant().toString();
-                params.setParam("f." + CollectionSchema.dates_in_content_dts.getSolrFieldName() + ".facet.range.start", start);
-                params.setParam("f." + CollectionSchema.dates_in_content_dts.getSolrFieldName() + ".facet.range.end", end);
-                params.setParam("f." + CollectionSchema.dates_in_content_dts.getSolrFieldName() + ".facet.range.gap", "+1DAY");
-                fillSolrParamWithNavSort(params, CollectionSchema.dates_in_content_dts.getSolrFieldName(), datesInContentSort);
-                params.setParam("f." + CollectionSchema.dates_in_content_dts.getSolrFieldName() + ".facet.limit", Integer.toString(this.dateFacetMaxCount)); // the year constraint should cause that limitation already
-            }
-            //for (String k: params.getParameterNames()) {ArrayList<String> al = new ArrayList<>(); for (String s: params.getParams(k)) al.add(s); System.out.println("Parameter: " + k + "=" + al.toString());}
-            //http://localhost:8090/solr/collection1/select?q=*:*&rows=0&facet=true&facet.field=dates_in_content_dts&f.dates_in_content_dts.facet.limit=730&f.dates_in_content_dts.facet.sort=index
-        } else {
-            params.setFacet(false);
+        // set facet query attributes: all navigators are computed with one request of the JSON Facet API
+        if (getFacets) {
+            final Map<String, String> facets = getFacetDefinitions();
+            if (facets.size() > 0) params.setParam(FacetCache.JSON_FACET, jsonFacet(facets));
+            //http://localhost:8090/solr/collection1/select?q=*:*&rows=0&json.facet={"dates_in_content_dts":{"type":"terms","field":"dates_in_content_dts","limit":730,"sort":"index asc"}}
         }
         params.setFields("*", "score"); // we need the score for post-ranking
         return params;
@@ -0,0 +1,209 @@
+// ResultPageCache.java
+// --------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.search.query;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.kelondro.util.MemoryControl;
+
+/**
+ * A cache for finished, rendered result pages of the search API. In contrast to the SearchEventCache,
+ * which keeps the whole search state of an event alive, this cache holds only the bytes of a result page,
+ * so a repeated query is answered without a SearchEvent. The size of the cache is limited by the number
+ * of bytes of all pages; the least recently used pages are evicted first.
+ * The key of a page is built from the normalized query (QueryParams.id), the page offset and size and
+ * everything else which changes the rendered output. Only pages of search events which are complete
+ * (see SearchEvent.isPageComplete) are stored, a page which is still filled by running feeders is not.
+ */
+public class ResultPageCache {
+
+    /** request attribute for a cached page which shall be written instead of the template */
+    public static final String ATTRIBUTE_PAGE = "net.yacy.search.query.ResultPageCache.page";
+
+    /** request attribute for the key of a page which shall be stored in the cache after it has been rendered */
+    public static final String ATTRIBUTE_KEY = "net.yacy.search.query.ResultPageCache.key";
+
+    /** request attribute for the search event of a page which shall be stored in the cache after it has been rendered */
+    public static final String ATTRIBUTE_EVENT = "net.yacy.search.query.ResultPageCache.event";
+
+    private static final int ENTRY_OVERHEAD = 100; // estimated bytes of map entry, page object and key
+
+    /**
+     * a rendered result page
+     */
+    public static final class Page {
+        private final String mimeType;
+        private final byte[] content;
+        private final long time;
+
+        private Page(final String mimeType, final byte[] content) {
+            this.mimeType = mimeType;
+            this.content = content;
+            this.time = System.currentTimeMillis();
+        }
+
+        public String getMimeType() {
+            return this.mimeType;
+        }
+
+        public byte[] getContent() {
+            return this.content;
+        }
+
+        private long weight(final String key) {
+            return this.content.length + 2L * key.length() + ENTRY_OVERHEAD;
+        }
+    }
+
+    private static final LinkedHashMap<String, Page> pages = new LinkedHashMap<String, Page>(64, 0.75f, true); // access order
+    private static long maxBytes = 0, lifetime = 600000, bytes = 0;
+    public static final AtomicLong cacheHit = new AtomicLong(0), cacheMiss = new AtomicLong(0), cacheInsert = new AtomicLong(0), cacheEvict = new AtomicLong(0);
+
+    /**
+     * set the limits of the cache; a size of 0 switches the cache off
+     * @param size the maximum number of bytes of all pages
+     * @param maxAge the time in milliseconds after which a page is not used any more
+     */
+    public static void setLimits(final long size, final long maxAge) {
+        synchronized (pages) {
+            maxBytes = Math.max(0, size);
+            lifetime = maxAge;
+            evict(0);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * compute the key of a result page
+     * @param query the query; the id of the query is the normalized form of the query goal, the modifiers, the ranking and the navigator selections
+     * @param ext the file extension of the result page which defines the format
+     * @param context the protocol, host and port of the peer as seen by the client, which is part of the links in the page
+     * @param authenticated true if the page is rendered for an authenticated user
+     * @param callback the jsonp callback name or null
+     */
+    public static String key(final QueryParams query, final String ext, final String context, final boolean authenticated, final String callback) {
+        final StringBuilder key = new StringBuilder(200);
+        key.append(query.id(false));
+        key.append('*').append(query.offset).append('*').append(query.itemsPerPage());
+        key.append('*').append(query.isLocal() ? 'l' : 'g');
+        key.append('*').append(ext).append('*').append(context).append('*').append(authenticated ? 'a' : 'p');
+        if (callback != null) key.append('*').append(callback);
+        return key.toString();
+    }
+
+    /**
+     * get a page from the cache
+     * @param maxAge the maximum age of the page in milliseconds; the lifetime of the cache is used if it is smaller
+     * @return the page or null if there is none which is young enough
+     */
+    public static Page get(final String key, final long maxAge) {
+        if (maxBytes <= 0) return null;
+        Page page;
+        synchronized (pages) {
+            page = pages.get(key);
+            if (page != null && page.time + Math.min(maxAge, lifetime) < System.currentTimeMillis()) {
+                if (page.time + lifetime < System.currentTimeMillis()) remove(key);
+                page = null;
+            }
+        }
+        if (page == null) cacheMiss.incrementAndGet(); else cacheHit.incrementAndGet();
+        return page;
+    }
+
+    /**
+     * store a rendered page
+     * @param key the key computed with key()
+     * @param mimeType the mime type of the page
+     * @param content the rendered page
+     */
+    public static void put(final String key, final String mimeType, final byte[] content) {
+        if (maxBytes <= 0 || content == null) return;
+        final Page page = new Page(mimeType, content);
+        final long weight = page.weight(key);
+        if (weight > maxBytes / 4) return; // a single page shall not replace a large part of the cache
+        if (MemoryControl.shortStatus()) {
+            clear();
+            return;
+        }
+        synchronized (pages) {
+            final Page old = pages.put(key, page);
+            if (old != null) bytes -= old.weight(key);
+            bytes += weight;
+            evict(0);
+        }
+        cacheInsert.incrementAndGet();
+    }
+
+    private static void remove(final String key) {
+        final Page page = pages.remove(key);
+        if (page != null) bytes -= page.weight(key);
+    }
+
+    /**
+     * remove pages in order of their last access until the cache is below its limit
+     * @param reserve the number of bytes which shall be free after the eviction
+     */
+    private static void evict(final long reserve) {
+        final Iterator<Map.Entry<String, Page>> i = pages.entrySet().iterator();
+        final long expired = System.currentTimeMillis() - lifetime;
+        while (i.hasNext()) {
+            final Map.Entry<String, Page> entry = i.next();
+            if (bytes + reserve <= maxBytes && entry.getValue().time >= expired) break;
+            i.remove();
+            bytes -= entry.getValue().weight(entry.getKey());
+            cacheEvict.incrementAndGet();
+        }
+    }
+
+    /**
+     * remove all pages; this must be done when the index changes in a way that cached results are wrong
+     */
+    public static void clear() {
+        synchronized (pages) {
+            cacheEvict.addAndGet(pages.size());
+            pages.clear();
+            bytes = 0;
+        }
+    }
+
+    public static int size() {
+        synchronized (pages) {
+            return pages.size();
+        }
+    }
+
+    /**
+     * @return the number of bytes of all pages including an estimated overhead
+     */
+    public static long bytes() {
+        synchronized (pages) {
+            return bytes;
+        }
+    }
+
+    public static long maxBytes() {
+        return maxBytes;
+    }
+}
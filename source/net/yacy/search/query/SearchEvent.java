@@ -139,17 +139,19 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
     public QueryParams query;
     public final SeedDB peers;
     final WorkTables workTables;
+    /** all concurrent tasks of this search event; they are cancelled together when the event is cleaned up */
+    public final SearchTaskScope tasks;
     public final SecondarySearchSuperviser secondarySearchSuperviser;
     public final List<RemoteSearch> primarySearchThreadsL;
-    public final List<Thread> nodeSearchThreads;
-    public Thread[] secondarySearchThreads;
+    public final List<SearchTask> nodeSearchThreads;
+    public SearchTask[] secondarySearchThreads;
     public final SortedSet<byte[]> preselectedPeerHashes;
     private final SortedMap<byte[], Integer> IACount;
     private final SortedMap<byte[], String> IAResults;
     private final SortedMap<byte[], HeuristicResult> heuristics;
     private byte[] IAmaxcounthash, IAneardhthash;
-    public Thread rwiProcess;
-    public Thread localsolrsearch;
+    public SearchTask rwiProcess;
+    public SearchTask localsolrsearch;
     
     /** Offset of the next local Solr index request
      * Example : last local request with offset=10 and itemsPerPage=20, sets this attribute to 30. */
@@ -387,8 +389,9 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         }
 
         this.snippets = new ConcurrentHashMap<String, LinkedHashSet<String>>(); 
+        this.tasks = new SearchTaskScope("SearchEvent " + this.query.getQueryGoal().getQueryString(false));
         this.secondarySearchSuperviser = (this.query.getQueryGoal().getIncludeHashes().size() > 1) ? new SecondarySearchSuperviser(this) : null; // generate abstracts only for combined searches
-        if (this.secondarySearchSuperviser != null) this.secondarySearchSuperviser.start();
+        if (this.secondarySearchSuperviser != null) this.tasks.fork(this.secondarySearchSuperviser);
         this.secondarySearchThreads = null;
         this.preselectedPeerHashes = preselectedPeerHashes;
         this.IAResults = new TreeMap<byte[], String>(Base64Order.enhancedCoder);
@@ -453,8 +456,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         this.rwiProcess = null;
         if (query.getSegment().connectedRWI() && !Switchboard.getSwitchboard().getConfigBool(SwitchboardConstants.DEBUG_SEARCH_LOCAL_DHT_OFF, false)) {
             // we start the local search only if this peer is doing a remote search or when it is doing a local search and the peer is old
-            rwiProcess = new RWIProcess(this.localsolrsearch);
-            rwiProcess.start();
+            rwiProcess = this.tasks.fork(new RWIProcess(this.localsolrsearch));
         }
 
         if (this.remote) {
@@ -466,11 +468,11 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                 this.nodeSearchThreads = null;
             } else {
                 this.primarySearchThreadsL = new ArrayList<RemoteSearch>();
-                this.nodeSearchThreads = new ArrayList<Thread>();
+                this.nodeSearchThreads = new ArrayList<SearchTask>();
                 // start this concurrently because the remote search needs an enumeration
                 // of the remote peers which may block in some cases when i.e. DHT is active
                 // at the same time.
-                new Thread("SearchEvent.primaryRemoteSearches") {
+                this.tasks.fork(new SearchTask("SearchEvent.primaryRemoteSearches") {
                     @Override
                     public void run() {
                         RemoteSearch.primaryRemoteSearches(
@@ -480,7 +482,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                             Switchboard.urlBlacklist,
                             (SearchEvent.this.query.domType == QueryParams.Searchdom.GLOBAL) ? null : preselectedPeerHashes);
                     }
-                }.start();
+                });
             }
             if ( this.primarySearchThreadsL != null ) {
                 ConcurrentLog.fine("SEARCH_EVENT", "STARTING "
@@ -585,11 +587,11 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
     /**
      * A concurrent task to perform the current search query on the local RWI.
      */
-    private class RWIProcess extends Thread {
+    private class RWIProcess extends SearchTask {
     
-        final Thread waitForThread;
+        final SearchTask waitForThread;
         
-        public RWIProcess(final Thread waitForThread) {
+        public RWIProcess(final SearchTask waitForThread) {
             super("SearchEvent.RWIProcess(" + (waitForThread != null ? waitForThread.getName() : "") + ")");
             this.waitForThread = waitForThread;
         }
@@ -609,6 +611,10 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
             // so following sortings together with the global results will be fast
             try {
                 final long timer = System.currentTimeMillis();
+                // the join may stop early in the order of the url hashes, before any ranking; 0 (default) joins all references
+                final int joinPerResult = Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.SEARCH_RWI_JOIN_LIMIT, SwitchboardConstants.SEARCH_RWI_JOIN_LIMIT_DEFAULT);
+                final int joinLimit = joinPerResult <= 0 ? Integer.MAX_VALUE :
+                    (int) Math.min(Integer.MAX_VALUE, Math.max(max_results_rwi, (long) joinPerResult * SearchEvent.this.query.neededResults()));
                 TermSearch<WordReference> search =
                     SearchEvent.this.query
                         .getSegment()
@@ -618,7 +624,8 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                                 SearchEvent.this.query.getQueryGoal().getExcludeHashes(),
                             null,
                             Segment.wordReferenceFactory,
-                            SearchEvent.this.query.maxDistance);
+                            SearchEvent.this.query.maxDistance,
+                            joinLimit);
                 SearchEvent.this.localSearchInclusion = search.inclusion();
                 ReferenceContainer<WordReference> index = search.joined();
                 if ( !index.isEmpty() ) {
@@ -628,7 +635,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                     }
                     
                     // add the index to the result
-                    int successcount = addRWIs(index, true, "local index: " + SearchEvent.this.query.getSegment().getLocation(), index.size(), SearchEvent.this.maxtime);
+                    int successcount = addRWIs(index, true, "local index: " + SearchEvent.this.query.getSegment().getLocation(), search.joinedEstimatedSize(), SearchEvent.this.maxtime);
                     if (successcount == 0 &&
                         SearchEvent.this.query.getQueryGoal().getIncludeHashes().has(Segment.catchallHash) &&
                         SearchEvent.this.query.modifier.sitehost != null && SearchEvent.this.query.modifier.sitehost.length() > 0
@@ -644,11 +651,12 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                                             SearchEvent.this.query.getQueryGoal().getExcludeHashes(),
                                         null,
                                         Segment.wordReferenceFactory,
-                                        SearchEvent.this.query.maxDistance);
+                                        SearchEvent.this.query.maxDistance,
+                                        joinLimit);
                         SearchEvent.this.localSearchInclusion = search.inclusion();
                         index = search.joined();
                         if (!index.isEmpty()) {
-                            successcount = addRWIs(index, true, "local index: " + SearchEvent.this.query.getSegment().getLocation(), index.size(), SearchEvent.this.maxtime);
+                            successcount = addRWIs(index, true, "local index: " + SearchEvent.this.query.getSegment().getLocation(), search.joinedEstimatedSize(), SearchEvent.this.maxtime);
                         }
                     }
                     EventTracker.update(
@@ -662,6 +670,8 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                                 false);
                     SearchEvent.this.addFinalize();
                 }
+            } catch (final InterruptedException e ) {
+                // the search event was cancelled
             } catch (final Exception e ) {
                 ConcurrentLog.logException(e);
             } finally {
@@ -845,31 +855,8 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
 
     protected void cleanup() {
 
-        // stop all threads
-        if (this.localsolrsearch != null) {
-            if (localsolrsearch.isAlive()) synchronized (this.localsolrsearch) {this.localsolrsearch.interrupt();}
-        }
-        if (this.nodeSearchThreads != null) {
-            for (final Thread search : this.nodeSearchThreads) {
-                if (search != null) {
-                    synchronized (search) {if (search.isAlive()) {search.interrupt();}}
-                }
-            }
-        }
-        if (this.primarySearchThreadsL != null) {
-            for (final RemoteSearch search : this.primarySearchThreadsL) {
-                if (search != null) {
-                    synchronized (search) {if (search.isAlive()) {search.interrupt();}}
-                }
-            }
-        }
-        if (this.secondarySearchThreads != null) {
-            for (final Thread search : this.secondarySearchThreads ) {
-                if (search != null) {
-                    synchronized (search) {if (search.isAlive()) {search.interrupt();}}
-                }
-            }
-        }
+        // stop all tasks: local and remote searches, the secondary search superviser and snippet fetches
+        this.tasks.cancel();
 
         // clear all data structures
         if (this.preselectedPeerHashes != null) this.preselectedPeerHashes.clear();
@@ -909,7 +896,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         return this.primarySearchThreadsL;
     }
 
-    public Thread[] getSecondarySearchThreads() {
+    public SearchTask[] getSecondarySearchThreads() {
         return this.secondarySearchThreads;
     }
 
@@ -1201,7 +1188,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
 		/* Iterate over active navigator plugins to let them update the counters */
 		for (String s : this.navigatorPlugins.keySet()) {
 			Navigator navi = this.navigatorPlugins.get(s);
-			if (navi != null && facets == null || !facets.containsKey(navi.getIndexFieldName())) {
+			if (navi != null && (facets == null || !facets.containsKey(navi.getIndexFieldName()))) {
 				navi.incDoc(doc);
 			}
 		}
@@ -1857,7 +1844,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                 success = true;
             }
         } else {
-            Thread t = new Thread("SearchEvent.drainStacksToResult.oneFilteredFromRWI") {
+            SearchTask t = new SearchTask("SearchEvent.drainStacksToResult.oneFilteredFromRWI") {
                 @Override
                 public void run() {
                     SearchEvent.this.oneFeederStarted();
@@ -1878,7 +1865,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                     }
                 }
             };
-            if (SearchEvent.this.query.snippetCacheStrategy == null) t.run(); else t.start(); //no need for concurrency if there is no latency
+            if (SearchEvent.this.query.snippetCacheStrategy == null) t.run(); else this.tasks.fork(t); //no need for concurrency if there is no latency
         }
         return success;
 	}
@@ -1919,7 +1906,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                     success = true;
                 } else {
 
-                    new Thread("SearchEvent.drainStacksToResult.getSnippet") {
+                    this.tasks.fork(new SearchTask("SearchEvent.drainStacksToResult.getSnippet") {
                         @Override
                         public void run() {
                             SearchEvent.this.oneFeederStarted();
@@ -1934,7 +1921,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                                 SearchEvent.this.oneFeederTerminated();
                             }
                         }
-                    }.start();
+                    });
                 }
             }
         }
@@ -2400,6 +2387,20 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
             this.feedersAlive.get() == 0;
     }
 
+    /**
+     * Check whether the result page of the query is complete: all feeders are terminated, no snippet
+     * is fetched any more and either all requested items are in the result list or no further result
+     * can be added to it. A complete page does not change when it is rendered again.
+     * @return true when the result page will not change any more
+     */
+    public boolean isPageComplete() {
+        if (!isFeedingFinished() || this.snippetFetchAlive.get() > 0) return false;
+        if (this.localsolrsearch != null && this.localsolrsearch.isAlive()) return false;
+        if (this.resultList.sizeAvailable() >= this.query.neededResults()) return true;
+        // less results than requested: complete only if nothing is left which could fill the page
+        return this.nodeStack.sizeQueue() == 0 && rwiIsEmpty() && this.local_solr_stored.get() <= this.localsolroffset;
+    }
+
     /**
      * method to signal the incoming stack that one feeder has terminated
      */
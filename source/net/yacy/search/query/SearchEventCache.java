@@ -64,6 +64,8 @@ public class SearchEventCache {
     }
 
     public static boolean delete(final String urlhash) {
+        ResultPageCache.clear(); // the url may be on any cached result page
+        FacetCache.clear(); // and may be counted in any cached navigator
         synchronized (lastEvents) {
             for (final SearchEvent event: lastEvents.values()) {
                 if (event.delete(urlhash)) return true;
@@ -75,6 +77,10 @@ public class SearchEventCache {
     public static void cleanupEvents(boolean all) {
         // remove old events in the event cache
         if (MemoryControl.shortStatus()) all = true;
+        if (all) {
+            ResultPageCache.clear();
+            FacetCache.clear();
+        }
         // the less memory is there, the less time is acceptable for elements in the cache
         final long memx = MemoryControl.available();
         final long acceptTime = memx > memlimitHigh ? eventLifetimeBigMem : memx > memlimitMedium ? eventLifetimeMediumMem : eventLifetimeShortMem;
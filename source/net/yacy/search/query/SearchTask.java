@@ -0,0 +1,152 @@
+/**
+ *  SearchTask
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.query;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * A concurrent activity of a search event. A task is started with SearchTaskScope.fork() and runs
+ * on a thread of the shared search executor instead of an own thread. The methods getName(), isAlive(),
+ * join() and interrupt() behave like those of a Thread, so code which waits for a search activity
+ * does not need to know how it is executed.
+ * A task which is interrupted before it was started is never executed.
+ */
+public abstract class SearchTask implements Runnable {
+
+    private final String name;
+    private final CountDownLatch finished;
+    private SearchTaskScope scope;   // the scope which executes this task or null if the task was not forked
+    private Thread runner;           // the thread which executes the task at this moment
+    private boolean cancelled;
+
+    public SearchTask(final String name) {
+        this.name = name;
+        this.finished = new CountDownLatch(1);
+        this.scope = null;
+        this.runner = null;
+        this.cancelled = false;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * the work of the task; an interrupt of the executing thread means that the task was cancelled
+     */
+    @Override
+    public abstract void run();
+
+    /**
+     * called by the scope when the task was forked
+     */
+    protected synchronized void forked(final SearchTaskScope s) {
+        this.scope = s;
+    }
+
+    /**
+     * execute the task in the current thread, called by the executor of the scope
+     */
+    protected final void execute() {
+        final Thread thread = Thread.currentThread();
+        synchronized (this) {
+            if (this.cancelled) {
+                finish();
+                return;
+            }
+            this.runner = thread;
+        }
+        final String threadName = thread.getName();
+        thread.setName(this.name);
+        try {
+            run();
+        } catch (final Throwable e) {
+            ConcurrentLog.logException(e);
+        } finally {
+            synchronized (this) {
+                this.runner = null;
+            }
+            // the thread is re-used for other tasks; an interrupt of this task must not hit the next one
+            Thread.interrupted();
+            thread.setName(threadName);
+            finish();
+        }
+    }
+
+    private void finish() {
+        final SearchTaskScope s;
+        synchronized (this) {
+            s = this.scope;
+        }
+        // leave the scope before the joining threads are released, so they see a scope without this task
+        if (s != null) s.finished(this);
+        this.finished.countDown();
+    }
+
+    /**
+     * @return true if the task was forked and is not yet finished
+     */
+    public synchronized boolean isAlive() {
+        return this.scope != null && this.finished.getCount() > 0;
+    }
+
+    /**
+     * @return true if the task was interrupted
+     */
+    public synchronized boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * wait until the task is finished; returns immediately if the task was never forked
+     * @throws InterruptedException
+     */
+    public void join() throws InterruptedException {
+        if (!isAlive()) return;
+        this.finished.await();
+    }
+
+    /**
+     * wait at most the given time until the task is finished
+     * @param millis the maximum waiting time in milliseconds
+     * @throws InterruptedException
+     */
+    public void join(final long millis) throws InterruptedException {
+        if (!isAlive()) return;
+        this.finished.await(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * cancel the task: a running task is interrupted, a waiting task will not be executed
+     */
+    public synchronized void interrupt() {
+        this.cancelled = true;
+        if (this.runner != null) this.runner.interrupt();
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+
+}
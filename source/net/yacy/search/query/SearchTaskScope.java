@@ -0,0 +1,258 @@
+/**
+ *  SearchTaskScope
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.query;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * The set of all concurrent tasks of one search event. Tasks are forked into the scope and run on an
+ * executor which is shared by all search events: on a JVM with virtual threads each task gets a virtual
+ * thread, otherwise the tasks run on a bounded pool of re-used threads with a bounded queue. Cancelling the scope interrupts
+ * all running tasks and prevents the execution of waiting and later forked tasks, so an abandoned search
+ * event stops all its activities at once.
+ */
+public class SearchTaskScope {
+
+    private final static ConcurrentLog log = new ConcurrentLog("SearchTaskScope");
+
+    /** the maximum number of pooled threads if virtual threads are not used */
+    public static final int MAX_THREADS_DEFAULT = 256;
+
+    /** the number of tasks which may wait for a pooled thread, as a multiple of the maximum number of threads */
+    private static final int QUEUE_FACTOR = 4;
+
+    private static ExecutorService executor = null;
+    private static boolean virtual = false;
+    private static int maxThreads = MAX_THREADS_DEFAULT;
+
+    private static final AtomicLong forkedTasks = new AtomicLong(0);
+    private static final AtomicLong cancelledTasks = new AtomicLong(0);
+    private static final AtomicLong overflowTasks = new AtomicLong(0);
+    private static final AtomicInteger runningTasks = new AtomicInteger(0);
+    private static final AtomicInteger threadCounter = new AtomicInteger(0);
+
+    private final String name;
+    private final Set<SearchTask> tasks; // the tasks which are forked and not yet finished
+    private boolean cancelled;
+
+    public SearchTaskScope(final String name) {
+        this.name = name;
+        this.tasks = new LinkedHashSet<SearchTask>();
+        this.cancelled = false;
+    }
+
+    /**
+     * set the executor for all search tasks. A running executor is shut down after its tasks are finished.
+     * @param useVirtualThreads if true, virtual threads are used if the JVM provides them
+     * @param max the maximum number of pooled threads if virtual threads are not used
+     */
+    public static synchronized void setExecutor(final boolean useVirtualThreads, final int max) {
+        final ExecutorService old = executor;
+        maxThreads = Math.max(1, max);
+        executor = useVirtualThreads ? newVirtualThreadExecutor() : null;
+        virtual = executor != null;
+        if (executor == null) executor = newPooledExecutor(maxThreads);
+        if (old != null) old.shutdown();
+        log.info("search tasks run on " + (virtual ? "virtual threads" : "a pool of at most " + maxThreads + " threads"));
+    }
+
+    private static synchronized ExecutorService executor() {
+        if (executor == null) setExecutor(true, maxThreads);
+        return executor;
+    }
+
+    /**
+     * @return an executor which starts a virtual thread for each task or null if the JVM does not support virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final Throwable e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newPooledExecutor(final int max) {
+        // the core size is the maximum size, otherwise the pool would queue tasks before it starts more threads
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(max, max, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(QUEUE_FACTOR * max), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                final Thread t = new Thread(r, "SearchTask-" + threadCounter.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        }, new RejectedExecutionHandler() {
+            @Override
+            public void rejectedExecution(final Runnable r, final ThreadPoolExecutor e) {
+                // the executor was replaced; fork() submits the task to the new executor
+                if (e.isShutdown()) throw new RejectedExecutionException("search task executor is shut down");
+                // all pooled threads are busy and the queue is full; run the task on the forking thread,
+                // which slows down the search events that fork most tasks instead of starting more threads
+                overflowTasks.incrementAndGet();
+                final boolean interrupted = Thread.interrupted(); // the task clears the interrupt status of its thread
+                try {
+                    r.run();
+                } finally {
+                    if (interrupted) Thread.currentThread().interrupt();
+                }
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * start a task in this scope. If the scope is already cancelled, the task is cancelled and not executed.
+     * @param task
+     * @return the task
+     */
+    public <T extends SearchTask> T fork(final T task) {
+        synchronized (this.tasks) {
+            if (this.cancelled) {
+                task.interrupt();
+                cancelledTasks.incrementAndGet();
+            }
+            this.tasks.add(task);
+        }
+        task.forked(this);
+        forkedTasks.incrementAndGet();
+        final Runnable r = new Runnable() {
+            @Override
+            public void run() {
+                runningTasks.incrementAndGet();
+                try {
+                    task.execute();
+                } finally {
+                    runningTasks.decrementAndGet();
+                }
+            }
+        };
+        try {
+            executor().execute(r);
+        } catch (final RejectedExecutionException e) {
+            // the executor was shut down because it was replaced
+            executor().execute(r);
+        }
+        return task;
+    }
+
+    protected void finished(final SearchTask task) {
+        synchronized (this.tasks) {
+            this.tasks.remove(task);
+        }
+    }
+
+    /**
+     * cancel all tasks of the scope. Running tasks are interrupted, tasks which are forked later are not executed.
+     */
+    public void cancel() {
+        final List<SearchTask> alive;
+        synchronized (this.tasks) {
+            if (this.cancelled) return;
+            this.cancelled = true;
+            alive = new ArrayList<SearchTask>(this.tasks);
+        }
+        for (final SearchTask task: alive) task.interrupt();
+        cancelledTasks.addAndGet(alive.size());
+        if (alive.size() > 0) log.fine("cancelled " + alive.size() + " tasks of " + this.name);
+    }
+
+    public boolean isCancelled() {
+        synchronized (this.tasks) {
+            return this.cancelled;
+        }
+    }
+
+    /**
+     * @return the number of forked tasks of this scope which are not finished
+     */
+    public int size() {
+        synchronized (this.tasks) {
+            return this.tasks.size();
+        }
+    }
+
+    /**
+     * @return true if the search tasks run on virtual threads
+     */
+    public static boolean isVirtual() {
+        executor();
+        return virtual;
+    }
+
+    /**
+     * @return the maximum number of pooled threads if virtual threads are not used
+     */
+    public static int maxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * @return the number of threads in the pool, 0 if virtual threads are used
+     */
+    public static int poolSize() {
+        final ExecutorService e = executor;
+        return e instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) e).getPoolSize() : 0;
+    }
+
+    /**
+     * @return the number of tasks of all search events which are running at this moment
+     */
+    public static int runningTasks() {
+        return runningTasks.get();
+    }
+
+    /**
+     * @return the number of tasks which were forked since the start
+     */
+    public static long forkedTasks() {
+        return forkedTasks.get();
+    }
+
+    /**
+     * @return the number of tasks which were cancelled by the cancel of their scope
+     */
+    public static long cancelledTasks() {
+        return cancelledTasks.get();
+    }
+
+    /**
+     * @return the number of tasks which ran on the forking thread because the pool and its queue were exhausted
+     */
+    public static long overflowTasks() {
+        return overflowTasks.get();
+    }
+
+}
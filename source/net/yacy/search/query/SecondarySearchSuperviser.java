@@ -17,7 +17,7 @@ import net.yacy.kelondro.util.SetTools;
 import net.yacy.peers.RemoteSearch;
 import net.yacy.search.Switchboard;
 
-public class SecondarySearchSuperviser extends Thread {
+public class SecondarySearchSuperviser extends SearchTask {
 
     // cache for index abstracts; word:TreeMap mapping where the embedded TreeMap is a urlhash:peerlist relation
     // this relation contains the information where specific urls can be found in specific peers
@@ -48,7 +48,7 @@ public class SecondarySearchSuperviser extends Thread {
             return;
         }
         // extend the abstracts in the cache: join the single abstracts
-        new Thread("SecondarySearch.addAbstract:" + wordhash) {
+        this.searchEvent.tasks.fork(new SearchTask("SecondarySearch.addAbstract:" + wordhash) {
             @Override
             public void run() {
                 for ( final Map.Entry<String, Set<String>> oneref : singleAbstract.entrySet() ) {
@@ -60,7 +60,7 @@ public class SecondarySearchSuperviser extends Thread {
                     }
                 }
             }
-        }.start();
+        });
         // abstractsCache.put(wordhash, oldAbstract); // put not necessary since it is sufficient to just change the value content (it stays assigned)
     }
 
@@ -168,7 +168,7 @@ public class SecondarySearchSuperviser extends Thread {
 
         // compute words for secondary search and start the secondary searches
         Set<String> words;
-        this.searchEvent.secondarySearchThreads = new Thread[(mypeerinvolved) ? secondarySearchURLs.size() - 1 : secondarySearchURLs.size()];
+        this.searchEvent.secondarySearchThreads = new SearchTask[(mypeerinvolved) ? secondarySearchURLs.size() - 1 : secondarySearchURLs.size()];
         int c = 0;
         for ( final Map.Entry<String, Set<String>> entry : secondarySearchURLs.entrySet() ) {
             String peer = entry.getKey();
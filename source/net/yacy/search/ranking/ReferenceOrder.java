@@ -28,11 +28,13 @@ package net.yacy.search.ranking;
 
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
@@ -52,11 +54,39 @@ public class ReferenceOrder {
 
     private static int cores = Runtime.getRuntime().availableProcessors();
 
+    /** containers up to this size are normalized in the calling thread to omit the task overhead */
+    private static final int SEQUENTIAL_LIMIT = 100;
+
+    /** the number of references which are decoded and normalized within one task of the normalizer pool */
+    private static final int PARTITION_SIZE = 1000;
+
+    private static final AtomicLong threadsCreated = new AtomicLong(0);
+    private static final AtomicLong normalizations = new AtomicLong(0);
+    private static final AtomicLong normalizedReferences = new AtomicLong(0);
+    private static final AtomicLong normalizationTime = new AtomicLong(0);
+    private static final AtomicLong normalizationTimeouts = new AtomicLong(0);
+
+    /**
+     * the pool which is shared by all searches for the normalization of reference containers.
+     * The pool is bounded by the number of cores; a search does not create threads on its own,
+     * it only submits its container to the pool.
+     */
+    private static final ForkJoinPool normalizer = new ForkJoinPool(cores, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+        @Override
+        public ForkJoinWorkerThread newThread(final ForkJoinPool pool) {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("ReferenceOrder.Normalizer-" + thread.getPoolIndex());
+            threadsCreated.incrementAndGet();
+            return thread;
+        }
+    }, null, false);
+
     private       int maxdomcount;
     private       WordReferenceVars min, max;
     private final ConcurrentScoreMap<String> doms; // collected for "authority" heuristic
     private final RankingProfile ranking;
     private final String language;
+    private volatile long normalizationDuration;
 
     public ReferenceOrder(final RankingProfile profile, final String language) {
         this.min = null;
@@ -65,149 +95,164 @@ public class ReferenceOrder {
         this.doms = new ConcurrentScoreMap<String>();
         this.maxdomcount = 0;
         this.language = language;
+        this.normalizationDuration = 0;
     }
 
+    /**
+     * decode the references of a container and find the minimum and maximum of the ranking criteria.
+     * Small containers are normalized in the calling thread, larger containers are partitioned and
+     * normalized in the shared normalizer pool.
+     * @param container
+     * @param maxtime the maximum time in milliseconds for the normalization
+     * @param local
+     * @return a queue which is filled with the normalized references and terminated with WordReferenceVars.poison;
+     *   the queue may still be filled when the method returns
+     */
     public BlockingQueue<WordReferenceVars> normalizeWith(final ReferenceContainer<WordReference> container, long maxtime, final boolean local) {
         final LinkedBlockingQueue<WordReferenceVars> out = new LinkedBlockingQueue<WordReferenceVars>();
-        int threads = cores;
-        if (container.size() < 100) threads = 2;
-        final Thread distributor = new NormalizeDistributor(container, out, threads, maxtime, local);
-        distributor.start();
+        final long start = System.currentTimeMillis();
+        final long timeout = maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : start + maxtime;
+        final Normalizer root = new Normalizer(container, 0, container.size(), out, timeout, local, start);
+        if (container.size() <= SEQUENTIAL_LIMIT) {
+            root.compute();
+        } else {
+            normalizer.execute(root);
+        }
 
-        // return the resulting queue while the processing queues are still working
+        // return the resulting queue while the normalizer is still working
         return out;
     }
 
-    private final class NormalizeDistributor extends Thread {
+    /**
+     * normalize ranking: decode a range of a container and find minimum and maximum of separate ranking criteria.
+     * Ranges which are larger than PARTITION_SIZE are split. The root task of a normalization places the poison
+     * into the out queue after all partitions are finished.
+     */
+    private final class Normalizer extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
 
-        ReferenceContainer<WordReference> container;
-        LinkedBlockingQueue<WordReferenceVars> out;
-        private final int threads;
-        private final long maxtime;
+        private final ReferenceContainer<WordReference> container;
+        private final int from, to;
+        private final LinkedBlockingQueue<WordReferenceVars> out;
+        private final long timeout;
         private final boolean local;
-        
-        public NormalizeDistributor(final ReferenceContainer<WordReference> container, final LinkedBlockingQueue<WordReferenceVars> out, final int threads, final long maxtime, final boolean local) {
-        	super("ReferenceOrder.NormalizeDistributor");
+        private final long start; // the start time of the normalization for the root task, 0 for partitions
+
+        private Normalizer(final ReferenceContainer<WordReference> container, final int from, final int to, final LinkedBlockingQueue<WordReferenceVars> out, final long timeout, final boolean local, final long start) {
             this.container = container;
+            this.from = from;
+            this.to = to;
             this.out = out;
-            this.threads = threads;
-            this.maxtime = maxtime;
+            this.timeout = timeout;
             this.local = local;
+            this.start = start;
         }
 
         @Override
-        public void run() {
-            // transform the reference container into a stream of parsed entries
-            final BlockingQueue<WordReferenceVars> vars = WordReferenceVars.transform(this.container, this.maxtime, this.local);
-
-            // start the transformation threads
-            final Semaphore termination = new Semaphore(this.threads);
-            final NormalizeWorker[] worker = new NormalizeWorker[this.threads];
-            for (int i = 0; i < this.threads; i++) {
-                worker[i] = new NormalizeWorker(this.out, termination, this.maxtime);
-                worker[i].start();
+        protected void compute() {
+            try {
+                if (this.to - this.from > PARTITION_SIZE) {
+                    final int middle = (this.from + this.to) >>> 1;
+                    invokeAll(new Normalizer(this.container, this.from, middle, this.out, this.timeout, this.local, 0),
+                              new Normalizer(this.container, middle, this.to, this.out, this.timeout, this.local, 0));
+                } else {
+                    normalize();
+                }
+            } catch (final Throwable e) {
+                ConcurrentLog.logException(e);
+            } finally {
+                if (this.start > 0) {
+                    if (!ReferenceOrder.this.doms.isEmpty()) ReferenceOrder.this.maxdomcount = ReferenceOrder.this.doms.getMaxScore();
+                    final long duration = System.currentTimeMillis() - this.start;
+                    ReferenceOrder.this.normalizationDuration = duration;
+                    normalizations.incrementAndGet();
+                    normalizationTime.addAndGet(duration);
+                    // insert poison to signal the termination to next queue
+                    this.out.add(WordReferenceVars.poison);
+                }
             }
+        }
 
-            // fill the queue
-            WordReferenceVars iEntry;
-            int p = 0;
-            long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
-            try {
-                while ((iEntry = vars.take()) != WordReferenceVars.poison) {
-                    worker[p % this.threads].add(iEntry);
-                    p++;
-                    if (System.currentTimeMillis() > timeout) {
-                        ConcurrentLog.warn("NormalizeDistributor", "adding of decoded rows to workers ended with timeout = " + this.maxtime);
-                        break;
-                    }
+        private void normalize() {
+            if (System.currentTimeMillis() > this.timeout) {
+                normalizationTimeouts.incrementAndGet();
+                ConcurrentLog.warn("ReferenceOrder", "normalization of decoded rows ended with timeout");
+                return;
+            }
+            final WordReferenceVars[] vars = WordReferenceVars.transform(this.container, this.from, this.to, this.local);
+            if (vars.length == 0) return;
+
+            // find min/max of the partition
+            final WordReferenceVars min0 = vars[0].clone(), max0 = vars[0].clone();
+            final Map<String, Integer> doms0 = new HashMap<String, Integer>();
+            final Integer int1 = 1;
+            for (final WordReferenceVars iEntry: vars) {
+                min0.min(iEntry);
+                max0.max(iEntry);
+                // update domcount
+                final String dom = iEntry.hosthash();
+                final Integer count = doms0.get(dom);
+                if (count == null) {
+                    doms0.put(dom, int1);
+                } else {
+                    doms0.put(dom, LargeNumberCache.valueOf(count.intValue() + 1));
                 }
-            } catch (final InterruptedException e) {
             }
 
-            // insert poison to stop the queues
-            for (int i = 0; i < this.threads; i++) worker[i].add(WordReferenceVars.poison);
+            // merge min/max; this must be done before the entries are written to prevent that min/max is null in cardinal()
+            synchronized (ReferenceOrder.this) {
+                if (ReferenceOrder.this.min == null) ReferenceOrder.this.min = min0; else ReferenceOrder.this.min.min(min0);
+                if (ReferenceOrder.this.max == null) ReferenceOrder.this.max = max0; else ReferenceOrder.this.max.max(max0);
+            }
+
+            // update domain score
+            for (final Map.Entry<String, Integer> entry: doms0.entrySet()) {
+                ReferenceOrder.this.doms.inc(entry.getKey(), entry.getValue().intValue());
+            }
 
-            // wait for termination but not too long to make it possible that this
-            // is called from outside with a join to get some normalization results
-            // before going on
-            for (int i = 0; i < this.threads; i++) try {worker[i].join(100);} catch (final InterruptedException e) {}
+            for (final WordReferenceVars iEntry: vars) this.out.add(iEntry);
+            normalizedReferences.addAndGet(vars.length);
         }
     }
 
     /**
-     * normalize ranking: find minimum and maximum of separate ranking criteria
+     * @return the time in milliseconds of the last normalization of this order
      */
-    private class NormalizeWorker extends Thread {
+    public long normalizationTime() {
+        return this.normalizationDuration;
+    }
 
-        private final BlockingQueue<WordReferenceVars> out;
-        private final Semaphore termination;
-        private final BlockingQueue<WordReferenceVars> decodedEntries;
-        private final long maxtime;
+    public static int normalizerParallelism() {
+        return normalizer.getParallelism();
+    }
 
-        public NormalizeWorker(final BlockingQueue<WordReferenceVars> out, final Semaphore termination, long maxtime) {
-        	super("ReferenceOrder.NormalizeWorker");
-            this.out = out;
-            this.termination = termination;
-            this.decodedEntries = new LinkedBlockingQueue<WordReferenceVars>();
-            this.maxtime = maxtime;
-        }
+    public static int normalizerPoolSize() {
+        return normalizer.getPoolSize();
+    }
 
-        public void add(final WordReferenceVars entry) {
-            try {
-                this.decodedEntries.put(entry);
-            } catch (final InterruptedException e) {
-            }
-        }
+    public static long normalizerThreadsCreated() {
+        return threadsCreated.get();
+    }
 
-        @Override
-        public void run() {
-            try {
-                WordReferenceVars iEntry;
-                final Map<String, Integer> doms0 = new HashMap<String, Integer>();
-                String dom;
-                Integer count;
-                final Integer int1 = 1;
-                long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
-                while ((iEntry = this.decodedEntries.take()) != WordReferenceVars.poison) {
-                    // find min/max
-                    if (ReferenceOrder.this.min == null) ReferenceOrder.this.min = iEntry.clone(); else ReferenceOrder.this.min.min(iEntry);
-                    if (ReferenceOrder.this.max == null) ReferenceOrder.this.max = iEntry.clone(); else ReferenceOrder.this.max.max(iEntry);
-                    this.out.put(iEntry); // must be after the min/max check to prevent that min/max is null in cardinal()
-                    // update domcount
-                    dom = iEntry.hosthash();
-                    count = doms0.get(dom);
-                    if (count == null) {
-                        doms0.put(dom, int1);
-                    } else {
-                        doms0.put(dom, LargeNumberCache.valueOf(count.intValue() + 1));
-                    }
-
-                    if (System.currentTimeMillis() > timeout) {
-                        ConcurrentLog.warn("NormalizeWorker", "normlization of decoded rows ended with timeout = " + this.maxtime);
-                        break;
-                    }
-                }
+    public static long normalizations() {
+        return normalizations.get();
+    }
 
-                // update domain score
-                Map.Entry<String, Integer> entry;
-                final Iterator<Map.Entry<String, Integer>> di = doms0.entrySet().iterator();
-                while (di.hasNext()) {
-                    entry = di.next();
-                    ReferenceOrder.this.doms.inc(entry.getKey(), (entry.getValue()).intValue());
-                }
-                if (!ReferenceOrder.this.doms.isEmpty()) ReferenceOrder.this.maxdomcount = ReferenceOrder.this.doms.getMaxScore();
-            } catch (final InterruptedException e) {
-                ConcurrentLog.logException(e);
-            } catch (final Exception e) {
-                ConcurrentLog.logException(e);
-            } finally {
-                // insert poison to signal the termination to next queue
-                try {
-                    this.termination.acquire();
-                    if (this.termination.availablePermits() == 0) this.out.put(WordReferenceVars.poison);
-                } catch (final InterruptedException e) {}
-            }
-        }
+    public static long normalizedReferences() {
+        return normalizedReferences.get();
+    }
+
+    public static long normalizationTimeouts() {
+        return normalizationTimeouts.get();
+    }
+
+    /**
+     * @return the average time in milliseconds of a normalization since the start of the peer
+     */
+    public static long averageNormalizationTime() {
+        final long n = normalizations.get();
+        return n == 0 ? 0 : normalizationTime.get() / n;
     }
 
     public int authority(final String hostHash) {
@@ -46,6 +46,8 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
@@ -1648,11 +1650,11 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
 	private Map<String, CRV> createRankingMap(final Segment segment, final ReferenceReportCache rrCache,
 			final SolrConnector collectionConnector, ReversibleScoreMap<String> collection1hosts) {
 		final Map<String, CRV> rankings = new ConcurrentHashMap<String, CRV>();
+        final ConcurrentLinkedQueue<String> crhosts = new ConcurrentLinkedQueue<String>();
         try {
             int concurrency = Math.min(collection1hosts.size(), Runtime.getRuntime().availableProcessors());
             postprocessingActivity = "collecting cr for " + collection1hosts.size() + " hosts, concurrency = " + concurrency;
             ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
-            int countcheck = 0;
             for (String host: collection1hosts.keyList(true)) {
                 // Patch the citation index for links with canonical tags.
                 // This shall fulfill the following requirement:
@@ -1696,31 +1698,53 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                 }
                 if (patchquerycount != patchquerycountcheck) ConcurrentLog.warn("CollectionConfiguration", "ambiguous patchquery count for host " + host + ": expected=" + patchquerycount + ", counted=" + patchquerycountcheck);
                 
-                // do the citation rank computation
-                if (collection1hosts.get(host) <= 0) continue;
-                // select all documents for each host
-                CRHost crh = new CRHost(segment, rrCache, host, 0.85d, 6);
-                int convergence_attempts = 0;
-                while (convergence_attempts++ < 30) {
-                    ConcurrentLog.info("CollectionConfiguration", "convergence step " + convergence_attempts + " for host " + host + " ...");
-                    if (crh.convergenceStep()) break;
-                    if (MemoryControl.shortStatus()) {
-                        ConcurrentLog.warn("CollectionConfiguration", "terminated convergenceStep during postprocessing because of short memory");
-                        break;
+                // only hosts with harvested documents have new or changed internal links; the cr of all other hosts is still valid
+                if (collection1hosts.get(host) > 0) crhosts.add(host);
+            }
+            
+            // do the citation rank computation; the cr of a host depends only on the internal links of the host,
+            // therefore the hosts are computed concurrently after all canonical patches are done
+            final AtomicInteger countcheck = new AtomicInteger(0);
+            final AtomicBoolean shortMemory = new AtomicBoolean(false);
+            Thread[] t = new Thread[Math.max(1, concurrency)];
+            for (int i = 0; i < t.length; i++) {
+                t[i] = new Thread("CollectionConfiguration.postprocessing.citation-" + i) {
+                    @Override
+                    public void run() {
+                        String host;
+                        while (!shortMemory.get() && (host = crhosts.poll()) != null) {
+                            // select all documents for each host
+                            CRHost crh = new CRHost(segment, rrCache, host, 0.85d, 6);
+                            int convergence_attempts = 0;
+                            while (convergence_attempts++ < 30) {
+                                ConcurrentLog.info("CollectionConfiguration", "convergence step " + convergence_attempts + " for host " + host + " ...");
+                                if (crh.convergenceStep()) break;
+                                if (MemoryControl.shortStatus()) {
+                                    ConcurrentLog.warn("CollectionConfiguration", "terminated convergenceStep during postprocessing because of short memory");
+                                    break;
+                                }
+                            }
+                            // we have now the cr for all documents of a specific host; we store the changed values for later use
+                            final int stored = crh.store(); // start values for the next computation of this host
+                            ConcurrentLog.info("CollectionConfiguration", "convergence for host " + host + " after " + convergence_attempts + " steps, " + crh.known() + " of " + crh.size() + " documents had a stored cr, " + stored + " cr values changed");
+                            Map<String, CRV> crn = crh.normalize();
+                            //crh.log(crn);
+                            rankings.putAll(crn); // accumulate this here for usage in document update later
+                            if (MemoryControl.shortStatus()) {
+                                ConcurrentLog.warn("CollectionConfiguration", "terminated crn akkumulation during postprocessing because of short memory");
+                                shortMemory.set(true);
+                                break;
+                            }
+                            countcheck.incrementAndGet();
+                        }
                     }
-                }
-                ConcurrentLog.info("CollectionConfiguration", "convergence for host " + host + " after " + convergence_attempts + " steps");
-                // we have now the cr for all documents of a specific host; we store them for later use
-                Map<String, CRV> crn = crh.normalize();
-                //crh.log(crn);
-                rankings.putAll(crn); // accumulate this here for usage in document update later
-                if (MemoryControl.shortStatus()) {
-                    ConcurrentLog.warn("CollectionConfiguration", "terminated crn akkumulation during postprocessing because of short memory");
-                    break;
-                }
-                countcheck++;
+                };
+                t[i].start();
             }
-            if (collection1hosts.size() != countcheck) ConcurrentLog.warn("CollectionConfiguration", "ambiguous host count: expected=" + collection1hosts.size() + ", counted=" + countcheck);
+            for (int i = 0; i < t.length; i++) try {
+                t[i].join();
+            } catch (InterruptedException e) {}
+            if (collection1hosts.size() != countcheck.get()) ConcurrentLog.warn("CollectionConfiguration", "ambiguous host count: expected=" + collection1hosts.size() + ", counted=" + countcheck.get());
         } catch (final IOException e2) {
             ConcurrentLog.logException(e2);
             collection1hosts = new ClusteredScoreMap<String>(true);
@@ -1953,12 +1977,18 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
      * converge to stable values.
      * The class also contains normalization methods to compute simple integer ranking values out of the
      * double relevance values.
+     * The computation starts with the ranking values of the last computation of the host which are stored
+     * in the segment, and after the first step only those documents are computed again which are linked
+     * from a document with a changed ranking value.
      */
     private static final class CRHost {
         private final Segment segment;
         private final Map<String, double[]> crt;
         private final int cr_host_count;
         private final RowHandleMap internal_links_counter;
+        private final Map<String, List<String>> internal_outlinks; // the reverse of the internal references, collected during the first step
+        private Set<String> changed; // the ids with a changed value in the last step; null before the first step
+        private int known;
         private double damping;
         private int converge_eq_factor;
         private ReferenceReportCache rrCache;
@@ -1974,7 +2004,7 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                 BlockingQueue<String> ids = connector.concurrentIDsByQuery("{!cache=false raw f=" + CollectionSchema.host_s.getSolrFieldName() + "}" + host, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, 86400000, 200, 1);
                 String id;
                 while ((id = ids.take()) != AbstractSolrConnector.POISON_ID) {
-                    this.crt.put(id, new double[]{0.0d,0.0d}); //{old value, new value}
+                    this.crt.put(id, new double[]{0.0d,0.0d,-1.0d}); //{old value, new value, stored value}
                     if (MemoryControl.shortStatus()) {
                         ConcurrentLog.warn("CollectionConfiguration", "terminated CRHost collection during postprocessing because of short memory");
                         break;
@@ -1984,8 +2014,43 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
             }
             this.cr_host_count = this.crt.size();
             double initval = 1.0d / cr_host_count;
-            for (Map.Entry<String, double[]> entry: this.crt.entrySet()) entry.getValue()[0] = initval;
+            this.known = 0;
+            for (Map.Entry<String, double[]> entry: this.crt.entrySet()) {
+                double cr = segment.getCitationRank(ASCII.getBytes(entry.getKey()));
+                entry.getValue()[2] = cr;
+                if (cr > 0.0d) this.known++; else cr = initval;
+                entry.getValue()[0] = cr;
+            }
             this.internal_links_counter = new RowHandleMap(12, Base64Order.enhancedCoder, 8, 100, "internal_links_counter");
+            this.internal_outlinks = new HashMap<String, List<String>>();
+            this.changed = null;
+        }
+        /**
+         * @return the number of documents of the host
+         */
+        public int size() {
+            return this.cr_host_count;
+        }
+        /**
+         * @return the number of documents which had a ranking value from a previous computation
+         */
+        public int known() {
+            return this.known;
+        }
+        /**
+         * store the ranking values in the segment; they are the start values of the next computation of this host.
+         * Only values which are new or differ from the stored value within the convergence precision are written.
+         * @return the number of written values
+         */
+        public int store() {
+            int c = 0;
+            for (Map.Entry<String, double[]> entry: this.crt.entrySet()) {
+                final double[] v = entry.getValue();
+                if (v[2] > 0.0d && eqd(v[0], v[2])) continue;
+                this.segment.setCitationRank(ASCII.getBytes(entry.getKey()), v[0]);
+                c++;
+            }
+            return c;
         }
         /**
          * produce a map from IDs to CRV records, normalization entries containing the values that are stored to solr.
@@ -2071,14 +2136,28 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
         }
         /**
          * Use the crt cache to compute the next generation of crt values.
-         * @return
+         * The first step computes all documents of the host; the following steps compute only the documents
+         * which are linked from a document where the value changed in the previous step.
+         * @return true if no value changed
          */
         public boolean convergenceStep() {
-            boolean convergence = true;
+            final boolean first = this.changed == null;
+            final Collection<String> ids;
+            if (first) {
+                ids = this.crt.keySet();
+            } else {
+                ids = new HashSet<String>();
+                for (String id: this.changed) {
+                    List<String> targets = this.internal_outlinks.get(id);
+                    if (targets != null) ids.addAll(targets);
+                }
+            }
+            final Set<String> nextchanged = new HashSet<String>();
             double df = (1.0d - damping) / this.cr_host_count;
             try {
-                for (Map.Entry<String, double[]> entry: this.crt.entrySet()) {
-                    String id = entry.getKey();
+                for (String id: ids) {
+                    double[] v = this.crt.get(id);
+                    if (v == null) continue;
                     ReferenceReport rr = this.rrCache.getReferenceReport(id, false);
                     // sum up the cr of the internal links
                     HandleSet iids = rr.getInternallIDs();
@@ -2086,28 +2165,36 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                     for (byte[] iid: iids) {
                         int ilc = getInternalLinks(iid);
                         if (ilc > 0) { // if (ilc == 0) then the reference report is wrong!
-                            double[] d = this.crt.get(ASCII.String(iid));
+                            String iidkey = ASCII.String(iid);
+                            double[] d = this.crt.get(iidkey);
                             // d[] could be empty at some situations
                             if (d != null && d.length > 0) {
                                 ncr += d[0] / ilc;
+                                if (first) {
+                                    List<String> targets = this.internal_outlinks.get(iidkey);
+                                    if (targets == null) {targets = new ArrayList<String>(ilc); this.internal_outlinks.put(iidkey, targets);}
+                                    targets.add(id);
+                                }
                             } else {
                                 // Output a warning that d[] is empty
-                                ConcurrentLog.warn("COLLECTION", "d[] is empty, iid="  + ASCII.String(iid));
+                                ConcurrentLog.warn("COLLECTION", "d[] is empty, iid="  + iidkey);
                                 break;
                             }
                         }
                     }
                     ncr = df + damping * ncr;
-                    if (convergence && !eqd(ncr, entry.getValue()[0])) convergence = false;
-                    entry.getValue()[1] = ncr;
+                    if (!eqd(ncr, v[0])) nextchanged.add(id);
+                    v[1] = ncr;
                 }
                 // after the loop, replace the old value with the new value in crt
-                for (Map.Entry<String, double[]> entry: this.crt.entrySet()) {
-                    entry.getValue()[0] = entry.getValue()[1];
+                for (String id: ids) {
+                    double[] v = this.crt.get(id);
+                    if (v != null) v[0] = v[1];
                 }
             } catch (final IOException e) {
             }
-            return convergence;
+            this.changed = nextchanged;
+            return nextchanged.isEmpty();
         }
         /**
          * helper method to check if two doubles are equal using a specific number of digits
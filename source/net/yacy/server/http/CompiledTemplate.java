@@ -0,0 +1,571 @@
+// CompiledTemplate.java
+// ----
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.server.http;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.FileUtils;
+import net.yacy.server.serverObjects;
+
+/**
+ * A template which is parsed once into a tree of literal segments, placeholders #[..]#, multi templates #{..}#,
+ * alternatives #(..)#, file includes #%..%# and SSI include markers &lt;!--#include virtual="..." --&gt;.
+ * Rendering a compiled template writes the same output as the TemplateEngine, but does not scan the template
+ * source again and writes directly to the target stream; SSI includes are executed at their position while
+ * the page is written, so the page does not need to be scanned for SSI markers after the template was applied.
+ * <p>
+ * Compiled templates are cached per file and compiled again when the file changes.
+ */
+public final class CompiledTemplate {
+
+    /**
+     * executes a SSI include at the current position of the output
+     */
+    public interface SSIHandler {
+        /**
+         * @param path the virtual path of the SSI include
+         */
+        public void include(String path) throws IOException;
+    }
+
+    private final static byte[] UNRESOLVED_PATTERN = ASCII.getBytes("-UNRESOLVED_PATTERN-");
+    private final static byte[] SSI_OPEN = ASCII.getBytes("<!--#include virtual=\"");
+    private final static byte[] SSI_CLOSE = ASCII.getBytes("-->");
+    private final static byte[] CRLF = ASCII.getBytes(net.yacy.server.serverCore.CRLF_STRING);
+
+    private final static Map<File, CompiledTemplate> templates = new ConcurrentHashMap<File, CompiledTemplate>();
+    private final static Map<File, CompiledTemplate> includes = new ConcurrentHashMap<File, CompiledTemplate>();
+
+    private final String name;
+    private final Node[] nodes;
+    private final long lastModified, length;
+    private boolean unresolvedSSI; // true if a SSI marker could not be compiled, then the output must be scanned for SSI
+
+    private CompiledTemplate(final String name, final byte[] source, final long lastModified, final long length) {
+        this.name = name;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.unresolvedSSI = false;
+        // the TemplateEngine stops at the first zero byte
+        int end = 0;
+        while (end < source.length && source[end] != 0) end++;
+        this.nodes = parse(source, 0, end);
+    }
+
+    /**
+     * compile a template
+     * @param name the name of the template, used for log messages
+     * @param source the template
+     * @return the compiled template
+     */
+    public static CompiledTemplate compile(final String name, final byte[] source) {
+        return new CompiledTemplate(name, source, 0, source.length);
+    }
+
+    /**
+     * get the compiled template of a file. The template is compiled if it was not compiled before or if the file
+     * has been changed since it was compiled.
+     * @param file the template file
+     * @return the compiled template
+     * @throws IOException if the file cannot be read
+     */
+    public static CompiledTemplate get(final File file) throws IOException {
+        return get(templates, file, false);
+    }
+
+    private static CompiledTemplate get(final Map<File, CompiledTemplate> cache, final File file, final boolean include) throws IOException {
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        CompiledTemplate template = cache.get(file);
+        if (template != null && template.lastModified == lastModified && template.length == length) return template;
+        template = new CompiledTemplate(file.getName(), include ? readInclude(file) : FileUtils.read(file), lastModified, length);
+        cache.put(file, template);
+        return template;
+    }
+
+    /**
+     * read an include file the same way as the TemplateEngine: line by line, each line terminated with CRLF
+     */
+    private static byte[] readInclude(final File file) throws IOException {
+        final ByteArrayOutputStream include = new ByteArrayOutputStream((int) file.length() + 256);
+        try (final BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                include.write(UTF8.getBytes(line));
+                include.write(CRLF);
+            }
+        }
+        return include.toByteArray();
+    }
+
+    /**
+     * remove all compiled templates from the cache
+     */
+    public static void clearCache() {
+        templates.clear();
+        includes.clear();
+    }
+
+    /**
+     * @return the number of cached compiled templates and include files
+     */
+    public static int cacheSize() {
+        return templates.size() + includes.size();
+    }
+
+    /**
+     * @return true if the template contains SSI markers which could not be compiled because they are not closed
+     *   within the same template structure. The output of such templates must be scanned for SSI markers and
+     *   written without SSIHandler.
+     */
+    public boolean hasUnresolvedSSI() {
+        return this.unresolvedSSI;
+    }
+
+    /**
+     * write the template with the replaced patterns
+     * @param out the target stream
+     * @param pattern the values for the patterns
+     * @param ssi the handler for SSI includes; if null, the SSI markers are written to the output unchanged
+     * @throws IOException
+     */
+    public void write(final OutputStream out, final serverObjects pattern, final SSIHandler ssi) throws IOException {
+        final Context context = new Context(this.name, out, pattern, ssi);
+        write(this.nodes, context, "");
+    }
+
+    private static void write(final Node[] nodes, final Context context, final String prefix) throws IOException {
+        for (final Node node: nodes) {
+            if (!node.write(context, prefix)) return;
+        }
+    }
+
+    private static final class Context {
+        private final String servletname;
+        private final OutputStream out;
+        private final serverObjects pattern;
+        private final SSIHandler ssi;
+        private final String clientbrowserlang; // preferred language or null (used for include files)
+
+        private Context(final String servletname, final OutputStream out, final serverObjects pattern, final SSIHandler ssi) {
+            this.servletname = servletname;
+            this.out = out;
+            this.pattern = pattern;
+            this.ssi = ssi;
+            this.clientbrowserlang = pattern.get("clientlanguage");
+        }
+    }
+
+    private static abstract class Node {
+        /**
+         * @return false if the remaining nodes of the same level must not be written
+         */
+        abstract boolean write(Context context, String prefix) throws IOException;
+    }
+
+    private static final class Literal extends Node {
+        private final byte[] text;
+        private Literal(final byte[] text) {
+            this.text = text;
+        }
+        @Override
+        boolean write(final Context context, final String prefix) throws IOException {
+            context.out.write(this.text);
+            return true;
+        }
+    }
+
+    /** #[key]# */
+    private static final class Placeholder extends Node {
+        private final String key;
+        private Placeholder(final String key) {
+            this.key = key;
+        }
+        @Override
+        boolean write(final Context context, final String prefix) throws IOException {
+            context.out.write(replacePattern(prefix + this.key, context.pattern));
+            return true;
+        }
+    }
+
+    /** #{key}# .. #{/key}# */
+    private static final class Multi extends Node {
+        private final String key;
+        private final Node[] body;
+        private Multi(final String key, final Node[] body) {
+            this.key = key;
+            this.body = body;
+        }
+        @Override
+        boolean write(final Context context, final String prefix) throws IOException {
+            final String patternKey = prefix + this.key;
+            final String value = context.pattern.get(patternKey);
+            int num = 0;
+            if (value != null && !value.isEmpty()) {
+                try {
+                    num = Integer.parseInt(value); // Key contains the iteration number as string
+                } catch (final NumberFormatException e) {
+                    ConcurrentLog.logException(e);
+                    num = 0;
+                }
+            }
+            for (int i = 0; i < num; i++) {
+                CompiledTemplate.write(this.body, context, patternKey + "_" + i + "_");
+            }
+            return true;
+        }
+    }
+
+    /** #(key)# .. :: .. #(/key)# */
+    private final class Alternative extends Node {
+        private final String key;
+        private final Node[][] alternatives;
+        private final byte[] source; // the source of the alternatives, for selection of an alternative by name
+        private final Map<String, Node[]> named;
+        private Alternative(final String key, final Node[][] alternatives, final byte[] source) {
+            this.key = key;
+            this.alternatives = alternatives;
+            this.source = source;
+            this.named = new ConcurrentHashMap<String, Node[]>();
+        }
+        @Override
+        boolean write(final Context context, final String prefix) throws IOException {
+            final String patternKey = prefix + this.key;
+            final String patternId = context.pattern.get(patternKey);
+            // lazy parsing of pattern value; numeric values, "true", "false" and no value allowed
+            int whichPattern = 0;
+            if (patternId != null) {
+                if ("true".equals(patternId)) {
+                    whichPattern = 1;
+                } else if ("false".equals(patternId)) {
+                    whichPattern = 0;
+                } else try {
+                    whichPattern = Integer.parseInt(patternId); //index
+                } catch (final NumberFormatException e) {
+                    // select the alternative by name
+                    final Node[] alternative = named(patternId);
+                    if (alternative == null) {
+                        ConcurrentLog.severe("TEMPLATE", "Bad Key-Value pair in #()# construct: key=\"" + patternKey + "\", value=\"" + patternId + "\" in " + context.servletname);
+                        return false;
+                    }
+                    CompiledTemplate.write(alternative, context, patternKey + "_");
+                    return true;
+                }
+            }
+            // an index beyond the alternatives selects the last one
+            final int last = this.alternatives.length - 1;
+            CompiledTemplate.write(this.alternatives[whichPattern >= 0 && whichPattern < last ? whichPattern : last], context, patternKey + "_");
+            return true;
+        }
+        /**
+         * @return the alternative which follows %%name up to the next ::, or null if there is no such alternative
+         */
+        private Node[] named(final String name) {
+            Node[] alternative = this.named.get(name);
+            if (alternative != null) return alternative;
+            final byte[] marker = UTF8.getBytes("%%" + name);
+            final int p = indexOf(this.source, marker, 0, this.source.length);
+            if (p < 0) return null;
+            final int start = p + marker.length;
+            int end = indexOf(this.source, ASCII.getBytes("::"), start, this.source.length);
+            if (end < 0) end = this.source.length;
+            alternative = parse(this.source, start, end);
+            this.named.put(name, alternative);
+            return alternative;
+        }
+    }
+
+    /** #%file%# or #%[key]%# */
+    private static final class Include extends Node {
+        private final String filename; // the file name or null if the file name is given by a pattern
+        private final String key;
+        private Include(final String filename, final String key) {
+            this.filename = filename;
+            this.key = key;
+        }
+        @Override
+        boolean write(final Context context, final String prefix) throws IOException {
+            final String file = this.filename == null ? UTF8.String(replacePattern(prefix + this.key, context.pattern)) : this.filename;
+            if (file.isEmpty() || file.equals(UTF8.String(UNRESOLVED_PATTERN))) return true;
+            final CompiledTemplate include;
+            try {
+                include = get(includes, HTTPDFileHandler.getLocalizedFile(file, context.clientbrowserlang), true);
+            } catch (final IOException e) {
+                //file not found?
+                ConcurrentLog.severe("FILEHANDLER","Include Error with file " + file + ": " + e.getMessage());
+                return true;
+            }
+            if (include.unresolvedSSI && context.ssi != null) {
+                ConcurrentLog.warn("TEMPLATE", "SSI marker not closed in include file " + file + " in " + context.servletname);
+            }
+            CompiledTemplate.write(include.nodes, context, ""); //clear pattern prefix for include
+            return true;
+        }
+    }
+
+    /** a SSI include with the nodes which produce the virtual path */
+    private static final class SSI extends Node {
+        private final Node[] directive; // the nodes from <!--#include virtual=" up to -->
+        private SSI(final Node[] directive) {
+            this.directive = directive;
+        }
+        @Override
+        boolean write(final Context context, final String prefix) throws IOException {
+            if (context.ssi == null) {
+                CompiledTemplate.write(this.directive, context, prefix);
+                return true;
+            }
+            final ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+            CompiledTemplate.write(this.directive, new Context(context.servletname, buffer, context.pattern, context.ssi), prefix);
+            final byte[] d = buffer.toByteArray();
+            // the same rules as in YaCyDefaultServlet.parseSSI
+            final int end = indexOf(d, SSI_CLOSE, 24, d.length);
+            final int rightquote = indexOf(d, new byte[]{'"'}, 23, d.length);
+            context.out.flush();
+            if (end > 0 && rightquote > 0 && rightquote < end) {
+                context.ssi.include(UTF8.String(d, 22, rightquote - 22));
+            } else {
+                ConcurrentLog.warn("FILEHANDLER", "CompiledTemplate: SSI closing quote missing " + UTF8.String(d) + " in " + context.servletname);
+            }
+            // text after the end of the SSI marker, can only be produced by a pattern value
+            if (end > 0 && end + 3 < d.length) context.out.write(d, end + 3, d.length - end - 3);
+            return true;
+        }
+    }
+
+    private final static byte[] replacePattern(final String key, final serverObjects pattern) {
+        final String value = pattern.get(key);
+        return value == null ? UNRESOLVED_PATTERN : UTF8.getBytes(value);
+    }
+
+    private static int indexOf(final byte[] b, final byte[] pattern, final int from, final int to) {
+        final int last = to - pattern.length;
+        loop: for (int i = Math.max(0, from); i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (b[i + j] != pattern[j]) continue loop;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static byte[] copy(final byte[] b, final int from, final int to) {
+        final byte[] c = new byte[to - from];
+        System.arraycopy(b, from, c, 0, c.length);
+        return c;
+    }
+
+    /**
+     * parse a part of a template the same way as the TemplateEngine interprets it
+     * @param s the template
+     * @param from the first position
+     * @param to the position after the last byte
+     * @return the nodes of the template part
+     */
+    private Node[] parse(final byte[] s, final int from, final int to) {
+        final List<Node> nodes = new ArrayList<Node>();
+        int literal = from; // start of the current literal text
+        int p = from;
+        parse: while (p < to) {
+            final int h = indexOf(s, new byte[]{'#'}, p, to);
+            if (h < 0 || h + 1 >= to) break;
+            final byte c = s[h + 1];
+            if (c == '{') { // multi
+                final int keyEnd = indexOf(s, ASCII.getBytes("}#"), h + 2, to);
+                if (keyEnd < 0) {
+                    literal(nodes, s, literal, h);
+                    return ssi(nodes);
+                }
+                final byte[] key = copy(s, h + 2, keyEnd);
+                int q = keyEnd + 2;
+                if (q < to && s[q] == '\n') q++; //kill newline
+                final byte[] close = ASCII.getBytes("#{/" + UTF8.String(key) + "}#");
+                final int closeStart = indexOf(s, close, q, to);
+                if (closeStart < 0) {
+                    ConcurrentLog.severe("TEMPLATE", "No Close Key found for #{" + UTF8.String(key) + "}#" + " in " + this.name);
+                    literal(nodes, s, literal, h);
+                    return ssi(nodes);
+                }
+                literal(nodes, s, literal, h);
+                nodes.add(new Multi(UTF8.String(key), parse(s, q, closeStart)));
+                p = closeStart + close.length;
+                if (p < to && s[p] == '\n') p++; //kill newline
+                literal = p;
+            } else if (c == '(') { // alternative
+                final int keyEnd = indexOf(s, ASCII.getBytes(")#"), h + 2, to);
+                if (keyEnd < 0) {
+                    literal(nodes, s, literal, h);
+                    return ssi(nodes);
+                }
+                final byte[] key = copy(s, h + 2, keyEnd);
+                final byte[] close = ASCII.getBytes("/" + UTF8.String(key));
+                final List<Node[]> alternatives = new ArrayList<Node[]>();
+                final int start = keyEnd + 2;
+                int a = start; // start of the current alternative
+                int i = start;
+                int others = 0; // nested alternatives
+                int end = -1;
+                while (end < 0) {
+                    if (i >= to) {
+                        ConcurrentLog.severe("TEMPLATE", "No Close Key found for #(" + UTF8.String(key) + ")# in " + this.name);
+                        alternatives.add(parse(s, a, to));
+                        end = to;
+                        p = to;
+                        break;
+                    }
+                    if (s[i] == '#' && i + 1 < to && s[i + 1] == '(') {
+                        final int e = indexOf(s, ASCII.getBytes(")#"), i + 2, to);
+                        if (e < 0) {
+                            i = to;
+                            continue;
+                        }
+                        final byte[] k = copy(s, i + 2, e);
+                        if (java.util.Arrays.equals(k, close)) {
+                            //reached the end
+                            alternatives.add(parse(s, a, i));
+                            end = i;
+                            p = e + 2;
+                        } else if (others > 0 && k.length > 0 && k[0] == '/') { //close nested
+                            others--;
+                        } else { //nested
+                            others++;
+                        }
+                        i = e + 2;
+                    } else if (s[i] == ':' && others == 0) { //ignore :: in nested expressions
+                        if (i + 1 < to && s[i + 1] == ':') {
+                            alternatives.add(parse(s, a, i));
+                            i += 2;
+                            a = i;
+                        } else {
+                            i += 2; // the character after a single ':' is not interpreted
+                        }
+                    } else {
+                        i++;
+                    }
+                }
+                literal(nodes, s, literal, h);
+                nodes.add(new Alternative(UTF8.String(key), alternatives.toArray(new Node[alternatives.size()][]), copy(s, start, end)));
+                literal = p;
+            } else if (c == '[') { // normal
+                final int keyEnd = indexOf(s, ASCII.getBytes("]#"), h + 2, to);
+                if (keyEnd < 0) {
+                    // inconsistency, simply finalize this
+                    literal(nodes, s, literal, h);
+                    return ssi(nodes);
+                }
+                literal(nodes, s, literal, h);
+                nodes.add(new Placeholder(UTF8.String(s, h + 2, keyEnd - h - 2)));
+                p = keyEnd + 2;
+                literal = p;
+            } else if (c == '%') { // include
+                final int keyEnd = indexOf(s, ASCII.getBytes("%#"), h + 2, to);
+                literal(nodes, s, literal, h);
+                if (keyEnd < 0) return ssi(nodes);
+                if (keyEnd > h + 2) {
+                    if (s[h + 2] == '[' && s[keyEnd - 1] == ']' && keyEnd - h - 2 >= 2) { //simple pattern for filename
+                        nodes.add(new Include(null, UTF8.String(s, h + 3, keyEnd - h - 4)));
+                    } else {
+                        nodes.add(new Include(UTF8.String(s, h + 2, keyEnd - h - 2), null));
+                    }
+                }
+                p = keyEnd + 2;
+                literal = p;
+            } else {
+                // no special character, this is simply a '#' without meaning; the following character is not interpreted
+                p = h + 2;
+                continue parse;
+            }
+        }
+        literal(nodes, s, literal, to);
+        return ssi(nodes);
+    }
+
+    private static void literal(final List<Node> nodes, final byte[] s, final int from, final int to) {
+        if (to > from) nodes.add(new Literal(copy(s, from, to)));
+    }
+
+    /**
+     * find the SSI markers in the literals of a node sequence and replace the nodes from the start of a SSI marker
+     * up to its end with a SSI node
+     */
+    private Node[] ssi(final List<Node> nodes) {
+        final List<Node> result = new ArrayList<Node>(nodes.size());
+        List<Node> directive = null; // the nodes of an open SSI marker
+        for (final Node node: nodes) {
+            if (!(node instanceof Literal)) {
+                if (directive == null) result.add(node); else directive.add(node);
+                continue;
+            }
+            byte[] text = ((Literal) node).text;
+            while (text.length > 0) {
+                if (directive == null) {
+                    final int open = indexOf(text, SSI_OPEN, 0, text.length);
+                    if (open < 0) {
+                        result.add(new Literal(text));
+                        break;
+                    }
+                    if (open > 0) result.add(new Literal(copy(text, 0, open)));
+                    text = copy(text, open, text.length);
+                    directive = new ArrayList<Node>();
+                    // the marker has a minimum length of 24 bytes before the end: <!--#include virtual="a"
+                    final int close = indexOf(text, SSI_CLOSE, 24, text.length);
+                    if (close < 0) {
+                        directive.add(new Literal(text));
+                        break;
+                    }
+                    directive.add(new Literal(copy(text, 0, close + 3)));
+                    result.add(new SSI(directive.toArray(new Node[directive.size()])));
+                    directive = null;
+                    text = copy(text, close + 3, text.length);
+                } else {
+                    final int close = indexOf(text, SSI_CLOSE, 0, text.length);
+                    if (close < 0) {
+                        directive.add(new Literal(text));
+                        break;
+                    }
+                    directive.add(new Literal(copy(text, 0, close + 3)));
+                    result.add(new SSI(directive.toArray(new Node[directive.size()])));
+                    directive = null;
+                    text = copy(text, close + 3, text.length);
+                }
+            }
+        }
+        if (directive != null) {
+            // the SSI marker is not closed within this structure, the output must be scanned for SSI markers
+            this.unresolvedSSI = true;
+            result.addAll(directive);
+        }
+        return result.toArray(new Node[result.size()]);
+    }
+
+}
@@ -0,0 +1,219 @@
+// SyntheticCorpus.java
+// ----
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.util.Bitfield;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * Generator for the synthetic data used by the benchmarks: hashes, words with a skewed frequency,
+ * plain text, HTML pages and RWI reference containers. All data is computed from a random generator
+ * with a fixed seed, so two generators with the same seed produce exactly the same corpus and
+ * benchmark runs on different machines or versions work on the same input.
+ */
+public class SyntheticCorpus {
+
+    public static final long DEFAULT_SEED = 19700101L;
+
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ne", "ru", "sa", "te", "vo", "yu", "zen", "bar", "cor", "dax", "fel", "gun",
+        "hor", "ist", "jan", "kel", "ond", "pra", "qua", "rin", "sto", "tur", "ung", "ver", "wal", "xer", "ys"
+    };
+
+    /** the time which is used as 'now' in generated references, fixed to make the references reproducible */
+    public static final long REFERENCE_TIME = 1546300800000L;
+
+    public static final WordReferenceFactory factory = new WordReferenceFactory();
+
+    private final Random random;
+    private final String[] vocabulary;
+
+    /**
+     * @param seed the seed of the random generator
+     * @param vocabularySize the number of different words in texts
+     */
+    public SyntheticCorpus(final long seed, final int vocabularySize) {
+        this.random = new Random(seed);
+        this.vocabulary = new String[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            final StringBuilder w = new StringBuilder(12);
+            final int s = 1 + this.random.nextInt(4);
+            for (int j = 0; j < s; j++) w.append(SYLLABLES[this.random.nextInt(SYLLABLES.length)]);
+            w.append(Integer.toString(i, 36)); // make the words unique
+            this.vocabulary[i] = w.toString();
+        }
+    }
+
+    public SyntheticCorpus(final long seed) {
+        this(seed, 20000);
+    }
+
+    public Random random() {
+        return this.random;
+    }
+
+    /**
+     * @return a random 12 byte hash in the enhanced base64 alphabet, like url hashes and word hashes
+     */
+    public byte[] hash() {
+        return ASCII.getBytes(
+                Base64Order.enhancedCoder.encodeLongSB(this.random.nextLong() & Long.MAX_VALUE, 6).toString() +
+                Base64Order.enhancedCoder.encodeLongSB(this.random.nextLong() & Long.MAX_VALUE, 6).toString());
+    }
+
+    public byte[][] hashes(final int count) {
+        final byte[][] h = new byte[count][];
+        for (int i = 0; i < count; i++) h[i] = hash();
+        return h;
+    }
+
+    /**
+     * @return a word of the vocabulary; the frequency of the words is skewed like in natural language texts,
+     *   words at the beginning of the vocabulary are much more frequent than those at the end
+     */
+    public String word() {
+        final double r = this.random.nextDouble();
+        return this.vocabulary[(int) (r * r * r * this.vocabulary.length)];
+    }
+
+    public String sentence(final int words) {
+        final StringBuilder s = new StringBuilder(words * 10);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) s.append(' ');
+            final String w = word();
+            if (i == 0) s.append(Character.toUpperCase(w.charAt(0))).append(w, 1, w.length()); else s.append(w);
+        }
+        return s.append('.').toString();
+    }
+
+    public String text(final int sentences) {
+        final StringBuilder s = new StringBuilder(sentences * 100);
+        for (int i = 0; i < sentences; i++) {
+            if (i > 0) s.append(' ');
+            s.append(sentence(5 + this.random.nextInt(15)));
+        }
+        return s.toString();
+    }
+
+    /**
+     * generate a html page with a title, headlines, paragraphs, links and images
+     * @param paragraphs the number of paragraphs
+     * @param links the number of links
+     * @return the page source
+     */
+    public String html(final int paragraphs, final int links) {
+        final StringBuilder page = new StringBuilder(paragraphs * 1000 + links * 80);
+        page.append("<!DOCTYPE html>\n<html lang=\"en\"><head><meta charset=\"UTF-8\">\n");
+        page.append("<title>").append(sentence(6)).append("</title>\n");
+        page.append("<meta name=\"description\" content=\"").append(sentence(12)).append("\">\n");
+        page.append("<meta name=\"keywords\" content=\"").append(word()).append(',').append(word()).append(',').append(word()).append("\">\n");
+        page.append("</head><body>\n");
+        for (int p = 0; p < paragraphs; p++) {
+            if (p % 4 == 0) page.append("<h2>").append(sentence(4)).append("</h2>\n");
+            page.append("<p>").append(text(3 + this.random.nextInt(5))).append("</p>\n");
+            if (p % 5 == 2) page.append("<img src=\"/img/").append(word()).append(".png\" alt=\"").append(sentence(3)).append("\">\n");
+        }
+        page.append("<ul>\n");
+        for (int l = 0; l < links; l++) {
+            final String host = l % 3 == 0 ? "www.example.org" : "host" + this.random.nextInt(50) + ".example.net";
+            page.append("<li><a href=\"http://").append(host).append('/').append(word()).append('/').append(word()).append(".html\">")
+                .append(sentence(2 + this.random.nextInt(4))).append("</a></li>\n");
+        }
+        page.append("</ul>\n</body></html>\n");
+        return page.toString();
+    }
+
+    /**
+     * @return a reference to the given url with random ranking properties
+     */
+    public WordReferenceRow reference(final byte[] urlHash) {
+        final long now = REFERENCE_TIME;
+        final WordReferenceRow ref = new WordReferenceRow(
+                urlHash,
+                20 + this.random.nextInt(80),
+                1 + this.random.nextInt(6),
+                3 + this.random.nextInt(12),
+                100 + this.random.nextInt(5000),
+                10 + this.random.nextInt(300),
+                now - this.random.nextInt(1000) * 86400000L,
+                now,
+                UTF8.getBytes(this.random.nextInt(4) == 0 ? "de" : "en"),
+                't',
+                this.random.nextInt(20),
+                this.random.nextInt(40));
+        final Word word = new Word(1 + this.random.nextInt(1000), 1 + this.random.nextInt(20), 1 + this.random.nextInt(100));
+        word.flags = new Bitfield(4);
+        ref.setWord(word);
+        return ref;
+    }
+
+    /**
+     * generate a reference container with references to urls from a url pool. Containers which are generated
+     * from the same pool share urls, which is what the joins of a search need.
+     * @param termHash the term of the container
+     * @param urls the url pool
+     * @param size the number of references in the container, not more than the size of the url pool
+     * @return the sorted container
+     */
+    public ReferenceContainer<WordReference> container(final byte[] termHash, final byte[][] urls, final int size) throws SpaceExceededException {
+        assert size <= urls.length;
+        final ReferenceContainer<WordReference> container = new ReferenceContainer<WordReference>(factory, termHash, size);
+        final boolean[] used = new boolean[urls.length];
+        for (int i = 0; i < size; i++) {
+            int u;
+            do u = this.random.nextInt(urls.length); while (used[u]);
+            used[u] = true;
+            container.add(reference(urls[u]));
+        }
+        container.sort();
+        return container;
+    }
+
+    /**
+     * write a corpus of html pages to a directory, so it can be inspected or used by other tools
+     * @param args the target directory, the number of pages and optionally the seed
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: SyntheticCorpus <directory> <pages> [<seed>]");
+            return;
+        }
+        final File dir = new File(args[0]);
+        dir.mkdirs();
+        final int pages = Integer.parseInt(args[1]);
+        final SyntheticCorpus corpus = new SyntheticCorpus(args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_SEED);
+        for (int i = 0; i < pages; i++) {
+            FileUtils.copy(UTF8.getBytes(corpus.html(10 + corpus.random().nextInt(30), 5 + corpus.random().nextInt(50))), new File(dir, "page" + i + ".html"));
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+// Base64OrderBenchmark.java
+// ----
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.cora.order;
+
+import java.util.concurrent.TimeUnit;
+
+import net.yacy.benchmark.SyntheticCorpus;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * compare of hashes with the enhanced base64 order, which is done for every lookup in the kelondro indexes
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Base64OrderBenchmark {
+
+    private static final int COUNT = 1024;
+
+    private final Base64Order order = Base64Order.enhancedCoder;
+    private byte[][] a, b, prefixed;
+
+    @Setup
+    public void setup() {
+        final SyntheticCorpus corpus = new SyntheticCorpus(SyntheticCorpus.DEFAULT_SEED);
+        this.a = corpus.hashes(COUNT);
+        this.b = corpus.hashes(COUNT);
+        // hashes which share the first 6 characters, like url hashes of the same host
+        this.prefixed = new byte[COUNT][];
+        for (int i = 0; i < COUNT; i++) {
+            this.prefixed[i] = this.b[i].clone();
+            System.arraycopy(this.a[i], 0, this.prefixed[i], 0, 6);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public int compareRandom() {
+        int c = 0;
+        for (int i = 0; i < COUNT; i++) c += this.order.compare(this.a[i], this.b[i]);
+        return c;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public int compareCommonPrefix() {
+        int c = 0;
+        for (int i = 0; i < COUNT; i++) c += this.order.compare(this.a[i], this.prefixed[i]);
+        return c;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public int compareOffset() {
+        int c = 0;
+        for (int i = 0; i < COUNT; i++) c += this.order.compare(this.a[i], 0, this.b[i], 0, 12);
+        return c;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COUNT)
+    public long cardinal() {
+        long c = 0;
+        for (int i = 0; i < COUNT; i++) c += this.order.cardinal(this.a[i]);
+        return c;
+    }
+
+}
@@ -0,0 +1,82 @@
+// CondenserBenchmark.java
+// ----
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+
+package net.yacy.document;
+
+import java.io.ByteArrayInputStream;
+import java.net.MalformedURLException;
+import java.util.concurrent.TimeUnit;
+
+import net.yacy.benchmark.SyntheticCorpus;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.document.parser.htmlParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * tokenization of synthetic texts and the complete condensing of a parsed document, which is done
+ * for every document before it is written to the RWI index
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CondenserBenchmark {
+
+    /** number of paragraphs of the document */
+    @Param({"10", "100"})
+    public int paragraphs;
+
+    private DigestURL root;
+    private String text;
+    private Document document;
+
+    @Setup
+    public void setup() throws MalformedURLException, Parser.Failure, InterruptedException {
+        final SyntheticCorpus corpus = new SyntheticCorpus(SyntheticCorpus.DEFAULT_SEED);
+        this.root = new DigestURL("http://www.example.org/benchmark/condenser.html");
+        this.text = corpus.text(this.paragraphs * 5);
+        final byte[] page = UTF8.getBytes(corpus.html(this.paragraphs, this.paragraphs));
+        this.document = new htmlParser().parse(this.root, "text/html", "UTF-8", new VocabularyScraper(), 0, new ByteArrayInputStream(page))[0];
+    }
+
+    @Benchmark
+    public int tokenize() {
+        return new Tokenizer(this.root, this.text, null, false, null).words().size();
+    }
+
+    @Benchmark
+    public int condense() {
+        return new Condenser(this.document, null, true, true, null, false, false, 0).words().size();
+    }
+
+}
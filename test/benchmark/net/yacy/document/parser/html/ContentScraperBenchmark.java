@@ -0,0 +1,84 @@
+// ContentScraperBenchmark.java
+// ----
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+
+package net.yacy.document.parser.html;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import net.yacy.benchmark.SyntheticCorpus;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.document.VocabularyScraper;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * parsing of synthetic html pages with the ContentScraper, the same way as the htmlParser does it
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentScraperBenchmark {
+
+    /** number of paragraphs of the page */
+    @Param({"10", "100"})
+    public int paragraphs;
+
+    /** number of links on the page */
+    @Param({"20", "500"})
+    public int links;
+
+    private DigestURL root;
+    private String page;
+
+    @Setup
+    public void setup() throws MalformedURLException {
+        final SyntheticCorpus corpus = new SyntheticCorpus(SyntheticCorpus.DEFAULT_SEED);
+        this.root = new DigestURL("http://www.example.org/benchmark/scraper.html");
+        this.page = corpus.html(this.paragraphs, this.links);
+    }
+
+    @Benchmark
+    public int scrape() throws IOException {
+        final ContentScraper scraper = new ContentScraper(this.root, Integer.MAX_VALUE, new HashSet<String>(), new VocabularyScraper(), 0);
+        try (final Writer writer = new TransformerWriter(null, null, scraper, false)) {
+            FileUtils.copy(new StringReader(this.page), writer);
+        }
+        return scraper.getAnchors().size() + scraper.getText().length();
+    }
+
+}
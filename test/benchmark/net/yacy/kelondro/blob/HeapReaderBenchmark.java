@@ -0,0 +1,106 @@
+// HeapReaderBenchmark.java
+// ----
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+
+package net.yacy.kelondro.blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import net.yacy.benchmark.SyntheticCorpus;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * random reads from a heap file with and without the memory-mapped read view
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HeapReaderBenchmark {
+
+    private static final int RECORDS = 50000;
+
+    @Param({"false", "true"})
+    public boolean mapped;
+
+    @Param({"100", "2000"})
+    public int recordSize;
+
+    private File dir, file;
+    private byte[][] keys;
+    private HeapReader heap;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final SyntheticCorpus corpus = new SyntheticCorpus(SyntheticCorpus.DEFAULT_SEED);
+        // the index dumps of the heap are written next to the heap file
+        this.dir = Files.createTempDirectory("HeapReaderBenchmark").toFile();
+        this.file = new File(this.dir, "benchmark.heap");
+        this.keys = corpus.hashes(RECORDS);
+        final Heap writer = new Heap(this.file, 12, Base64Order.enhancedCoder, 1024 * 1024);
+        final byte[] record = new byte[this.recordSize];
+        for (final byte[] key: this.keys) {
+            corpus.random().nextBytes(record);
+            writer.insert(key, record);
+        }
+        writer.close(true);
+        this.heap = new HeapReader(this.file, 12, Base64Order.enhancedCoder, this.mapped);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.heap.close(false);
+        for (final File f: this.dir.listFiles()) FileUtils.deletedelete(f);
+        FileUtils.deletedelete(this.dir);
+    }
+
+    @Benchmark
+    public byte[] get() throws IOException, SpaceExceededException {
+        return this.heap.get(this.keys[ThreadLocalRandom.current().nextInt(RECORDS)]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] getConcurrent() throws IOException, SpaceExceededException {
+        return this.heap.get(this.keys[ThreadLocalRandom.current().nextInt(RECORDS)]);
+    }
+
+}
@@ -0,0 +1,135 @@
+// RowSetBenchmark.java
+// ----
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+
+package net.yacy.kelondro.index;
+
+import java.util.concurrent.TimeUnit;
+
+import net.yacy.benchmark.SyntheticCorpus;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.SpaceExceededException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * put and get on a RowSet, the RAM index of all kelondro tables
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowSetBenchmark {
+
+    private static final int OPERATIONS = 1000;
+
+    private static final Row rowdef = new Row(new Column[]{new Column("key", Column.celltype_binary, Column.encoder_bytes, 12, "key"), new Column("long c-8 {b256}")}, Base64Order.enhancedCoder);
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private RowSet set;
+    private byte[][] keys, absent;
+    private Row.Entry[] entries;
+
+    @Setup(Level.Trial)
+    public void setup() throws SpaceExceededException {
+        final SyntheticCorpus corpus = new SyntheticCorpus(SyntheticCorpus.DEFAULT_SEED);
+        this.set = new RowSet(rowdef, this.size);
+        this.keys = corpus.hashes(this.size);
+        for (int i = 0; i < this.size; i++) this.set.addUnique(entry(this.keys[i], i));
+        this.set.sort();
+        this.absent = corpus.hashes(OPERATIONS);
+        this.entries = new Row.Entry[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) this.entries[i] = entry(this.absent[i], i);
+    }
+
+    /**
+     * remove the rows written by the put benchmark to keep the size of the set constant
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+        for (final byte[] key: this.absent) this.set.delete(key);
+        this.set.sort();
+    }
+
+    private static Row.Entry entry(final byte[] key, final long value) {
+        final Row.Entry e = rowdef.newEntry();
+        e.setCol(0, key);
+        e.setCol(1, value);
+        return e;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int getExisting() {
+        int c = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (this.set.get(this.keys[(i * 7919) % this.size], false) != null) c++;
+        }
+        return c;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int getMissing() {
+        int c = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (this.set.get(this.absent[i], false) != null) c++;
+        }
+        return c;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int putReplace() throws SpaceExceededException {
+        int c = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (this.set.put(entry(this.keys[(i * 7919) % this.size], i))) c++;
+        }
+        return c;
+    }
+
+    /**
+     * put new rows; they are appended to the unsorted tail of the set and sorted with the next lookup
+     */
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int putNew() throws SpaceExceededException {
+        int c = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            if (this.set.put(this.entries[i])) c++;
+        }
+        return c;
+    }
+
+}
@@ -0,0 +1,124 @@
+// TermSearchBenchmark.java
+// ----
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+
+package net.yacy.kelondro.rwi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import net.yacy.benchmark.SyntheticCorpus;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.index.RowHandleSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * join and exclusion of reference containers as done in a TermSearch for a query with several words.
+ * The containers are taken from a RAM cache of synthetic references; the first query word is rare,
+ * the other ones are frequent, which is the usual case for searches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TermSearchBenchmark {
+
+    private static final int URLS = 200000;
+
+    /** number of words in the query */
+    @Param({"2", "4"})
+    public int words;
+
+    /** size of the containers of the frequent words */
+    @Param({"10000", "100000"})
+    public int frequent;
+
+    /** size of the container of the rare word */
+    @Param({"1000"})
+    public int rare;
+
+    private ReferenceContainerCache<WordReference> index;
+    private HandleSet include, exclude;
+    private List<ReferenceContainer<WordReference>> includeContainers, excludeContainers;
+
+    @Setup
+    public void setup() throws SpaceExceededException {
+        final SyntheticCorpus corpus = new SyntheticCorpus(SyntheticCorpus.DEFAULT_SEED);
+        final byte[][] urls = corpus.hashes(URLS);
+        this.index = new ReferenceContainerCache<WordReference>(SyntheticCorpus.factory, Base64Order.enhancedCoder, Word.commonHashLength);
+        this.include = new RowHandleSet(Word.commonHashLength, Base64Order.enhancedCoder, this.words);
+        this.exclude = new RowHandleSet(Word.commonHashLength, Base64Order.enhancedCoder, 1);
+        this.includeContainers = new ArrayList<ReferenceContainer<WordReference>>();
+        this.excludeContainers = new ArrayList<ReferenceContainer<WordReference>>();
+        for (int w = 0; w < this.words; w++) {
+            final ReferenceContainer<WordReference> c = corpus.container(corpus.hash(), urls, w == 0 ? this.rare : this.frequent);
+            this.index.add(c);
+            this.include.put(c.getTermHash());
+            this.includeContainers.add(c);
+        }
+        final ReferenceContainer<WordReference> x = corpus.container(corpus.hash(), urls, this.frequent);
+        this.index.add(x);
+        this.exclude.put(x.getTermHash());
+        this.excludeContainers.add(x);
+    }
+
+    @Benchmark
+    public int termSearch() throws SpaceExceededException {
+        return new TermSearch<WordReference>(this.index, this.include, this.exclude, null, SyntheticCorpus.factory, Integer.MAX_VALUE).joined().size();
+    }
+
+    @Benchmark
+    public int join() throws SpaceExceededException {
+        final ReferenceContainer<WordReference> result = ReferenceContainer.joinContainers(SyntheticCorpus.factory, this.includeContainers, Integer.MAX_VALUE);
+        return result == null ? 0 : result.size();
+    }
+
+    @Benchmark
+    public int joinExclude() throws SpaceExceededException {
+        return ReferenceContainer.joinExcludeContainers(SyntheticCorpus.factory, this.includeContainers, this.excludeContainers, Integer.MAX_VALUE).size();
+    }
+
+    /**
+     * the exclusion is destructive, therefore the pivot is a copy of the frequent container
+     */
+    @Benchmark
+    public int exclude() throws SpaceExceededException {
+        final ReferenceContainer<WordReference> pivot = this.includeContainers.get(1).topLevelClone();
+        final ReferenceContainer<WordReference> result = ReferenceContainer.excludeDestructive(SyntheticCorpus.factory, pivot, this.excludeContainers.get(0));
+        return result == null ? 0 : result.size();
+    }
+
+}
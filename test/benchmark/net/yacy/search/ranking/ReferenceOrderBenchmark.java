@@ -0,0 +1,91 @@
+// ReferenceOrderBenchmark.java
+// ----
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+
+package net.yacy.search.ranking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import net.yacy.benchmark.SyntheticCorpus;
+import net.yacy.cora.document.analysis.Classification.ContentDomain;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * normalization and ranking of the references of a search result with the default ranking profile
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReferenceOrderBenchmark {
+
+    /** number of references in the search result */
+    @Param({"1000", "50000"})
+    public int size;
+
+    private ReferenceContainer<WordReference> container;
+    private RankingProfile profile;
+
+    @Setup
+    public void setup() throws SpaceExceededException {
+        final SyntheticCorpus corpus = new SyntheticCorpus(SyntheticCorpus.DEFAULT_SEED);
+        this.container = corpus.container(corpus.hash(), corpus.hashes(this.size), this.size);
+        this.profile = new RankingProfile(ContentDomain.TEXT);
+    }
+
+    private static List<WordReferenceVars> drain(final BlockingQueue<WordReferenceVars> queue) throws InterruptedException {
+        final List<WordReferenceVars> list = new ArrayList<WordReferenceVars>();
+        WordReferenceVars entry;
+        while ((entry = queue.take()) != WordReferenceVars.poison) list.add(entry);
+        return list;
+    }
+
+    @Benchmark
+    public int normalize() throws InterruptedException {
+        return drain(new ReferenceOrder(this.profile, "en").normalizeWith(this.container, Long.MAX_VALUE, true)).size();
+    }
+
+    @Benchmark
+    public long normalizeAndRank() throws InterruptedException {
+        final ReferenceOrder order = new ReferenceOrder(this.profile, "en");
+        long r = 0;
+        for (final WordReferenceVars entry: drain(order.normalizeWith(this.container, Long.MAX_VALUE, true))) r += order.cardinal(entry);
+        return r;
+    }
+
+}
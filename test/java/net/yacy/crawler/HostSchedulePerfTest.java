@@ -0,0 +1,136 @@
+/**
+ *  HostSchedulePerfTest
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.order.Base64Order;
+
+/**
+ * Measure the pops per second of the host scheduling used by the {@link ShardedHostBalancer}
+ * with 10k, 100k and 1M hosts. As reference, the full scan over all hosts which is done by the
+ * {@link HostBalancer} for each refresh of its round-robin set is measured as well.
+ * The host queues themselves are not part of this benchmark; the access delay of each
+ * host is simulated with a random value.
+ */
+public class HostSchedulePerfTest {
+
+    private static String[] hosthashes(final int count) {
+        final String[] hashes = new String[count];
+        final Random random = new Random(count);
+        for (int i = 0; i < count; i++) {
+            hashes[i] = Base64Order.enhancedCoder.encodeLongSB(Math.abs(random.nextLong()), 6).toString();
+        }
+        return hashes;
+    }
+
+    /**
+     * pop hosts from a schedule and re-schedule them with a simulated delay using concurrent threads
+     * @return pops per second
+     */
+    private static long measureSchedule(final String[] hosts, final int threads, final long millis) throws InterruptedException {
+        final HostSchedule schedule = new HostSchedule(4 * threads);
+        final long now = System.currentTimeMillis();
+        final Random random = new Random(0);
+        for (final String h: hosts) schedule.put(h, now + random.nextInt(5000), 1 + random.nextInt(100));
+        final AtomicLong pops = new AtomicLong(0);
+        final long stop = System.currentTimeMillis() + millis;
+        final List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final Random r = new Random(t);
+            final Thread worker = new Thread() {
+                @Override
+                public void run() {
+                    long count = 0;
+                    while (System.currentTimeMillis() < stop) {
+                        for (int i = 0; i < 1000; i++) {
+                            final String h = schedule.take();
+                            if (h == null) break;
+                            schedule.put(h, System.currentTimeMillis() + 500 + r.nextInt(2000), 1 + r.nextInt(100));
+                            count++;
+                        }
+                    }
+                    pops.addAndGet(count);
+                }
+            };
+            worker.start();
+            workers.add(worker);
+        }
+        for (final Thread worker: workers) worker.join();
+        return pops.get() * 1000L / millis;
+    }
+
+    /**
+     * simulate the selection of the HostBalancer which builds a fuzzy delay tree over all hosts
+     * of the round-robin set; this is done again whenever the round-robin set is exhausted
+     * @return pops per second
+     */
+    private static long measureFullScan(final String[] hosts, final long millis) {
+        final Random random = new Random(0);
+        final Map<String, Long> due = new TreeMap<String, Long>();
+        final long now = System.currentTimeMillis();
+        for (final String h: hosts) due.put(h, now + random.nextInt(5000));
+        final Set<String> roundRobin = new HashSet<String>();
+        final long stop = System.currentTimeMillis() + millis;
+        long count = 0;
+        while (System.currentTimeMillis() < stop) {
+            if (roundRobin.isEmpty()) roundRobin.addAll(due.keySet());
+            final TreeMap<Long, List<String>> fastTree = new TreeMap<Long, List<String>>();
+            final long t = System.currentTimeMillis();
+            for (final String h: roundRobin) {
+                final long delta = Math.max(0, due.get(h) - t) / 200;
+                List<String> l = fastTree.get(delta);
+                if (l == null) {
+                    l = new ArrayList<String>(2);
+                    fastTree.put(delta, l);
+                }
+                l.add(h);
+            }
+            final String h = fastTree.firstEntry().getValue().get(0);
+            roundRobin.remove(h);
+            for (final String r: fastTree.lastEntry().getValue()) roundRobin.remove(r);
+            due.put(h, t + 500 + random.nextInt(2000));
+            count++;
+        }
+        return count * 1000L / millis;
+    }
+
+    /**
+     * @param args [threads] [seconds per run]
+     */
+    public static void main(final String[] args) throws InterruptedException {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        final long millis = TimeUnit.SECONDS.toMillis(args.length > 1 ? Integer.parseInt(args[1]) : 5);
+        for (final int count: new int[] {10000, 100000, 1000000}) {
+            final String[] hosts = hosthashes(count);
+            System.out.println(count + " hosts, schedule with " + threads + " threads : " + measureSchedule(hosts, threads, millis) + " pops/s");
+            System.out.println(count + " hosts, full scan (single thread)    : " + measureFullScan(hosts, millis) + " pops/s");
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package net.yacy.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class HostScheduleTest {
+
+    /**
+     * Test that hosts are taken in the order of their due time
+     */
+    @Test
+    public void testTakeOrder() {
+        final HostSchedule schedule = new HostSchedule(4);
+        final long now = 1000000L;
+        schedule.put("hostC", now + 3 * HostSchedule.GRANULARITY, 1);
+        schedule.put("hostA", now + 1 * HostSchedule.GRANULARITY, 1);
+        schedule.put("hostB", now + 2 * HostSchedule.GRANULARITY, 1);
+        assertEquals(3, schedule.size());
+        assertEquals("hostA", schedule.take());
+        assertEquals("hostB", schedule.take());
+        assertEquals("hostC", schedule.take());
+        assertNull(schedule.take());
+        assertTrue(schedule.isEmpty());
+    }
+
+    /**
+     * Test that hosts with the same due time slice are ordered by their size, larger first
+     */
+    @Test
+    public void testSizeOrder() {
+        final HostSchedule schedule = new HostSchedule(4);
+        final long now = 1000000L;
+        schedule.put("small", now, 1);
+        schedule.put("large", now + 1, 100);
+        schedule.put("medium", now + 2, 10);
+        assertEquals("large", schedule.take());
+        assertEquals("medium", schedule.take());
+        assertEquals("small", schedule.take());
+    }
+
+    /**
+     * Test that a re-scheduled host is moved to its new position and is not duplicated
+     */
+    @Test
+    public void testReschedule() {
+        final HostSchedule schedule = new HostSchedule(1);
+        final long now = 1000000L;
+        schedule.put("hostA", now, 1);
+        schedule.put("hostB", now + HostSchedule.GRANULARITY, 1);
+        schedule.put("hostA", now + 2 * HostSchedule.GRANULARITY, 1);
+        assertEquals(2, schedule.size());
+        assertEquals(now + 2 * HostSchedule.GRANULARITY, schedule.due("hostA"));
+        assertFalse(schedule.putIfAbsent("hostB", now, 1));
+        assertEquals("hostB", schedule.take());
+        assertTrue(schedule.remove("hostA"));
+        assertFalse(schedule.contains("hostA"));
+        assertNull(schedule.take());
+    }
+
+    /**
+     * Test that concurrent takes never return the same host twice
+     */
+    @Test
+    public void testConcurrentTake() throws InterruptedException {
+        final HostSchedule schedule = new HostSchedule(8);
+        final int hosts = 10000;
+        for (int i = 0; i < hosts; i++) schedule.put("host" + i, i, 1);
+        final Set<String> taken = new HashSet<String>();
+        final Thread[] threads = new Thread[8];
+        final int[] counts = new int[threads.length];
+        for (int t = 0; t < threads.length; t++) {
+            final int n = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    String h;
+                    while ((h = schedule.take()) != null) {
+                        synchronized (taken) {
+                            assertTrue(taken.add(h));
+                        }
+                        counts[n]++;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        int sum = 0;
+        for (int t = 0; t < threads.length; t++) {
+            threads[t].join();
+            sum += counts[t];
+        }
+        assertEquals(hosts, sum);
+        assertEquals(hosts, taken.size());
+    }
+
+}
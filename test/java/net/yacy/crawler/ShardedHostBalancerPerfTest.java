@@ -0,0 +1,150 @@
+/**
+ *  ShardedHostBalancerPerfTest
+ *  part of YaCy
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.crawler.retrieval.Request;
+import net.yacy.crawler.robots.RobotsTxt;
+import net.yacy.data.WorkTables;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * Measure the pops per second of {@link ShardedHostBalancer#pop(boolean, CrawlSwitchboard, RobotsTxt)}
+ * with concurrent threads, including the host queues on disk. The checks of the crawler which need
+ * a Switchboard (blacklist, crawl profile, latency) are replaced by a plain take from the host queue
+ * and a fixed access delay of 0.5 to 2.5 seconds per host, like in the ShardedHostBalancerTest.
+ */
+public class ShardedHostBalancerPerfTest {
+
+    private static final File QUEUES_ROOT = new File("test/DATA/INDEX/QUEUES_SHARDED_PERF");
+    private static final File DATA_DIR = new File("test/DATA");
+
+    private static class PerfBalancer extends ShardedHostBalancer {
+
+        private PerfBalancer(final File hostsPath) {
+            super(hostsPath, 1000, true, false);
+        }
+
+        @Override
+        Request popFrom(final HostQueue queue, final boolean delay, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException {
+            final Iterator<Request> i = queue.iterator();
+            if (!i.hasNext()) return null;
+            final Request request = i.next();
+            final HandleSet urlHashes = new RowHandleSet(Word.commonHashLength, Base64Order.enhancedCoder, 1);
+            try {
+                urlHashes.put(request.url().hash());
+            } catch (final SpaceExceededException e) {
+                throw new IOException(e.getMessage());
+            }
+            queue.remove(urlHashes);
+            return request;
+        }
+
+        @Override
+        int waitingRemaining(final String hosthash, final HostQueue queue, final RobotsTxt robots) {
+            return 500 + (hosthash.hashCode() & 0x7ff);
+        }
+    }
+
+    /**
+     * fill a new balancer with local hosts, distinguished by their port
+     * @return the balancer
+     */
+    private static ShardedHostBalancer fill(final int hosts, final int urls, final RobotsTxt robots) throws IOException, SpaceExceededException {
+        FileUtils.deletedelete(QUEUES_ROOT);
+        final ShardedHostBalancer balancer = new PerfBalancer(QUEUES_ROOT);
+        final Random random = new Random(hosts);
+        for (int u = 0; u < urls; u++) {
+            for (int h = 0; h < hosts; h++) {
+                final DigestURL url = new DigestURL("http://localhost:" + (1024 + h) + "/" + u + "/" + random.nextInt());
+                balancer.push(new Request(ASCII.getBytes("testPeer"), url, null, "", new Date(), "profile", 0, 0), null, robots);
+            }
+        }
+        return balancer;
+    }
+
+    /**
+     * pop all urls from the balancer using concurrent threads
+     * @return pops per second
+     */
+    private static long measurePop(final ShardedHostBalancer balancer, final int threads, final RobotsTxt robots) throws InterruptedException {
+        final AtomicLong pops = new AtomicLong(0);
+        final List<Thread> workers = new ArrayList<Thread>();
+        final long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final Thread worker = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (balancer.pop(false, null, robots) != null) pops.incrementAndGet();
+                    } catch (final IOException e) {
+                        ConcurrentLog.logException(e);
+                    }
+                }
+            };
+            worker.start();
+            workers.add(worker);
+        }
+        for (final Thread worker: workers) worker.join();
+        final long nanos = Math.max(1, System.nanoTime() - start);
+        return pops.get() * 1000000000L / nanos;
+    }
+
+    /**
+     * @param args [threads] [urls per host]
+     */
+    public static void main(final String[] args) throws Exception {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        final int urls = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final RobotsTxt robots = new RobotsTxt(new WorkTables(DATA_DIR), null, 10);
+        try {
+            for (final int hosts: new int[] {100, 1000, 10000}) {
+                final ShardedHostBalancer balancer = fill(hosts, urls, robots);
+                try {
+                    final int size = balancer.size();
+                    System.out.println(hosts + " hosts, " + size + " urls, pop with " + threads + " threads : " + measurePop(balancer, threads, robots) + " pops/s");
+                } finally {
+                    balancer.close();
+                }
+            }
+        } finally {
+            robots.close();
+            FileUtils.deletedelete(QUEUES_ROOT);
+            ConcurrentLog.shutdown();
+        }
+    }
+
+}
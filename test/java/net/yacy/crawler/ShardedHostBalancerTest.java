@@ -0,0 +1,233 @@
+package net.yacy.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.crawler.retrieval.Request;
+import net.yacy.crawler.robots.RobotsTxt;
+import net.yacy.data.WorkTables;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.util.FileUtils;
+
+public class ShardedHostBalancerTest {
+
+    private static final File QUEUES_ROOT = new File("test/DATA/INDEX/QUEUES_SHARDED");
+    private static final File DATA_DIR = new File("test/DATA");
+
+    private static final boolean EXCEED_134217727 = true;
+    private static final int ON_DEMAND_LIMIT = 1000;
+
+    /**
+     * A balancer which takes the requests from the host queues without the checks of the crawler
+     * (blacklist, crawl profile, latency) and with a fixed delay per host, so it runs without a Switchboard.
+     */
+    private static class TestBalancer extends ShardedHostBalancer {
+
+        /** the delay (in milliseconds) of a host after a pop, by host hash */
+        private final Map<String, Integer> delays = new HashMap<String, Integer>();
+
+        private TestBalancer(final File hostsPath) {
+            super(hostsPath, ON_DEMAND_LIMIT, EXCEED_134217727, false);
+        }
+
+        @Override
+        Request popFrom(final HostQueue queue, final boolean delay, final CrawlSwitchboard cs, final RobotsTxt robots) throws IOException {
+            final Iterator<Request> i = queue.iterator();
+            if (!i.hasNext()) return null;
+            final Request request = i.next();
+            final HandleSet urlHashes = new RowHandleSet(Word.commonHashLength, Base64Order.enhancedCoder, 1);
+            try {
+                urlHashes.put(request.url().hash());
+            } catch (final SpaceExceededException e) {
+                throw new IOException(e.getMessage());
+            }
+            queue.remove(urlHashes);
+            return request;
+        }
+
+        @Override
+        int waitingRemaining(final String hosthash, final HostQueue queue, final RobotsTxt robots) {
+            final Integer delay = this.delays.get(hosthash);
+            return delay == null ? 0 : delay.intValue();
+        }
+    }
+
+    private TestBalancer balancer;
+    private RobotsTxt robots;
+
+    @Before
+    public void setUp() {
+        FileUtils.deletedelete(QUEUES_ROOT); // start clean test
+        this.balancer = new TestBalancer(QUEUES_ROOT);
+        this.balancer.clear();
+        this.robots = new RobotsTxt(new WorkTables(DATA_DIR), null, 10);
+    }
+
+    @After
+    public void tearDown() {
+        this.balancer.close();
+        this.robots.close();
+        FileUtils.deletedelete(QUEUES_ROOT);
+    }
+
+    /* We use here local test URLs to prevent running RobotsTxt internals */
+    private static DigestURL url(final int port, final int i) throws IOException {
+        return new DigestURL("http://localhost:" + port + "/" + i);
+    }
+
+    private void push(final DigestURL url, final String profileHandle) throws IOException, SpaceExceededException {
+        final Request request = new Request(ASCII.getBytes("testPeer"), url, null, "", new Date(), profileHandle, 0, 0);
+        assertNull(this.balancer.push(request, null, this.robots));
+    }
+
+    private String popHost() throws IOException {
+        final Request request = this.balancer.pop(false, null, this.robots);
+        return request == null ? null : request.url().hosthash();
+    }
+
+    /**
+     * Test that the hosts are popped in the order of their due time and that
+     * a host is delayed after a pop by its waiting time
+     */
+    @Test
+    public void testPopOrder() throws IOException, SpaceExceededException, InterruptedException {
+        final String hostA = url(8081, 0).hosthash();
+        final String hostB = url(8082, 0).hosthash();
+        final String hostC = url(8083, 0).hosthash();
+        this.balancer.delays.put(hostA, 10000);
+        this.balancer.delays.put(hostB, 0);
+        this.balancer.delays.put(hostC, 0);
+
+        // new hosts are due at the time of their first push
+        for (final int port: new int[]{8081, 8082, 8083}) {
+            push(url(port, 0), "profile");
+            push(url(port, 1), "profile");
+            Thread.sleep(HostSchedule.GRANULARITY + 50);
+        }
+        assertEquals(6, this.balancer.size());
+
+        assertEquals(hostA, popHost());
+        assertEquals(hostB, popHost()); // hostA is delayed now
+        assertEquals(hostC, popHost()); // hostB is due again, but later than hostC
+        assertEquals(hostB, popHost());
+        assertEquals(hostC, popHost());
+        assertEquals(hostA, popHost()); // the delay is only a due time, the last host is taken anyway
+        assertNull(popHost());
+        assertEquals(0, this.balancer.size());
+        assertTrue(this.balancer.isEmpty());
+    }
+
+    /**
+     * Test that a delayed host is popped after all other hosts which are due earlier,
+     * including hosts which were pushed later
+     */
+    @Test
+    public void testHostDelay() throws IOException, SpaceExceededException {
+        final String hostA = url(8081, 0).hosthash();
+        final String hostB = url(8082, 0).hosthash();
+        this.balancer.delays.put(hostA, 10000);
+
+        push(url(8081, 0), "profile");
+        push(url(8081, 1), "profile");
+        assertEquals(hostA, popHost());
+        push(url(8082, 0), "profile");
+        push(url(8082, 1), "profile");
+        assertEquals(hostB, popHost());
+        assertEquals(hostB, popHost());
+        assertEquals(hostA, popHost());
+        assertNull(popHost());
+    }
+
+    /**
+     * Test the removal of all urls of a host
+     */
+    @Test
+    public void testRemoveAllByHostHashes() throws IOException, SpaceExceededException {
+        for (int i = 0; i < 3; i++) {
+            push(url(8081, i), "profile");
+            push(url(8082, i), "profile");
+        }
+        assertEquals(6, this.balancer.size());
+
+        final Set<String> hosthashes = new HashSet<String>();
+        hosthashes.add(url(8081, 0).hosthash());
+        assertEquals(3, this.balancer.removeAllByHostHashes(hosthashes));
+        assertEquals(3, this.balancer.size());
+        for (int i = 0; i < 3; i++) {
+            assertFalse(this.balancer.has(url(8081, i).hash()));
+            assertTrue(this.balancer.has(url(8082, i).hash()));
+        }
+
+        // the host can be pushed again
+        push(url(8081, 0), "profile");
+        assertEquals(4, this.balancer.size());
+    }
+
+    /**
+     * Test the removal of all urls of a crawl profile
+     */
+    @Test
+    public void testRemoveAllByProfileHandle() throws IOException, SpaceExceededException {
+        for (int i = 0; i < 4; i++) {
+            push(url(8081, i), i % 2 == 0 ? "profileA" : "profileB");
+            push(url(8082, i), "profileB");
+        }
+        assertEquals(8, this.balancer.size());
+
+        assertEquals(2, this.balancer.removeAllByProfileHandle("profileA", Long.MAX_VALUE));
+        assertEquals(6, this.balancer.size());
+        for (int i = 0; i < 4; i++) {
+            if (i % 2 == 0) {
+                assertNull(this.balancer.get(url(8081, i).hash()));
+            } else {
+                assertNotNull(this.balancer.get(url(8081, i).hash()));
+            }
+            assertNotNull(this.balancer.get(url(8082, i).hash()));
+        }
+        assertEquals(0, this.balancer.removeAllByProfileHandle("profileA", Long.MAX_VALUE));
+        assertEquals(6, this.balancer.removeAllByProfileHandle("profileB", Long.MAX_VALUE));
+        assertTrue(this.balancer.isEmpty());
+    }
+
+    /**
+     * Test the removal of single urls
+     */
+    @Test
+    public void testRemove() throws IOException, SpaceExceededException {
+        for (int i = 0; i < 3; i++) {
+            push(url(8081, i), "profile");
+            push(url(8082, i), "profile");
+        }
+        final HandleSet urlHashes = new RowHandleSet(Word.commonHashLength, Base64Order.enhancedCoder, 2);
+        urlHashes.put(url(8081, 1).hash());
+        urlHashes.put(url(8082, 2).hash());
+        assertEquals(2, this.balancer.remove(urlHashes));
+        assertEquals(4, this.balancer.size());
+        assertFalse(this.balancer.has(url(8081, 1).hash()));
+        assertFalse(this.balancer.has(url(8082, 2).hash()));
+        assertTrue(this.balancer.has(url(8081, 0).hash()));
+    }
+
+}
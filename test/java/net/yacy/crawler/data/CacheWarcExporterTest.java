@@ -0,0 +1,85 @@
+package net.yacy.crawler.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+import org.jwat.common.HttpHeader;
+import org.jwat.warc.WarcConstants;
+import org.jwat.warc.WarcReader;
+import org.jwat.warc.WarcReaderFactory;
+import org.jwat.warc.WarcRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.protocol.HeaderFramework;
+import net.yacy.cora.protocol.ResponseHeader;
+import net.yacy.kelondro.util.FileUtils;
+
+public class CacheWarcExporterTest {
+
+    @Before
+    public void setUp() {
+        Cache.init(new File(System.getProperty("java.io.tmpdir") + File.separator + "testWarcCache"), "peerSalt",
+                Cache.DEFAULT_COMPRESSOR_BUFFER_SIZE * 4, 2000, Deflater.BEST_COMPRESSION);
+        Cache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        Cache.clear();
+        Cache.close();
+    }
+
+    /**
+     * Test that the exported archive contains a response record with header and content for each cached document
+     */
+    @Test
+    public void testExport() throws Exception {
+        final Map<String, String> documents = new HashMap<String, String>();
+        documents.put("http://yacy.net/index.html", "<html><body>YaCy</body></html>");
+        documents.put("http://example.org/text.txt", "just some text");
+        for (final Map.Entry<String, String> document : documents.entrySet()) {
+            final ResponseHeader header = new ResponseHeader(200);
+            header.put(HeaderFramework.CONTENT_TYPE, document.getKey().endsWith(".html") ? "text/html" : "text/plain");
+            header.put(HeaderFramework.TRANSFER_ENCODING, "chunked");
+            Cache.store(new DigestURL(document.getKey()), header, document.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+
+        for (final boolean compressed : new boolean[] {false, true}) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new CacheWarcExporter(new File("test.warc")).export(out, compressed);
+
+            final WarcReader reader = WarcReaderFactory.getReader(new ByteArrayInputStream(out.toByteArray()));
+            assertEquals(compressed, reader.isCompressed());
+            WarcRecord record = reader.getNextRecord();
+            assertNotNull(record);
+            assertEquals(WarcConstants.RT_WARCINFO, record.getHeader(WarcConstants.FN_WARC_TYPE).value);
+            int responses = 0;
+            while ((record = reader.getNextRecord()) != null) {
+                assertEquals(WarcConstants.RT_RESPONSE, record.getHeader(WarcConstants.FN_WARC_TYPE).value);
+                final String url = record.getHeader(WarcConstants.FN_WARC_TARGET_URI).value;
+                assertTrue(documents.containsKey(url));
+                final HttpHeader http = record.getHttpHeader();
+                assertEquals(Integer.valueOf(200), http.statusCode);
+                assertEquals(null, http.getHeader(HeaderFramework.TRANSFER_ENCODING));
+                assertArrayEquals(documents.get(url).getBytes(StandardCharsets.UTF_8), FileUtils.read(record.getPayloadContent()));
+                responses++;
+            }
+            reader.close();
+            assertEquals(documents.size(), responses);
+        }
+    }
+
+}
@@ -34,6 +34,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Properties;
 import java.util.Set;
 
 import org.junit.Assert;
@@ -517,4 +518,83 @@ public class ContentScraperTest {
 		}
     }
 
+    /**
+     * Listener collecting the text and anchor events of a scraper
+     */
+    private static class CollectingListener implements ContentScraperListener {
+
+    	final StringBuilder text = new StringBuilder();
+    	final List<String> anchors = new ArrayList<>();
+
+		@Override
+		public void scrapeTag0(String tagname, Properties tagopts) {
+		}
+
+		@Override
+		public void scrapeTag1(String tagname, Properties tagopts, char[] text) {
+		}
+
+		@Override
+		public void anchorAdded(String anchorURL) {
+			this.anchors.add(anchorURL);
+		}
+
+		@Override
+		public void textAdded(char[] chars, int offset, int length) {
+			this.text.append(chars, offset, length).append(' ');
+		}
+    }
+
+    /**
+     * Test that the streaming mode sends the same text and anchors to the listeners as the collecting mode stores,
+     * and that it applies the anchors limit
+     * @throws IOException
+     */
+    @Test
+    public void testStreaming() throws IOException {
+    	final String html = "<!DOCTYPE html><head><title>Test document</title></head><body>"
+    			+ "<h1>Head &amp; line</h1><p>Some  text with\n an url http://yacy.net/ inside</p>"
+    			+ "<a href=\"/first.html\">first <b>link</b></a> <a href=\"http://example.net/second.html\">second</a>"
+    			+ "<p>last text</p></body>";
+    	final DigestURL docUrl = new DigestURL("http://example.org/doc.html");
+
+    	final ContentScraper collecting = new ContentScraper(docUrl, 10, new HashSet<String>(), new VocabularyScraper(), 0);
+    	final CollectingListener collectingListener = new CollectingListener();
+    	collecting.registerHtmlFilterEventListener(collectingListener);
+    	final ContentScraper streaming = new ContentScraper(docUrl, 10, new HashSet<String>(), new VocabularyScraper(), 0);
+    	final CollectingListener streamingListener = new CollectingListener();
+    	streaming.registerHtmlFilterEventListener(streamingListener);
+    	streaming.setStreaming(true);
+    	try {
+    		for (final ContentScraper scraper : new ContentScraper[] {collecting, streaming}) {
+    			try (final Writer writer = new TransformerWriter(null, null, scraper, false)) {
+    				FileUtils.copy(new StringReader(html), writer);
+    			}
+    		}
+    		Assert.assertEquals(collecting.getText(), streamingListener.text.toString().trim());
+    		Assert.assertEquals(collectingListener.text.toString(), streamingListener.text.toString());
+    		Assert.assertEquals(3, collecting.getAnchors().size());
+    		Assert.assertEquals(collectingListener.anchors, streamingListener.anchors);
+    		Assert.assertEquals("Head & line", collecting.getHeadlines(1)[0]);
+    		Assert.assertEquals("", streaming.getText());
+    		Assert.assertTrue(streaming.getAnchors().isEmpty());
+    	} finally {
+    		collecting.close();
+    		streaming.close();
+    	}
+
+    	/* the anchors limit is applied also when the anchors are not stored */
+    	final ContentScraper limited = new ContentScraper(docUrl, 2, 10, new HashSet<String>(), new VocabularyScraper(), 0);
+    	final CollectingListener limitedListener = new CollectingListener();
+    	limited.registerHtmlFilterEventListener(limitedListener);
+    	limited.setStreaming(true);
+    	try (final Writer writer = new TransformerWriter(null, null, limited, false)) {
+    		FileUtils.copy(new StringReader(html), writer);
+    	} finally {
+    		limited.close();
+    	}
+    	Assert.assertTrue(limited.isMaxAnchorsExceeded());
+    	Assert.assertEquals(2, limitedListener.anchors.size());
+    }
+
 }
@@ -0,0 +1,91 @@
+package net.yacy.kelondro.blob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.util.Date;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.util.Bitfield;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.junit.Test;
+
+public class ArrayStackTest {
+
+    private static final WordReferenceFactory factory = new WordReferenceFactory();
+
+    private static WordReferenceRow reference(final String urlHash) {
+        final WordReferenceRow ientry = new WordReferenceRow(
+                ASCII.getBytes(urlHash), 20, 3, 2,
+                1, 1,
+                System.currentTimeMillis(), System.currentTimeMillis(),
+                UTF8.getBytes("en"), 't',
+                0, 0);
+        final Word word = new Word(5, 1, 100);
+        word.flags = new Bitfield(4);
+        ientry.setWord(word);
+        return ientry;
+    }
+
+    /**
+     * write a BLOB file with containers for the given terms, the terms must be given in ascending order
+     */
+    private static void writeBLOB(final File f, final String[] terms, final String urlHash) throws Exception {
+        final HeapWriter writer = new HeapWriter(new File(f.getParentFile(), f.getName() + ".prt"), f, Word.commonHashLength, Base64Order.enhancedCoder, 1024);
+        for (final String term: terms) {
+            final ReferenceContainer<WordReference> c = new ReferenceContainer<WordReference>(factory, ASCII.getBytes(term), 1);
+            c.add(reference(urlHash));
+            writer.add(c.getTermHash(), c.exportCollection());
+        }
+        writer.close(true);
+    }
+
+    private static int references(final ArrayStack stack, final String term) throws Exception {
+        final byte[] b = stack.get(ASCII.getBytes(term));
+        assertNotNull(term, b);
+        return RowSet.importRowSet(b, factory.getRow()).size();
+    }
+
+    /**
+     * Test that a merge of more than two files combines the containers of the same term from all inputs
+     */
+    @Test
+    public void testMultiWayMerge() throws Exception {
+        final File dir = new File(System.getProperty("java.io.tmpdir"), "ArrayStackTest.merge");
+        FileUtils.deletedelete(dir);
+        dir.mkdirs();
+        final ArrayStack stack = new ArrayStack(dir, "text.index", Base64Order.enhancedCoder, Word.commonHashLength, 0, false, true);
+        try {
+            final long t = System.currentTimeMillis();
+            final File[] files = new File[]{stack.newBLOB(new Date(t)), stack.newBLOB(new Date(t + 1)), stack.newBLOB(new Date(t + 2))};
+            writeBLOB(files[0], new String[]{"AAAAAAAAAAAA", "termhash0001"}, "urlhash00001");
+            writeBLOB(files[1], new String[]{"termhash0001", "zzzzzzzzzzzz"}, "urlhash00002");
+            writeBLOB(files[2], new String[]{"BBBBBBBBBBBB", "termhash0001", "zzzzzzzzzzzz"}, "urlhash00003");
+
+            final File result = stack.mergeMount(files, factory, stack.newBLOB(new Date(t + 3)), 1024);
+            assertNotNull(result);
+            for (final File f: files) assertFalse(f.exists());
+            assertEquals(1, stack.entries());
+            assertEquals(4, stack.size());
+            assertEquals(3, references(stack, "termhash0001"));
+            assertEquals(2, references(stack, "zzzzzzzzzzzz"));
+            assertEquals(1, references(stack, "AAAAAAAAAAAA"));
+            assertEquals(1, references(stack, "BBBBBBBBBBBB"));
+        } finally {
+            stack.close(false);
+            FileUtils.deletedelete(dir);
+        }
+    }
+
+}
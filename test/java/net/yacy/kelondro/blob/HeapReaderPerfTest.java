@@ -0,0 +1,111 @@
+// HeapReaderPerfTest.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.blob;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * Compare the concurrent read throughput of {@link HeapReader#get(byte[])} with the
+ * synchronized file pointer access and with the memory-mapped access.
+ */
+public class HeapReaderPerfTest {
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    /**
+     * Run random concurrent reads for the given time on a heap and return the number of reads per second
+     */
+    private static long measure(final HeapModifier heap, final int entries, final int threads, final long millis) throws InterruptedException {
+        final AtomicLong reads = new AtomicLong(0);
+        final long stop = System.currentTimeMillis() + millis;
+        final Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random(t);
+            workers[t] = new Thread() {
+                @Override
+                public void run() {
+                    long count = 0;
+                    try {
+                        while (System.currentTimeMillis() < stop) {
+                            for (int i = 0; i < 1000; i++) {
+                                if (heap.get(key(random.nextInt(entries))) == null) throw new IOException("missing entry");
+                                count++;
+                            }
+                        }
+                    } catch (final IOException | SpaceExceededException e) {
+                        e.printStackTrace();
+                    }
+                    reads.addAndGet(count);
+                }
+            };
+            workers[t].start();
+        }
+        for (final Thread worker : workers) worker.join();
+        return reads.get() * 1000L / millis;
+    }
+
+    /**
+     * @param args [entries] [blob size in bytes] [threads] [seconds per run]
+     */
+    public static void main(final String[] args) throws Exception {
+        final int entries = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        final int blobSize = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        final int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        final long millis = TimeUnit.SECONDS.toMillis(args.length > 3 ? Integer.parseInt(args[3]) : 10);
+
+        final File f = new File(System.getProperty("java.io.tmpdir"), "HeapReaderPerfTest.heap");
+        FileUtils.deletedelete(f);
+        try {
+            final Random random = new Random(0);
+            final Heap writer = new Heap(f, 12, NaturalOrder.naturalOrder, 1024 * 1024);
+            final byte[] blob = new byte[blobSize];
+            for (int i = 0; i < entries; i++) {
+                random.nextBytes(blob);
+                writer.insert(key(i), blob);
+            }
+            writer.close(true);
+            System.out.println("wrote " + entries + " entries, heap size " + (f.length() / 1024 / 1024) + " MB, " + threads + " threads");
+
+            for (final boolean mapped : new boolean[] {false, true, false, true}) {
+                final HeapModifier heap = new HeapModifier(f, 12, NaturalOrder.naturalOrder, mapped);
+                try {
+                    System.out.println((mapped ? "mapped      " : "synchronized") + " : " + measure(heap, entries, threads, millis) + " reads/s");
+                } finally {
+                    heap.close(true);
+                }
+            }
+        } finally {
+            FileUtils.deletedelete(f);
+            ConcurrentLog.shutdown();
+        }
+    }
+
+}
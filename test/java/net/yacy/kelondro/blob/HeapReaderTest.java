@@ -0,0 +1,169 @@
+package net.yacy.kelondro.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.kelondro.util.FileUtils;
+
+public class HeapReaderTest {
+
+    private static File writeHeap(final String name, final int count) throws Exception {
+        final File f = new File(System.getProperty("java.io.tmpdir"), name);
+        FileUtils.deletedelete(f);
+        final Heap heap = new Heap(f, 12, NaturalOrder.naturalOrder, 1024);
+        for (int i = 0; i < count; i++) {
+            heap.insert(key(i), value(i));
+        }
+        heap.close(false);
+        return f;
+    }
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    private static byte[] value(final int i) {
+        return ASCII.getBytes("value-" + i + "-" + Integer.toHexString(i * 31));
+    }
+
+    /**
+     * Test that a memory-mapped heap returns the same content as the synchronized file access
+     */
+    @Test
+    public void testMappedGet() throws Exception {
+        final File f = writeHeap("HeapReaderTest.mapped.heap", 1000);
+        final HeapModifier heap = new HeapModifier(f, 12, NaturalOrder.naturalOrder, true);
+        try {
+            assertTrue(heap.isMapped());
+            for (int i = 0; i < 1000; i++) {
+                assertTrue(heap.containsKey(key(i)));
+                assertArrayEquals(value(i), heap.get(key(i)));
+                assertEquals(value(i).length, heap.length(key(i)));
+            }
+            assertFalse(heap.containsKey(key(1000)));
+            assertNull(heap.get(key(1000)));
+            assertEquals(-1, heap.length(key(1000)));
+        } finally {
+            heap.close(false);
+            FileUtils.deletedelete(f);
+        }
+    }
+
+    /**
+     * Test that deletions in a heap are visible to the mapped read access
+     */
+    @Test
+    public void testMappedDelete() throws Exception {
+        final File f = writeHeap("HeapReaderTest.delete.heap", 100);
+        final HeapModifier heap = new HeapModifier(f, 12, NaturalOrder.naturalOrder, true);
+        try {
+            heap.delete(key(10));
+            heap.delete(key(11));
+            assertNull(heap.get(key(10)));
+            assertNull(heap.get(key(11)));
+            assertFalse(heap.containsKey(key(11)));
+            assertArrayEquals(value(12), heap.get(key(12)));
+            assertEquals(98, heap.size());
+        } finally {
+            heap.close(false);
+        }
+        // re-open after close which may have shrinked the file
+        final HeapModifier reopened = new HeapModifier(f, 12, NaturalOrder.naturalOrder, true);
+        try {
+            assertNull(reopened.get(key(10)));
+            assertArrayEquals(value(99), reopened.get(key(99)));
+        } finally {
+            reopened.close(false);
+            FileUtils.deletedelete(f);
+        }
+    }
+
+    /**
+     * Test that the head of a BLOB is read from the mapped file, the file and the write buffer
+     */
+    @Test
+    public void testHead() throws Exception {
+        final File f = writeHeap("HeapReaderTest.head.heap", 100);
+        for (final boolean mapped: new boolean[]{true, false}) {
+            final HeapModifier heap = new HeapModifier(f, 12, NaturalOrder.naturalOrder, mapped);
+            try {
+                for (int i = 0; i < 100; i++) {
+                    assertArrayEquals(Arrays.copyOf(value(i), 4), heap.head(key(i), 4));
+                    assertArrayEquals(value(i), heap.head(key(i), 1000));
+                }
+                assertNull(heap.head(key(100), 4));
+            } finally {
+                heap.close(false);
+            }
+        }
+        final Heap heap = new Heap(f, 12, NaturalOrder.naturalOrder, 1024);
+        try {
+            heap.insert(key(100), value(100));
+            assertArrayEquals(Arrays.copyOf(value(100), 4), heap.head(key(100), 4));
+            assertArrayEquals(Arrays.copyOf(value(1), 4), heap.head(key(1), 4));
+        } finally {
+            heap.close(false);
+            FileUtils.deletedelete(f);
+        }
+    }
+
+    /**
+     * Test that the mapping follows the file when gaps at its end are cut off and that
+     * reads which run while the heap is shrinked do not fail
+     */
+    @Test
+    public void testMappedShrink() throws Exception {
+        final File f = writeHeap("HeapReaderTest.shrink.heap", 1000);
+        final HeapModifier heap = new HeapModifier(f, 12, NaturalOrder.naturalOrder, true);
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final Thread[] readers = new Thread[4];
+        for (int t = 0; t < readers.length; t++) {
+            readers[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        int i = 0;
+                        while (running.get()) {
+                            final int k = i++ % 900;
+                            final byte[] b = heap.get(key(k));
+                            if (b != null && !Arrays.equals(value(k), b)) throw new AssertionError("wrong value for " + k);
+                        }
+                    } catch (final Throwable e) {
+                        failure.set(e);
+                    }
+                }
+            };
+            readers[t].start();
+        }
+        try {
+            final long length = f.length();
+            for (int i = 900; i < 1000; i++) heap.delete(key(i));
+            heap.shrinkWithGapsAtEnd();
+            assertTrue(f.length() < length);
+            assertTrue(heap.isMapped());
+            assertEquals(f.length(), heap.mapped.length());
+            for (int i = 0; i < 900; i++) assertArrayEquals(value(i), heap.get(key(i)));
+            assertNull(heap.get(key(950)));
+        } finally {
+            running.set(false);
+            for (final Thread t: readers) t.join();
+            heap.close(false);
+            FileUtils.deletedelete(f);
+        }
+        assertNull(failure.get());
+    }
+
+}
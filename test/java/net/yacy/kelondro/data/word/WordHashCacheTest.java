@@ -0,0 +1,138 @@
+package net.yacy.kelondro.data.word;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+
+public class WordHashCacheTest {
+
+    private static byte[] hash(final int i) {
+        return ASCII.getBytes(String.format("%012d", i));
+    }
+
+    /**
+     * Test that cached words return their hash and that the cache evicts entries when a bucket is full
+     */
+    @Test
+    public void testGetPut() {
+        final WordHashCache cache = new WordHashCache(1024, false);
+        assertEquals(1024, cache.capacity());
+        assertNull(cache.get("yacy"));
+        cache.put("yacy", hash(1));
+        cache.put("müller", hash(2));
+        assertArrayEquals(hash(1), cache.get("yacy"));
+        assertArrayEquals(hash(2), cache.get("müller"));
+        assertNull(cache.get("yac"));
+
+        // words which are too long for a slot are cached on the heap
+        final String longWord = "abcdefghijklmnopqrstuvwxyz";
+        cache.put(longWord, hash(3));
+        assertArrayEquals(hash(3), cache.get(longWord));
+        assertEquals(3, cache.size());
+        cache.clear();
+        assertNull(cache.get(longWord));
+        cache.put("yacy", hash(1));
+        cache.put("müller", hash(2));
+
+        // the cache does not grow beyond its capacity
+        for (int i = 0; i < 10000; i++) cache.put("word" + i, hash(i));
+        assertTrue(cache.size() <= cache.capacity());
+        assertTrue(cache.evict.sum() > 0);
+        int found = 0;
+        for (int i = 0; i < 10000; i++) {
+            final byte[] h = cache.get("word" + i);
+            if (h != null) {
+                assertArrayEquals(hash(i), h);
+                found++;
+            }
+        }
+        assertEquals(cache.size(), found + (cache.get("yacy") == null ? 0 : 1) + (cache.get("müller") == null ? 0 : 1));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("word9999"));
+    }
+
+    /**
+     * Test that the cache of the long words does not grow beyond its capacity
+     */
+    @Test
+    public void testLongWords() {
+        final WordHashCache cache = new WordHashCache(1024, false);
+        final String prefix = "donaudampfschifffahrtsgesellschaft";
+        for (int i = 0; i < 10000; i++) cache.put(prefix + i, hash(i));
+        assertTrue(cache.size() < 1000);
+        int found = 0;
+        for (int i = 0; i < 10000; i++) {
+            final byte[] h = cache.get(prefix + i);
+            if (h != null) {
+                assertArrayEquals(hash(i), h);
+                found++;
+            }
+        }
+        assertEquals(cache.size(), found);
+        assertArrayEquals(hash(9999), cache.get(prefix + 9999));
+    }
+
+    /**
+     * Test that word2hash returns the same hashes with and without the cache
+     */
+    @Test
+    public void testWord2hash() {
+        final byte[] h = Word.word2hash("Suchmaschine");
+        assertArrayEquals(h, Word.word2hash("suchmaschine"));
+        Word.clearCache();
+        assertArrayEquals(h, Word.word2hash("SUCHMASCHINE"));
+        assertEquals(Word.commonHashLength, h.length);
+    }
+
+    /**
+     * Test that a saved cache is loaded again and that a damaged file is not loaded
+     */
+    @Test
+    public void testSaveLoad() throws Exception {
+        final File file = new File(System.getProperty("java.io.tmpdir"), "WordHashCacheTest.cache");
+        try {
+            final WordHashCache cache = new WordHashCache(4096, true);
+            for (int i = 0; i < 1000; i++) cache.put("w" + i, hash(i));
+            final int size = cache.size();
+            assertEquals(size, cache.save(file));
+
+            final WordHashCache loaded = new WordHashCache(4096, false);
+            assertEquals(size, loaded.load(file));
+            assertEquals(size, loaded.size());
+            for (int i = 0; i < 1000; i++) {
+                final byte[] h = cache.get("w" + i);
+                if (h != null) assertArrayEquals(h, loaded.get("w" + i));
+            }
+
+            try (final RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.seek(10);
+                final int b = raf.read();
+                raf.seek(10);
+                raf.write(b ^ 0xff);
+            }
+            final WordHashCache damaged = new WordHashCache(4096, false);
+            try {
+                damaged.load(file);
+                fail("a damaged file must not be loaded");
+            } catch (final IOException e) {
+                // expected
+            }
+            assertEquals(0, damaged.size());
+        } finally {
+            file.delete();
+        }
+    }
+
+}
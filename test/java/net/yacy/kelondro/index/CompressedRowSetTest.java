@@ -0,0 +1,114 @@
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+
+import org.junit.Test;
+
+public class CompressedRowSetTest {
+
+    private static final Row rwirow = WordReferenceRow.urlEntryRow;
+    private static final Row binaryrow = new Row(new Column[]{new Column("key", Column.celltype_binary, Column.encoder_bytes, 12, "key"), new Column("long c-4 {b256}")}, NaturalOrder.naturalOrder);
+
+    private static RowSet randomSet(final Row rowdef, final Random r, final int count, final boolean base64keys) throws Exception {
+        final RowSet set = new RowSet(rowdef, count);
+        final byte[] b = new byte[rowdef.objectsize];
+        for (int i = 0; i < count; i++) {
+            r.nextBytes(b);
+            if (base64keys) System.arraycopy(IndexTest.randomHash(r), 0, b, 0, rowdef.primaryKeyLength);
+            if (b[0] == 0) b[0] = 1; // a key must not start with zero
+            for (int j = rowdef.primaryKeyLength; j < b.length; j += 3) b[j] = 0; // attributes of references have many zero bytes
+            set.put(rowdef.newEntry(b));
+        }
+        set.sort();
+        return set;
+    }
+
+    private static void assertSameRows(final RowSet expected, final RowSet actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) assertArrayEquals(expected.get(i, false).bytes(), actual.get(i, false).bytes());
+    }
+
+    /**
+     * Test that a compressed reference container is read back unchanged and is smaller than the export
+     */
+    @Test
+    public void testCompressReferences() throws Exception {
+        final RowSet set = randomSet(rwirow, new Random(0), CompressedRowSet.BLOCKSIZE * 10 + 7, true);
+        final byte[] compressed = CompressedRowSet.compress(set);
+        assertTrue(CompressedRowSet.isCompressed(compressed));
+        assertTrue(compressed.length < set.exportCollection().length);
+        assertEquals(set.size(), RowSet.importRowCount(compressed));
+
+        final CompressedRowSet c = new CompressedRowSet(rwirow, compressed);
+        assertEquals(set.size(), c.size());
+        assertSameRows(set, c.toRowSet());
+        assertSameRows(set, RowSet.importRowSet(compressed, rwirow));
+    }
+
+    /**
+     * Test that keys which are not base64 are stored raw
+     */
+    @Test
+    public void testCompressBinaryKeys() throws Exception {
+        final RowSet set = randomSet(binaryrow, new Random(1), CompressedRowSet.BLOCKSIZE * 3, false);
+        final byte[] compressed = CompressedRowSet.compress(set);
+        assertSameRows(set, new CompressedRowSet(binaryrow, compressed).toRowSet());
+    }
+
+    /**
+     * Test that empty sets and exports which are not compressed are imported
+     */
+    @Test
+    public void testImport() throws Exception {
+        final RowSet empty = new RowSet(rwirow, 0);
+        final byte[] compressed = CompressedRowSet.compress(empty);
+        assertEquals(0, new CompressedRowSet(rwirow, compressed).size());
+        assertEquals(0, RowSet.importRowSet(compressed, rwirow).size());
+
+        final RowSet set = randomSet(rwirow, new Random(2), 100, true);
+        final byte[] exported = set.exportCollection();
+        assertFalse(CompressedRowSet.isCompressed(exported));
+        assertEquals(set.size(), RowSet.importRowCount(exported));
+        assertSameRows(set, RowSet.importRowSet(exported, rwirow));
+    }
+
+    /**
+     * Test the access to single rows and the intersection with sorted keys
+     */
+    @Test
+    public void testGetSelect() throws Exception {
+        final Random r = new Random(3);
+        final RowSet set = randomSet(rwirow, r, CompressedRowSet.BLOCKSIZE * 20, true);
+        final CompressedRowSet c = new CompressedRowSet(rwirow, CompressedRowSet.compress(set));
+        for (int i = 0; i < set.size(); i += 13) {
+            final Row.Entry e = set.get(i, false);
+            assertArrayEquals(e.bytes(), c.get(e.getPrimaryKeyBytes()).bytes());
+        }
+        assertNull(c.get(IndexTest.randomHash(r)));
+
+        // select every 7th row and some keys which are not in the set
+        final RowSet expected = new RowSet(rwirow, 0);
+        final RowHandleSet keys = new RowHandleSet(rwirow.primaryKeyLength, rwirow.objectOrder, 0);
+        for (int i = 0; i < set.size(); i += 7) {
+            expected.addUnique(set.get(i, true));
+            keys.put(set.get(i, false).getPrimaryKeyBytes());
+        }
+        for (int i = 0; i < 100; i++) keys.put(IndexTest.randomHash(r));
+        assertSameRows(expected, c.select(keys.iterator()));
+
+        final List<byte[]> none = new ArrayList<byte[]>();
+        assertEquals(0, c.select(none.iterator()).size());
+    }
+
+}
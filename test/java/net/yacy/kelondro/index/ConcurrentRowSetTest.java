@@ -0,0 +1,115 @@
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.order.CloneableIterator;
+
+import org.junit.Test;
+
+public class ConcurrentRowSetTest {
+
+    private static final Row rowdef = new Row(new Column[]{new Column("key", Column.celltype_binary, Column.encoder_bytes, 12, "key"), new Column("long c-4 {b256}")}, Base64Order.enhancedCoder);
+
+    private static Row.Entry entry(final byte[] key, final long value) {
+        final Row.Entry e = rowdef.newEntry();
+        e.setCol(0, key);
+        e.setCol(1, value);
+        return e;
+    }
+
+    /**
+     * Test that the index behaves like a RowSet for single threaded access
+     */
+    @Test
+    public void testAccess() throws Exception {
+        final ConcurrentRowSet index = new ConcurrentRowSet("test", rowdef, 4);
+        final Random r = new Random(0);
+        final byte[][] keys = new byte[5000][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = IndexTest.randomHash(r);
+            index.addUnique(entry(keys[i], i));
+        }
+        assertEquals(keys.length, index.size());
+        for (int i = 0; i < keys.length; i++) {
+            assertTrue(index.has(keys[i]));
+            assertEquals(i, index.get(keys[i], false).getColLong(1));
+        }
+        assertFalse(index.has(IndexTest.randomHash(r)));
+
+        assertFalse(index.put(entry(keys[0], 4711)));
+        assertEquals(4711, index.get(keys[0], false).getColLong(1));
+        assertEquals(4711, index.replace(entry(keys[0], 42)).getColLong(1));
+        assertEquals(42, index.remove(keys[0]).getColLong(1));
+        assertNull(index.get(keys[0], false));
+        assertEquals(keys.length - 1, index.size());
+
+        // the iteration of all stripes is ordered
+        final CloneableIterator<byte[]> i = index.keys(true, null);
+        byte[] last = null, key;
+        int c = 0;
+        while (i.hasNext()) {
+            key = i.next();
+            if (last != null) assertTrue(rowdef.objectOrder.compare(last, key) < 0);
+            last = key;
+            c++;
+        }
+        assertEquals(keys.length - 1, c);
+        assertArrayEquals(last, index.largestKey());
+        final Iterator<Row.Entry> rows = index.iterator();
+        assertArrayEquals(index.smallestKey(), rows.next().getPrimaryKeyBytes());
+    }
+
+    /**
+     * Test that readers always see the rows which are not changed while other threads write
+     */
+    @Test
+    public void testConcurrentReadWrite() throws Exception {
+        final ConcurrentRowSet index = new ConcurrentRowSet("test", rowdef, 2);
+        final Random r = new Random(1);
+        final byte[][] stable = new byte[2000][];
+        for (int i = 0; i < stable.length; i++) {
+            stable[i] = IndexTest.randomHash(r);
+            index.put(entry(stable[i], i));
+        }
+        final AtomicInteger errors = new AtomicInteger(0);
+        final Thread[] threads = new Thread[6];
+        for (int t = 0; t < threads.length; t++) {
+            final boolean writer = t < 2;
+            final Random tr = new Random(t + 10);
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int n = 0; n < 20000; n++) {
+                            if (writer) {
+                                final byte[] key = IndexTest.randomHash(tr);
+                                index.addUnique(entry(key, -1));
+                                if (n % 3 == 0) index.remove(key);
+                            } else {
+                                final int k = tr.nextInt(stable.length);
+                                final Row.Entry e = index.get(stable[k], false);
+                                if (e == null || e.getColLong(1) != k) errors.incrementAndGet();
+                            }
+                        }
+                    } catch (final Throwable e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            };
+        }
+        for (final Thread t: threads) t.start();
+        for (final Thread t: threads) t.join();
+        assertEquals(0, errors.get());
+        for (int i = 0; i < stable.length; i++) assertEquals(i, index.get(stable[i], false).getColLong(1));
+    }
+
+}
@@ -0,0 +1,62 @@
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HashBloomFilterTest {
+
+    /**
+     * Test that added hashes are always found and that the false positive rate is in the expected range
+     */
+    @Test
+    public void testMightContain() {
+        final int count = 100000;
+        final HashBloomFilter filter = new HashBloomFilter(count);
+        final Random r = new Random(0);
+        final byte[][] added = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            added[i] = IndexTest.randomHash(r);
+            filter.add(added[i]);
+        }
+        for (final byte[] h: added) assertTrue(filter.mightContain(h));
+        assertTrue(filter.size() > count * 99 / 100);
+
+        int falsePositives = 0;
+        for (int i = 0; i < count; i++) {
+            if (filter.mightContain(IndexTest.randomHash(r))) falsePositives++;
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < count * 3 / 100);
+    }
+
+    /**
+     * Test that a filter which was written and read again gives the same answers
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        final HashBloomFilter filter = new HashBloomFilter(1000);
+        final Random r = new Random(1);
+        for (int i = 0; i < 1000; i++) filter.add(IndexTest.randomHash(r));
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.write(new DataOutputStream(bytes));
+        final HashBloomFilter read = HashBloomFilter.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(filter.size(), read.size());
+        assertEquals(filter.capacity(), read.capacity());
+
+        final Random r0 = new Random(2);
+        for (int i = 0; i < 10000; i++) {
+            final byte[] h = IndexTest.randomHash(r0);
+            assertEquals(filter.mightContain(h), read.mightContain(h));
+        }
+    }
+
+}
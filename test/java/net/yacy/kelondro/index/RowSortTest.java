@@ -0,0 +1,66 @@
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import net.yacy.cora.order.Base64Order;
+
+import org.junit.Test;
+
+public class RowSortTest {
+
+    private static final Row rowdef = new Row(new Column[]{new Column("key", Column.celltype_binary, Column.encoder_bytes, 12, "key"), new Column("long c-4 {b256}")}, Base64Order.enhancedCoder);
+
+    private static RowSet randomSet(final Random r, final int count) throws Exception {
+        final RowSet set = new RowSet(rowdef, count);
+        for (int i = 0; i < count; i++) {
+            final Row.Entry e = rowdef.newEntry();
+            e.setCol(0, IndexTest.randomHash(r));
+            e.setCol(1, i);
+            set.addUnique(e);
+        }
+        return set;
+    }
+
+    private static void assertSorted(final RowCollection c) {
+        for (int i = 1; i < c.size(); i++) {
+            assertTrue(rowdef.objectOrder.compare(c.get(i - 1, false).getPrimaryKeyBytes(), c.get(i, false).getPrimaryKeyBytes()) <= 0);
+        }
+    }
+
+    /**
+     * Test that the parallel sort of a large collection has the same result as the sequential sort
+     */
+    @Test
+    public void testSortRandom() throws Exception {
+        final int count = RowSort.PARALLEL_SORT_LIMIT * 2;
+        final RowSet set = randomSet(new Random(0), count);
+        final RowSet reference = new RowSet(rowdef, count);
+        for (int i = 0; i < count; i++) reference.addUnique(set.get(i, true));
+        set.sort();
+        assertEquals(count, set.size());
+        assertSorted(set);
+        net.yacy.cora.sorting.Array.sort(reference);
+        for (int i = 0; i < count; i++) assertArrayEquals(reference.get(i, false).bytes(), set.get(i, false).bytes());
+    }
+
+    /**
+     * Test that the unsorted tail is merged with a sorted prefix
+     */
+    @Test
+    public void testSortTail() throws Exception {
+        final Random r = new Random(1);
+        final RowSet set = randomSet(r, RowSort.PARALLEL_SORT_LIMIT);
+        set.sort();
+        final RowSet tail = randomSet(r, RowSort.PARALLEL_SORT_LIMIT / 3);
+        for (int i = 0; i < tail.size(); i++) set.addUnique(tail.get(i, true));
+        set.sort();
+        assertEquals(RowSort.PARALLEL_SORT_LIMIT + RowSort.PARALLEL_SORT_LIMIT / 3, set.size());
+        assertSorted(set);
+        for (int i = 0; i < tail.size(); i++) assertTrue(set.has(tail.get(i, false).getPrimaryKeyBytes()));
+    }
+
+}
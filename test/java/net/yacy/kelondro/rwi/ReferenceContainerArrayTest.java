@@ -0,0 +1,139 @@
+package net.yacy.kelondro.rwi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.util.Bitfield;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ReferenceContainerArrayTest {
+
+    private static final WordReferenceFactory factory = new WordReferenceFactory();
+    private static final File DIR = new File(System.getProperty("java.io.tmpdir"), "ReferenceContainerArrayTest");
+    private static final byte[] TERM = ASCII.getBytes("termhash1000");
+
+    @After
+    public void tearDown() {
+        ReferenceContainer.compressExports = false;
+        FileUtils.deletedelete(DIR);
+    }
+
+    private static WordReferenceRow reference(final int i) {
+        final WordReferenceRow ientry = new WordReferenceRow(
+                ASCII.getBytes("urlhash" + (10000 + i)), 20, 3, 2,
+                1, 1,
+                System.currentTimeMillis(), System.currentTimeMillis(),
+                UTF8.getBytes("en"), 't',
+                0, 0);
+        final Word word = new Word(5, 1, 100);
+        word.flags = new Bitfield(4);
+        ientry.setWord(word);
+        return ientry;
+    }
+
+    /**
+     * create an array with one BLOB which contains one container of the given number of references
+     */
+    private static ReferenceContainerArray<WordReference> array(final int count) throws Exception {
+        FileUtils.deletedelete(DIR);
+        DIR.mkdirs();
+        final ReferenceContainerArray<WordReference> array = new ReferenceContainerArray<WordReference>(DIR, "text.index", factory, Base64Order.enhancedCoder, Word.commonHashLength);
+        final ReferenceContainerCache<WordReference> cache = new ReferenceContainerCache<WordReference>(factory, Base64Order.enhancedCoder, Word.commonHashLength);
+        for (int i = 0; i < count; i++) cache.add(TERM, reference(i));
+        final File f = array.newContainerBLOBFile();
+        cache.dump(f, 1024, true);
+        array.mountBLOBFile(f);
+        return array;
+    }
+
+    private static int reduce(final ReferenceContainerArray<WordReference> array, final List<ReferenceContainer<WordReference>> overflow, final int... remove) throws Exception {
+        return array.reduce(TERM, new ReferenceContainerArray.ContainerReducer<WordReference>() {
+            @Override
+            public ReferenceContainer<WordReference> reduce(final ReferenceContainer<WordReference> container) {
+                for (final int i: remove) container.removeReference(ASCII.getBytes("urlhash" + (10000 + i)));
+                return container;
+            }
+        }, overflow);
+    }
+
+    /**
+     * Test that references are counted and removed in plain containers
+     */
+    @Test
+    public void testPlain() throws Exception {
+        final ReferenceContainerArray<WordReference> array = array(300);
+        try {
+            assertFalse(new File(DIR, "text.index.compressed").exists());
+            assertEquals(300, array.count(TERM));
+            final List<ReferenceContainer<WordReference>> overflow = new ArrayList<ReferenceContainer<WordReference>>();
+            assertEquals(2, reduce(array, overflow, 5, 7));
+            assertTrue(overflow.isEmpty());
+            assertEquals(298, array.count(TERM));
+            final ReferenceContainer<WordReference> c = array.get(TERM);
+            assertEquals(298, c.size());
+            assertNull(c.getReference(ASCII.getBytes("urlhash10005")));
+        } finally {
+            array.close();
+        }
+    }
+
+    /**
+     * Test that references are counted and removed in compressed containers and that the removed
+     * references are never kept, also if the reduced container does not fit into the place of the old one
+     */
+    @Test
+    public void testCompressed() throws Exception {
+        ReferenceContainer.compressExports = true;
+        final ReferenceContainerArray<WordReference> array = array(300);
+        try {
+            assertTrue(new File(DIR, "text.index.compressed").exists());
+            assertEquals(300, array.count(TERM));
+            int expected = 300;
+            for (int i = 0; i < 300; i += 7) {
+                final List<ReferenceContainer<WordReference>> overflow = new ArrayList<ReferenceContainer<WordReference>>();
+                assertEquals(1, reduce(array, overflow, i));
+                expected--;
+                final byte[] removed = ASCII.getBytes("urlhash" + (10000 + i));
+                final ReferenceContainer<WordReference> c = array.get(TERM);
+                assertTrue(c == null || c.getReference(removed) == null);
+                if (!overflow.isEmpty()) {
+                    // the reduced container was moved out of the BLOB, the caller must store it again
+                    assertEquals(1, overflow.size());
+                    assertEquals(expected, overflow.get(0).size());
+                    assertNull(overflow.get(0).getReference(removed));
+                    assertEquals(0, array.count(TERM));
+                    return;
+                }
+                assertEquals(expected, c.size());
+                assertEquals(expected, array.count(TERM));
+            }
+
+            // without compression the reduced container is written in the plain format if it fits, otherwise still compressed
+            ReferenceContainer.compressExports = false;
+            final List<ReferenceContainer<WordReference>> overflow = new ArrayList<ReferenceContainer<WordReference>>();
+            assertEquals(1, reduce(array, overflow, 1));
+            assertTrue(overflow.isEmpty());
+            assertEquals(expected - 1, array.count(TERM));
+            assertEquals(expected - 1, array.get(TERM).size());
+        } finally {
+            array.close();
+        }
+    }
+
+}
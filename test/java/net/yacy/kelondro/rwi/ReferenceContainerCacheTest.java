@@ -0,0 +1,152 @@
+package net.yacy.kelondro.rwi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Date;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.util.ByteArray;
+import net.yacy.kelondro.blob.ArrayStack;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.index.RowSet;
+import net.yacy.kelondro.util.Bitfield;
+import net.yacy.kelondro.util.FileUtils;
+
+import org.junit.Test;
+
+public class ReferenceContainerCacheTest {
+
+    private static final WordReferenceFactory factory = new WordReferenceFactory();
+
+    private static WordReferenceRow reference(final String urlHash) {
+        final WordReferenceRow ientry = new WordReferenceRow(
+                ASCII.getBytes(urlHash), 20, 3, 2,
+                1, 1,
+                System.currentTimeMillis(), System.currentTimeMillis(),
+                UTF8.getBytes("en"), 't',
+                0, 0);
+        final Word word = new Word(5, 1, 100);
+        word.flags = new Bitfield(4);
+        ientry.setWord(word);
+        return ientry;
+    }
+
+    private static byte[] term(final int i) {
+        return ASCII.getBytes("termhash" + (1000 + i));
+    }
+
+    private static String url(final int i) {
+        return "urlhash" + (10000 + i);
+    }
+
+    /**
+     * Test that references are found after they were moved off the heap, also if they are added again
+     */
+    @Test
+    public void testOffHeapAccess() throws Exception {
+        final OffHeapSlabPool pool = new OffHeapSlabPool(1024 * 1024, 64 * 1024);
+        final ReferenceContainerCache<WordReference> cache = new ReferenceContainerCache<WordReference>(factory, Base64Order.enhancedCoder, Word.commonHashLength, pool);
+        assertTrue(cache.isOffHeap());
+        for (int t = 0; t < 20; t++) {
+            for (int u = 0; u < 30; u++) cache.add(term(t), reference(url(u)));
+        }
+        cache.spill();
+        assertTrue(cache.offHeapMemory() > 0);
+        assertFalse(cache.offHeapFull());
+
+        // add references to the heap part again, partly the same ones
+        for (int t = 0; t < 25; t++) {
+            for (int u = 20; u < 40; u++) cache.add(term(t), reference(url(u)));
+        }
+        assertEquals(25, cache.size());
+        assertTrue(cache.has(term(3)));
+        assertEquals(40, cache.get(term(3), null).size());
+        assertEquals(20, cache.get(term(22), null).size());
+        assertEquals(40, cache.count(term(3)));
+        assertEquals(20, cache.count(term(22)));
+
+        // a second spill adds another segment with the same references
+        cache.spill();
+        assertEquals(40, cache.count(term(3)));
+        assertEquals(20, cache.count(term(22)));
+
+        assertTrue(cache.remove(term(3), ASCII.getBytes(url(5))));
+        assertTrue(cache.remove(term(3), ASCII.getBytes(url(25))));
+        final ReferenceContainer<WordReference> c = cache.get(term(3), null);
+        assertEquals(38, c.size());
+        assertNull(c.getReference(ASCII.getBytes(url(5))));
+        assertNotNull(c.getReference(ASCII.getBytes(url(6))));
+
+        assertEquals(40, cache.remove(term(4)).size());
+        assertFalse(cache.has(term(4)));
+        assertEquals(24, cache.size());
+
+        cache.clear();
+        assertTrue(cache.isEmpty());
+        assertEquals(0, pool.used());
+    }
+
+    /**
+     * Test that segments which were taken from the store before it was cleared are not read from recycled slabs
+     */
+    @Test
+    public void testOffHeapReadAfterClear() throws Exception {
+        final OffHeapSlabPool pool = new OffHeapSlabPool(1024 * 1024, 64 * 1024);
+        final OffHeapContainerStore store = new OffHeapContainerStore(pool);
+        final ByteArray term = new ByteArray(term(0));
+        assertTrue(store.append(term, new byte[]{1, 2, 3}, 1));
+        final OffHeapContainerStore.Segments s = store.get(term);
+        assertEquals(1, store.read(s).size());
+
+        store.clear();
+        assertEquals(0, pool.used());
+        assertTrue(store.append(term, new byte[]{4, 5, 6, 7}, 1));
+        assertTrue(store.read(s).isEmpty());
+        assertEquals(1, store.read(store.get(term)).size());
+        store.clear();
+    }
+
+    /**
+     * Test that the dump of an off-heap cache can be read as a BLOB file
+     */
+    @Test
+    public void testOffHeapDump() throws Exception {
+        final File dir = new File(System.getProperty("java.io.tmpdir"), "ReferenceContainerCacheTest.dump");
+        FileUtils.deletedelete(dir);
+        dir.mkdirs();
+        final OffHeapSlabPool pool = new OffHeapSlabPool(1024 * 1024, 64 * 1024);
+        final ReferenceContainerCache<WordReference> cache = new ReferenceContainerCache<WordReference>(factory, Base64Order.enhancedCoder, Word.commonHashLength, pool);
+        for (int t = 0; t < 10; t++) {
+            for (int u = 0; u <= t; u++) cache.add(term(t), reference(url(u)));
+        }
+        cache.spill();
+        cache.add(term(0), reference(url(1))); // the first term has a segment and a heap container
+        final ArrayStack stack = new ArrayStack(dir, "text.index", Base64Order.enhancedCoder, Word.commonHashLength, 0, false, true);
+        try {
+            final File f = stack.newBLOB(new Date());
+            cache.dump(f, 1024, true);
+            assertEquals(0, pool.used());
+            stack.mountBLOB(f, false);
+            assertEquals(10, stack.size());
+            for (int t = 0; t < 10; t++) {
+                final byte[] b = stack.get(term(t));
+                assertNotNull(b);
+                assertEquals(t == 0 ? 2 : t + 1, RowSet.importRowSet(b, factory.getRow()).size());
+            }
+        } finally {
+            stack.close(false);
+            FileUtils.deletedelete(dir);
+        }
+    }
+
+}
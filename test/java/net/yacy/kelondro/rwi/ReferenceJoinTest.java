@@ -0,0 +1,115 @@
+package net.yacy.kelondro.rwi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.index.IndexTest;
+
+public class ReferenceJoinTest {
+
+    private static final ReferenceFactory<WordReference> factory = new WordReferenceFactory();
+
+    /**
+     * create a container with a random selection of the given urls; the selected urls are added to the set
+     */
+    private static ReferenceContainer<WordReference> container(final List<byte[]> urls, final Random r, final int oneIn, final TreeSet<String> selected) throws Exception {
+        final ReferenceContainer<WordReference> c = new ReferenceContainer<WordReference>(factory, null, 0);
+        final long now = System.currentTimeMillis();
+        for (final byte[] url: urls) {
+            if (r.nextInt(oneIn) != 0) continue;
+            c.add(new WordReferenceRow(url, 20, 3, 0, 100, 10, now, now, ASCII.getBytes("en"), 'h', 0, 0));
+            selected.add(ASCII.String(url));
+        }
+        return c;
+    }
+
+    private static TreeSet<String> urls(final ReferenceContainer<WordReference> c) {
+        final TreeSet<String> urls = new TreeSet<String>();
+        final Iterator<WordReference> i = c.entries();
+        while (i.hasNext()) urls.add(ASCII.String(i.next().urlhash()));
+        return urls;
+    }
+
+    /**
+     * Test that the n-way join returns the urls which are in all include containers and in no exclude container
+     */
+    @Test
+    public void testJoin() throws Exception {
+        final Random r = new Random(0);
+        final List<byte[]> urls = new ArrayList<byte[]>();
+        for (int i = 0; i < 20000; i++) urls.add(IndexTest.randomHash(r));
+
+        final TreeSet<String> expected = new TreeSet<String>();
+        final List<ReferenceContainer<WordReference>> include = new ArrayList<ReferenceContainer<WordReference>>();
+        for (final int oneIn: new int[]{2, 50, 3}) {
+            final TreeSet<String> s = new TreeSet<String>();
+            include.add(container(urls, r, oneIn, s));
+            if (include.size() == 1) expected.addAll(s); else expected.retainAll(s);
+        }
+        final TreeSet<String> excluded = new TreeSet<String>();
+        final List<ReferenceContainer<WordReference>> exclude = new ArrayList<ReferenceContainer<WordReference>>();
+        exclude.add(container(urls, r, 4, excluded));
+        expected.removeAll(excluded);
+        assertFalse(expected.isEmpty());
+
+        final ReferenceJoin<WordReference> join = new ReferenceJoin<WordReference>(factory, include, exclude, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        assertTrue(join.isComplete());
+        assertEquals(expected.size(), join.estimatedSize());
+        assertEquals(expected, urls(join.joined()));
+
+        // a single container
+        final TreeSet<String> single = new TreeSet<String>();
+        final List<ReferenceContainer<WordReference>> one = new ArrayList<ReferenceContainer<WordReference>>();
+        one.add(container(urls, r, 10, single));
+        assertEquals(single, urls(new ReferenceJoin<WordReference>(factory, one, null, Integer.MAX_VALUE, Integer.MAX_VALUE).joined()));
+        single.removeAll(excluded);
+        assertEquals(single, urls(new ReferenceJoin<WordReference>(factory, one, exclude, Integer.MAX_VALUE, Integer.MAX_VALUE).joined()));
+
+        // an empty container
+        include.add(new ReferenceContainer<WordReference>(factory, null, 0));
+        assertTrue(new ReferenceJoin<WordReference>(factory, include, exclude, Integer.MAX_VALUE, Integer.MAX_VALUE).joined().isEmpty());
+    }
+
+    /**
+     * Test that the join stops at the maximum count and estimates the size of the complete join
+     */
+    @Test
+    public void testMaxCount() throws Exception {
+        final Random r = new Random(1);
+        final List<byte[]> urls = new ArrayList<byte[]>();
+        for (int i = 0; i < 20000; i++) urls.add(IndexTest.randomHash(r));
+        final List<ReferenceContainer<WordReference>> include = new ArrayList<ReferenceContainer<WordReference>>();
+        include.add(container(urls, r, 1, new TreeSet<String>()));
+        include.add(container(urls, r, 2, new TreeSet<String>()));
+
+        final ReferenceJoin<WordReference> join = new ReferenceJoin<WordReference>(factory, include, null, Integer.MAX_VALUE, 1000);
+        assertFalse(join.isComplete());
+        assertEquals(1000, join.joined().size());
+        assertTrue(join.estimatedSize() > 8000 && join.estimatedSize() < 12000);
+        // the joined urls are the smallest urls of the complete join
+        final ReferenceContainer<WordReference> joined = join.joined();
+        final byte[] last = joined.get(joined.size() - 1, false).getPrimaryKeyBytes();
+        final TreeSet<String> head = new TreeSet<String>();
+        final Iterator<WordReference> i = new ReferenceJoin<WordReference>(factory, include, null, Integer.MAX_VALUE, Integer.MAX_VALUE).joined().entries();
+        while (i.hasNext()) {
+            final byte[] url = i.next().urlhash();
+            if (Base64Order.enhancedCoder.compare(url, last) <= 0) head.add(ASCII.String(url));
+        }
+        assertEquals(urls(joined), head);
+    }
+
+}
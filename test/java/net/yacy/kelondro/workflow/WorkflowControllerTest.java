@@ -0,0 +1,84 @@
+package net.yacy.kelondro.workflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class WorkflowControllerTest {
+
+    /**
+     * a task which takes some time and records the highest number of concurrent executions
+     */
+    private static class SleepTask implements WorkflowTask<WorkflowJob> {
+        private final long sleep;
+        private final AtomicInteger running = new AtomicInteger(0);
+        private final AtomicInteger peak = new AtomicInteger(0);
+        private final AtomicInteger done = new AtomicInteger(0);
+
+        private SleepTask(final long sleep) {
+            this.sleep = sleep;
+        }
+
+        @Override
+        public WorkflowJob process(final WorkflowJob in) throws Exception {
+            final int r = this.running.incrementAndGet();
+            int p;
+            while ((p = this.peak.get()) < r && !this.peak.compareAndSet(p, r)) {}
+            Thread.sleep(this.sleep);
+            this.running.decrementAndGet();
+            this.done.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Test that superfluous executors terminate after the concurrency was decreased
+     */
+    @Test
+    public void testDecreaseConcurrency() throws InterruptedException {
+        final SleepTask task = new SleepTask(20);
+        final WorkflowProcessor<WorkflowJob> p = new WorkflowProcessor<WorkflowJob>("test", "test", new String[0], task, 200, null, 1, 4);
+        try {
+            for (int i = 0; i < 100; i++) p.enQueue(new WorkflowJob());
+            assertEquals(4, p.getExecutors());
+            p.setConcurrency(1);
+            Thread.sleep(100); // the running jobs end
+            task.peak.set(task.running.get());
+            while (task.done.get() < 100) Thread.sleep(10);
+            assertEquals(1, task.peak.get());
+            assertEquals(1, p.getExecutors());
+        } finally {
+            p.shutdown();
+        }
+    }
+
+    /**
+     * Test that the controller grows a busy stage as long as the throughput increases
+     */
+    @Test
+    public void testGrow() throws InterruptedException {
+        final SleepTask task = new SleepTask(10);
+        final WorkflowProcessor<WorkflowJob> p = new WorkflowProcessor<WorkflowJob>("test", "test", new String[0], task, 1000, null, 1, 4);
+        final WorkflowController controller = new WorkflowController(true);
+        controller.add(p);
+        try {
+            p.setConcurrency(1);
+            for (int i = 0; i < 1000; i++) p.enQueue(new WorkflowJob());
+            controller.job();
+            for (int i = 0; i < 5 && p.getQueueSize() > 0; i++) {
+                Thread.sleep(300);
+                controller.job();
+            }
+            assertTrue("concurrency " + p.getMaxConcurrency(), p.getMaxConcurrency() >= 3);
+            assertTrue(p.getThroughput() > 0.0d);
+            assertTrue(p.getUtilization() > 50);
+        } finally {
+            p.clear();
+            p.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+package net.yacy.peers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.util.Bitfield;
+
+import org.junit.Test;
+
+public class IndexTransferStreamTest {
+
+    private static WordReferenceRow reference(final String urlHash, final int hitcount) {
+        final WordReferenceRow ientry = new WordReferenceRow(
+                ASCII.getBytes(urlHash), 20, 3, 2,
+                1, 1,
+                System.currentTimeMillis(), System.currentTimeMillis(),
+                UTF8.getBytes("en"), 't',
+                0, 0);
+        final Word word = new Word(5, 1, 100);
+        word.count = hitcount;
+        word.flags = new Bitfield(4);
+        ientry.setWord(word);
+        return ientry;
+    }
+
+    /**
+     * Test that RWI rows and metadata are read back as they were written
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        final byte[] termHash = ASCII.getBytes("termhash0001");
+        final ReferenceContainer<WordReference> container = new ReferenceContainer<WordReference>(new WordReferenceFactory(), termHash, 2);
+        container.add(reference("urlhash00001", 3));
+        container.add(reference("urlhash00002", 7));
+
+        final IndexTransferStream.Writer writer = new IndexTransferStream.Writer(1024);
+        writer.writeContainer(container);
+        writer.writeMetadata("{hash=abcdefghijkl,url=http://test.org/a.html}");
+        final byte[] stream = writer.finish();
+        assertEquals(2, writer.rwiCount());
+        assertEquals(1, writer.urlCount());
+
+        final IndexTransferStream.Reader reader = new IndexTransferStream.Reader(stream);
+        assertEquals(IndexTransferStream.FRAME_RWI, reader.next());
+        assertArrayEquals(termHash, reader.termHash());
+        final List<WordReference> references = reader.references();
+        assertEquals(2, references.size());
+        for (final WordReference r: references) {
+            final WordReference original = container.getReference(r.urlhash());
+            assertEquals(ASCII.String(original.urlhash()), ASCII.String(r.urlhash()));
+            assertEquals(original.hitcount(), r.hitcount());
+            assertEquals(original.toPropertyForm(), r.toPropertyForm());
+        }
+        assertEquals(IndexTransferStream.FRAME_URL, reader.next());
+        assertEquals("{hash=abcdefghijkl,url=http://test.org/a.html}", reader.metadata());
+        assertEquals(IndexTransferStream.FRAME_END, reader.next());
+        reader.close();
+    }
+
+    /**
+     * Test that a stream without the header is rejected
+     */
+    @Test
+    public void testRejectForeignStream() throws Exception {
+        final ByteArrayOutputStream b = new ByteArrayOutputStream();
+        final GZIPOutputStream out = new GZIPOutputStream(b);
+        out.write(UTF8.getBytes("indexes=abc"));
+        out.close();
+        try {
+            new IndexTransferStream.Reader(b.toByteArray());
+            fail("foreign stream accepted");
+        } catch (final IOException e) {
+            // expected
+        }
+    }
+
+}
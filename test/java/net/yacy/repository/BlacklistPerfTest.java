@@ -0,0 +1,124 @@
+// BlacklistPerfTest.java
+// -----------------------
+// part of YaCy
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import net.yacy.cora.document.id.MultiProtocolURL;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * Compare the lookup performance of the compiled {@link BlacklistMatcher} with the
+ * {@link Blacklist#isListed(String, String, Map, Map)} function which probes the blacklist maps.
+ */
+public class BlacklistPerfTest {
+
+    /**
+     * Load a blacklist file (one host/path entry per line, as in the LISTS/*.black files) and check
+     * all URLs of a second file (one URL per line) with both implementations.
+     *
+     * @param args
+     *            parameters
+     * @throws IOException
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage : java BlacklistPerfTest <blacklistFilePath> <urlsFilePath> [rounds]");
+            return;
+        }
+        try {
+            final Map<String, Set<Pattern>> blacklistMapMatched = new HashMap<>();
+            final Map<String, Set<Pattern>> blacklistMapNotMatched = new HashMap<>();
+            int entries = 0;
+            for (final String line : FileUtils.getListArray(new File(args[0]))) {
+                final int slash = line.indexOf('/');
+                if (line.isEmpty() || line.charAt(0) == '#' || slash <= 0) continue;
+                final String host = line.substring(0, slash).toLowerCase(Locale.ROOT);
+                final String path = line.substring(slash + 1);
+                try {
+                    final Pattern pattern = Pattern.compile(path.equals("*") ? ".*" : path, Pattern.CASE_INSENSITIVE);
+                    final Map<String, Set<Pattern>> map = Blacklist.isMatchable(host) ? blacklistMapMatched : blacklistMapNotMatched;
+                    Set<Pattern> patterns = map.get(host);
+                    if (patterns == null) map.put(host, patterns = new HashSet<>());
+                    patterns.add(pattern);
+                    entries++;
+                } catch (final PatternSyntaxException e) {
+                    // skip entries which would not be loaded
+                }
+            }
+            System.out.println(entries + " blacklist entries loaded from " + args[0] + ": " + blacklistMapMatched.size()
+                    + " host names, " + blacklistMapNotMatched.size() + " host expressions");
+
+            final List<String[]> urls = new ArrayList<>();
+            for (final String line : FileUtils.getListArray(new File(args[1]))) {
+                try {
+                    final MultiProtocolURL url = new MultiProtocolURL(line);
+                    if (url.getHost() != null) urls.add(new String[] {url.getHost().toLowerCase(Locale.ROOT), url.getFile()});
+                } catch (final MalformedURLException e) {
+                    // skip
+                }
+            }
+            System.out.println(urls.size() + " URLs loaded from " + args[1]);
+            if (urls.isEmpty()) return;
+            final int rounds = args.length >= 3 ? Integer.parseInt(args[2]) : 3;
+
+            long beginTime = System.nanoTime();
+            final BlacklistMatcher matcher = new BlacklistMatcher(blacklistMapMatched, blacklistMapNotMatched);
+            System.out.println("Matcher compile time (ms) : " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - beginTime));
+
+            int listed = 0, differences = 0;
+            for (final String[] url : urls) {
+                final boolean probed = Blacklist.isListed(url[0], url[1], blacklistMapMatched, blacklistMapNotMatched);
+                if (probed) listed++;
+                if (probed != matcher.isListed(url[0], url[1])) {
+                    differences++;
+                    System.out.println("Different result for " + url[0] + url[1]);
+                }
+            }
+            System.out.println(listed + " URLs are listed, " + differences + " differences");
+
+            for (int round = 0; round < rounds; round++) {
+                beginTime = System.nanoTime();
+                for (final String[] url : urls) Blacklist.isListed(url[0], url[1], blacklistMapMatched, blacklistMapNotMatched);
+                final long probeTime = System.nanoTime() - beginTime;
+                beginTime = System.nanoTime();
+                for (final String[] url : urls) matcher.isListed(url[0], url[1]);
+                final long matcherTime = System.nanoTime() - beginTime;
+                System.out.println("Round " + round + " : map probes " + (urls.size() * 1000000000L / Math.max(1, probeTime))
+                        + " lookups/s, compiled matcher " + (urls.size() * 1000000000L / Math.max(1, matcherTime)) + " lookups/s");
+            }
+        } finally {
+            ConcurrentLog.shutdown();
+        }
+    }
+
+}
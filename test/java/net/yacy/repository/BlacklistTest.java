@@ -119,4 +119,53 @@ public class BlacklistTest {
     	Assert.assertFalse(Blacklist.isListed("fr.notblacklisted.org", "/path/with/many/segments/e/f/g/h/i/j/k/l/m/n/o/p/q/r/s/t/u/v/w/x/y/z/file.html", blacklistMapMatched, blacklistMapNotMatched));
     }
 
+    private static void put(final Map<String, Set<Pattern>> map, final String host, final String... paths) {
+        final Set<Pattern> patterns = new HashSet<>();
+        for (final String path : paths) {
+            patterns.add(Pattern.compile(path, Pattern.CASE_INSENSITIVE));
+        }
+        map.put(host, patterns);
+    }
+
+    /**
+     * Tests that the compiled BlacklistMatcher gives the same results as the static Blacklist.isListed() function.
+     */
+    @Test
+    public void testMatcher() {
+        final Map<String, Set<Pattern>> blacklistMapMatched = new HashMap<>();
+        put(blacklistMapMatched, "example.com", "ads/.*", "(.*/|)banner.*");
+        put(blacklistMapMatched, "*.tracker.net", ".*");
+        put(blacklistMapMatched, "ftp.*", ".*");
+        put(blacklistMapMatched, "www.shop", "cart\\?.*");
+        put(blacklistMapMatched, "static.cdn.org", ".*\\.js", ".*\\.css");
+        put(blacklistMapMatched, "*.cdn.org", "img/.*");
+
+        final Map<String, Set<Pattern>> blacklistMapNotMatched = new HashMap<>();
+        put(blacklistMapNotMatched, "mobil\\..*", ".*");
+        put(blacklistMapNotMatched, ".*counter.*", "count\\?.*");
+        put(blacklistMapNotMatched, "[invalid", ".*");
+
+        final BlacklistMatcher matcher = new BlacklistMatcher(blacklistMapMatched, blacklistMapNotMatched);
+        final String[] hosts = {"example.com", "www.example.com", "example.com.au", "notexample.com", "tracker.net", "a.b.tracker.net",
+                "ftp.yacy.net", "ftp", "www.shop.de", "www.shop", "static.cdn.org", "x.static.cdn.org", "cdn.org", "img.cdn.org",
+                "mobil.news.fr", "counter.de", "a.counter.de", "", ".", "a..com"};
+        final String[] paths = {"", "/", "/index.html", "/ads/x.html", "/a/b/banner1.gif", "/cart?id=1", "/CART?id=1", "/x.js",
+                "/img/logo.png", "/count?x", "/ads"};
+        int listed = 0;
+        for (final String host : hosts) {
+            for (final String path : paths) {
+                final boolean expected = Blacklist.isListed(host, path, blacklistMapMatched, blacklistMapNotMatched);
+                assertEquals(host + path, expected, matcher.isListed(host, path));
+                if (expected) listed++;
+            }
+        }
+        assertTrue(listed > 0);
+
+        assertTrue(matcher.isListed("a.b.tracker.net", "/"));
+        assertFalse(matcher.isListed("tracker.net", "/"));
+        assertTrue(matcher.isListed("www.shop.de", "/CART?id=1"));
+        assertFalse(matcher.isListed("www.shopping.de", "/cart?id=1"));
+        assertTrue(matcher.isListed("x.static.cdn.org", "/img/logo.png"));
+    }
+
 }
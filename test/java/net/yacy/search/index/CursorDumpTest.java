@@ -0,0 +1,71 @@
+package net.yacy.search.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Date;
+
+import net.yacy.search.schema.CollectionSchema;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.junit.Test;
+
+public class CursorDumpTest {
+
+    /**
+     * Test that the partitions cover adjacent ranges of the first id character
+     */
+    @Test
+    public void testPartitionFilter() {
+        final String id = CollectionSchema.id.getSolrFieldName();
+        assertNull(CursorDump.partitionFilter(0, 1));
+        assertEquals(id + ":[* TO \"V\"}", CursorDump.partitionFilter(0, 2));
+        assertEquals(id + ":[\"V\" TO *]", CursorDump.partitionFilter(1, 2));
+        for (final int partitions: new int[]{3, 4, 7, 64}) {
+            String previousUpper = null;
+            for (int p = 0; p < partitions; p++) {
+                final String filter = CursorDump.partitionFilter(p, partitions);
+                final String range = filter.substring(id.length() + 2, filter.length() - 1);
+                final String lower = range.substring(0, range.indexOf(" TO "));
+                final String upper = range.substring(range.indexOf(" TO ") + 4);
+                if (p == 0) assertEquals("*", lower); else assertEquals(previousUpper, lower);
+                if (p == partitions - 1) assertEquals("*", upper);
+                assertTrue(filter.endsWith(p == partitions - 1 ? "]" : "}"));
+                previousUpper = upper;
+            }
+        }
+    }
+
+    /**
+     * Test that the documents of a chunk file are read with their field values
+     */
+    @Test
+    public void testChunk() throws Exception {
+        final SolrDocumentList docs = new SolrDocumentList();
+        final Date date = new Date(1500000000000L);
+        for (int i = 0; i < 100; i++) {
+            final SolrDocument doc = new SolrDocument();
+            doc.setField(CollectionSchema.id.getSolrFieldName(), "id" + i);
+            doc.setField(CollectionSchema.title.getSolrFieldName(), "title " + i);
+            doc.setField(CollectionSchema.load_date_dt.getSolrFieldName(), date);
+            docs.add(doc);
+        }
+        final File f = new File(System.getProperty("java.io.tmpdir"), "CursorDumpTest" + CursorDump.CHUNK_EXT);
+        try {
+            CursorDump.writeChunk(f, docs);
+            final SolrDocumentList read = CursorDump.readChunk(f);
+            assertEquals(docs.size(), read.size());
+            for (int i = 0; i < docs.size(); i++) {
+                assertEquals("id" + i, read.get(i).getFieldValue(CollectionSchema.id.getSolrFieldName()));
+                assertEquals("title " + i, read.get(i).getFieldValue(CollectionSchema.title.getSolrFieldName()));
+                assertEquals(date, read.get(i).getFieldValue(CollectionSchema.load_date_dt.getSolrFieldName()));
+            }
+        } finally {
+            f.delete();
+        }
+    }
+
+}
@@ -106,6 +106,26 @@ public class SegmentTest {
         assertTrue(cnt == 0);
     }
 
+    /**
+     * Test that the stored citation rank of a document is removed with the document and with the index.
+     */
+    @Test
+    public void testCitationRank() throws MalformedURLException {
+        final byte[] id1 = new DigestURL("http://test.org/1.html").hash();
+        final byte[] id2 = new DigestURL("http://test.org/2.html").hash();
+        index.setCitationRank(id1, 0.25d);
+        index.setCitationRank(id2, 0.5d);
+        assertEquals(0.25d, index.getCitationRank(id1), 0.0d);
+        assertEquals(0.5d, index.getCitationRank(id2), 0.0d);
+
+        index.fulltext().remove(id1);
+        assertEquals(-1.0d, index.getCitationRank(id1), 0.0d);
+        assertEquals(0.5d, index.getCitationRank(id2), 0.0d);
+
+        index.clear();
+        assertEquals(-1.0d, index.getCitationRank(id2), 0.0d);
+    }
+
     /**
      * Helper to store a text to the rwi index. This was derived from the
      * Segment.storeDocument() procedure.
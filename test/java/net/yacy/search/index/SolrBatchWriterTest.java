@@ -0,0 +1,187 @@
+package net.yacy.search.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.yacy.search.schema.CollectionSchema;
+
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.Test;
+
+public class SolrBatchWriterTest {
+
+    /** a sink which records the written batches */
+    private static class RecordingSink implements SolrBatchWriter.Sink {
+        private final List<List<SolrInputDocument>> batches = new ArrayList<List<SolrInputDocument>>();
+
+        @Override
+        public synchronized void add(final Collection<SolrInputDocument> docs) throws IOException, SolrException {
+            this.batches.add(new ArrayList<SolrInputDocument>(docs));
+        }
+
+        /**
+         * @return true if the versions "v&lt;n&gt;" in the titles of all writes of a document are increasing
+         */
+        private synchronized boolean ordered() {
+            final Map<Object, Integer> versions = new HashMap<Object, Integer>();
+            for (final List<SolrInputDocument> batch: this.batches) {
+                for (final SolrInputDocument doc: batch) {
+                    final int version = Integer.parseInt(((String) doc.getFieldValue(CollectionSchema.title.getSolrFieldName())).substring(1));
+                    final Integer previous = versions.put(doc.getFieldValue(CollectionSchema.id.getSolrFieldName()), version);
+                    if (previous != null && previous.intValue() > version) return false;
+                }
+            }
+            return true;
+        }
+
+        private synchronized int documents() {
+            int c = 0;
+            for (final List<SolrInputDocument> batch: this.batches) c += batch.size();
+            return c;
+        }
+    }
+
+    private static SolrInputDocument doc(final String id, final String title) {
+        final SolrInputDocument doc = new SolrInputDocument();
+        doc.setField(CollectionSchema.id.getSolrFieldName(), id);
+        doc.setField(CollectionSchema.title.getSolrFieldName(), title);
+        return doc;
+    }
+
+    /**
+     * Test that flush writes all documents and that no batch is larger than the batch size
+     */
+    @Test
+    public void testFlushAndBatchSize() throws IOException {
+        final RecordingSink sink = new RecordingSink();
+        final SolrBatchWriter writer = new SolrBatchWriter("test", sink, 10, 60000, 100);
+        try {
+            for (int i = 0; i < 95; i++) writer.put(doc("id" + i, "title" + i));
+            writer.flush();
+            assertEquals(0, writer.queueSize());
+            assertEquals(95, sink.documents());
+            assertEquals(95, writer.documentCount());
+            for (final List<SolrInputDocument> batch: sink.batches) assertTrue(batch.size() <= 10);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Test that documents with the same id inside a batch are written once with the last version
+     */
+    @Test
+    public void testDeduplication() throws IOException {
+        final RecordingSink sink = new RecordingSink();
+        final SolrBatchWriter writer = new SolrBatchWriter("test", sink, 100, 60000, 100);
+        try {
+            writer.put(doc("a", "first"));
+            writer.put(doc("b", "other"));
+            writer.put(doc("a", "second"));
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+        assertEquals(2, sink.documents());
+        boolean found = false;
+        for (final List<SolrInputDocument> batch: sink.batches) {
+            for (final SolrInputDocument doc: batch) {
+                if ("a".equals(doc.getFieldValue(CollectionSchema.id.getSolrFieldName()))) {
+                    assertEquals("second", doc.getFieldValue(CollectionSchema.title.getSolrFieldName()));
+                    found = true;
+                }
+            }
+        }
+        assertTrue(found);
+    }
+
+    /**
+     * Test that the flusher writes a batch after the maximum delay without an explicit flush
+     */
+    @Test
+    public void testMaxDelay() throws IOException, InterruptedException {
+        final RecordingSink sink = new RecordingSink();
+        final SolrBatchWriter writer = new SolrBatchWriter("test", sink, 100, 50, 100);
+        try {
+            writer.put(doc("a", "title"));
+            final long timeout = System.currentTimeMillis() + 5000;
+            while (sink.documents() == 0 && System.currentTimeMillis() < timeout) Thread.sleep(10);
+            assertEquals(1, sink.documents());
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Test that a newer version of a document is never overwritten by an older one when flush is called
+     * concurrently to the flusher
+     */
+    @Test
+    public void testOrderWithConcurrentFlush() throws Exception {
+        final RecordingSink sink = new RecordingSink();
+        final SolrBatchWriter writer = new SolrBatchWriter("test", sink, 1000, 20, 1000);
+        try {
+            final Thread producer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 30000; i++) writer.put(doc("id" + (i % 7), "v" + i));
+                    } catch (final IOException e) {}
+                }
+            };
+            producer.start();
+            while (producer.isAlive()) writer.flush();
+            producer.join();
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+        assertTrue(sink.ordered());
+    }
+
+    /**
+     * Test that flush writes the documents which were put before the call and returns while other threads keep putting documents
+     */
+    @Test(timeout = 30000)
+    public void testFlushUnderLoad() throws Exception {
+        final RecordingSink sink = new RecordingSink() {
+            @Override
+            public void add(final Collection<SolrInputDocument> docs) throws IOException, SolrException {
+                super.add(docs);
+                try {
+                    Thread.sleep(1); // slower than the producer, so the queue is never empty
+                } catch (final InterruptedException e) {}
+            }
+        };
+        final SolrBatchWriter writer = new SolrBatchWriter("test", sink, 10, 60000, 100);
+        final Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; !isInterrupted(); i++) writer.put(doc("load" + i, "v" + i));
+                } catch (final IOException e) {}
+            }
+        };
+        try {
+            for (int i = 0; i < 55; i++) writer.put(doc("id" + i, "v" + i));
+            producer.start();
+            for (int i = 0; i < 20; i++) {
+                writer.flush();
+                assertTrue(sink.documents() >= 55);
+            }
+        } finally {
+            producer.interrupt();
+            producer.join();
+            writer.close();
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+package net.yacy.search.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.common.util.NamedList;
+import org.apache.solr.common.util.SimpleOrderedMap;
+import org.junit.After;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.sorting.ClusteredScoreMap;
+import net.yacy.cora.sorting.ReversibleScoreMap;
+
+public class FacetCacheTest {
+
+    @After
+    public void tearDown() {
+        FacetCache.clear();
+        FacetCache.setLimits(0, 600000);
+    }
+
+    private static ReversibleScoreMap<String> counts(final String... keys) {
+        final ReversibleScoreMap<String> counts = new ClusteredScoreMap<String>(UTF8.insensitiveUTF8Comparator);
+        for (int i = 0; i < keys.length; i++) counts.set(keys[i], i + 1);
+        return counts;
+    }
+
+    /**
+     * Test that the scope does not depend on the page, the order, snippets and facets of a query
+     */
+    @Test
+    public void testScope() {
+        final SolrQuery query = new SolrQuery("yacy");
+        query.setFilterQueries("host_s:yacy.net", "url_protocol_s:https");
+        query.setStart(0);
+        query.setRows(10);
+        final String scope = FacetCache.scope(query);
+
+        final SolrQuery page = query.getCopy();
+        page.setStart(20);
+        page.setRows(100);
+        page.setHighlight(true);
+        page.addHighlightField("text_t");
+        page.set(FacetCache.JSON_FACET, "{}");
+        page.setSort("last_modified", SolrQuery.ORDER.desc);
+        assertEquals(scope, FacetCache.scope(page));
+
+        final SolrQuery filtered = query.getCopy();
+        filtered.addFilterQuery("language_s:de");
+        assertNotEquals(scope, FacetCache.scope(filtered));
+    }
+
+    /**
+     * Test that every navigator is cached on its own and that the cache returns copies
+     */
+    @Test
+    public void testGetPut() {
+        FacetCache.setLimits(10, 600000);
+        assertNull(FacetCache.get("q=yacy&", "hosts", Long.MAX_VALUE));
+        FacetCache.put("q=yacy&", "hosts", counts("yacy.net", "example.org"));
+        FacetCache.put("q=yacy&", "language", counts());
+        assertNull(FacetCache.get("q=yacy&", "authors", Long.MAX_VALUE));
+        assertNull(FacetCache.get("q=solr&", "hosts", Long.MAX_VALUE));
+
+        final ReversibleScoreMap<String> hosts = FacetCache.get("q=yacy&", "hosts", Long.MAX_VALUE);
+        assertNotNull(hosts);
+        assertEquals(2, hosts.get("example.org"));
+        hosts.delete("example.org");
+        assertEquals(2, FacetCache.get("q=yacy&", "hosts", Long.MAX_VALUE).get("example.org"));
+        assertEquals(0, FacetCache.get("q=yacy&", "language", Long.MAX_VALUE).size());
+
+        // the least recently used navigators are evicted
+        for (int i = 0; i < 10; i++) FacetCache.put("q=yacy&", "nav" + i, counts("x"));
+        assertEquals(10, FacetCache.size());
+        assertNull(FacetCache.get("q=yacy&", "language", Long.MAX_VALUE));
+
+        // the cache is switched off with a size of 0
+        FacetCache.setLimits(0, 600000);
+        assertEquals(0, FacetCache.size());
+        FacetCache.put("q=yacy&", "hosts", counts("yacy.net"));
+        assertNull(FacetCache.get("q=yacy&", "hosts", Long.MAX_VALUE));
+    }
+
+    /**
+     * Test the conversion of the buckets of a JSON facet response
+     */
+    @Test
+    public void testCounts() {
+        final List<NamedList<Object>> buckets = new ArrayList<>();
+        final Object[][] values = {{"yacy.net", 5L}, {"", 3L}, {"example.org", 0}, {new Date(1514764800000L), 2}};
+        for (final Object[] value: values) {
+            final NamedList<Object> bucket = new SimpleOrderedMap<Object>();
+            bucket.add("val", value[0]);
+            bucket.add("count", value[1]);
+            buckets.add(bucket);
+        }
+        final NamedList<Object> facet = new SimpleOrderedMap<Object>();
+        facet.add("buckets", buckets);
+
+        final ReversibleScoreMap<String> counts = FacetCache.counts(facet);
+        assertEquals(2, counts.size());
+        assertEquals(5, counts.get("yacy.net"));
+        assertEquals(2, counts.get("2018-01-01T00:00:00Z"));
+        assertTrue(FacetCache.counts(null).isEmpty());
+    }
+
+}
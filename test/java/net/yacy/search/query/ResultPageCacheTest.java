@@ -0,0 +1,71 @@
+package net.yacy.search.query;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ResultPageCacheTest {
+
+    @After
+    public void tearDown() {
+        ResultPageCache.clear();
+        ResultPageCache.setLimits(0, 600000);
+    }
+
+    /**
+     * Test that pages are evicted in order of their last access when the byte limit is reached
+     */
+    @Test
+    public void testEviction() {
+        ResultPageCache.setLimits(10000, 600000);
+        final byte[] content = new byte[2000];
+        for (int i = 0; i < 4; i++) ResultPageCache.put("page" + i, "application/json", content);
+        assertEquals(4, ResultPageCache.size());
+        assertTrue(ResultPageCache.bytes() <= ResultPageCache.maxBytes());
+
+        // access the first page, so the second one is the least recently used
+        assertNotNull(ResultPageCache.get("page0", Long.MAX_VALUE));
+        final long evicted = ResultPageCache.cacheEvict.get();
+        ResultPageCache.put("page4", "application/json", content);
+        assertEquals(evicted + 1, ResultPageCache.cacheEvict.get());
+        assertNull(ResultPageCache.get("page1", Long.MAX_VALUE));
+        assertNotNull(ResultPageCache.get("page0", Long.MAX_VALUE));
+        assertNotNull(ResultPageCache.get("page4", Long.MAX_VALUE));
+        assertTrue(ResultPageCache.bytes() <= ResultPageCache.maxBytes());
+
+        // a page larger than a quarter of the cache is not stored
+        ResultPageCache.put("large", "application/json", new byte[3000]);
+        assertNull(ResultPageCache.get("large", Long.MAX_VALUE));
+    }
+
+    /**
+     * Test that a page is returned as it was stored and that old pages are not served
+     */
+    @Test
+    public void testGet() throws Exception {
+        ResultPageCache.setLimits(100000, 600000);
+        final byte[] content = "{\"channels\":[]}".getBytes("UTF-8");
+        final long hits = ResultPageCache.cacheHit.get(), misses = ResultPageCache.cacheMiss.get();
+        assertNull(ResultPageCache.get("q", Long.MAX_VALUE));
+        ResultPageCache.put("q", "application/json", content);
+        final ResultPageCache.Page page = ResultPageCache.get("q", Long.MAX_VALUE);
+        assertArrayEquals(content, page.getContent());
+        assertEquals("application/json", page.getMimeType());
+        Thread.sleep(5);
+        assertNull(ResultPageCache.get("q", 1));
+        assertEquals(hits + 1, ResultPageCache.cacheHit.get());
+        assertEquals(misses + 2, ResultPageCache.cacheMiss.get());
+
+        // a disabled cache stores nothing
+        ResultPageCache.setLimits(0, 600000);
+        assertEquals(0, ResultPageCache.size());
+        ResultPageCache.put("q", "application/json", content);
+        assertNull(ResultPageCache.get("q", Long.MAX_VALUE));
+    }
+
+}
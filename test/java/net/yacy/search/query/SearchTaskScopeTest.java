@@ -0,0 +1,121 @@
+package net.yacy.search.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SearchTaskScopeTest {
+
+    /**
+     * Test that forked tasks are executed and can be joined, also if there are more tasks than pooled threads
+     */
+    @Test
+    public void testForkJoin() throws InterruptedException {
+        SearchTaskScope.setExecutor(false, 2);
+        final SearchTaskScope scope = new SearchTaskScope("test");
+        final AtomicInteger count = new AtomicInteger(0);
+        final CountDownLatch release = new CountDownLatch(1);
+        final SearchTask[] tasks = new SearchTask[5];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = scope.fork(new SearchTask("task" + i) {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                        count.incrementAndGet();
+                    } catch (final InterruptedException e) {}
+                }
+            });
+            assertTrue(tasks[i].isAlive());
+        }
+        release.countDown();
+        for (final SearchTask task: tasks) {
+            task.join();
+            assertFalse(task.isAlive());
+        }
+        assertEquals(tasks.length, count.get());
+        assertEquals(0, scope.size());
+    }
+
+    /**
+     * Test that no thread is started beyond the pool if the pool and its queue are full; the task runs on the forking thread
+     */
+    @Test
+    public void testCallerRuns() throws InterruptedException {
+        SearchTaskScope.setExecutor(false, 1);
+        final SearchTaskScope scope = new SearchTaskScope("test");
+        final CountDownLatch release = new CountDownLatch(1);
+        final SearchTask[] tasks = new SearchTask[5]; // one running task and four waiting tasks
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = scope.fork(new SearchTask("task" + i) {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (final InterruptedException e) {}
+                }
+            });
+        }
+        final long overflow = SearchTaskScope.overflowTasks();
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger onCaller = new AtomicInteger(0);
+        final SearchTask last = scope.fork(new SearchTask("last") {
+            @Override
+            public void run() {
+                if (Thread.currentThread() == caller) onCaller.incrementAndGet();
+            }
+        });
+        assertFalse(last.isAlive());
+        assertEquals(1, onCaller.get());
+        assertEquals(overflow + 1, SearchTaskScope.overflowTasks());
+        release.countDown();
+        for (final SearchTask task: tasks) task.join();
+        assertEquals(0, scope.size());
+    }
+
+    /**
+     * Test that a cancel interrupts running tasks and that tasks forked after the cancel are not executed
+     */
+    @Test
+    public void testCancel() throws InterruptedException {
+        SearchTaskScope.setExecutor(false, 4);
+        final SearchTaskScope scope = new SearchTaskScope("test");
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicInteger interrupted = new AtomicInteger(0);
+        final SearchTask running = scope.fork(new SearchTask("running") {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(60000);
+                } catch (final InterruptedException e) {
+                    interrupted.incrementAndGet();
+                }
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        scope.cancel();
+        running.join(10000);
+        assertFalse(running.isAlive());
+        assertEquals(1, interrupted.get());
+
+        final AtomicInteger executed = new AtomicInteger(0);
+        final SearchTask late = scope.fork(new SearchTask("late") {
+            @Override
+            public void run() {
+                executed.incrementAndGet();
+            }
+        });
+        late.join(10000);
+        assertFalse(late.isAlive());
+        assertTrue(late.isCancelled());
+        assertEquals(0, executed.get());
+    }
+
+}
@@ -3,12 +3,26 @@ package net.yacy.search.ranking;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import net.yacy.cora.document.analysis.Classification;
+import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.search.schema.CollectionConfiguration;
 import org.apache.solr.common.SolrInputDocument;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 
@@ -49,4 +63,36 @@ public class ReferenceOrderTest {
 
     }
 
+    private static ReferenceContainer<WordReference> container(final int size) throws SpaceExceededException {
+        final ReferenceContainer<WordReference> container = new ReferenceContainer<WordReference>(new WordReferenceFactory(), Word.word2hash("test"), size);
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            container.add(new WordReferenceRow(ASCII.getBytes(String.format("%06dAAAAA%d", i, i % 7)), 30 + i % 50, 2 + i % 5, 10 + i % 20, 200 + i, 20 + i % 100,
+                    now - i * 86400000L, now, ASCII.getBytes("en"), 't', i % 10, i % 20));
+        }
+        return container;
+    }
+
+    /**
+     * Test that the normalization delivers every reference exactly once followed by the poison,
+     * for containers which are normalized in the calling thread and in the normalizer pool
+     */
+    @Test
+    public void testNormalizeWith() throws SpaceExceededException, InterruptedException {
+        final RankingProfile profile = new RankingProfile(Classification.ContentDomain.TEXT);
+        for (final int size: new int[] {0, 50, 5000}) {
+            final ReferenceOrder order = new ReferenceOrder(profile, "en");
+            final BlockingQueue<WordReferenceVars> queue = order.normalizeWith(container(size), Long.MAX_VALUE, true);
+            final Set<String> urls = new HashSet<String>();
+            WordReferenceVars entry;
+            while ((entry = queue.poll(10, TimeUnit.SECONDS)) != WordReferenceVars.poison) {
+                assertNotNull("normalization did not terminate", entry);
+                assertTrue(urls.add(ASCII.String(entry.urlhash())));
+                order.cardinal(entry); // min and max must be available for every delivered entry
+            }
+            assertEquals(size, urls.size());
+            assertTrue(queue.isEmpty());
+        }
+    }
+
 }
@@ -0,0 +1,100 @@
+package net.yacy.server.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.server.serverObjects;
+
+import org.junit.Test;
+
+public class CompiledTemplateTest {
+
+    private static serverObjects patterns() {
+        final serverObjects prop = new serverObjects();
+        prop.put("title", "Hello & welcome");
+        prop.put("times", 3);
+        for (int i = 0; i < 3; i++) {
+            prop.put("times_" + i + "_daytime", i % 2);
+            prop.put("times_" + i + "_name", "name" + i);
+            prop.put("times_" + i + "_inner", 2);
+            prop.put("times_" + i + "_inner_0_v", "a" + i);
+            prop.put("times_" + i + "_inner_1_v", "b" + i);
+        }
+        prop.put("flag", "true");
+        prop.put("off", "false");
+        prop.put("big", 7);
+        prop.put("flag_value", "inside");
+        prop.put("item", 2);
+        prop.put("eventID", "xyz");
+        return prop;
+    }
+
+    private static String interpreted(final String template, final serverObjects prop) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TemplateEngine.writeTemplate("test", new ByteArrayInputStream(UTF8.getBytes(template)), out, prop);
+        return UTF8.String(out.toByteArray());
+    }
+
+    private static String compiled(final String template, final serverObjects prop) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledTemplate.compile("test", UTF8.getBytes(template)).write(out, prop, null);
+        return UTF8.String(out.toByteArray());
+    }
+
+    /**
+     * Test that a compiled template writes the same output as the TemplateEngine
+     */
+    @Test
+    public void testSameOutputAsTemplateEngine() throws IOException {
+        final String[] templates = new String[] {
+            "plain text without patterns",
+            "<title>#[title]#</title> #[missing]#",
+            "#{times}#\nGood #(daytime)#morning::evening#(/daytime)#, #[name]#!#{inner}#[#[v]#]#{/inner}#\n#{/times}#\nend",
+            "#(flag)#no::yes #[value]##(/flag)# #(off)#off::on#(/off)# #(big)#a::b::c#(/big)#",
+            "#(flag)#outer0::#(off)#x::y#(/off)#::outer2#(/flag)#",
+            "a # b ## c #x# d #[title]",
+            "ratio 1:2 #(flag)#a:b::c:d#(/flag)#",
+            "#{missing}#never#{/missing}#after",
+            "<!--#include virtual=\"item.html?item=#[item]#&eventID=#[eventID]#\" -->"
+        };
+        final serverObjects prop = patterns();
+        for (final String template: templates) {
+            assertEquals(template, interpreted(template, prop), compiled(template, prop));
+        }
+    }
+
+    /**
+     * Test that SSI includes are executed with the resolved path at their position
+     */
+    @Test
+    public void testSSI() throws IOException {
+        final CompiledTemplate template = CompiledTemplate.compile("test",
+                UTF8.getBytes("<ul>#{times}#<!--#include virtual=\"item.html?item=#[name]#&eventID=#(daytime)#x::y#(/daytime)#\" -->\n#{/times}#</ul>"));
+        assertFalse(template.hasUnresolvedSSI());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final List<String> paths = new ArrayList<String>();
+        template.write(out, patterns(), new CompiledTemplate.SSIHandler() {
+            @Override
+            public void include(final String path) throws IOException {
+                paths.add(path);
+                out.write(UTF8.getBytes("<li>" + paths.size() + "</li>"));
+            }
+        });
+        assertEquals(3, paths.size());
+        assertEquals("item.html?item=name0&eventID=x", paths.get(0));
+        assertEquals("item.html?item=name1&eventID=y", paths.get(1));
+        assertEquals("<ul><li>1</li>\n<li>2</li>\n<li>3</li>\n</ul>", UTF8.String(out.toByteArray()));
+
+        // a SSI marker which spans over the end of a multi template can not be compiled
+        assertTrue(CompiledTemplate.compile("test", UTF8.getBytes("#{times}#<!--#include virtual=\"#{/times}#x\" -->")).hasUnresolvedSSI());
+    }
+
+}